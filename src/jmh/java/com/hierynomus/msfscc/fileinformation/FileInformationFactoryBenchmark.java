@@ -0,0 +1,135 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.msfscc.fileinformation;
+
+import java.util.Iterator;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.hierynomus.msdtyp.FileTime;
+import com.hierynomus.msdtyp.MsDataTypes;
+import com.hierynomus.protocol.commons.Charsets;
+import com.hierynomus.smb.SMBBuffer;
+
+/**
+ * Measures decoding of a QUERY_DIRECTORY output buffer into directory entries.
+ */
+@State(Scope.Thread)
+public class FileInformationFactoryBenchmark {
+    @Param({"1", "100", "1000"})
+    public int entries;
+
+    private byte[] idBothDirectory;
+    private byte[] names;
+
+    @Setup
+    public void setup() {
+        idBothDirectory = idBothDirectoryListing(entries);
+        names = namesListing(entries);
+    }
+
+    @Benchmark
+    public List<FileIdBothDirectoryInformation> parseFileIdBothDirectoryInformation() {
+        return FileInformationFactory.parseFileInformationList(idBothDirectory,
+            FileInformationFactory.getDecoder(FileIdBothDirectoryInformation.class));
+    }
+
+    @Benchmark
+    public long viewFileIdBothDirectoryInformation() {
+        long totalSize = 0;
+        Iterator<FileIdBothDirectoryInformationView> views = FileInformationFactory.createFileIdBothDirectoryViewIterator(idBothDirectory);
+        while (views.hasNext()) {
+            FileIdBothDirectoryInformationView view = views.next();
+            totalSize += view.getEndOfFile() + view.getFileNameLength();
+        }
+        return totalSize;
+    }
+
+    @Benchmark
+    public List<FileNamesInformation> parseFileNamesInformation() {
+        return FileInformationFactory.parseFileInformationList(names,
+            FileInformationFactory.getDecoder(FileNamesInformation.class));
+    }
+
+    /**
+     * [MS-FSCC] 2.4.17 FileIdBothDirectoryInformation, entries are 8-byte aligned.
+     */
+    private static byte[] idBothDirectoryListing(int entries) {
+        SMBBuffer buffer = new SMBBuffer();
+        FileTime now = FileTime.now();
+        for (int i = 0; i < entries; i++) {
+            byte[] fileName = fileName(i);
+            int start = buffer.wpos();
+            int length = align8(104 + fileName.length);
+            buffer.putUInt32(i == entries - 1 ? 0 : length); // NextEntryOffset (4 bytes)
+            buffer.putUInt32(i); // FileIndex (4 bytes)
+            MsDataTypes.putFileTime(now, buffer); // CreationTime (8 bytes)
+            MsDataTypes.putFileTime(now, buffer); // LastAccessTime (8 bytes)
+            MsDataTypes.putFileTime(now, buffer); // LastWriteTime (8 bytes)
+            MsDataTypes.putFileTime(now, buffer); // ChangeTime (8 bytes)
+            buffer.putUInt64(i * 1024L); // EndOfFile (8 bytes)
+            buffer.putUInt64(i * 4096L); // AllocationSize (8 bytes)
+            buffer.putUInt32(0x20); // FileAttributes (4 bytes)
+            buffer.putUInt32(fileName.length); // FileNameLength (4 bytes)
+            buffer.putUInt32(0); // EaSize (4 bytes)
+            buffer.putByte((byte) 0); // ShortNameLength (1 byte)
+            buffer.putReserved1(); // Reserved1 (1 byte)
+            buffer.putReserved(24); // ShortName (24 bytes)
+            buffer.putReserved2(); // Reserved2 (2 bytes)
+            buffer.putLong(i); // FileId (8 bytes)
+            buffer.putRawBytes(fileName); // FileName (variable)
+            pad(buffer, start, i, entries, length);
+        }
+        return buffer.getCompactData();
+    }
+
+    /**
+     * [MS-FSCC] 2.4.26 FileNamesInformation, entries are 8-byte aligned.
+     */
+    private static byte[] namesListing(int entries) {
+        SMBBuffer buffer = new SMBBuffer();
+        for (int i = 0; i < entries; i++) {
+            byte[] fileName = fileName(i);
+            int start = buffer.wpos();
+            int length = align8(12 + fileName.length);
+            buffer.putUInt32(i == entries - 1 ? 0 : length); // NextEntryOffset (4 bytes)
+            buffer.putUInt32(i); // FileIndex (4 bytes)
+            buffer.putUInt32(fileName.length); // FileNameLength (4 bytes)
+            buffer.putRawBytes(fileName); // FileName (variable)
+            pad(buffer, start, i, entries, length);
+        }
+        return buffer.getCompactData();
+    }
+
+    private static byte[] fileName(int i) {
+        return ("document-" + i + ".docx").getBytes(Charsets.UTF_16LE);
+    }
+
+    private static int align8(int length) {
+        return (length + 7) & ~7;
+    }
+
+    private static void pad(SMBBuffer buffer, int start, int i, int entries, int length) {
+        if (i < entries - 1) {
+            buffer.putReserved(start + length - buffer.wpos());
+        }
+    }
+}
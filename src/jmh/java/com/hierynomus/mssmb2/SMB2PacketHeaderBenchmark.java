@@ -0,0 +1,71 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.mssmb2;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.hierynomus.protocol.commons.buffer.Buffer;
+import com.hierynomus.smb.SMBBuffer;
+
+/**
+ * Measures writing and parsing of the 64 byte SMB2 packet header.
+ */
+@State(Scope.Thread)
+public class SMB2PacketHeaderBenchmark {
+    @Param({"SMB_2_1", "SMB_3_1_1"})
+    public SMB2Dialect dialect;
+
+    private SMB2PacketHeader header;
+    private SMBBuffer written;
+
+    @Setup
+    public void setup() {
+        header = newHeader(dialect);
+        written = new SMBBuffer();
+        header.writeTo(written);
+    }
+
+    @Benchmark
+    public SMBBuffer writeTo() {
+        SMBBuffer buffer = new SMBBuffer();
+        header.writeTo(buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public SMB2PacketHeader readFrom() throws Buffer.BufferException {
+        written.rpos(0);
+        SMB2PacketHeader read = new SMB2PacketHeader();
+        read.readFrom(written);
+        return read;
+    }
+
+    private static SMB2PacketHeader newHeader(SMB2Dialect dialect) {
+        SMB2PacketHeader header = new SMB2PacketHeader();
+        header.setDialect(dialect);
+        header.setMessageType(SMB2MessageCommandCode.SMB2_READ);
+        header.setCreditCharge(1);
+        header.setCreditRequest(64);
+        header.setMessageId(0x1234);
+        header.setSessionId(0x7766554433221100L);
+        header.setTreeId(5);
+        return header;
+    }
+}
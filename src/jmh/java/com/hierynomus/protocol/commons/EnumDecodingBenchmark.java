@@ -0,0 +1,63 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.protocol.commons;
+
+import java.util.EnumSet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.hierynomus.msdtyp.AccessMask;
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.msfscc.FileAttributes;
+
+/**
+ * Measures decoding of status codes and flag sets, which happens for every response and directory entry.
+ */
+@State(Scope.Thread)
+public class EnumDecodingBenchmark {
+    @Param({"STATUS_SUCCESS", "STATUS_PENDING", "STATUS_NO_MORE_FILES"})
+    public NtStatus status;
+
+    private long statusCode;
+    private long fileAttributes;
+    private long accessMask;
+
+    @Setup
+    public void setup() {
+        statusCode = status.getValue();
+        fileAttributes = FileAttributes.FILE_ATTRIBUTE_DIRECTORY.getValue() | FileAttributes.FILE_ATTRIBUTE_ARCHIVE.getValue();
+        accessMask = AccessMask.GENERIC_READ.getValue() | AccessMask.SYNCHRONIZE.getValue() | AccessMask.FILE_READ_ATTRIBUTES.getValue();
+    }
+
+    @Benchmark
+    public NtStatus ntStatusValueOf() {
+        return NtStatus.valueOf(statusCode);
+    }
+
+    @Benchmark
+    public EnumSet<FileAttributes> fileAttributesToEnumSet() {
+        return EnumWithValue.EnumUtils.toEnumSet(fileAttributes, FileAttributes.class);
+    }
+
+    @Benchmark
+    public EnumSet<AccessMask> accessMaskToEnumSet() {
+        return EnumWithValue.EnumUtils.toEnumSet(accessMask, AccessMask.class);
+    }
+}
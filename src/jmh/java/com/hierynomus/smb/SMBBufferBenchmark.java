@@ -0,0 +1,95 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smb;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.hierynomus.protocol.commons.Charsets;
+import com.hierynomus.protocol.commons.buffer.Buffer;
+
+/**
+ * Measures the primitive encoders and decoders of {@link Buffer} / {@link SMBBuffer} that every packet goes through.
+ */
+@State(Scope.Thread)
+public class SMBBufferBenchmark {
+    private static final String FILE_NAME = "some\\directory\\with a longer file name.txt";
+
+    @Param({"64", "4096", "65536"})
+    public int size;
+
+    private byte[] payload;
+    private SMBBuffer primitives;
+    private SMBBuffer raw;
+
+    @Setup
+    public void setup() {
+        payload = new byte[size];
+        ThreadLocalRandom.current().nextBytes(payload);
+        primitives = writePrimitives(new SMBBuffer());
+        raw = new SMBBuffer(payload);
+    }
+
+    @Benchmark
+    public SMBBuffer putPrimitives() {
+        return writePrimitives(new SMBBuffer());
+    }
+
+    @Benchmark
+    public long readPrimitives() throws Buffer.BufferException {
+        primitives.rpos(0);
+        long result = primitives.readUInt16();
+        result += primitives.readUInt32();
+        result += primitives.readUInt64();
+        result += primitives.readLong();
+        result += primitives.readString(Charsets.UTF_16LE, FILE_NAME.length()).length();
+        return result;
+    }
+
+    @Benchmark
+    public SMBBuffer putRawBytes() {
+        SMBBuffer buffer = new SMBBuffer();
+        buffer.putRawBytes(payload);
+        return buffer;
+    }
+
+    @Benchmark
+    public byte[] readRawBytes() throws Buffer.BufferException {
+        raw.rpos(0);
+        return raw.readRawBytes(size);
+    }
+
+    @Benchmark
+    public byte[] getCompactData() {
+        raw.rpos(0);
+        return raw.getCompactData();
+    }
+
+    private static SMBBuffer writePrimitives(SMBBuffer buffer) {
+        buffer.putUInt16(0xfe53);
+        buffer.putUInt32(0x12345678L);
+        buffer.putUInt64(0x0102030405060708L);
+        buffer.putLong(-1L);
+        buffer.putString(FILE_NAME);
+        buffer.putReserved4();
+        return buffer;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj;
+
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.hierynomus.msdtyp.AccessMask;
+import com.hierynomus.mssmb2.SMB2CreateDisposition;
+import com.hierynomus.mssmb2.SMB2ShareAccess;
+import com.hierynomus.smbj.auth.AuthenticationContext;
+import com.hierynomus.smbj.share.DiskShare;
+import com.hierynomus.smbj.share.File;
+import com.hierynomus.smbj.testing.InMemoryFileTree;
+import com.hierynomus.smbj.testing.LoopbackSmbServer;
+import com.hierynomus.smbj.testing.StubAuthenticator;
+import com.hierynomus.smbj.transport.tcp.async.AsyncDirectTcpTransportFactory;
+import com.hierynomus.smbj.transport.tcp.direct.DirectTcpTransportFactory;
+
+/**
+ * Measures end-to-end READ and WRITE throughput over a real loopback socket against the {@link LoopbackSmbServer},
+ * including framing, signing and the transport's reader thread or completion handlers. The optional server latency
+ * shows how well each transport keeps the pipe full when the round trip, rather than the client, is the bottleneck.
+ */
+@State(Scope.Benchmark)
+public class LoopbackTransferBenchmark {
+    private static final int FILE_SIZE = 4 * 1024 * 1024;
+
+    @Param({"direct", "async"})
+    public String transport;
+
+    @Param({"0", "1"})
+    public int latencyMillis;
+
+    @Param({"65536", "1048576"})
+    public int chunkSize;
+
+    private LoopbackSmbServer server;
+    private SMBClient client;
+    private File file;
+    private byte[] buffer;
+
+    @Setup
+    public void setup() throws Exception {
+        InMemoryFileTree tree = new InMemoryFileTree();
+        tree.write("data.bin", new byte[FILE_SIZE]);
+        server = LoopbackSmbServer.builder()
+            .withShare("share", tree)
+            .withLatency(latencyMillis, TimeUnit.MILLISECONDS)
+            .withMaxTransactSize(chunkSize)
+            .build()
+            .start();
+        client = new SMBClient(SmbConfig.builder()
+            .withDfsEnabled(false)
+            .withBufferSize(chunkSize)
+            .withTransportLayerFactory("async".equals(transport) ? new AsyncDirectTcpTransportFactory<>() : new DirectTcpTransportFactory<>())
+            .withAuthenticators(new StubAuthenticator.Factory())
+            .build());
+        DiskShare share = (DiskShare) client.connect(server.getHostname(), server.getPort())
+            .authenticate(new AuthenticationContext("user", "password".toCharArray(), "DOMAIN"))
+            .connectShare("share");
+        file = share.openFile("data.bin", EnumSet.of(AccessMask.GENERIC_READ, AccessMask.GENERIC_WRITE), null, SMB2ShareAccess.ALL, SMB2CreateDisposition.FILE_OPEN, null);
+        buffer = new byte[chunkSize];
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        file.close();
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public long readFile() {
+        long total = 0;
+        for (long offset = 0; offset < FILE_SIZE; offset += chunkSize) {
+            total += file.read(buffer, offset);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long writeFile() {
+        long total = 0;
+        for (long offset = 0; offset < FILE_SIZE; offset += chunkSize) {
+            total += file.write(buffer, offset);
+        }
+        return total;
+    }
+}
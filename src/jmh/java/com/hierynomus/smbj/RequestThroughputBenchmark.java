@@ -0,0 +1,119 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.mssmb2.SMB2Packet;
+import com.hierynomus.mssmb2.messages.SMB2Echo;
+import com.hierynomus.smbj.auth.AuthenticationContext;
+import com.hierynomus.smbj.connection.Connection;
+import com.hierynomus.smbj.metrics.InMemorySmbMetrics;
+import com.hierynomus.smbj.session.Session;
+import com.hierynomus.smbj.testing.PacketProcessor.DefaultPacketProcessor;
+import com.hierynomus.smbj.testing.StubAuthenticator;
+import com.hierynomus.smbj.testing.StubTransportLayerFactory;
+import com.hierynomus.smbj.tracing.RequestInfo;
+import com.hierynomus.smbj.tracing.RequestTrace;
+import com.hierynomus.smbj.tracing.SmbTracer;
+import com.hierynomus.smbj.tracing.TraceStage;
+
+/**
+ * Measures the client side cost of a request round trip (credits, message ids, outstanding request bookkeeping, the
+ * incoming packet handler chain and promise delivery) against the in-process stub transport, which answers every
+ * request synchronously and without touching the network.
+ */
+@State(Scope.Benchmark)
+public class RequestThroughputBenchmark {
+    @Param({"none", "metrics", "tracing"})
+    public String instrumentation;
+
+    @Param({"1", "32"})
+    public int inFlight;
+
+    private SMBClient client;
+    private Session session;
+
+    @Setup
+    public void setup() throws Exception {
+        SmbConfig.Builder builder = SmbConfig.builder()
+            .withDfsEnabled(false)
+            .withTransportLayerFactory(new StubTransportLayerFactory<>(new DefaultPacketProcessor().wrap(request -> {
+                if (request.getPacket() instanceof SMB2Echo) {
+                    SMB2Echo response = new SMB2Echo();
+                    response.getHeader().setStatusCode(NtStatus.STATUS_SUCCESS.getValue());
+                    return response;
+                }
+                return null;
+            })))
+            .withAuthenticators(new StubAuthenticator.Factory());
+        if ("metrics".equals(instrumentation)) {
+            builder.withMetrics(new InMemorySmbMetrics());
+        } else if ("tracing".equals(instrumentation)) {
+            builder.withTracer(new DiscardingTracer());
+        }
+        client = new SMBClient(builder.build());
+        Connection connection = client.connect("localhost");
+        session = connection.authenticate(new AuthenticationContext("user", "password".toCharArray(), "DOMAIN"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+    }
+
+    @Benchmark
+    public List<SMB2Packet> echo() throws Exception {
+        List<Future<SMB2Packet>> futures = new ArrayList<>(inFlight);
+        for (int i = 0; i < inFlight; i++) {
+            futures.add(session.send(new SMB2Echo(session.getConnection().getNegotiatedProtocol().getDialect())));
+        }
+        List<SMB2Packet> responses = new ArrayList<>(inFlight);
+        for (Future<SMB2Packet> future : futures) {
+            responses.add(future.get());
+        }
+        return responses;
+    }
+
+    private static class DiscardingTracer implements SmbTracer, RequestTrace {
+        @Override
+        public RequestTrace startRequest(RequestInfo request, long startNanos) {
+            return this;
+        }
+
+        @Override
+        public void stage(TraceStage stage, long startNanos, long endNanos) {
+        }
+
+        @Override
+        public void responded(long statusCode, long endNanos) {
+        }
+
+        @Override
+        public void failed(Throwable cause, long endNanos) {
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.connection;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.hierynomus.mssmb2.SMB2Dialect;
+import com.hierynomus.mssmb2.SMB2FileId;
+import com.hierynomus.mssmb2.SMB2Packet;
+import com.hierynomus.mssmb2.SMB3EncryptedPacketData;
+import com.hierynomus.mssmb2.SMB3EncryptionCipher;
+import com.hierynomus.mssmb2.messages.SMB2WriteRequest;
+import com.hierynomus.protocol.commons.buffer.Buffer;
+import com.hierynomus.security.bc.BCSecurityProvider;
+import com.hierynomus.smb.SMBBuffer;
+import com.hierynomus.smbj.io.ArrayByteChunkProvider;
+
+/**
+ * Measures encrypting an outgoing SMB2 WRITE request into an SMB2 TRANSFORM message and decrypting it again.
+ */
+@State(Scope.Thread)
+public class PacketEncryptorBenchmark {
+    @Param({"AES_128_CCM", "AES_128_GCM"})
+    public SMB3EncryptionCipher cipher;
+
+    @Param({"64", "4096", "65536"})
+    public int size;
+
+    private PacketEncryptor encryptor;
+    private SecretKey key;
+    private byte[] data;
+    private byte[] encrypted;
+
+    @Setup
+    public void setup() {
+        encryptor = new PacketEncryptor(new BCSecurityProvider());
+        encryptor.setCipher(cipher);
+        byte[] keyBytes = new byte[16];
+        ThreadLocalRandom.current().nextBytes(keyBytes);
+        key = new SecretKeySpec(keyBytes, "AES");
+        data = new byte[size];
+        ThreadLocalRandom.current().nextBytes(data);
+        encrypted = encrypt().getCompactData();
+    }
+
+    @Benchmark
+    public SMBBuffer encrypt() {
+        SMBBuffer buffer = new SMBBuffer();
+        encryptor.encrypt(writeRequest(), key).write(buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public byte[] decrypt() throws Buffer.BufferException {
+        return encryptor.decrypt(new SMB3EncryptedPacketData(encrypted), key);
+    }
+
+    private SMB2Packet writeRequest() {
+        return new SMB2WriteRequest(SMB2Dialect.SMB_3_1_1, new SMB2FileId(), 1L, 1L, new ArrayByteChunkProvider(data, 0), size);
+    }
+}
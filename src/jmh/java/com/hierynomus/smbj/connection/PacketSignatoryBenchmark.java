@@ -0,0 +1,82 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.connection;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.hierynomus.mssmb2.SMB2Dialect;
+import com.hierynomus.mssmb2.SMB2FileId;
+import com.hierynomus.mssmb2.SMB2Packet;
+import com.hierynomus.mssmb2.SMB2PacketData;
+import com.hierynomus.mssmb2.messages.SMB2WriteRequest;
+import com.hierynomus.protocol.commons.buffer.Buffer;
+import com.hierynomus.security.bc.BCSecurityProvider;
+import com.hierynomus.smb.SMBBuffer;
+import com.hierynomus.smbj.io.ArrayByteChunkProvider;
+
+/**
+ * Measures signing an outgoing SMB2 WRITE request and verifying the signature of an incoming packet of the same size.
+ */
+@State(Scope.Thread)
+public class PacketSignatoryBenchmark {
+    @Param({SMBSessionBuilder.HMAC_SHA256_ALGORITHM, SMBSessionBuilder.AES_128_CMAC_ALGORITHM})
+    public String algorithm;
+
+    @Param({"64", "4096", "65536"})
+    public int size;
+
+    private PacketSignatory signatory;
+    private SecretKey signingKey;
+    private byte[] data;
+    private SMB2PacketData signed;
+
+    @Setup
+    public void setup() throws Buffer.BufferException {
+        signatory = new PacketSignatory(new BCSecurityProvider());
+        signatory.init();
+        byte[] key = new byte[16];
+        ThreadLocalRandom.current().nextBytes(key);
+        signingKey = new SecretKeySpec(key, algorithm);
+        data = new byte[size];
+        ThreadLocalRandom.current().nextBytes(data);
+        signed = new SMB2PacketData(sign().getCompactData());
+    }
+
+    @Benchmark
+    public SMBBuffer sign() {
+        SMBBuffer buffer = new SMBBuffer();
+        signatory.sign(writeRequest(), signingKey).write(buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return signatory.verify(signed, signingKey);
+    }
+
+    private SMB2Packet writeRequest() {
+        return new SMB2WriteRequest(SMB2Dialect.SMB_3_0_2, new SMB2FileId(), 1L, 1L, new ArrayByteChunkProvider(data, 0), size);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.transport.tcp.async;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures reassembly of Direct TCP frames by the async transport, feeding each frame in as many socket reads as
+ * the read buffer needs.
+ */
+@State(Scope.Thread)
+public class PacketBufferReaderBenchmark {
+    @Param({"64", "4096", "65536"})
+    public int size;
+
+    private PacketBufferReader reader;
+    private byte[] frame;
+
+    @Setup
+    public void setup() {
+        reader = new PacketBufferReader();
+        frame = new byte[4 + size];
+        ThreadLocalRandom.current().nextBytes(frame);
+        ByteBuffer.wrap(frame).putInt(size); // Direct TCP transport header, 0x00 followed by the 3 byte length
+    }
+
+    @Benchmark
+    public byte[] readNext() {
+        ByteBuffer buffer = reader.getBuffer();
+        int written = 0;
+        byte[] packet = null;
+        while (packet == null) {
+            int length = Math.min(buffer.remaining(), frame.length - written);
+            buffer.put(frame, written, length);
+            written += length;
+            packet = reader.readNext();
+        }
+        return packet;
+    }
+}
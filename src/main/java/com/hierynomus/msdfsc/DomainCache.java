@@ -19,9 +19,13 @@ import com.hierynomus.msdfsc.messages.DFSReferral;
 import com.hierynomus.msdfsc.messages.SMB2GetDFSReferralResponse;
 import com.hierynomus.protocol.commons.EnumWithValue;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * [MS-DFSC].pdf 3.1.1 Abstract Data Model DomainCache: Applicable only for a
@@ -42,6 +46,8 @@ public class DomainCache {
         String domainName;
         String DCHint;
         List<String> DCList;
+        long expires;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
 
         /**
          * 3.1.5.4.2 Receiving a DC Referral Response
@@ -70,6 +76,17 @@ public class DomainCache {
             domainName = dfsReferral.getSpecialName();
             DCHint = dfsReferral.getExpandedNames().get(0);
             DCList = dfsReferral.getExpandedNames();
+            expires = System.currentTimeMillis() + dfsReferral.getTtl() * 1000L;
+        }
+
+        /**
+         * Restore an entry, for instance from a {@link ReferralCacheSnapshot}.
+         */
+        public DomainCacheEntry(String domainName, String dcHint, List<String> dcList, long expires) {
+            this.domainName = domainName;
+            this.DCHint = dcHint;
+            this.DCList = Collections.unmodifiableList(new ArrayList<>(dcList));
+            this.expires = expires;
         }
 
         public String getDomainName() {
@@ -84,6 +101,30 @@ public class DomainCache {
             return DCList;
         }
 
+        public long getExpires() {
+            return expires;
+        }
+
+        public boolean isExpired() {
+            return System.currentTimeMillis() > expires;
+        }
+
+        /**
+         * Mark the entry as being refreshed.
+         *
+         * @return {@code false} if a refresh of this entry is already running.
+         */
+        public boolean startRefresh() {
+            return refreshing.compareAndSet(false, true);
+        }
+
+        /**
+         * Allow a new refresh after the previous one failed.
+         */
+        public void refreshFailed() {
+            refreshing.set(false);
+        }
+
         public String toString() {
             return domainName + "->" + DCHint + ", " + DCList;
         }
@@ -96,4 +137,8 @@ public class DomainCache {
     public void put(DomainCacheEntry domainCacheEntry) {
         cache.put(domainCacheEntry.domainName, domainCacheEntry);
     }
+
+    public Collection<DomainCacheEntry> entries() {
+        return new ArrayList<>(cache.values());
+    }
 }
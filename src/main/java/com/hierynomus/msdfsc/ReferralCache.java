@@ -18,9 +18,12 @@ package com.hierynomus.msdfsc;
 import com.hierynomus.msdfsc.messages.DFSReferral;
 import com.hierynomus.msdfsc.messages.SMB2GetDFSReferralResponse;
 import com.hierynomus.msdfsc.messages.SMB2GetDFSReferralResponse.ReferralHeaderFlags;
+import com.hierynomus.protocol.commons.EnumWithValue;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
@@ -75,6 +78,10 @@ public class ReferralCache {
             return targetPath;
         }
 
+        public boolean isTargetSetBoundary() {
+            return targetSetBoundary;
+        }
+
         @Override
         public String toString() {
             return "TargetSetEntry[" + targetPath + ",targetSetBoundary=" + targetSetBoundary + "]";
@@ -101,6 +108,14 @@ public class ReferralCache {
         cacheRoot.clear();
     }
 
+    /**
+     * @return All entries currently in the cache, including expired ones that have not been cleared yet.
+     */
+    public List<ReferralCacheEntry> entries() {
+        List<ReferralCacheEntry> entries = new ArrayList<>();
+        cacheRoot.collectEntries(entries);
+        return entries;
+    }
 
     public static class ReferralCacheEntry {
         private final String dfsPathPrefix;
@@ -108,9 +123,11 @@ public class ReferralCache {
         private final boolean interlink;
         private final int ttl;
         private final long expires;
+        private final long refreshAt;
         private final boolean targetFailback;
-        private int targetHint = 0;
+        private volatile int targetHint = 0;
         private final List<TargetSetEntry> targetList;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
 
         public ReferralCacheEntry(SMB2GetDFSReferralResponse response, DomainCache domainCache) {
             List<DFSReferral> referralEntries = response.getReferralEntries();
@@ -142,20 +159,81 @@ public class ReferralCache {
             this.interlink = interlink;
             this.ttl = firstReferral.getTtl();
             this.expires = System.currentTimeMillis() + this.ttl * 1000L;
+            this.refreshAt = refreshAt(expires, ttl);
             this.targetFailback = response.getReferralHeaderFlags().contains(ReferralHeaderFlags.TargetFailback);
             List<TargetSetEntry> targetList = new ArrayList<>(referralEntries.size());
             for (DFSReferral r : referralEntries) {
-                TargetSetEntry e = new TargetSetEntry(r.getPath(), false);
+                boolean targetSetBoundary = r.getVersionNumber() >= 4 && EnumWithValue.EnumUtils.isSet(r.getReferralEntryFlags(), DFSReferral.ReferralEntryFlags.TargetSetBoundary);
+                TargetSetEntry e = new TargetSetEntry(r.getPath(), targetSetBoundary);
                 targetList.add(e);
             }
             this.targetList = Collections.unmodifiableList(targetList);
         }
 
+        /**
+         * Restore an entry, for instance from a {@link ReferralCacheSnapshot}.
+         */
+        public ReferralCacheEntry(String dfsPathPrefix, DFSReferral.ServerType rootOrLink, boolean interlink, int ttl, long expires,
+                                  boolean targetFailback, int targetHint, List<TargetSetEntry> targetList) {
+            if (targetList.isEmpty()) {
+                throw new IllegalArgumentException("A ReferralCacheEntry needs at least one target");
+            }
+            this.dfsPathPrefix = dfsPathPrefix;
+            this.rootOrLink = rootOrLink;
+            this.interlink = interlink;
+            this.ttl = ttl;
+            this.expires = expires;
+            this.refreshAt = refreshAt(expires, ttl);
+            this.targetFailback = targetFailback;
+            this.targetHint = targetHint < targetList.size() ? targetHint : 0;
+            this.targetList = Collections.unmodifiableList(new ArrayList<>(targetList));
+        }
+
+        /**
+         * The soft time-out of 3.1.1: somewhere between 75% and 90% of the TTL, so that entries which were fetched
+         * together are not all refreshed at the same moment.
+         */
+        private static long refreshAt(long expires, int ttl) {
+            double remaining = 0.1 + ThreadLocalRandom.current().nextDouble() * 0.15;
+            return expires - (long) (ttl * 1000L * remaining);
+        }
+
         public boolean isExpired() {
             long now = System.currentTimeMillis();
             return (now > expires);
         }
 
+        /**
+         * @param graceMillis How long after the TTL has passed the entry may still be used.
+         * @return {@code true} if the entry is past its TTL plus the grace period, the hard time-out of 3.1.1.
+         */
+        public boolean isExpired(long graceMillis) {
+            return System.currentTimeMillis() > expires + graceMillis;
+        }
+
+        /**
+         * @return {@code true} if the entry is past its soft time-out and should be refreshed.
+         */
+        public boolean needsRefresh() {
+            return System.currentTimeMillis() > refreshAt;
+        }
+
+        /**
+         * Mark the entry as being refreshed.
+         *
+         * @return {@code false} if a refresh of this entry is already running.
+         */
+        public boolean startRefresh() {
+            return refreshing.compareAndSet(false, true);
+        }
+
+        /**
+         * Allow a new refresh after the previous one failed.
+         */
+        public void refreshFailed() {
+            refreshing.set(false);
+        }
+
         public boolean isLink() {
             return rootOrLink == DFSReferral.ServerType.LINK;
         }
@@ -168,6 +246,26 @@ public class ReferralCache {
             return isLink() && interlink;
         }
 
+        public DFSReferral.ServerType getRootOrLink() {
+            return rootOrLink;
+        }
+
+        public int getTtl() {
+            return ttl;
+        }
+
+        public long getExpires() {
+            return expires;
+        }
+
+        public boolean isTargetFailback() {
+            return targetFailback;
+        }
+
+        public int getTargetHintIndex() {
+            return targetHint;
+        }
+
         public String getDfsPathPrefix() {
             return dfsPathPrefix;
         }
@@ -185,6 +283,16 @@ public class ReferralCache {
             }
         }
 
+        /**
+         * Make the given target the TargetHint, after I/O to it succeeded.
+         */
+        public void setTargetHint(TargetSetEntry target) {
+            int index = targetList.indexOf(target);
+            if (index >= 0) {
+                targetHint = index;
+            }
+        }
+
         public List<TargetSetEntry> getTargetList() {
             return targetList;
         }
@@ -246,6 +354,16 @@ public class ReferralCache {
             }
         }
 
+        void collectEntries(List<ReferralCacheEntry> entries) {
+            ReferralCacheEntry e = ENTRY_UPDATER.get(this);
+            if (e != null) {
+                entries.add(e);
+            }
+            for (ReferralCacheNode child : childNodes.values()) {
+                child.collectEntries(entries);
+            }
+        }
+
         void clear() {
             this.childNodes.clear();
             ENTRY_UPDATER.set(this, null);
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.msdfsc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.hierynomus.msdfsc.messages.DFSReferral;
+import com.hierynomus.protocol.commons.EnumWithValue;
+
+/**
+ * Saves the {@link ReferralCache} and {@link DomainCache} to a file and restores them from it, so that a restarted
+ * client can resolve DFS namespaces without first sending referral requests. Entries keep their absolute expiry time,
+ * so a snapshot never extends the lifetime of a referral beyond its TTL.
+ */
+public final class ReferralCacheSnapshot {
+    private static final int MAGIC = 0x44465343; // "DFSC"
+    private static final int VERSION = 1;
+
+    private ReferralCacheSnapshot() {
+    }
+
+    /**
+     * Write both caches to the file. The snapshot is written to a temporary file first, which then replaces the
+     * previous snapshot, so a concurrent or interrupted write never leaves a truncated snapshot behind.
+     */
+    public static void write(File file, ReferralCache referralCache, DomainCache domainCache) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            List<ReferralCache.ReferralCacheEntry> referrals = referralCache.entries();
+            out.writeInt(referrals.size());
+            for (ReferralCache.ReferralCacheEntry entry : referrals) {
+                out.writeUTF(entry.getDfsPathPrefix());
+                out.writeInt((int) entry.getRootOrLink().getValue());
+                out.writeBoolean(entry.isInterlink());
+                out.writeInt(entry.getTtl());
+                out.writeLong(entry.getExpires());
+                out.writeBoolean(entry.isTargetFailback());
+                out.writeInt(entry.getTargetHintIndex());
+                out.writeInt(entry.getTargetList().size());
+                for (ReferralCache.TargetSetEntry target : entry.getTargetList()) {
+                    out.writeUTF(target.getTargetPath().toPath());
+                    out.writeBoolean(target.isTargetSetBoundary());
+                }
+            }
+            List<DomainCache.DomainCacheEntry> domains = new ArrayList<>(domainCache.entries());
+            out.writeInt(domains.size());
+            for (DomainCache.DomainCacheEntry entry : domains) {
+                out.writeUTF(entry.getDomainName());
+                out.writeUTF(entry.getDCHint());
+                out.writeLong(entry.getExpires());
+                out.writeInt(entry.getDCList().size());
+                for (String dc : entry.getDCList()) {
+                    out.writeUTF(dc);
+                }
+            }
+        }
+        if (!tmp.renameTo(file)) {
+            if (!file.delete() || !tmp.renameTo(file)) {
+                throw new IOException("Could not replace DFS cache snapshot " + file);
+            }
+        }
+    }
+
+    /**
+     * Read the snapshot from the file into the caches.
+     */
+    public static void read(File file, ReferralCache referralCache, DomainCache domainCache) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a DFS cache snapshot");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported DFS cache snapshot version " + version + " in " + file);
+            }
+            int referrals = in.readInt();
+            for (int i = 0; i < referrals; i++) {
+                String dfsPathPrefix = in.readUTF();
+                DFSReferral.ServerType rootOrLink = EnumWithValue.EnumUtils.valueOf(in.readInt(), DFSReferral.ServerType.class, DFSReferral.ServerType.LINK);
+                boolean interlink = in.readBoolean();
+                int ttl = in.readInt();
+                long expires = in.readLong();
+                boolean targetFailback = in.readBoolean();
+                int targetHint = in.readInt();
+                int targets = in.readInt();
+                List<ReferralCache.TargetSetEntry> targetList = new ArrayList<>(targets);
+                for (int j = 0; j < targets; j++) {
+                    targetList.add(new ReferralCache.TargetSetEntry(in.readUTF(), in.readBoolean()));
+                }
+                referralCache.put(new ReferralCache.ReferralCacheEntry(dfsPathPrefix, rootOrLink, interlink, ttl, expires, targetFailback, targetHint, targetList));
+            }
+            int domains = in.readInt();
+            for (int i = 0; i < domains; i++) {
+                String domainName = in.readUTF();
+                String dcHint = in.readUTF();
+                long expires = in.readLong();
+                int dcs = in.readInt();
+                List<String> dcList = new ArrayList<>(dcs);
+                for (int j = 0; j < dcs; j++) {
+                    dcList.add(in.readUTF());
+                }
+                domainCache.put(new DomainCache.DomainCacheEntry(domainName, dcHint, dcList, expires));
+            }
+        }
+    }
+}
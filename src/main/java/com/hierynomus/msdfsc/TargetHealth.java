@@ -0,0 +1,189 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.msdfsc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.hierynomus.msdfsc.ReferralCache.TargetSetEntry;
+
+/**
+ * Tracks the health of DFS target servers, so that the targets of a referral can be tried in order of measured
+ * latency instead of always starting at the first one.
+ * <p>
+ * [MS-DFSC] 3.1.5.4.3 leaves the order of targets within a target set to the client, but the order of the target sets
+ * themselves reflects the site cost as computed by the server, so targets are only ever reordered within their target
+ * set. Within a set, healthy targets with a measured latency go first (fastest first), followed by the targets that
+ * were not used yet in referral order, followed by the targets that failed recently.
+ */
+public class TargetHealth {
+    private static final double LATENCY_WEIGHT = 0.3;
+    private static final long INITIAL_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final int LATENCY_SAMPLES = 32;
+    private static final int MIN_PERCENTILE_SAMPLES = 5;
+
+    private final Map<String, ServerHealth> servers = new ConcurrentHashMap<>();
+
+    /**
+     * Record a successful I/O operation against the target.
+     */
+    public void succeeded(DFSPath target, long latencyNanos) {
+        health(target).succeeded(latencyNanos);
+    }
+
+    /**
+     * Record a failed I/O operation against the target, which moves it to the back of its target set for a while.
+     */
+    public void failed(DFSPath target) {
+        health(target).failed(System.currentTimeMillis());
+    }
+
+    /**
+     * @return The smoothed latency of I/O operations against the server hosting the target, or -1 if it is unknown.
+     */
+    public long getLatencyNanos(DFSPath target) {
+        ServerHealth health = servers.get(serverName(target));
+        return health == null ? -1 : health.latencyNanos();
+    }
+
+    /**
+     * @param percentile The percentile, between 0 and 1.
+     * @return The given percentile of the latencies of the most recent I/O operations against the server hosting the
+     * target, or -1 if there are too few of them to tell.
+     */
+    public long getLatencyPercentileNanos(DFSPath target, double percentile) {
+        ServerHealth health = servers.get(serverName(target));
+        return health == null ? -1 : health.latencyPercentile(percentile);
+    }
+
+    /**
+     * @return {@code true} unless I/O against the server hosting the target failed recently.
+     */
+    public boolean isAvailable(DFSPath target) {
+        ServerHealth health = servers.get(serverName(target));
+        return health == null || health.isAvailable(System.currentTimeMillis());
+    }
+
+    /**
+     * Order the targets of a referral by preference.
+     *
+     * @param targets The target list of a referral, in the order returned by the server.
+     * @return A new list with the same targets, reordered within each target set.
+     */
+    public List<TargetSetEntry> order(List<TargetSetEntry> targets) {
+        final long now = System.currentTimeMillis();
+        Comparator<TargetSetEntry> preference = new Comparator<TargetSetEntry>() {
+            @Override
+            public int compare(TargetSetEntry o1, TargetSetEntry o2) {
+                int r = Integer.compare(rank(o1, now), rank(o2, now));
+                if (r == 0 && rank(o1, now) == 0) {
+                    r = Long.compare(getLatencyNanos(o1.getTargetPath()), getLatencyNanos(o2.getTargetPath()));
+                }
+                return r;
+            }
+        };
+        List<TargetSetEntry> ordered = new ArrayList<>(targets.size());
+        List<TargetSetEntry> targetSet = new ArrayList<>();
+        for (TargetSetEntry target : targets) {
+            if (target.isTargetSetBoundary() && !targetSet.isEmpty()) {
+                Collections.sort(targetSet, preference);
+                ordered.addAll(targetSet);
+                targetSet.clear();
+            }
+            targetSet.add(target);
+        }
+        Collections.sort(targetSet, preference); // stable, so unmeasured targets keep the referral order
+        ordered.addAll(targetSet);
+        return ordered;
+    }
+
+    private int rank(TargetSetEntry target, long now) {
+        ServerHealth health = servers.get(serverName(target.getTargetPath()));
+        if (health == null) {
+            return 1;
+        }
+        if (!health.isAvailable(now)) {
+            return 2;
+        }
+        return health.latencyNanos() >= 0 ? 0 : 1;
+    }
+
+    private ServerHealth health(DFSPath target) {
+        String serverName = serverName(target);
+        ServerHealth health = servers.get(serverName);
+        if (health == null) {
+            ServerHealth newHealth = new ServerHealth();
+            health = servers.putIfAbsent(serverName, newHealth);
+            if (health == null) {
+                health = newHealth;
+            }
+        }
+        return health;
+    }
+
+    private static String serverName(DFSPath target) {
+        return target.getPathComponents().get(0).toLowerCase();
+    }
+
+    private static class ServerHealth {
+        private double latencyNanos = -1;
+        private final long[] samples = new long[LATENCY_SAMPLES];
+        private int sampleCount;
+        private int nextSample;
+        private int consecutiveFailures;
+        private long unavailableUntil;
+
+        synchronized void succeeded(long latency) {
+            latencyNanos = latencyNanos < 0 ? latency : LATENCY_WEIGHT * latency + (1 - LATENCY_WEIGHT) * latencyNanos;
+            samples[nextSample] = latency;
+            nextSample = (nextSample + 1) % samples.length;
+            sampleCount = Math.min(sampleCount + 1, samples.length);
+            consecutiveFailures = 0;
+            unavailableUntil = 0;
+        }
+
+        synchronized void failed(long now) {
+            consecutiveFailures++;
+            long backoff = INITIAL_BACKOFF_MILLIS << Math.min(consecutiveFailures - 1, 16);
+            unavailableUntil = now + Math.min(backoff, MAX_BACKOFF_MILLIS);
+        }
+
+        synchronized long latencyNanos() {
+            return (long) latencyNanos;
+        }
+
+        synchronized long latencyPercentile(double percentile) {
+            if (sampleCount < MIN_PERCENTILE_SAMPLES) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, sampleCount);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * sampleCount) - 1;
+            return sorted[Math.max(0, Math.min(index, sampleCount - 1))];
+        }
+
+        synchronized boolean isAvailable(long now) {
+            return now >= unavailableUntil;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.msfscc.fileinformation;
+
+import com.hierynomus.msfscc.FileAttributes;
+import com.hierynomus.protocol.commons.Charsets;
+import com.hierynomus.protocol.commons.EnumWithValue;
+import com.hierynomus.protocol.commons.buffer.Buffer;
+import com.hierynomus.protocol.commons.buffer.Endian;
+import com.hierynomus.smbj.common.SMBRuntimeException;
+
+/**
+ * A view of a single [MS-FSCC] 2.4.17 FileIdBothDirectoryInformation entry in the raw QUERY_DIRECTORY output buffer.
+ * <p>
+ * Unlike {@link FileIdBothDirectoryInformation} nothing is decoded up front; every getter reads its field from the
+ * buffer when called. Times are returned as Windows timestamps (100-nanosecond intervals since January 1, 1601) and the
+ * attributes as the raw bit mask, so listing a directory for its names or sizes does not allocate per field.
+ * <p>
+ * A view keeps the whole output buffer it was read from reachable; use {@link #toFileIdBothDirectoryInformation()} to
+ * hold on to entries.
+ */
+public final class FileIdBothDirectoryInformationView {
+    static final int FIXED_LENGTH = 104;
+
+    private static final int FILE_INDEX = 4;
+    private static final int CREATION_TIME = 8;
+    private static final int LAST_ACCESS_TIME = 16;
+    private static final int LAST_WRITE_TIME = 24;
+    private static final int CHANGE_TIME = 32;
+    private static final int END_OF_FILE = 40;
+    private static final int ALLOCATION_SIZE = 48;
+    private static final int FILE_ATTRIBUTES = 56;
+    private static final int FILE_NAME_LENGTH = 60;
+    private static final int EA_SIZE = 64;
+    private static final int SHORT_NAME_LENGTH = 68;
+    private static final int SHORT_NAME = 70;
+    private static final int FILE_ID = 96;
+    private static final int FILE_NAME = FIXED_LENGTH;
+
+    private final byte[] buffer;
+    private final int offset;
+
+    FileIdBothDirectoryInformationView(byte[] buffer, int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+    }
+
+    long getNextOffset() {
+        return uint32(0);
+    }
+
+    public long getFileIndex() {
+        return uint32(FILE_INDEX);
+    }
+
+    public String getFileName() {
+        return new String(buffer, offset + FILE_NAME, getFileNameLength(), Charsets.UTF_16LE);
+    }
+
+    /**
+     * @return the length of the file name in bytes
+     */
+    public int getFileNameLength() {
+        return (int) uint32(FILE_NAME_LENGTH);
+    }
+
+    public long getCreationTime() {
+        return int64(CREATION_TIME);
+    }
+
+    public long getLastAccessTime() {
+        return int64(LAST_ACCESS_TIME);
+    }
+
+    public long getLastWriteTime() {
+        return int64(LAST_WRITE_TIME);
+    }
+
+    public long getChangeTime() {
+        return int64(CHANGE_TIME);
+    }
+
+    public long getEndOfFile() {
+        return int64(END_OF_FILE);
+    }
+
+    public long getAllocationSize() {
+        return int64(ALLOCATION_SIZE);
+    }
+
+    public long getFileAttributes() {
+        return uint32(FILE_ATTRIBUTES);
+    }
+
+    public boolean hasAttribute(FileAttributes attribute) {
+        return EnumWithValue.EnumUtils.isSet(getFileAttributes(), attribute);
+    }
+
+    public long getEaSize() {
+        return uint32(EA_SIZE);
+    }
+
+    public String getShortName() {
+        return new String(buffer, offset + SHORT_NAME, buffer[offset + SHORT_NAME_LENGTH] & 0xFF, Charsets.UTF_16LE);
+    }
+
+    public long getFileId() {
+        return int64(FILE_ID);
+    }
+
+    /**
+     * Decodes all fields of this entry.
+     */
+    public FileIdBothDirectoryInformation toFileIdBothDirectoryInformation() {
+        try {
+            Buffer.PlainBuffer plainBuffer = new Buffer.PlainBuffer(buffer, Endian.LE);
+            plainBuffer.rpos(offset);
+            return FileInformationFactory.parseFileIdBothDirectoryInformation(plainBuffer);
+        } catch (Buffer.BufferException e) {
+            throw new SMBRuntimeException(e);
+        }
+    }
+
+    private long uint32(int field) {
+        return uint32(buffer, offset + field);
+    }
+
+    private long int64(int field) {
+        return uint32(field) | uint32(field + 4) << 32;
+    }
+
+    /**
+     * Checks that the entry at the offset, including its variable length names, lies within the buffer.
+     */
+    static boolean fits(byte[] buffer, int offset) {
+        if (offset < 0 || offset + FIXED_LENGTH > buffer.length) {
+            return false;
+        }
+        long nameEnd = offset + FILE_NAME + uint32(buffer, offset + FILE_NAME_LENGTH);
+        int shortNameLength = buffer[offset + SHORT_NAME_LENGTH] & 0xFF;
+        return nameEnd <= buffer.length && shortNameLength <= FILE_ID - SHORT_NAME;
+    }
+
+    private static long uint32(byte[] buffer, int i) {
+        return (buffer[i] & 0xFFL) | (buffer[i + 1] & 0xFFL) << 8 | (buffer[i + 2] & 0xFFL) << 16 | (buffer[i + 3] & 0xFFL) << 24;
+    }
+}
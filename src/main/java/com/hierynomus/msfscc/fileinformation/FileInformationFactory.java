@@ -368,6 +368,54 @@ public class FileInformationFactory {
         return new FileInfoIterator<>(data, decoder, 0);
     }
 
+    /**
+     * Iterates the FileIdBothDirectoryInformation entries of a QUERY_DIRECTORY output buffer without decoding them.
+     *
+     * @see FileIdBothDirectoryInformationView
+     */
+    public static Iterator<FileIdBothDirectoryInformationView> createFileIdBothDirectoryViewIterator(byte[] data) {
+        return new FileIdBothDirectoryViewIterator(data);
+    }
+
+    private static class FileIdBothDirectoryViewIterator implements Iterator<FileIdBothDirectoryInformationView> {
+        private final byte[] data;
+        private int offsetStart;
+
+        FileIdBothDirectoryViewIterator(byte[] data) {
+            this.data = data;
+            this.offsetStart = data.length == 0 ? -1 : 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return offsetStart != -1;
+        }
+
+        @Override
+        public FileIdBothDirectoryInformationView next() {
+            if (offsetStart == -1) {
+                throw new NoSuchElementException();
+            }
+            if (!FileIdBothDirectoryInformationView.fits(data, offsetStart)) {
+                throw new SMBRuntimeException("Truncated FileIdBothDirectoryInformation entry at offset " + offsetStart);
+            }
+
+            FileIdBothDirectoryInformationView view = new FileIdBothDirectoryInformationView(data, offsetStart);
+            int nextOffset = (int) view.getNextOffset();
+            if (nextOffset == 0) {
+                offsetStart = -1;
+            } else {
+                offsetStart += nextOffset;
+            }
+            return view;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
     private static class FileInfoIterator<F extends FileDirectoryQueryableInformation> implements Iterator<F> {
         private final Buffer.PlainBuffer buffer;
         private final FileInformation.Decoder<F> decoder;
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.msrpce;
+
+import com.hierynomus.protocol.commons.Charsets;
+import com.hierynomus.protocol.commons.buffer.Buffer;
+import com.hierynomus.protocol.commons.buffer.Endian;
+
+/**
+ * Buffer for NDR (Network Data Representation) encoded data, as used for the stub data of DCE/RPC calls.
+ * <p/>
+ * Only the little-endian, ASCII, IEEE data representation is supported, which is what all Windows servers use. Alignment
+ * is relative to the start of the buffer, which should therefore contain only the stub data.
+ */
+public class NdrBuffer extends Buffer<NdrBuffer> {
+    private static final byte[] PADDING = new byte[8];
+    private static final int REFERENT_ID_START = 0x00020000;
+
+    private int nextReferentId = REFERENT_ID_START;
+
+    public NdrBuffer() {
+        super(Endian.LE);
+    }
+
+    public NdrBuffer(byte[] data) {
+        super(data, Endian.LE);
+    }
+
+    /**
+     * Pads the buffer with zero bytes until the write position is a multiple of {@code alignment}.
+     *
+     * @param alignment the alignment, 2, 4 or 8
+     * @return this
+     */
+    public NdrBuffer align(int alignment) {
+        int padding = padding(wpos(), alignment);
+        if (padding > 0) {
+            putRawBytes(PADDING, 0, padding);
+        }
+        return this;
+    }
+
+    /**
+     * Skips bytes until the read position is a multiple of {@code alignment}.
+     *
+     * @param alignment the alignment, 2, 4 or 8
+     * @return this
+     * @throws BufferException If the padding is not present
+     */
+    public NdrBuffer alignRead(int alignment) throws BufferException {
+        skip(padding(rpos(), alignment));
+        return this;
+    }
+
+    /**
+     * [MS-RPCE] 2.2.5.3.3.2 Writes the referent ID of an embedded full or unique pointer, or 0 for a null pointer.
+     *
+     * @param notNull whether the pointer refers to a value
+     * @return this
+     */
+    public NdrBuffer putReferent(boolean notNull) {
+        align(4);
+        if (notNull) {
+            putUInt32(nextReferentId);
+            nextReferentId += 4;
+        } else {
+            putUInt32(0);
+        }
+        return this;
+    }
+
+    /**
+     * Reads the referent ID of a pointer.
+     *
+     * @return whether the pointer refers to a value (i.e. it is not null)
+     * @throws BufferException If an underflow occurs
+     */
+    public boolean readReferent() throws BufferException {
+        alignRead(4);
+        return readUInt32() != 0;
+    }
+
+    /**
+     * Writes a conformant varying null-terminated UTF-16 string ({@code [string] wchar_t*}).
+     *
+     * @param string the string to write
+     * @return this
+     */
+    public NdrBuffer putConformantVaryingString(String string) {
+        int count = string.length() + 1;
+        align(4);
+        putUInt32(count); // MaximumCount
+        putUInt32(0); // Offset
+        putUInt32(count); // ActualCount
+        putNullTerminatedString(string, Charsets.UTF_16LE);
+        return this;
+    }
+
+    /**
+     * Writes a {@code [unique, string] wchar_t*} parameter: the referent, directly followed by the string if it is not null.
+     *
+     * @param string the string to write, may be null
+     * @return this
+     */
+    public NdrBuffer putUniqueString(String string) {
+        putReferent(string != null);
+        if (string != null) {
+            putConformantVaryingString(string);
+        }
+        return this;
+    }
+
+    /**
+     * Reads a conformant varying UTF-16 string, stripping the null terminator if present.
+     *
+     * @return the string
+     * @throws BufferException If an underflow occurs
+     */
+    public String readConformantVaryingString() throws BufferException {
+        alignRead(4);
+        readUInt32(); // MaximumCount
+        int offset = readUInt32AsInt();
+        int actualCount = readUInt32AsInt();
+        skip(offset * 2);
+        String string = readString(Charsets.UTF_16LE, actualCount);
+        if (!string.isEmpty() && string.charAt(string.length() - 1) == '\0') {
+            return string.substring(0, string.length() - 1);
+        }
+        return string;
+    }
+
+    private static int padding(int position, int alignment) {
+        return (alignment - (position % alignment)) % alignment;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.msrpce;
+
+import com.hierynomus.smbj.common.SMBRuntimeException;
+
+/**
+ * Thrown when a DCE/RPC call fails, either because the server rejected the bind or returned a fault, or because the
+ * operation itself returned a non-zero status.
+ */
+@SuppressWarnings("serial")
+public class RpcException extends SMBRuntimeException {
+    private final long status;
+
+    public RpcException(long status, String message) {
+        super(String.format("%s (0x%08x)", message, status));
+        this.status = status;
+    }
+
+    public RpcException(String message) {
+        super(message);
+        this.status = 0;
+    }
+
+    /**
+     * @return the fault, reject reason or operation status code, 0 if not applicable
+     */
+    public long getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.msrpce;
+
+import com.hierynomus.protocol.commons.EnumWithValue;
+
+/**
+ * C706 12.6.4 The connection-oriented PDU types.
+ */
+public enum RpcPacketType implements EnumWithValue<RpcPacketType> {
+    REQUEST(0x00),
+    RESPONSE(0x02),
+    FAULT(0x03),
+    BIND(0x0b),
+    BIND_ACK(0x0c),
+    BIND_NAK(0x0d),
+    ALTER_CONTEXT(0x0e),
+    ALTER_CONTEXT_RESP(0x0f),
+    SHUTDOWN(0x11),
+    CO_CANCEL(0x12),
+    ORPHANED(0x13);
+
+    private long value;
+
+    RpcPacketType(long value) {
+        this.value = value;
+    }
+
+    @Override
+    public long getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.msrpce;
+
+import java.util.UUID;
+
+/**
+ * [MS-RPCE] 2.2.2.13 / C706 12.6.3.1 An interface or transfer syntax identifier: a UUID with a major and minor version.
+ */
+public class SyntaxId {
+    /**
+     * The NDR 2.0 transfer syntax.
+     */
+    public static final SyntaxId NDR_20 = new SyntaxId(UUID.fromString("8a885d04-1ceb-11c9-9fe8-08002b104860"), 2, 0);
+
+    private final UUID uuid;
+    private final int majorVersion;
+    private final int minorVersion;
+
+    public SyntaxId(UUID uuid, int majorVersion, int minorVersion) {
+        this.uuid = uuid;
+        this.majorVersion = majorVersion;
+        this.minorVersion = minorVersion;
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public int getMajorVersion() {
+        return majorVersion;
+    }
+
+    public int getMinorVersion() {
+        return minorVersion;
+    }
+
+    @Override
+    public String toString() {
+        return uuid + " v" + majorVersion + "." + minorVersion;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.msrpce.messages;
+
+import com.hierynomus.msrpce.NdrBuffer;
+import com.hierynomus.msrpce.RpcException;
+import com.hierynomus.msrpce.RpcPacketType;
+import com.hierynomus.protocol.commons.buffer.Buffer;
+
+/**
+ * C706 12.6.4.4 / 12.6.4.5 The response to a bind PDU: either a bind_ack or a bind_nak.
+ */
+public class RpcBindAck {
+    private static final int ACCEPTANCE = 0;
+
+    private int maxXmitFrag;
+    private int maxRecvFrag;
+    private long assocGroupId;
+
+    private RpcBindAck() {
+    }
+
+    /**
+     * Reads the bind response.
+     *
+     * @throws RpcException if the server rejected the bind or the presentation context
+     */
+    public static RpcBindAck read(byte[] pdu) throws Buffer.BufferException {
+        NdrBuffer buffer = new NdrBuffer(pdu);
+        RpcHeader header = RpcHeader.read(buffer);
+        if (header.getPacketType() == RpcPacketType.BIND_NAK) {
+            throw new RpcException(buffer.readUInt16(), "Bind rejected");
+        } else if (header.getPacketType() != RpcPacketType.BIND_ACK) {
+            throw new RpcException("Expected BIND_ACK, got " + header.getPacketType());
+        }
+        RpcBindAck ack = new RpcBindAck();
+        ack.maxXmitFrag = buffer.readUInt16();
+        ack.maxRecvFrag = buffer.readUInt16();
+        ack.assocGroupId = buffer.readUInt32();
+        int secondaryAddressLength = buffer.readUInt16();
+        buffer.skip(secondaryAddressLength);
+        buffer.alignRead(4);
+        int numResults = buffer.readByte() & 0xFF;
+        buffer.skip(3); // Reserved, Reserved2
+        if (numResults < 1) {
+            throw new RpcException("Bind acknowledged without a presentation context result");
+        }
+        int result = buffer.readUInt16();
+        int reason = buffer.readUInt16();
+        if (result != ACCEPTANCE) {
+            throw new RpcException(reason, "Presentation context rejected with result " + result);
+        }
+        return ack;
+    }
+
+    public int getMaxXmitFrag() {
+        return maxXmitFrag;
+    }
+
+    public int getMaxRecvFrag() {
+        return maxRecvFrag;
+    }
+
+    public long getAssocGroupId() {
+        return assocGroupId;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.msrpce.messages;
+
+import com.hierynomus.msdtyp.MsDataTypes;
+import com.hierynomus.msrpce.NdrBuffer;
+import com.hierynomus.msrpce.RpcPacketType;
+import com.hierynomus.msrpce.SyntaxId;
+
+/**
+ * C706 12.6.4.3 The bind PDU, presenting a single context for the requested interface with the NDR 2.0 transfer syntax.
+ */
+public class RpcBindRequest {
+    private final long callId;
+    private final int maxXmitFrag;
+    private final int maxRecvFrag;
+    private final int contextId;
+    private final SyntaxId abstractSyntax;
+
+    public RpcBindRequest(long callId, int maxXmitFrag, int maxRecvFrag, int contextId, SyntaxId abstractSyntax) {
+        this.callId = callId;
+        this.maxXmitFrag = maxXmitFrag;
+        this.maxRecvFrag = maxRecvFrag;
+        this.contextId = contextId;
+        this.abstractSyntax = abstractSyntax;
+    }
+
+    public byte[] toBytes() {
+        NdrBuffer buffer = new NdrBuffer();
+        new RpcHeader(RpcPacketType.BIND, RpcHeader.PFC_FIRST_FRAG | RpcHeader.PFC_LAST_FRAG, callId).write(buffer);
+        buffer.putUInt16(maxXmitFrag);
+        buffer.putUInt16(maxRecvFrag);
+        buffer.putUInt32(0); // AssocGroupId, 0 requests a new association group
+        buffer.putByte((byte) 1); // NumContextElements
+        buffer.putByte((byte) 0); // Reserved
+        buffer.putUInt16(0); // Reserved2
+        buffer.putUInt16(contextId);
+        buffer.putByte((byte) 1); // NumTransferSyntaxes
+        buffer.putByte((byte) 0); // Reserved
+        putSyntaxId(buffer, abstractSyntax);
+        putSyntaxId(buffer, SyntaxId.NDR_20);
+        RpcHeader.writeFragLength(buffer);
+        return buffer.getCompactData();
+    }
+
+    private static void putSyntaxId(NdrBuffer buffer, SyntaxId syntaxId) {
+        MsDataTypes.putGuid(syntaxId.getUuid(), buffer);
+        buffer.putUInt16(syntaxId.getMajorVersion());
+        buffer.putUInt16(syntaxId.getMinorVersion());
+    }
+}
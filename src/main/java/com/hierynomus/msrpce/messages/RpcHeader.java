@@ -0,0 +1,120 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.msrpce.messages;
+
+import com.hierynomus.msrpce.NdrBuffer;
+import com.hierynomus.msrpce.RpcException;
+import com.hierynomus.msrpce.RpcPacketType;
+import com.hierynomus.protocol.commons.EnumWithValue;
+import com.hierynomus.protocol.commons.buffer.Buffer;
+
+/**
+ * C706 12.6.3.1 The common header of all connection-oriented DCE/RPC PDUs.
+ */
+public class RpcHeader {
+    public static final int LENGTH = 16;
+    public static final int PFC_FIRST_FRAG = 0x01;
+    public static final int PFC_LAST_FRAG = 0x02;
+
+    private static final int RPC_VERSION = 5;
+    private static final int RPC_VERSION_MINOR = 0;
+    // Little-endian integers, ASCII characters, IEEE floating point
+    private static final int DATA_REPRESENTATION = 0x10;
+
+    private RpcPacketType packetType;
+    private int flags;
+    private int fragLength;
+    private int authLength;
+    private long callId;
+
+    public RpcHeader(RpcPacketType packetType, int flags, long callId) {
+        this.packetType = packetType;
+        this.flags = flags;
+        this.callId = callId;
+    }
+
+    private RpcHeader() {
+    }
+
+    /**
+     * Writes the header. The fragment length is written as 0, and should be filled in using {@link #writeFragLength(NdrBuffer)}
+     * once the PDU body has been written.
+     */
+    void write(NdrBuffer buffer) {
+        buffer.putByte((byte) RPC_VERSION);
+        buffer.putByte((byte) RPC_VERSION_MINOR);
+        buffer.putByte((byte) packetType.getValue());
+        buffer.putByte((byte) flags);
+        buffer.putUInt32(DATA_REPRESENTATION);
+        buffer.putUInt16(0); // FragLength, filled in later
+        buffer.putUInt16(0); // AuthLength
+        buffer.putUInt32(callId);
+    }
+
+    static void writeFragLength(NdrBuffer buffer) {
+        int end = buffer.wpos();
+        buffer.wpos(8);
+        buffer.putUInt16(end);
+        buffer.wpos(end);
+    }
+
+    static RpcHeader read(NdrBuffer buffer) throws Buffer.BufferException {
+        RpcHeader header = new RpcHeader();
+        int version = buffer.readByte();
+        buffer.readByte(); // VersionMinor
+        if (version != RPC_VERSION) {
+            throw new RpcException("Unsupported DCE/RPC version " + version);
+        }
+        int type = buffer.readByte() & 0xFF;
+        header.packetType = EnumWithValue.EnumUtils.valueOf(type, RpcPacketType.class, null);
+        if (header.packetType == null) {
+            throw new RpcException("Unknown DCE/RPC packet type " + type);
+        }
+        header.flags = buffer.readByte() & 0xFF;
+        long dataRepresentation = buffer.readUInt32();
+        if ((dataRepresentation & 0xF0) != DATA_REPRESENTATION) {
+            throw new RpcException("Only little-endian data representation is supported");
+        }
+        header.fragLength = buffer.readUInt16();
+        header.authLength = buffer.readUInt16();
+        header.callId = buffer.readUInt32();
+        return header;
+    }
+
+    public RpcPacketType getPacketType() {
+        return packetType;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    public boolean isLastFragment() {
+        return (flags & PFC_LAST_FRAG) != 0;
+    }
+
+    public int getFragLength() {
+        return fragLength;
+    }
+
+    public int getAuthLength() {
+        return authLength;
+    }
+
+    public long getCallId() {
+        return callId;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.msrpce.messages;
+
+import com.hierynomus.msrpce.NdrBuffer;
+import com.hierynomus.msrpce.RpcPacketType;
+
+/**
+ * C706 12.6.4.9 A request PDU, carrying (a fragment of) the stub data of a call.
+ */
+public class RpcRequest {
+    public static final int HEADER_LENGTH = RpcHeader.LENGTH + 8;
+
+    private final long callId;
+    private final int flags;
+    private final int contextId;
+    private final int opnum;
+    private final long allocHint;
+
+    /**
+     * @param flags     the {@link RpcHeader#PFC_FIRST_FRAG} and {@link RpcHeader#PFC_LAST_FRAG} flags of this fragment
+     * @param allocHint the total length of the stub data of the call
+     */
+    public RpcRequest(long callId, int flags, int contextId, int opnum, long allocHint) {
+        this.callId = callId;
+        this.flags = flags;
+        this.contextId = contextId;
+        this.opnum = opnum;
+        this.allocHint = allocHint;
+    }
+
+    public byte[] toBytes(byte[] stub, int offset, int length) {
+        NdrBuffer buffer = new NdrBuffer(new byte[HEADER_LENGTH + length]);
+        buffer.wpos(0);
+        new RpcHeader(RpcPacketType.REQUEST, flags, callId).write(buffer);
+        buffer.putUInt32(allocHint);
+        buffer.putUInt16(contextId);
+        buffer.putUInt16(opnum);
+        buffer.putRawBytes(stub, offset, length);
+        RpcHeader.writeFragLength(buffer);
+        return buffer.array();
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.msrpce.messages;
+
+import com.hierynomus.msrpce.NdrBuffer;
+import com.hierynomus.msrpce.RpcException;
+import com.hierynomus.msrpce.RpcPacketType;
+import com.hierynomus.protocol.commons.buffer.Buffer;
+
+/**
+ * C706 12.6.4.10 A response PDU, carrying (a fragment of) the stub data of the result of a call.
+ */
+public class RpcResponse {
+    private static final int BODY_OFFSET = RpcHeader.LENGTH + 8;
+
+    private RpcHeader header;
+    private long allocHint;
+    private byte[] stub;
+
+    private RpcResponse() {
+    }
+
+    /**
+     * Reads a response PDU.
+     *
+     * @throws RpcException if the server returned a fault PDU
+     */
+    public static RpcResponse read(byte[] pdu) throws Buffer.BufferException {
+        NdrBuffer buffer = new NdrBuffer(pdu);
+        RpcResponse response = new RpcResponse();
+        response.header = RpcHeader.read(buffer);
+        response.allocHint = buffer.readUInt32();
+        buffer.readUInt16(); // ContextId
+        buffer.readByte(); // CancelCount
+        buffer.readByte(); // Reserved
+        if (response.header.getPacketType() == RpcPacketType.FAULT) {
+            throw new RpcException(buffer.readUInt32(), "Call failed with fault");
+        } else if (response.header.getPacketType() != RpcPacketType.RESPONSE) {
+            throw new RpcException("Expected RESPONSE, got " + response.header.getPacketType());
+        }
+        int authTrailer = response.header.getAuthLength() > 0 ? response.header.getAuthLength() + 8 : 0;
+        response.stub = buffer.readRawBytes(response.header.getFragLength() - BODY_OFFSET - authTrailer);
+        return response;
+    }
+
+    public RpcHeader getHeader() {
+        return header;
+    }
+
+    public long getAllocHint() {
+        return allocHint;
+    }
+
+    public byte[] getStub() {
+        return stub;
+    }
+}
@@ -60,12 +60,23 @@ public class NtlmV2Functions {
      * }
      */
     public ComputedNtlmV2Response computeResponse(String username, String domain, char[] password, NtlmChallenge serverNtlmChallenge, long time, TargetInfo clientTargetInfo) {
+        return computeResponse(NTOWFv2(String.valueOf(password), username, domain), serverNtlmChallenge, time, clientTargetInfo);
+    }
+
+    /**
+     * [MS-NLMP].pdf 3.3.2 NTLM v2 authentication, using a precomputed NTOWFv2 hash.
+     * <p/>
+     * As LMOWFv2 is defined to be equal to NTOWFv2, the same key is used as ResponseKeyNT and ResponseKeyLM. This
+     * allows callers to compute the (MD4 based) hash once per credential instead of once per authentication.
+     *
+     * @param responseKeyNT the NTOWFv2 hash of the user's credentials
+     */
+    public ComputedNtlmV2Response computeResponse(byte[] responseKeyNT, NtlmChallenge serverNtlmChallenge, long time, TargetInfo clientTargetInfo) {
         // Create the client nonce
         byte[] clientChallenge = new byte[8];
         random.nextBytes(clientChallenge);
 
-        byte[] responseKeyNT = NTOWFv2(String.valueOf(password), username, domain);
-        byte[] responseKeyLM = LMOWFv2(String.valueOf(password), username, domain);
+        byte[] responseKeyLM = responseKeyNT;
 
         byte[] lmResponse = getLmV2Response(responseKeyLM, serverNtlmChallenge.getServerChallenge(),
                     clientChallenge);
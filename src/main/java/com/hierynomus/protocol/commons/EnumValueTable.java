@@ -0,0 +1,149 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.protocol.commons;
+
+import java.util.EnumSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The precomputed lookup tables behind {@link EnumWithValue.EnumUtils}, one per enum class, so that decoding a value or
+ * a set of flags does not scan (a copy of) the enum constants each time.
+ * <p>
+ * Values are looked up in an array when they are small and dense, like command codes, and in an open addressing hash
+ * table otherwise, like status codes. Flag sets are decoded through a small direct-mapped cache, as a field usually
+ * takes only a handful of distinct values; the cached set is copied, so callers may modify the set they get.
+ */
+final class EnumValueTable {
+    private static final int MAX_DENSE_VALUE = 256;
+    private static final int FLAG_CACHE_SIZE = 64;
+
+    private static final ConcurrentMap<Class<?>, EnumValueTable> TABLES = new ConcurrentHashMap<>();
+
+    private final Object[] constants;
+    private final long[] values;
+    private final Object[] dense;
+    private final long[] sparseKeys;
+    private final int[] sparseIndices;
+    private final AtomicReferenceArray<DecodedFlags> flagCache = new AtomicReferenceArray<>(FLAG_CACHE_SIZE);
+
+    static EnumValueTable of(Class<?> enumClass) {
+        EnumValueTable table = TABLES.get(enumClass);
+        if (table == null) {
+            if (!EnumWithValue.class.isAssignableFrom(enumClass) || !enumClass.isEnum()) {
+                throw new IllegalArgumentException("Can only be used with EnumWithValue enums.");
+            }
+            table = new EnumValueTable(enumClass.getEnumConstants());
+            EnumValueTable existing = TABLES.putIfAbsent(enumClass, table);
+            if (existing != null) {
+                table = existing;
+            }
+        }
+        return table;
+    }
+
+    private EnumValueTable(Object[] constants) {
+        this.constants = constants;
+        this.values = new long[constants.length];
+        long max = -1;
+        boolean dense = true;
+        for (int i = 0; i < constants.length; i++) {
+            values[i] = ((EnumWithValue<?>) constants[i]).getValue();
+            dense &= values[i] >= 0 && values[i] < MAX_DENSE_VALUE;
+            max = Math.max(max, values[i]);
+        }
+
+        if (dense) {
+            this.dense = new Object[(int) max + 1];
+            // Iterate backwards, so that the first constant wins when multiple constants share a value
+            for (int i = constants.length - 1; i >= 0; i--) {
+                this.dense[(int) values[i]] = constants[i];
+            }
+            this.sparseKeys = null;
+            this.sparseIndices = null;
+        } else {
+            this.dense = null;
+            int capacity = Integer.highestOneBit(Math.max(2, constants.length * 2) - 1) << 1;
+            this.sparseKeys = new long[capacity];
+            this.sparseIndices = new int[capacity]; // index + 1, 0 marks an empty slot
+            for (int i = 0; i < constants.length; i++) {
+                int slot = hash(values[i]) & (capacity - 1);
+                while (sparseIndices[slot] != 0 && sparseKeys[slot] != values[i]) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                if (sparseIndices[slot] == 0) {
+                    sparseKeys[slot] = values[i];
+                    sparseIndices[slot] = i + 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the first constant with the value, or null if there is none
+     */
+    Object valueOf(long value) {
+        if (dense != null) {
+            return value >= 0 && value < dense.length ? dense[(int) value] : null;
+        }
+        int mask = sparseKeys.length - 1;
+        int slot = hash(value) & mask;
+        int index;
+        while ((index = sparseIndices[slot]) != 0) {
+            if (sparseKeys[slot] == value) {
+                return constants[index - 1];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * @return the constants of which at least one bit is set in the flags
+     */
+    @SuppressWarnings("unchecked")
+    <E extends Enum<E>> EnumSet<E> toEnumSet(long flags, Class<E> enumClass) {
+        int slot = hash(flags) & (FLAG_CACHE_SIZE - 1);
+        DecodedFlags cached = flagCache.get(slot);
+        if (cached != null && cached.flags == flags) {
+            return ((EnumSet<E>) cached.set).clone();
+        }
+        EnumSet<E> set = EnumSet.noneOf(enumClass);
+        for (int i = 0; i < constants.length; i++) {
+            if ((flags & values[i]) > 0) {
+                set.add((E) constants[i]);
+            }
+        }
+        flagCache.set(slot, new DecodedFlags(flags, set.clone()));
+        return set;
+    }
+
+    private static int hash(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static final class DecodedFlags {
+        private final long flags;
+        private final EnumSet<?> set;
+
+        private DecodedFlags(long flags, EnumSet<?> set) {
+            this.flags = flags;
+            this.set = set;
+        }
+    }
+}
@@ -37,16 +37,7 @@ public interface EnumWithValue<E extends Enum<E>> {
         }
 
         public static <E extends Enum<E>> EnumSet<E> toEnumSet(long l, Class<E> clazz) {
-            if (!EnumWithValue.class.isAssignableFrom(clazz)) {
-                throw new IllegalArgumentException("Can only be used with EnumWithValue enums.");
-            }
-            EnumSet<E> es = EnumSet.noneOf(clazz);
-            for (E anEnum : clazz.getEnumConstants()) {
-                if (isSet(l, ((EnumWithValue<?>) anEnum))) {
-                    es.add(anEnum);
-                }
-            }
-            return es;
+            return EnumValueTable.of(clazz).toEnumSet(l, clazz);
         }
 
         public static <E extends EnumWithValue<?>> boolean isSet(long bytes, E value) {
@@ -54,14 +45,8 @@ public interface EnumWithValue<E extends Enum<E>> {
         }
 
         public static <E extends EnumWithValue<?>> E valueOf(long l, Class<E> enumClass, E defaultValue) {
-            E[] enumConstants = enumClass.getEnumConstants();
-            for (E enumConstant : enumConstants) {
-                if (enumConstant.getValue() == l) {
-                    return enumConstant;
-                }
-            }
-
-            return defaultValue;
+            E value = enumClass.cast(EnumValueTable.of(enumClass).valueOf(l));
+            return value != null ? value : defaultValue;
         }
 
         public static <E extends Enum<E>> Set<E> ensureNotNull(Set<E> set, Class<E> clazz) {
@@ -15,6 +15,7 @@
  */
 package com.hierynomus.protocol.commons.concurrent;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
 
 public abstract class AFuture<V> implements Future<V> {
@@ -25,4 +26,16 @@ public abstract class AFuture<V> implements Future<V> {
     public <T> AFuture<T> map(Function<V, T> f) {
         return new TransformedFuture<>(this, f);
     }
+
+    /**
+     * Returns a {@link CompletableFuture} that is completed with the outcome of this future.
+     * <p>
+     * The default implementation waits for this future on the common pool. Futures backed by a {@link Promise}
+     * complete the returned future directly when the promise is delivered, without blocking any thread.
+     *
+     * @return a CompletableFuture view of this future
+     */
+    public CompletableFuture<V> toCompletableFuture() {
+        return Futures.blockingAdapter(this);
+    }
 }
@@ -17,6 +17,7 @@ package com.hierynomus.protocol.commons.concurrent;
 
 import com.hierynomus.smbj.common.SMBRuntimeException;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -84,6 +85,30 @@ public class CancellableFuture<V> extends AFuture<V> {
         return wrappedFuture.get(timeout, unit);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Cancelling the returned future cancels this future.
+     */
+    @Override
+    public CompletableFuture<V> toCompletableFuture() {
+        final CompletableFuture<V> result = new CompletableFuture<V>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                CancellableFuture.this.cancel(mayInterruptIfRunning);
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+        wrappedFuture.toCompletableFuture().whenComplete((v, t) -> {
+            if (t != null) {
+                result.completeExceptionally(Futures.unwrap(t));
+            } else {
+                result.complete(v);
+            }
+        });
+        return result;
+    }
+
     public interface CancelCallback {
         void cancel();
     }
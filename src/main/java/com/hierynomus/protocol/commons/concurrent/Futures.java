@@ -16,6 +16,8 @@
 package com.hierynomus.protocol.commons.concurrent;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -55,4 +57,60 @@ public class Futures {
     public static <F, T> Future<T> transform(Future<F> future, Function<F, T> f) {
         return new TransformedFuture<F, T>(future, f);
     }
+
+    /**
+     * Returns a {@link CompletableFuture} view of the given future. Futures created by this library are converted
+     * without blocking a thread, any other future is waited upon on the common pool.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> CompletableFuture<T> toCompletableFuture(Future<T> future) {
+        if (future instanceof CompletableFuture) {
+            return (CompletableFuture<T>) future;
+        } else if (future instanceof AFuture) {
+            return ((AFuture<T>) future).toCompletableFuture();
+        }
+        return blockingAdapter(future);
+    }
+
+    /**
+     * Returns a {@link CompletableFuture} that is completed exceptionally with the given throwable.
+     */
+    public static <T> CompletableFuture<T> failed(Throwable t) {
+        CompletableFuture<T> f = new CompletableFuture<>();
+        f.completeExceptionally(t);
+        return f;
+    }
+
+    /**
+     * Unwraps the {@link CompletionException} that {@link CompletableFuture} stages wrap exceptions in.
+     */
+    public static Throwable unwrap(Throwable t) {
+        if (t instanceof CompletionException && t.getCause() != null) {
+            return t.getCause();
+        }
+        return t;
+    }
+
+    /**
+     * Wraps the given throwable so that it can be thrown from within a {@link CompletableFuture} stage.
+     */
+    public static CompletionException asCompletionException(Throwable t) {
+        if (t instanceof CompletionException) {
+            return (CompletionException) t;
+        }
+        return new CompletionException(t);
+    }
+
+    static <T> CompletableFuture<T> blockingAdapter(final Future<T> future) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            } catch (ExecutionException e) {
+                throw new CompletionException(e.getCause());
+            }
+        });
+    }
 }
@@ -0,0 +1,317 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.protocol.commons.concurrent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A timer for large numbers of short timeouts that are mostly cancelled before they expire, like the expiration of
+ * outstanding requests. Scheduling and cancelling a timeout are O(1): timeouts are hashed into a ring of buckets by
+ * their deadline, and a single thread expires the bucket of the current tick. Timeouts thus expire up to one tick late.
+ * <p>
+ * The tasks run on the timer thread and should return quickly; blocking work must be handed off to an executor.
+ * The thread is started when the first timeout is scheduled.
+ */
+public class HashedWheelTimer implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+    public static final long DEFAULT_TICK_DURATION = 100;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    /**
+     * A scheduled task.
+     */
+    public interface Timeout {
+        /**
+         * Cancel the task if it has not run yet.
+         *
+         * @return true if the task will not run because of this call
+         */
+        boolean cancel();
+
+        boolean isCancelled();
+
+        boolean isExpired();
+    }
+
+    private final ThreadFactory threadFactory;
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+
+    private final Queue<WheelTimeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final Queue<WheelTimeout> cancelled = new ConcurrentLinkedQueue<>();
+
+    private volatile long startTime;
+    private volatile Thread worker;
+    private volatile boolean closed;
+
+    public HashedWheelTimer(ThreadFactory threadFactory) {
+        this(threadFactory, DEFAULT_TICK_DURATION, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * @param tickDuration The resolution of the timer.
+     * @param wheelSize    The number of buckets, rounded up to a power of two. Timeouts further away than
+     *                     {@code wheelSize} ticks are checked once per rotation until they are due.
+     */
+    public HashedWheelTimer(ThreadFactory threadFactory, long tickDuration, TimeUnit tickDurationUnit, int wheelSize) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("Tick duration must be greater than zero");
+        }
+        if (wheelSize <= 0 || wheelSize > (1 << 30)) {
+            throw new IllegalArgumentException("Wheel size must be between 1 and 2^30");
+        }
+        this.threadFactory = threadFactory;
+        this.tickNanos = tickDurationUnit.toNanos(tickDuration);
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        size = Math.max(size, 1);
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Run the task once the delay has passed.
+     *
+     * @throws IllegalStateException if the timer is closed
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (closed) {
+            throw new IllegalStateException("Timer is closed");
+        }
+        if (worker == null) {
+            start();
+        }
+        long deadline = System.nanoTime() + unit.toNanos(Math.max(delay, 0)) - startTime;
+        if (deadline < 0) { // overflow of a very long delay
+            deadline = Long.MAX_VALUE;
+        }
+        WheelTimeout timeout = new WheelTimeout(this, task, deadline);
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stop the timer thread. Timeouts that have not expired yet never will.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Thread t = worker;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    private synchronized void start() {
+        if (worker == null && !closed) {
+            startTime = System.nanoTime();
+            Thread t = threadFactory.newThread(new Worker());
+            t.setName("SMB Timer");
+            worker = t;
+            t.start();
+        }
+    }
+
+    private class Worker implements Runnable {
+        private long tick;
+
+        @Override
+        public void run() {
+            while (!closed) {
+                long deadline = waitForNextTick();
+                if (closed) {
+                    break;
+                }
+                removeCancelled();
+                transferScheduled();
+                Bucket bucket = wheel[(int) (tick & mask)];
+                bucket.expire(deadline);
+                tick++;
+            }
+            scheduled.clear();
+            cancelled.clear();
+        }
+
+        /**
+         * @return the time, relative to the start time, of the tick that was waited for
+         */
+        private long waitForNextTick() {
+            long deadline = tickNanos * (tick + 1);
+            while (!closed) {
+                long current = System.nanoTime() - startTime;
+                long sleep = deadline - current;
+                if (sleep <= 0) {
+                    return current;
+                }
+                LockSupport.parkNanos(HashedWheelTimer.this, sleep);
+            }
+            return deadline;
+        }
+
+        private void transferScheduled() {
+            // Limit the work per tick, so that a burst of scheduling cannot starve the expiry
+            for (int i = 0; i < 100000; i++) {
+                WheelTimeout timeout = scheduled.poll();
+                if (timeout == null) {
+                    return;
+                }
+                if (timeout.state != WheelTimeout.ST_INIT) {
+                    continue;
+                }
+                long calculated = timeout.deadline / tickNanos;
+                timeout.remainingRounds = (calculated - tick) / wheel.length;
+                long ticks = Math.max(calculated, tick); // don't schedule into the past
+                wheel[(int) (ticks & mask)].add(timeout);
+            }
+        }
+
+        private void removeCancelled() {
+            WheelTimeout timeout;
+            while ((timeout = cancelled.poll()) != null) {
+                if (timeout.bucket != null) {
+                    timeout.bucket.remove(timeout);
+                }
+            }
+        }
+    }
+
+    private static final class Bucket {
+        private WheelTimeout head;
+        private WheelTimeout tail;
+
+        void add(WheelTimeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void expire(long deadline) {
+            WheelTimeout timeout = head;
+            while (timeout != null) {
+                WheelTimeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    if (timeout.deadline <= deadline) {
+                        timeout.expire();
+                    } else {
+                        // Cannot happen, the timeout was placed in the wrong bucket
+                        throw new IllegalStateException("Timeout deadline " + timeout.deadline + " is after " + deadline);
+                    }
+                } else if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(WheelTimeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            WheelTimeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+
+    private static final class WheelTimeout implements Timeout {
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<WheelTimeout> STATE = AtomicIntegerFieldUpdater.newUpdater(WheelTimeout.class, "state");
+
+        private final HashedWheelTimer timer;
+        private final Runnable task;
+        private final long deadline;
+        private volatile int state = ST_INIT;
+
+        // Only accessed by the timer thread
+        private long remainingRounds;
+        private WheelTimeout next;
+        private WheelTimeout prev;
+        private Bucket bucket;
+
+        WheelTimeout(HashedWheelTimer timer, Runnable task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            // Unlinked from its bucket by the timer thread
+            timer.cancelled.add(this);
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state == ST_EXPIRED;
+        }
+
+        void expire() {
+            if (!STATE.compareAndSet(this, ST_INIT, ST_EXPIRED)) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (Throwable t) {
+                logger.warn("Timer task {} threw an exception", task, t);
+            }
+        }
+    }
+}
@@ -18,33 +18,43 @@ package com.hierynomus.protocol.commons.concurrent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.locks.Condition;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
 
 /**
  * Represents promised data of the parameterized type {@code V} and allows waiting on it. An exception may also be
  * delivered to a waiter, and will be of the parameterized type {@code T}.
  * <p/>
- * For atomic operations on a promise, e.g. checking if a value is delivered and if it is not then setting it, the
- * associated lock for the promise should be acquired while doing so.
+ * The promise is a lock-free completion cell: its state is either a stack of pending waiters and callbacks, or the
+ * outcome it was completed with. The first call to {@link #deliver(Object)} or {@link #deliverError(Throwable)} wins,
+ * later calls are ignored. Blocked threads are parked and unparked directly, and callbacks registered through
+ * {@link #whenComplete(BiConsumer)} run on the thread that completes the promise.
  */
 public class Promise<V, T extends Throwable> {
+    private static final Logger logger = LoggerFactory.getLogger(Promise.class);
 
-    private final Logger logger = LoggerFactory.getLogger(getClass());
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Promise, Object> STATE = AtomicReferenceFieldUpdater.newUpdater(Promise.class, Object.class, "state");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Promise, ReentrantLock> LOCK = AtomicReferenceFieldUpdater.newUpdater(Promise.class, ReentrantLock.class, "lock");
 
     private final String name;
     private final ExceptionWrapper<T> wrapper;
-    private final ReentrantLock lock;
-    private final Condition cond;
+    private volatile ReentrantLock lock;
 
-    private V val;
-    private T pendingEx;
+    /**
+     * Either {@code null} or a {@link Waiter} stack while pending, a {@link Failure} when completed with an error, or
+     * the delivered value.
+     */
+    private volatile Object state;
 
     /**
-     * Creates this promise with given {@code name} and exception {@code wrapper}. Allocates a new {@link
-     * java.util.concurrent.locks.Lock lock} object for this promise.
+     * Creates this promise with given {@code name} and exception {@code wrapper}.
      *
      * @param name    name of this promise
      * @param wrapper {@link ExceptionWrapper} that will be used for chaining exceptions
@@ -59,27 +69,26 @@ public class Promise<V, T extends Throwable> {
      * @param name    name of this promise
      * @param wrapper {@link ExceptionWrapper} that will be used for chaining exceptions
      * @param lock    lock to use
+     * @deprecated the promise no longer uses a lock internally, the lock is only exposed through {@link #lock()}
      */
+    @Deprecated
     public Promise(String name, ExceptionWrapper<T> wrapper, ReentrantLock lock) {
         this.name = name;
         this.wrapper = wrapper;
-        this.lock = lock == null ? new ReentrantLock() : lock;
-        this.cond = this.lock.newCondition();
+        this.lock = lock;
     }
 
     /**
-     * Set this promise's value to {@code val}. Any waiters will be delivered this value.
+     * Set this promise's value to {@code val}. Any waiters will be delivered this value. Delivering {@code null}
+     * is equivalent to {@link #clear()}.
      *
      * @param val the value
      */
     public void deliver(V val) {
-        lock.lock();
-        try {
-            logger.debug("Setting << {} >> to `{}`", name, val);
-            this.val = val;
-            cond.signalAll();
-        } finally {
-            lock.unlock();
+        if (val == null) {
+            clear();
+        } else {
+            complete(val);
         }
     }
 
@@ -90,25 +99,50 @@ public class Promise<V, T extends Throwable> {
      * @param e the error
      */
     public void deliverError(Throwable e) {
-        lock.lock();
-        try {
-            pendingEx = wrapper.wrap(e);
-            cond.signalAll();
-        } finally {
-            lock.unlock();
-        }
+        complete(new Failure<>(wrapper.wrap(e)));
     }
 
     /**
      * Clears this promise by setting its value and queued exception to {@code null}.
      */
     public void clear() {
-        lock.lock();
-        try {
-            pendingEx = null;
-            deliver(null);
-        } finally {
-            lock.unlock();
+        Object s = state;
+        while (isOutcome(s) && !STATE.compareAndSet(this, s, null)) {
+            s = state;
+        }
+    }
+
+    private boolean complete(Object outcome) {
+        Object s;
+        do {
+            s = state;
+            if (isOutcome(s)) {
+                logger.debug("<< {} >> already completed, ignoring `{}`", name, outcome);
+                return false;
+            }
+        } while (!STATE.compareAndSet(this, s, outcome));
+
+        // Release the waiters in the order they were registered
+        Waiter w = reverse((Waiter) s);
+        while (w != null) {
+            w.release(this, outcome);
+            w = w.next;
+        }
+        return true;
+    }
+
+    /**
+     * Registers an action that is called with either the value or the error once this promise is fulfilled. If the
+     * promise is already fulfilled the action is called immediately on the calling thread, otherwise on the thread
+     * that fulfills the promise. Actions must therefore be short and must not block.
+     *
+     * @param action the action to call
+     */
+    public void whenComplete(BiConsumer<? super V, ? super T> action) {
+        Callback<V, T> callback = new Callback<>(action);
+        Object outcome = push(callback);
+        if (outcome != null) {
+            callback.release(this, outcome);
         }
     }
 
@@ -150,101 +184,154 @@ public class Promise<V, T extends Throwable> {
      * @throws T in case another thread informs the promise of an error meanwhile
      */
     public V tryRetrieve(long timeout, TimeUnit unit) throws T {
-        lock.lock();
-        try {
-            if (pendingEx != null) {
-                throw pendingEx;
+        Object s = state;
+        if (!isOutcome(s)) {
+            logger.debug("Awaiting << {} >>", name);
+            s = await(timeout == 0 ? 0 : System.nanoTime() + Math.max(1, unit.toNanos(timeout)));
+            if (s == null) {
+                return null;
             }
+        }
+        return valueOf(s);
+    }
 
-            if (val != null) {
-                return val;
-            }
+    @SuppressWarnings("unchecked")
+    private V valueOf(Object s) throws T {
+        if (s instanceof Failure) {
+            T ex = ((Failure<T>) s).error;
+            logger.debug("<< {} >> woke to: {}", name, ex.toString());
+            throw ex;
+        }
+        return (V) s;
+    }
 
-            logger.debug("Awaiting << {} >>", name);
+    /**
+     * Parks the current thread until the promise is fulfilled, or the deadline (if not 0) has passed.
+     *
+     * @return the outcome, or {@code null} if the deadline has passed.
+     */
+    private Object await(long deadline) throws T {
+        ThreadWaiter waiter = new ThreadWaiter(Thread.currentThread());
+        Object outcome = push(waiter);
+        if (outcome != null) {
+            return outcome;
+        }
 
-            if (timeout == 0) {
-                while (val == null && pendingEx == null) {
-                    cond.await();
+        try {
+            while (true) {
+                Object s = state;
+                if (isOutcome(s)) {
+                    return s;
                 }
-            } else {
-                if (!cond.await(timeout, unit)) {
-                    return null;
+                if (Thread.interrupted()) {
+                    throw wrapper.wrap(new InterruptedException());
+                }
+                if (deadline == 0) {
+                    LockSupport.park(this);
+                } else {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return null;
+                    }
+                    LockSupport.parkNanos(this, remaining);
                 }
             }
+        } finally {
+            // Marks the waiter as gone, the node itself is dropped when the promise is fulfilled
+            waiter.thread = null;
+        }
+    }
 
-            if (pendingEx != null) {
-                logger.error("<< {} >> woke to: {}", name, pendingEx);
-                throw pendingEx;
+    /**
+     * Pushes the waiter on the stack of pending waiters.
+     *
+     * @return {@code null} if the waiter was registered, or the outcome if the promise was already fulfilled.
+     */
+    private Object push(Waiter waiter) {
+        Object s;
+        do {
+            s = state;
+            if (isOutcome(s)) {
+                return s;
             }
+            waiter.next = (Waiter) s;
+        } while (!STATE.compareAndSet(this, s, waiter));
+        return null;
+    }
 
-            return val;
-        } catch (InterruptedException ie) {
-            throw wrapper.wrap(ie);
-        } finally {
-            lock.unlock();
+    private static Waiter reverse(Waiter head) {
+        Waiter reversed = null;
+        while (head != null) {
+            Waiter next = head.next;
+            head.next = reversed;
+            reversed = head;
+            head = next;
         }
+        return reversed;
+    }
+
+    private static boolean isOutcome(Object s) {
+        return s != null && !(s instanceof Waiter);
     }
 
     /**
      * @return whether this promise has a value delivered, and no error waiting to pop.
      */
     public boolean isDelivered() {
-        lock.lock();
-        try {
-            return pendingEx == null && val != null;
-        } finally {
-            lock.unlock();
-        }
+        Object s = state;
+        return isOutcome(s) && !(s instanceof Failure);
     }
 
     /**
      * @return whether this promise has been delivered an error.
      */
     public boolean inError() {
-        lock.lock();
-        try {
-            return pendingEx != null;
-        } finally {
-            lock.unlock();
-        }
+        return state instanceof Failure;
     }
 
     /**
      * @return whether this promise was fulfilled with either a value or an error.
      */
     public boolean isFulfilled() {
-        lock.lock();
-        try {
-            return pendingEx != null || val != null;
-        } finally {
-            lock.unlock();
-        }
+        return isOutcome(state);
     }
 
     /**
      * @return whether this promise has threads waiting on it.
      */
     public boolean hasWaiters() {
-        lock.lock();
-        try {
-            return lock.hasWaiters(cond);
-        } finally {
-            lock.unlock();
+        Object s = state;
+        for (Waiter w = s instanceof Waiter ? (Waiter) s : null; w != null; w = w.next) {
+            if (w instanceof ThreadWaiter && ((ThreadWaiter) w).thread != null) {
+                return true;
+            }
         }
+        return false;
     }
 
     /**
      * Acquire the lock associated with this promise.
+     *
+     * @deprecated delivering and retrieving no longer synchronize on this lock.
      */
+    @Deprecated
     public void lock() {
-        lock.lock();
+        getLock().lock();
     }
 
     /**
      * Release the lock associated with this promise.
+     *
+     * @deprecated delivering and retrieving no longer synchronize on this lock.
      */
+    @Deprecated
     public void unlock() {
-        lock.unlock();
+        getLock().unlock();
+    }
+
+    private ReentrantLock getLock() {
+        LOCK.compareAndSet(this, null, new ReentrantLock());
+        return lock;
     }
 
     @Override
@@ -256,4 +343,79 @@ public class Promise<V, T extends Throwable> {
     public AFuture<V> future() {
         return new PromiseBackedFuture<>(this);
     }
+
+    /**
+     * Returns a {@link CompletableFuture} that is completed as soon as this promise is delivered a value or an
+     * error. Dependent stages run on the thread that delivers the promise, unless an executor is specified for them.
+     *
+     * @return a CompletableFuture tracking this promise
+     */
+    public CompletableFuture<V> toCompletableFuture() {
+        final CompletableFuture<V> completable = new CompletableFuture<>();
+        whenComplete((value, error) -> {
+            if (error != null) {
+                completable.completeExceptionally(error);
+            } else {
+                completable.complete(value);
+            }
+        });
+        return completable;
+    }
+
+    private static final class Failure<T extends Throwable> {
+        private final T error;
+
+        private Failure(T error) {
+            this.error = error;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(error);
+        }
+    }
+
+    private abstract static class Waiter {
+        Waiter next;
+
+        abstract void release(Promise<?, ?> promise, Object outcome);
+    }
+
+    private static final class ThreadWaiter extends Waiter {
+        volatile Thread thread;
+
+        private ThreadWaiter(Thread thread) {
+            this.thread = thread;
+        }
+
+        @Override
+        void release(Promise<?, ?> promise, Object outcome) {
+            Thread t = thread;
+            if (t != null) {
+                LockSupport.unpark(t);
+            }
+        }
+    }
+
+    private static final class Callback<V, T extends Throwable> extends Waiter {
+        private final BiConsumer<? super V, ? super T> action;
+
+        private Callback(BiConsumer<? super V, ? super T> action) {
+            this.action = action;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        void release(Promise<?, ?> promise, Object outcome) {
+            try {
+                if (outcome instanceof Failure) {
+                    action.accept(null, ((Failure<T>) outcome).error);
+                } else {
+                    action.accept((V) outcome, null);
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Completion callback of << {} >> failed", promise.name, e);
+            }
+        }
+    }
 }
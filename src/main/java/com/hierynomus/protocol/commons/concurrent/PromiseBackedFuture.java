@@ -15,6 +15,7 @@
  */
 package com.hierynomus.protocol.commons.concurrent;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
@@ -42,6 +43,11 @@ public class PromiseBackedFuture<V> extends AFuture<V> {
         return promise.isDelivered();
     }
 
+    @Override
+    public CompletableFuture<V> toCompletableFuture() {
+        return promise.toCompletableFuture();
+    }
+
     @Override
     public V get() throws ExecutionException {
         try {
@@ -17,6 +17,7 @@ package com.hierynomus.protocol.commons.concurrent;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -61,6 +62,21 @@ public class SequencedFuture<V> extends AFuture<List<V>> {
         return true;
     }
 
+    @Override
+    public CompletableFuture<List<V>> toCompletableFuture() {
+        final List<CompletableFuture<V>> completables = new ArrayList<>(futures.size());
+        for (Future<V> future : futures) {
+            completables.add(Futures.toCompletableFuture(future));
+        }
+        return CompletableFuture.allOf(completables.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            List<V> collector = new ArrayList<V>(completables.size());
+            for (CompletableFuture<V> completable : completables) {
+                collector.add(completable.join());
+            }
+            return collector;
+        });
+    }
+
     @Override
     public List<V> get() throws InterruptedException, ExecutionException {
         List<V> collector = new ArrayList<V>();
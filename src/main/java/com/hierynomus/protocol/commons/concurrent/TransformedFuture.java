@@ -15,6 +15,7 @@
  */
 package com.hierynomus.protocol.commons.concurrent;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -44,6 +45,11 @@ public class TransformedFuture<T, V> extends AFuture<V> {
         return wrapped.isDone();
     }
 
+    @Override
+    public CompletableFuture<V> toCompletableFuture() {
+        return Futures.toCompletableFuture(wrapped).thenApply(function::apply);
+    }
+
     @Override
     public V get() throws InterruptedException, ExecutionException {
         return function.apply(wrapped.get());
@@ -0,0 +1,278 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.protocol.commons.socket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connects to a host with multiple addresses by racing the connection attempts, as described in RFC 8305 ("Happy
+ * Eyeballs"). The addresses are tried in the order of the resolver, alternating between IPv6 and IPv4. Each attempt
+ * starts when the previous one fails or has not completed within the attempt delay, and the first connection that is
+ * established wins. All other attempts are aborted.
+ */
+public class HappyEyeballsConnector {
+    private static final Logger logger = LoggerFactory.getLogger(HappyEyeballsConnector.class);
+
+    /**
+     * The "Connection Attempt Delay" recommended by RFC 8305.
+     */
+    public static final long DEFAULT_ATTEMPT_DELAY = 250;
+
+    /**
+     * A single connection attempt. {@link #open()} creates the unconnected socket, which is closed to abort the attempt
+     * while {@link #connect(Closeable, InetSocketAddress)} blocks.
+     */
+    public interface Attempt<S extends Closeable> {
+        S open() throws IOException;
+
+        void connect(S socket, InetSocketAddress address) throws IOException;
+    }
+
+    private final long attemptDelayMillis;
+    private final ThreadFactory threadFactory;
+
+    /**
+     * @param attemptDelayMillis The time to wait for an attempt before the next address is tried as well. 0 tries the
+     *                           addresses one after another.
+     * @param threadFactory      The factory for the threads that run the attempts.
+     */
+    public HappyEyeballsConnector(long attemptDelayMillis, ThreadFactory threadFactory) {
+        if (attemptDelayMillis < 0) {
+            throw new IllegalArgumentException("Connection attempt delay may not be negative");
+        }
+        this.attemptDelayMillis = attemptDelayMillis;
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * Resolve all addresses of the host, ordered as described in RFC 8305 section 4: the address family of the first
+     * address that the resolver returned is tried first, after which the families alternate.
+     */
+    public static List<InetSocketAddress> resolve(String host, int port) throws UnknownHostException {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (InetAddress address : interleave(InetAddress.getAllByName(host))) {
+            addresses.add(new InetSocketAddress(address, port));
+        }
+        return addresses;
+    }
+
+    static List<InetAddress> interleave(InetAddress[] addresses) {
+        if (addresses.length == 0) {
+            return new ArrayList<>();
+        }
+        boolean firstIsV6 = addresses[0] instanceof Inet6Address;
+        Deque<InetAddress> preferred = new ArrayDeque<>();
+        Deque<InetAddress> other = new ArrayDeque<>();
+        for (InetAddress address : addresses) {
+            if ((address instanceof Inet6Address) == firstIsV6) {
+                preferred.add(address);
+            } else {
+                other.add(address);
+            }
+        }
+        List<InetAddress> ordered = new ArrayList<>(addresses.length);
+        while (!preferred.isEmpty() || !other.isEmpty()) {
+            if (!preferred.isEmpty()) {
+                ordered.add(preferred.poll());
+            }
+            if (!other.isEmpty()) {
+                ordered.add(other.poll());
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Connect to the first of the addresses that accepts the connection.
+     *
+     * @return The connected socket of the winning attempt.
+     * @throws IOException The exception of the first failed attempt if all attempts failed, with the others as
+     *                     suppressed exceptions.
+     */
+    public <S extends Closeable> S connect(List<InetSocketAddress> addresses, Attempt<S> attempt) throws IOException {
+        if (addresses.isEmpty()) {
+            throw new IllegalArgumentException("No addresses to connect to");
+        }
+        if (addresses.size() == 1) {
+            return connectDirectly(addresses.get(0), attempt);
+        }
+
+        Race<S> race = new Race<>();
+        int started = 0;
+        int failed = 0;
+        IOException failure = null;
+        start(race, attempt, addresses.get(started++));
+        try {
+            while (true) {
+                Outcome<S> outcome;
+                if (started < addresses.size() && attemptDelayMillis > 0) {
+                    outcome = race.outcomes.poll(attemptDelayMillis, TimeUnit.MILLISECONDS);
+                } else {
+                    outcome = race.outcomes.take();
+                }
+
+                if (outcome == null) {
+                    logger.debug("No connection within {} ms, also trying {}", attemptDelayMillis, addresses.get(started));
+                    start(race, attempt, addresses.get(started++));
+                } else if (outcome.socket != null) {
+                    logger.debug("Connected to {}", outcome.address);
+                    return outcome.socket;
+                } else {
+                    logger.debug("Connecting to {} failed: {}", outcome.address, outcome.failure.getMessage());
+                    failed++;
+                    if (failure == null) {
+                        failure = outcome.failure;
+                    } else {
+                        failure.addSuppressed(outcome.failure);
+                    }
+                    if (failed == addresses.size()) {
+                        throw failure;
+                    }
+                    if (started < addresses.size()) {
+                        start(race, attempt, addresses.get(started++));
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while connecting to " + addresses);
+        } finally {
+            race.finish();
+        }
+    }
+
+    private <S extends Closeable> S connectDirectly(InetSocketAddress address, Attempt<S> attempt) throws IOException {
+        S socket = attempt.open();
+        try {
+            logger.debug("Connecting to {}", address);
+            attempt.connect(socket, address);
+            return socket;
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(socket);
+            throw e;
+        }
+    }
+
+    private <S extends Closeable> void start(final Race<S> race, final Attempt<S> attempt, final InetSocketAddress address) {
+        logger.debug("Connecting to {}", address);
+        Thread thread = threadFactory.newThread(new Runnable() {
+            @Override
+            public void run() {
+                race.run(attempt, address);
+            }
+        });
+        thread.setName("SMB connect " + address);
+        thread.start();
+    }
+
+    private static void closeQuietly(Closeable socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // ignore, the socket is discarded
+        }
+    }
+
+    private static class Outcome<S> {
+        private final InetSocketAddress address;
+        private final S socket;
+        private final IOException failure;
+
+        private Outcome(InetSocketAddress address, S socket, IOException failure) {
+            this.address = address;
+            this.socket = socket;
+            this.failure = failure;
+        }
+    }
+
+    private static class Race<S extends Closeable> {
+        private final BlockingQueue<Outcome<S>> outcomes = new LinkedBlockingQueue<>();
+        private final List<S> connecting = new ArrayList<>();
+        private boolean finished;
+
+        private void run(Attempt<S> attempt, InetSocketAddress address) {
+            S socket;
+            try {
+                socket = attempt.open();
+            } catch (IOException e) {
+                report(new Outcome<S>(address, null, e));
+                return;
+            }
+            synchronized (this) {
+                if (finished) {
+                    closeQuietly(socket);
+                    return;
+                }
+                connecting.add(socket);
+            }
+
+            Outcome<S> outcome;
+            try {
+                attempt.connect(socket, address);
+                outcome = new Outcome<>(address, socket, null);
+            } catch (IOException | RuntimeException e) {
+                closeQuietly(socket);
+                outcome = new Outcome<>(address, null, e instanceof IOException ? (IOException) e : new IOException(e));
+            }
+            synchronized (this) {
+                connecting.remove(socket);
+            }
+            report(outcome);
+        }
+
+        private synchronized void report(Outcome<S> outcome) {
+            if (!finished) {
+                outcomes.add(outcome);
+            } else if (outcome.socket != null) {
+                closeQuietly(outcome.socket);
+            }
+        }
+
+        /**
+         * Abort the attempts that are still connecting, and close the connections that were established too late.
+         */
+        private synchronized void finish() {
+            finished = true;
+            for (S socket : connecting) {
+                closeQuietly(socket);
+            }
+            connecting.clear();
+            Outcome<S> outcome;
+            while ((outcome = outcomes.poll()) != null) {
+                if (outcome.socket != null) {
+                    closeQuietly(outcome.socket);
+                }
+            }
+        }
+    }
+}
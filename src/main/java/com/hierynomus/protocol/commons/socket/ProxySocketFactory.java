@@ -24,6 +24,7 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.Socket;
+import java.util.List;
 
 public class ProxySocketFactory extends SocketFactory {
     private static final Logger logger = LoggerFactory.getLogger(ProxySocketFactory.class);
@@ -63,6 +64,35 @@ public class ProxySocketFactory extends SocketFactory {
         return createSocket(new InetSocketAddress(address, port), null);
     }
 
+    /**
+     * Connect to the host, racing the connection attempts to all of its addresses when no proxy is used. The options
+     * are applied before connecting, so that the receive buffer size also determines the TCP window scale.
+     */
+    public Socket createSocket(String address, int port, final SocketOptions options, HappyEyeballsConnector connector) throws IOException {
+        if (proxy.type() != Proxy.Type.DIRECT) {
+            Socket socket = new Socket(proxy);
+            options.applyTo(socket);
+            logger.debug("Connecting to {}:{} through {}", address, port, proxy);
+            socket.connect(new InetSocketAddress(address, port), connectTimeout);
+            return socket;
+        }
+
+        List<InetSocketAddress> addresses = HappyEyeballsConnector.resolve(address, port);
+        return connector.connect(addresses, new HappyEyeballsConnector.Attempt<Socket>() {
+            @Override
+            public Socket open() throws IOException {
+                Socket socket = new Socket(proxy);
+                options.applyTo(socket);
+                return socket;
+            }
+
+            @Override
+            public void connect(Socket socket, InetSocketAddress address) throws IOException {
+                socket.connect(address, connectTimeout);
+            }
+        });
+    }
+
     @Override
     public Socket createSocket(String address, int port, InetAddress localAddress, int localPort) throws IOException {
         return createSocket(new InetSocketAddress(address, port), new InetSocketAddress(localAddress, localPort));
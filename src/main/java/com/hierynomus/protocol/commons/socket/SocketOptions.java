@@ -0,0 +1,95 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.protocol.commons.socket;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.StandardSocketOptions;
+import java.nio.channels.NetworkChannel;
+
+/**
+ * The TCP options that are set on every socket a transport opens. A buffer size of 0 leaves the size to the operating
+ * system.
+ */
+public class SocketOptions {
+    public static final SocketOptions DEFAULT = new SocketOptions(true, false, 0, 0);
+
+    private final boolean tcpNoDelay;
+    private final boolean keepAlive;
+    private final int sendBufferSize;
+    private final int receiveBufferSize;
+
+    public SocketOptions(boolean tcpNoDelay, boolean keepAlive, int sendBufferSize, int receiveBufferSize) {
+        if (sendBufferSize < 0 || receiveBufferSize < 0) {
+            throw new IllegalArgumentException("Socket buffer sizes may not be negative");
+        }
+        this.tcpNoDelay = tcpNoDelay;
+        this.keepAlive = keepAlive;
+        this.sendBufferSize = sendBufferSize;
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
+    public boolean isTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    public int getSendBufferSize() {
+        return sendBufferSize;
+    }
+
+    public int getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    /**
+     * Apply the options to the socket. The receive buffer size determines the TCP window scale, so it only fully takes
+     * effect when applied before the socket is connected.
+     */
+    public void applyTo(Socket socket) throws SocketException {
+        socket.setTcpNoDelay(tcpNoDelay);
+        socket.setKeepAlive(keepAlive);
+        if (sendBufferSize > 0) {
+            socket.setSendBufferSize(sendBufferSize);
+        }
+        if (receiveBufferSize > 0) {
+            socket.setReceiveBufferSize(receiveBufferSize);
+        }
+    }
+
+    /**
+     * Apply the options to the channel, see {@link #applyTo(Socket)}.
+     */
+    public void applyTo(NetworkChannel channel) throws IOException {
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, tcpNoDelay);
+        channel.setOption(StandardSocketOptions.SO_KEEPALIVE, keepAlive);
+        if (sendBufferSize > 0) {
+            channel.setOption(StandardSocketOptions.SO_SNDBUF, sendBufferSize);
+        }
+        if (receiveBufferSize > 0) {
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SocketOptions{tcpNoDelay=" + tcpNoDelay + ", keepAlive=" + keepAlive + ", sendBufferSize=" + sendBufferSize + ", receiveBufferSize=" + receiveBufferSize + "}";
+    }
+}
@@ -15,18 +15,35 @@
  */
 package com.hierynomus.smbj;
 
+import com.hierynomus.protocol.commons.concurrent.HashedWheelTimer;
+import com.hierynomus.smbj.auth.AuthenticationContext;
 import com.hierynomus.smbj.connection.Connection;
 import com.hierynomus.smbj.event.ConnectionClosed;
+import com.hierynomus.smbj.event.ConnectionReestablished;
 import com.hierynomus.smbj.event.SMBEventBus;
+import com.hierynomus.smbj.paths.DFSCache;
 import com.hierynomus.smbj.server.ServerList;
+import com.hierynomus.smbj.session.Session;
 import net.engio.mbassy.listener.Handler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static com.hierynomus.protocol.commons.IOUtils.closeSilently;
 
@@ -40,23 +57,32 @@ public class SMBClient implements Closeable {
     public static final int DEFAULT_PORT = 445;
 
     private Map<String, Connection> connectionTable = new ConcurrentHashMap<>();
+    // Removed again once no connect to the host:port is in progress, so that the map does not grow with every server
+    private ConcurrentHashMap<String, ConnectLock> connectLocks = new ConcurrentHashMap<>();
     private ServerList serverList = new ServerList();
+    private final DFSCache dfsCache;
+    private final HashedWheelTimer timer;
+    private final AtomicReference<ExecutorService> sessionSetupExecutor = new AtomicReference<>();
 
     private SmbConfig config;
 
     private SMBEventBus bus;
+    // host:port of servers whose connection was closed, to detect reconnects
+    private final Set<String> closedConnections = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
     public SMBClient() {
         this(SmbConfig.createDefaultConfig());
     }
 
     public SMBClient(SmbConfig config) {
-        this(config, new SMBEventBus());
+        this(config, new SMBEventBus(config.getCallbackExecutor(), SMBEventBus.DEFAULT_ASYNC_QUEUE_CAPACITY));
     }
 
     public SMBClient(SmbConfig config, SMBEventBus bus) {
         this.config = config;
         this.bus = bus;
+        this.dfsCache = new DFSCache(config);
+        this.timer = new HashedWheelTimer(config.getThreadFactory());
         bus.subscribe(this);
     }
 
@@ -83,9 +109,104 @@ public class SMBClient implements Closeable {
         return getEstablishedOrConnect(hostname, port);
     }
 
+    /**
+     * Connect to the host at <pre>hostname</pre> on the default port (445) without blocking the caller.
+     * <p>
+     * Connections are set up on a bounded executor, at most {@link SmbConfig#getSessionSetupParallelism()} at a time.
+     *
+     * @param hostname The hostname to connect to.
+     * @return A Future for the established connection.
+     */
+    public Future<Connection> connectAsync(String hostname) {
+        return connectAsync(hostname, DEFAULT_PORT);
+    }
+
+    /**
+     * Connect to the host at <pre>hostname</pre> on the given port without blocking the caller.
+     * <p>
+     * Connections are set up on a bounded executor, at most {@link SmbConfig#getSessionSetupParallelism()} at a time.
+     *
+     * @param hostname The hostname to connect to.
+     * @param port     The port to connect to
+     * @return A Future for the established connection.
+     */
+    public Future<Connection> connectAsync(final String hostname, final int port) {
+        return getSessionSetupExecutor().submit(new Callable<Connection>() {
+            @Override
+            public Connection call() throws IOException {
+                return getEstablishedOrConnect(hostname, port);
+            }
+        });
+    }
+
+    /**
+     * Connect to the host at <pre>hostname</pre> on the default port (445) and authenticate a new session on it,
+     * without blocking the caller. This allows sessions to many servers to be set up in parallel.
+     * <p>
+     * Sessions are set up on a bounded executor, at most {@link SmbConfig#getSessionSetupParallelism()} at a time.
+     *
+     * @param hostname    The hostname to connect to.
+     * @param authContext The credentials to authenticate with.
+     * @return A Future for the authenticated session.
+     */
+    public Future<Session> authenticateAsync(String hostname, AuthenticationContext authContext) {
+        return authenticateAsync(hostname, DEFAULT_PORT, authContext);
+    }
+
+    /**
+     * Connect to the host at <pre>hostname</pre> on the given port and authenticate a new session on it, without
+     * blocking the caller. This allows sessions to many servers to be set up in parallel.
+     * <p>
+     * Sessions are set up on a bounded executor, at most {@link SmbConfig#getSessionSetupParallelism()} at a time.
+     *
+     * @param hostname    The hostname to connect to.
+     * @param port        The port to connect to
+     * @param authContext The credentials to authenticate with.
+     * @return A Future for the authenticated session.
+     */
+    public Future<Session> authenticateAsync(final String hostname, final int port, final AuthenticationContext authContext) {
+        return getSessionSetupExecutor().submit(new Callable<Session>() {
+            @Override
+            public Session call() throws IOException {
+                Connection connection = getEstablishedOrConnect(hostname, port);
+                try {
+                    return connection.authenticate(authContext);
+                } catch (RuntimeException e) {
+                    closeSilently(connection);
+                    throw e;
+                }
+            }
+        });
+    }
+
+    private ExecutorService getSessionSetupExecutor() {
+        ExecutorService executor = sessionSetupExecutor.get();
+        if (executor == null) {
+            // No threads are started until the first task is submitted, so losing the race is cheap
+            int parallelism = config.getSessionSetupParallelism();
+            ThreadPoolExecutor tpe = new ThreadPoolExecutor(parallelism, parallelism, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new SessionSetupThreadFactory(config.getThreadFactory()));
+            tpe.allowCoreThreadTimeOut(true);
+            if (sessionSetupExecutor.compareAndSet(null, tpe)) {
+                executor = tpe;
+            } else {
+                tpe.shutdown();
+                executor = sessionSetupExecutor.get();
+            }
+        }
+        return executor;
+    }
+
     private Connection getEstablishedOrConnect(String hostname, int port) throws IOException {
-        synchronized (this) {
-            String hostPort = hostname + ":" + port;
+        String hostPort = hostname + ":" + port;
+        // Only connects to the same host:port are serialized, so that connections to different servers can be set up in parallel.
+        ConnectLock connectLock = connectLocks.compute(hostPort, (k, lock) -> {
+            ConnectLock l = lock != null ? lock : new ConnectLock();
+            l.users++;
+            return l;
+        });
+
+        connectLock.lock();
+        try {
             Connection cachedConnection = connectionTable.get(hostPort);
             if (cachedConnection != null) {
                 cachedConnection = cachedConnection.lease();
@@ -99,28 +220,47 @@ public class SMBClient implements Closeable {
                     throw e;
                 }
                 connectionTable.put(hostPort, connection);
+                if (closedConnections.remove(hostPort)) {
+                    config.getMetrics().connectionReestablished(hostname);
+                    bus.publish(new ConnectionReestablished(hostname, port));
+                }
                 return connection;
             }
 
             return cachedConnection;
+        } finally {
+            connectLock.unlock();
+            connectLocks.computeIfPresent(hostPort, (k, lock) -> --lock.users == 0 ? null : lock);
         }
     }
 
+    /**
+     * Serializes the connects to one host:port, counting the threads that use it so that it can be removed after the
+     * last one. The count is only changed inside the compute functions of the map.
+     */
+    @SuppressWarnings("serial")
+    private static class ConnectLock extends ReentrantLock {
+        private int users;
+    }
+
     @Handler
     @SuppressWarnings("unused")
     private void connectionClosed(ConnectionClosed event) {
-        synchronized (this) {
-            String hostPort = event.getHostname() + ":" + event.getPort();
-            connectionTable.remove(hostPort);
-            serverList.unregister(event.getHostname());
-            logger.debug("Connection to << {} >> closed", hostPort);
-        }
+        String hostPort = event.getHostname() + ":" + event.getPort();
+        connectionTable.remove(hostPort);
+        closedConnections.add(hostPort);
+        serverList.unregister(event.getHostname());
+        logger.debug("Connection to << {} >> closed", hostPort);
     }
 
     private static final Logger logger = LoggerFactory.getLogger(SMBClient.class);
 
     @Override
     public void close() {
+        ExecutorService executor = sessionSetupExecutor.get();
+        if (executor != null) {
+            executor.shutdownNow();
+        }
         logger.info("Going to close all remaining connections");
         for (Connection connection : connectionTable.values()) {
             try {
@@ -130,9 +270,41 @@ public class SMBClient implements Closeable {
                 logger.debug("Exception was: ", e);
             }
         }
+        dfsCache.close();
+        timer.close();
     }
 
     public ServerList getServerList() {
         return serverList;
     }
+
+    /**
+     * @return The DFS referral and domain caches shared by all connections of this client.
+     */
+    public DFSCache getDfsCache() {
+        return dfsCache;
+    }
+
+    /**
+     * @return The timer that expires the requests and schedules the ECHOs of all connections of this client.
+     */
+    public HashedWheelTimer getTimer() {
+        return timer;
+    }
+
+    private static class SessionSetupThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+        private final ThreadFactory threadFactory;
+
+        SessionSetupThreadFactory(ThreadFactory threadFactory) {
+            this.threadFactory = threadFactory;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = threadFactory.newThread(r);
+            t.setName("SMB Session Setup-" + counter.incrementAndGet());
+            return t;
+        }
+    }
 }
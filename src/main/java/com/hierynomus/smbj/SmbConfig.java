@@ -21,6 +21,7 @@ import static com.hierynomus.mssmb2.SMB2Dialect.SMB_3_0;
 import static com.hierynomus.mssmb2.SMB2Dialect.SMB_3_0_2;
 import static com.hierynomus.mssmb2.SMB2Dialect.SMB_3_1_1;
 
+import java.io.File;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -29,6 +30,9 @@ import java.util.List;
 import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 import javax.net.SocketFactory;
@@ -37,7 +41,10 @@ import com.hierynomus.mssmb2.SMB2Dialect;
 import com.hierynomus.mssmb2.SMB2GlobalCapability;
 import com.hierynomus.ntlm.NtlmConfig;
 import com.hierynomus.protocol.commons.Factory;
+import com.hierynomus.protocol.commons.concurrent.DaemonThreadFactory;
+import com.hierynomus.protocol.commons.socket.HappyEyeballsConnector;
 import com.hierynomus.protocol.commons.socket.ProxySocketFactory;
+import com.hierynomus.protocol.commons.socket.SocketOptions;
 import com.hierynomus.security.SecurityProvider;
 import com.hierynomus.security.bc.BCSecurityProvider;
 import com.hierynomus.smb.SMBPacket;
@@ -45,6 +52,8 @@ import com.hierynomus.smb.SMBPacketData;
 import com.hierynomus.smbj.auth.Authenticator;
 import com.hierynomus.smbj.auth.NtlmAuthenticator;
 import com.hierynomus.smbj.common.SMBRuntimeException;
+import com.hierynomus.smbj.metrics.SmbMetrics;
+import com.hierynomus.smbj.tracing.SmbTracer;
 import com.hierynomus.smbj.transport.TransportLayerFactory;
 import com.hierynomus.smbj.transport.tcp.direct.DirectTcpTransportFactory;
 
@@ -57,6 +66,17 @@ public final class SmbConfig {
     private static final int DEFAULT_TIMEOUT = 60;
     private static final TimeUnit DEFAULT_TIMEOUT_UNIT = TimeUnit.SECONDS;
 
+    private static final int DEFAULT_SESSION_SETUP_PARALLELISM = 8;
+
+    private static final int DEFAULT_SYMLINK_CACHE_SIZE = 1024;
+
+    private static final int DEFAULT_BULK_CONCURRENCY = 64;
+    private static final int DEFAULT_BULK_STAT_LISTING_THRESHOLD = 32;
+    private static final int DEFAULT_DFS_HEDGE_THREADS = 16;
+
+    private static final int DEFAULT_ECHO_INTERVAL = 60;
+    private static final TimeUnit DEFAULT_ECHO_INTERVAL_UNIT = TimeUnit.SECONDS;
+
     private static final TransportLayerFactory<SMBPacketData<?>, SMBPacket<?, ?>> DEFAULT_TRANSPORT_LAYER_FACTORY = new DirectTcpTransportFactory();
 
     private static final boolean ANDROID;
@@ -90,8 +110,28 @@ public final class SmbConfig {
     private GSSContextConfig clientGSSContextConfig;
     private boolean encryptData;
     private NtlmConfig ntlmConfig;
+    private int sessionSetupParallelism;
+    private ThreadFactory threadFactory;
+    private Executor callbackExecutor;
+    private SmbMetrics metrics;
+    private SmbTracer tracer;
+    private long dfsStaleCacheTimeout;
+    private File dfsCacheSnapshot;
+    private double dfsHedgePercentile;
+    private int dfsHedgeThreads;
+    private long symlinkCacheTimeout;
+    private int symlinkCacheSize;
+    private int bulkConcurrency;
+    private int bulkStatListingThreshold;
 
     private int soTimeout;
+    private boolean tcpNoDelay;
+    private boolean tcpKeepAlive;
+    private int socketSendBufferSize;
+    private int socketReceiveBufferSize;
+    private long connectAttemptDelay;
+    private long requestTimeout;
+    private long echoInterval;
 
     public static SmbConfig createDefaultConfig() {
         return builder().build();
@@ -108,12 +148,24 @@ public final class SmbConfig {
                 .withBufferSize(DEFAULT_BUFFER_SIZE)
                 .withTransportLayerFactory(DEFAULT_TRANSPORT_LAYER_FACTORY)
                 .withSoTimeout(DEFAULT_SO_TIMEOUT, DEFAULT_SO_TIMEOUT_UNIT)
+                .withTcpNoDelay(true)
+                .withConnectAttemptDelay(HappyEyeballsConnector.DEFAULT_ATTEMPT_DELAY, TimeUnit.MILLISECONDS)
+                .withEchoInterval(DEFAULT_ECHO_INTERVAL, DEFAULT_ECHO_INTERVAL_UNIT)
+                .withSymlinkCacheSize(DEFAULT_SYMLINK_CACHE_SIZE)
+                .withBulkConcurrency(DEFAULT_BULK_CONCURRENCY)
+                .withBulkStatListingThreshold(DEFAULT_BULK_STAT_LISTING_THRESHOLD)
+                .withDfsHedgeThreads(DEFAULT_DFS_HEDGE_THREADS)
                 .withDialects(SMB_3_1_1, SMB_3_0_2, SMB_3_0, SMB_2_1, SMB_2_0_2)
                 // order is important.  The authenticators listed first will be selected
                 .withAuthenticators(getDefaultAuthenticators())
                 .withTimeout(DEFAULT_TIMEOUT, DEFAULT_TIMEOUT_UNIT)
                 .withClientGSSContextConfig(GSSContextConfig.createDefaultConfig())
-                .withEncryptData(false);
+                .withEncryptData(false)
+                .withSessionSetupParallelism(DEFAULT_SESSION_SETUP_PARALLELISM)
+                .withThreadFactory(new DaemonThreadFactory())
+                .withCallbackExecutor(ForkJoinPool.commonPool())
+                .withMetrics(SmbMetrics.NOOP)
+                .withTracer(SmbTracer.NOOP);
 
         return b;
     }
@@ -146,6 +198,7 @@ public final class SmbConfig {
         dialects = EnumSet.noneOf(SMB2Dialect.class);
         random = new SecureRandom();
         authenticators = new ArrayList<>();
+        requestTimeout = -1;
     }
 
     private SmbConfig(SmbConfig other) {
@@ -166,10 +219,30 @@ public final class SmbConfig {
         transactTimeout = other.transactTimeout;
         transportLayerFactory = other.transportLayerFactory;
         soTimeout = other.soTimeout;
+        tcpNoDelay = other.tcpNoDelay;
+        tcpKeepAlive = other.tcpKeepAlive;
+        socketSendBufferSize = other.socketSendBufferSize;
+        socketReceiveBufferSize = other.socketReceiveBufferSize;
+        connectAttemptDelay = other.connectAttemptDelay;
+        requestTimeout = other.requestTimeout;
+        echoInterval = other.echoInterval;
         useMultiProtocolNegotiate = other.useMultiProtocolNegotiate;
         clientGSSContextConfig = other.clientGSSContextConfig;
         encryptData = other.encryptData;
         ntlmConfig = other.ntlmConfig;
+        sessionSetupParallelism = other.sessionSetupParallelism;
+        threadFactory = other.threadFactory;
+        callbackExecutor = other.callbackExecutor;
+        metrics = other.metrics;
+        tracer = other.tracer;
+        dfsStaleCacheTimeout = other.dfsStaleCacheTimeout;
+        dfsCacheSnapshot = other.dfsCacheSnapshot;
+        dfsHedgePercentile = other.dfsHedgePercentile;
+        dfsHedgeThreads = other.dfsHedgeThreads;
+        symlinkCacheTimeout = other.symlinkCacheTimeout;
+        symlinkCacheSize = other.symlinkCacheSize;
+        bulkConcurrency = other.bulkConcurrency;
+        bulkStatListingThreshold = other.bulkStatListingThreshold;
     }
 
     public Random getRandomProvider() {
@@ -232,6 +305,25 @@ public final class SmbConfig {
         return transactTimeout;
     }
 
+    /**
+     * The time in milliseconds after which a request that the server has not answered expires, see
+     * {@link Builder#withRequestTimeout(long, TimeUnit)}. 0 if requests never expire.
+     */
+    public long getRequestTimeout() {
+        if (requestTimeout >= 0) {
+            return requestTimeout;
+        }
+        return Math.max(readTimeout, Math.max(writeTimeout, transactTimeout));
+    }
+
+    /**
+     * The idle time in milliseconds after which an ECHO is sent to check that the server is still there. 0 if no
+     * ECHOs are sent.
+     */
+    public long getEchoInterval() {
+        return echoInterval;
+    }
+
     public TransportLayerFactory<SMBPacketData<?>, SMBPacket<?, ?>> getTransportLayerFactory() {
         return transportLayerFactory;
     }
@@ -244,6 +336,20 @@ public final class SmbConfig {
         return socketFactory;
     }
 
+    /**
+     * The TCP options that the transports set on their sockets.
+     */
+    public SocketOptions getSocketOptions() {
+        return new SocketOptions(tcpNoDelay, tcpKeepAlive, socketSendBufferSize, socketReceiveBufferSize);
+    }
+
+    /**
+     * The time in milliseconds to wait for a connection to one address of a server before also trying the next one.
+     */
+    public long getConnectAttemptDelay() {
+        return connectAttemptDelay;
+    }
+
     public GSSContextConfig getClientGSSContextConfig() {
         return clientGSSContextConfig;
     }
@@ -265,6 +371,78 @@ public final class SmbConfig {
         return ntlmConfig;
     }
 
+    /**
+     * The maximum number of connections that the {@link SMBClient} sets up concurrently when using its asynchronous
+     * connect and authenticate methods.
+     */
+    public int getSessionSetupParallelism() {
+        return sessionSetupParallelism;
+    }
+
+    /**
+     * The factory used for the threads the library starts itself, like the packet reader of each connection and the
+     * session setup threads of the {@link SMBClient}.
+     */
+    public ThreadFactory getThreadFactory() {
+        return threadFactory;
+    }
+
+    /**
+     * The executor on which asynchronous operations continue when the continuation may block, like resolving a
+     * symbolic link or DFS path after an asynchronous open.
+     */
+    public Executor getCallbackExecutor() {
+        return callbackExecutor;
+    }
+
+    public SmbMetrics getMetrics() {
+        return metrics;
+    }
+
+    public SmbTracer getTracer() {
+        return tracer;
+    }
+
+    public long getDfsStaleCacheTimeout() {
+        return dfsStaleCacheTimeout;
+    }
+
+    public File getDfsCacheSnapshot() {
+        return dfsCacheSnapshot;
+    }
+
+    public double getDfsHedgePercentile() {
+        return dfsHedgePercentile;
+    }
+
+    public int getDfsHedgeThreads() {
+        return dfsHedgeThreads;
+    }
+
+    /**
+     * How long, in milliseconds, the target of a followed symbolic link is used without asking the server again. 0 if
+     * symbolic links are not cached.
+     */
+    public long getSymlinkCacheTimeout() {
+        return symlinkCacheTimeout;
+    }
+
+    public int getSymlinkCacheSize() {
+        return symlinkCacheSize;
+    }
+
+    public int getBulkConcurrency() {
+        return bulkConcurrency;
+    }
+
+    /**
+     * The number of requested paths in a single directory from which a bulk stat lists that directory instead of
+     * opening each path. 0 if directories are never listed.
+     */
+    public int getBulkStatListingThreshold() {
+        return bulkStatListingThreshold;
+    }
+
     public Set<SMB2GlobalCapability> getClientCapabilities() {
         if (!SMB2Dialect.supportsSmb3x(dialects)) {
             return EnumSet.noneOf(SMB2GlobalCapability.class);
@@ -427,6 +605,32 @@ public final class SmbConfig {
             return this;
         }
 
+        /**
+         * Set the time after which a request that the server has not answered expires: it is cancelled on the server,
+         * and its future fails, also when nobody waits for it. Requests that the server is processing asynchronously,
+         * like a CHANGE_NOTIFY, do not expire. Defaults to the largest of the read, write and transact timeouts. 0
+         * disables the expiration.
+         */
+        public Builder withRequestTimeout(long timeout, TimeUnit timeoutUnit) {
+            if (timeout < 0) {
+                throw new IllegalArgumentException("Request timeout should be either 0 (no timeout) or a positive value");
+            }
+            config.requestTimeout = timeoutUnit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Send an ECHO when nothing was received on a connection for the given time, so that a dead connection is
+         * closed before the next request. Defaults to 60 seconds. 0 disables the ECHOs.
+         */
+        public Builder withEchoInterval(long interval, TimeUnit intervalUnit) {
+            if (interval < 0) {
+                throw new IllegalArgumentException("Echo interval should be either 0 (no echoes) or a positive value");
+            }
+            config.echoInterval = intervalUnit.toMillis(interval);
+            return this;
+        }
+
         public Builder withTimeout(long timeout, TimeUnit timeoutUnit) {
             return withReadTimeout(timeout, timeoutUnit).withWriteTimeout(timeout, timeoutUnit).withTransactTimeout(timeout, timeoutUnit);
         }
@@ -448,6 +652,65 @@ public final class SmbConfig {
             return this;
         }
 
+        /**
+         * Whether Nagle's algorithm is disabled on the connection. Defaults to {@code true}, as most SMB2 requests are
+         * small and the client waits for their response, so delaying them only adds latency.
+         */
+        public Builder withTcpNoDelay(boolean tcpNoDelay) {
+            config.tcpNoDelay = tcpNoDelay;
+            return this;
+        }
+
+        /**
+         * Whether TCP keepalive probes are sent on idle connections. Defaults to {@code false}.
+         */
+        public Builder withTcpKeepAlive(boolean tcpKeepAlive) {
+            config.tcpKeepAlive = tcpKeepAlive;
+            return this;
+        }
+
+        /**
+         * Set the socket send and receive buffer sizes in bytes. Defaults to 0, which leaves the sizes to the operating
+         * system.
+         */
+        public Builder withSocketBufferSize(int sendBufferSize, int receiveBufferSize) {
+            if (sendBufferSize < 0 || receiveBufferSize < 0) {
+                throw new IllegalArgumentException("Socket buffer sizes may not be negative");
+            }
+            config.socketSendBufferSize = sendBufferSize;
+            config.socketReceiveBufferSize = receiveBufferSize;
+            return this;
+        }
+
+        /**
+         * Size the socket buffers to the bandwidth-delay product of the link, so that a single connection can keep a
+         * link with a high round trip time filled.
+         *
+         * @param bytesPerSecond The bandwidth of the link.
+         * @param roundTripTime  The round trip time to the server.
+         */
+        public Builder withSocketBufferSizeForLink(long bytesPerSecond, long roundTripTime, TimeUnit roundTripTimeUnit) {
+            if (bytesPerSecond <= 0 || roundTripTime <= 0) {
+                throw new IllegalArgumentException("Link bandwidth and round trip time must be greater than zero");
+            }
+            double bdp = (double) bytesPerSecond * roundTripTimeUnit.toNanos(roundTripTime) / TimeUnit.SECONDS.toNanos(1);
+            int size = (int) Math.min(Integer.MAX_VALUE, Math.ceil(bdp));
+            return withSocketBufferSize(size, size);
+        }
+
+        /**
+         * Set the time to wait for a connection to one address of a server before also trying its next address, when
+         * the server name resolves to multiple addresses. Defaults to 250 milliseconds, as recommended by RFC 8305. 0
+         * only tries the next address when connecting to the previous one failed.
+         */
+        public Builder withConnectAttemptDelay(long delay, TimeUnit delayUnit) {
+            if (delay < 0) {
+                throw new IllegalArgumentException("Connection attempt delay may not be negative");
+            }
+            config.connectAttemptDelay = delayUnit.toMillis(delay);
+            return this;
+        }
+
         public SmbConfig build() {
             if (config.dialects.isEmpty()) {
                 throw new IllegalStateException("At least one SMB dialect should be specified");
@@ -496,6 +759,166 @@ public final class SmbConfig {
             return this;
         }
 
+        public Builder withSessionSetupParallelism(int sessionSetupParallelism) {
+            if (sessionSetupParallelism <= 0) {
+                throw new IllegalArgumentException("Session setup parallelism must be greater than zero");
+            }
+            config.sessionSetupParallelism = sessionSetupParallelism;
+            return this;
+        }
+
+        /**
+         * Set the factory for the threads started by the library. On Java 21 and up, passing
+         * {@code Thread.ofVirtual().factory()} runs the packet readers on virtual threads.
+         */
+        public Builder withThreadFactory(ThreadFactory threadFactory) {
+            if (threadFactory == null) {
+                throw new IllegalArgumentException("Thread factory may not be null");
+            }
+            config.threadFactory = threadFactory;
+            return this;
+        }
+
+        /**
+         * Set the executor on which asynchronous operations continue when the continuation may block.
+         */
+        public Builder withCallbackExecutor(Executor callbackExecutor) {
+            if (callbackExecutor == null) {
+                throw new IllegalArgumentException("Callback executor may not be null");
+            }
+            config.callbackExecutor = callbackExecutor;
+            return this;
+        }
+
+        /**
+         * Set the receiver of the client-side performance measurements, like request latencies and bytes transferred.
+         * Defaults to {@link SmbMetrics#NOOP}.
+         */
+        public Builder withMetrics(SmbMetrics metrics) {
+            if (metrics == null) {
+                throw new IllegalArgumentException("Metrics may not be null");
+            }
+            config.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Set the tracer that receives the timings of the stages of every request, from waiting for credits to
+         * delivering the response. Defaults to {@link SmbTracer#NOOP}, which takes no timings at all.
+         */
+        public Builder withTracer(SmbTracer tracer) {
+            if (tracer == null) {
+                throw new IllegalArgumentException("Tracer may not be null");
+            }
+            config.tracer = tracer;
+            return this;
+        }
+
+        /**
+         * Keep using an expired DFS referral for up to the given time while it is refreshed in the background, and
+         * refresh referrals in the background shortly before they expire. Defaults to 0, which resolves expired
+         * referrals synchronously, as [MS-DFSC] describes.
+         */
+        public Builder withDfsStaleCacheTimeout(long timeout, TimeUnit timeoutUnit) {
+            if (timeout < 0) {
+                throw new IllegalArgumentException("DFS stale cache timeout may not be negative");
+            }
+            config.dfsStaleCacheTimeout = timeoutUnit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Save the DFS referral and domain caches to the given file, and load them from it when a client is created,
+         * so that a restarted client resolves DFS namespaces without referral requests. Defaults to {@code null}, which
+         * keeps the caches in memory only.
+         */
+        public Builder withDfsCacheSnapshot(File dfsCacheSnapshot) {
+            config.dfsCacheSnapshot = dfsCacheSnapshot;
+            return this;
+        }
+
+        /**
+         * Remember the targets of the symbolic links that the server reports for the given time, so that later opens
+         * through the same link go to the target in a single round trip. A cached link is forgotten when opening
+         * through it fails with STATUS_OBJECT_PATH_NOT_FOUND. Defaults to 0, which asks the server every time.
+         */
+        public Builder withSymlinkCacheTimeout(long timeout, TimeUnit timeoutUnit) {
+            if (timeout < 0) {
+                throw new IllegalArgumentException("Symlink cache timeout may not be negative");
+            }
+            config.symlinkCacheTimeout = timeoutUnit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Set the maximum number of symbolic links cached per connection. Defaults to 1024.
+         */
+        public Builder withSymlinkCacheSize(int size) {
+            if (size <= 0) {
+                throw new IllegalArgumentException("Symlink cache size must be greater than zero");
+            }
+            config.symlinkCacheSize = size;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of requests (opens, listings, deletes or renames) a bulk operation keeps in flight.
+         * Defaults to 64.
+         *
+         * @see com.hierynomus.smbj.share.DiskShare#getFileStatsAsync(Iterable, java.util.function.Consumer)
+         * @see com.hierynomus.smbj.share.DiskShare#deleteTreeAsync(String, boolean, com.hierynomus.smbj.share.BulkOperationListener)
+         * @see com.hierynomus.smbj.share.DiskShare#renameAllAsync(java.util.Map, boolean, com.hierynomus.smbj.share.BulkOperationListener)
+         */
+        public Builder withBulkConcurrency(int concurrency) {
+            if (concurrency <= 0) {
+                throw new IllegalArgumentException("Bulk concurrency must be greater than zero");
+            }
+            config.bulkConcurrency = concurrency;
+            return this;
+        }
+
+        /**
+         * Let a bulk stat list a directory once, instead of opening every path, when at least the given number of
+         * paths in that directory are requested together. Defaults to 32, 0 never lists directories.
+         *
+         * @see com.hierynomus.smbj.share.DiskShare#getFileStatsAsync(Iterable, java.util.function.Consumer)
+         */
+        public Builder withBulkStatListingThreshold(int threshold) {
+            if (threshold < 0) {
+                throw new IllegalArgumentException("Bulk stat listing threshold may not be negative");
+            }
+            config.bulkStatListingThreshold = threshold;
+            return this;
+        }
+
+        /**
+         * Hedge read-only opens of files in DFS namespaces with more than one target: if the open on the preferred
+         * target has not completed within the given percentile (for instance 0.95) of that target's recent latencies,
+         * the same open is sent to the next target and whichever answers first is used. The other handle is closed.
+         * Defaults to 0, which never hedges.
+         */
+        public Builder withDfsHedgePercentile(double percentile) {
+            if (percentile < 0 || percentile > 1) {
+                throw new IllegalArgumentException("DFS hedge percentile must be between 0 and 1");
+            }
+            config.dfsHedgePercentile = percentile;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of threads that run hedged DFS opens. When all of them are busy, an open is sent to
+         * one target at a time as without hedging. Defaults to 16.
+         *
+         * @see #withDfsHedgePercentile(double)
+         */
+        public Builder withDfsHedgeThreads(int threads) {
+            if (threads <= 0) {
+                throw new IllegalArgumentException("DFS hedge threads must be greater than zero");
+            }
+            config.dfsHedgeThreads = threads;
+            return this;
+        }
+
         public NtlmConfig.Builder withNtlmConfig() {
             return ntlmConfigBuilder;
         }
@@ -17,11 +17,16 @@ package com.hierynomus.smbj.auth;
 
 import java.util.Arrays;
 
+import com.hierynomus.ntlm.functions.NtlmV2Functions;
+
 public class AuthenticationContext {
     private final String username;
     private final char[] password;
     private final String domain;
 
+    // Derived key material, cached so that it is computed only once per credential instead of once per session.
+    private volatile byte[] ntowfv2;
+
     public AuthenticationContext(String username, char[] password, String domain) {
         this.username = username;
         this.password = Arrays.copyOf(password, password.length);
@@ -48,6 +53,22 @@ public class AuthenticationContext {
         return domain;
     }
 
+    /**
+     * Returns the NTOWFv2 hash of these credentials, computing it on first use.
+     *
+     * @param functions the functions to compute the hash with if it is not cached yet
+     * @return the NTOWFv2 hash
+     */
+    byte[] getNtowfv2(NtlmV2Functions functions) {
+        byte[] key = ntowfv2;
+        if (key == null) {
+            // Racing threads compute the same deterministic value, so no locking is needed.
+            key = functions.NTOWFv2(String.valueOf(password), username, domain);
+            ntowfv2 = key;
+        }
+        return key;
+    }
+
     public boolean isAnonymous() {
         return username.isEmpty() && password.length == 0;
     }
@@ -16,13 +16,23 @@
 package com.hierynomus.smbj.auth;
 
 import org.ietf.jgss.GSSCredential;
+import org.ietf.jgss.GSSException;
+import org.ietf.jgss.GSSManager;
+import org.ietf.jgss.GSSName;
 
 import javax.security.auth.Subject;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class GSSAuthenticationContext extends AuthenticationContext {
     Subject subject;
     GSSCredential creds;
 
+    // Server names per SPN. The Kerberos mechanism caches the service tickets it obtains in the private credentials of
+    // the (writable) Subject, keyed by the server principal. Reusing this context thus avoids a KDC round trip
+    // for every new session to an SPN that was authenticated against before.
+    private final Map<String, GSSName> serverNames = new ConcurrentHashMap<>();
+
     public GSSAuthenticationContext(String username, String domain, Subject subject, GSSCredential creds) {
         super(username, new char[0], domain);
         this.subject = subject;
@@ -37,6 +47,15 @@ public class GSSAuthenticationContext extends AuthenticationContext {
         return creds;
     }
 
+    GSSName getServerName(GSSManager gssManager, String spn) throws GSSException {
+        GSSName serverName = serverNames.get(spn);
+        if (serverName == null) {
+            serverName = gssManager.createName(spn, GSSName.NT_HOSTBASED_SERVICE);
+            serverNames.put(spn, serverName);
+        }
+        return serverName;
+    }
+
     @Override
     public String toString() {
         return "GSSAuthenticationContext[" + subject + ']';
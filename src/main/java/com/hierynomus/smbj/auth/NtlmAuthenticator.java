@@ -190,7 +190,7 @@ public class NtlmAuthenticator implements Authenticator {
         if (clientTargetInfo != null && clientTargetInfo.hasAvPair(AvId.MsvAvTimestamp)) {
             time = ((AvPairTimestamp) clientTargetInfo.getAvPair(AvId.MsvAvTimestamp)).getValue().getWindowsTimeStamp();
         }
-        ComputedNtlmV2Response computedNtlmV2Response = functions.computeResponse(context.getUsername(), context.getDomain(), context.getPassword(), serverNtlmChallenge, time, clientTargetInfo);
+        ComputedNtlmV2Response computedNtlmV2Response = functions.computeResponse(context.getNtowfv2(functions), serverNtlmChallenge, time, clientTargetInfo);
 
         byte[] sessionBaseKey = computedNtlmV2Response.getSessionBaseKey();
         byte[] ntResponse = computedNtlmV2Response.getNtResponse();
@@ -83,7 +83,7 @@ public class SpnegoAuthenticator implements Authenticator {
 
                 String service = "cifs";
                 String hostName = connectionContext.getServerName();
-                GSSName serverName = gssManager.createName(service + "@" + hostName, GSSName.NT_HOSTBASED_SERVICE);
+                GSSName serverName = context.getServerName(gssManager, service + "@" + hostName);
                 gssContext = gssManager.createContext(serverName, spnegoOid, context.getCreds(), GSSContext.DEFAULT_LIFETIME);
                 gssContext.requestMutualAuth(gssContextConfig.isRequestMutualAuth());
                 gssContext.requestCredDeleg(gssContextConfig.isRequestCredDeleg());
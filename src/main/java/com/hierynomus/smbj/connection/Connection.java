@@ -24,19 +24,24 @@ import java.net.InetSocketAddress;
 import java.util.UUID;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
 import java.util.concurrent.locks.ReentrantLock;
 
 import com.hierynomus.mssmb.SMB1PacketFactory;
 import com.hierynomus.mssmb2.*;
 import com.hierynomus.mssmb2.messages.SMB2Cancel;
+import com.hierynomus.mssmb2.messages.SMB2Echo;
 import com.hierynomus.protocol.commons.buffer.Buffer;
 import com.hierynomus.protocol.commons.concurrent.CancellableFuture;
 import com.hierynomus.protocol.commons.concurrent.Futures;
+import com.hierynomus.protocol.commons.concurrent.HashedWheelTimer;
 import com.hierynomus.protocol.transport.PacketFactory;
 import com.hierynomus.protocol.transport.PacketHandlers;
 import com.hierynomus.protocol.transport.PacketReceiver;
 import com.hierynomus.protocol.transport.TransportException;
 import com.hierynomus.protocol.transport.TransportLayer;
+import com.hierynomus.smb.SMBBuffer;
 import com.hierynomus.smb.SMBPacket;
 import com.hierynomus.smb.SMBPacketData;
 import com.hierynomus.smbj.SMBClient;
@@ -45,19 +50,30 @@ import com.hierynomus.smbj.auth.AuthenticationContext;
 import com.hierynomus.smbj.common.Pooled;
 import com.hierynomus.smbj.connection.packet.DeadLetterPacketHandler;
 import com.hierynomus.smbj.connection.packet.IncomingPacketHandler;
+import com.hierynomus.smbj.connection.packet.IncomingPacketTimings;
 import com.hierynomus.smbj.connection.packet.SMB1PacketHandler;
 import com.hierynomus.smbj.connection.packet.SMB2AsyncResponsePacketHandler;
 import com.hierynomus.smbj.connection.packet.SMB2CompoundedPacketHandler;
 import com.hierynomus.smbj.connection.packet.SMB2CreditGrantingPacketHandler;
 import com.hierynomus.smbj.connection.packet.SMB2IsOutstandingPacketHandler;
+import com.hierynomus.smbj.connection.packet.SMB2OplockBreakPacketHandler;
 import com.hierynomus.smbj.connection.packet.SMB2ProcessResponsePacketHandler;
 import com.hierynomus.smbj.connection.packet.SMB2SignatureVerificationPacketHandler;
 import com.hierynomus.smbj.connection.packet.SMB3DecryptingPacketHandler;
 import com.hierynomus.smbj.event.ConnectionClosed;
+import com.hierynomus.smbj.event.CreditStarvation;
 import com.hierynomus.smbj.event.SMBEventBus;
 import com.hierynomus.smbj.event.SessionLoggedOff;
+import com.hierynomus.smbj.metrics.ConnectionGauges;
+import com.hierynomus.smbj.metrics.SmbMetrics;
+import com.hierynomus.smbj.tracing.RequestInfo;
+import com.hierynomus.smbj.tracing.RequestTrace;
+import com.hierynomus.smbj.tracing.SmbTracer;
+import com.hierynomus.smbj.tracing.TraceStage;
+import com.hierynomus.smbj.paths.DFSCache;
 import com.hierynomus.smbj.paths.DFSPathResolver;
 import com.hierynomus.smbj.paths.PathResolver;
+import com.hierynomus.smbj.paths.SymlinkCache;
 import com.hierynomus.smbj.paths.SymlinkPathResolver;
 import com.hierynomus.smbj.server.ServerList;
 import com.hierynomus.smbj.session.Session;
@@ -78,7 +94,12 @@ public class Connection extends Pooled<Connection> implements Closeable, PacketR
     private ConnectionContext connectionContext;
     private SessionTable sessionTable = new SessionTable();
     private SessionTable preauthSessionTable = new SessionTable();
-    OutstandingRequests outstandingRequests = new OutstandingRequests();
+    OutstandingRequests outstandingRequests = new OutstandingRequests(new OutstandingRequests.CompletionListener() {
+        @Override
+        public void completed(Request request, Throwable failure) {
+            requestCompleted(request, failure);
+        }
+    });
     SequenceWindow sequenceWindow;
     private SMB2MessageConverter messageConverter = new SMB2MessageConverter();
     private PathResolver pathResolver;
@@ -88,6 +109,7 @@ public class Connection extends Pooled<Connection> implements Closeable, PacketR
 
     private PacketSignatory signatory;
     private PacketEncryptor encryptor;
+    private IncomingPacketTimings incomingPacketTimings;
 
     public SMBClient getClient() {
         return client;
@@ -97,13 +119,21 @@ public class Connection extends Pooled<Connection> implements Closeable, PacketR
     TransportLayer<SMBPacket<?, ?>> transport;
     private final SMBEventBus bus;
     private final ReentrantLock lock = new ReentrantLock();
+    // Whether the last request had to wait for credits, guarded by lock
+    private boolean creditStarved;
+
+    private final HashedWheelTimer timer;
+    private final boolean ownsTimer;
+    private volatile long lastReceivedNanos;
 
     public Connection(SmbConfig config, SMBClient client, SMBEventBus bus, ServerList serverList) {
         this.config = config;
         this.client = client;
-        this.transport = config.getTransportLayerFactory().createTransportLayer(new PacketHandlers<>(new SMBPacketSerializer(), this, converter), config);
+        this.transport = config.getTransportLayerFactory().createTransportLayer(new PacketHandlers<>(new InstrumentedPacketSerializer(), this, new InstrumentedPacketFactory()), config);
         this.bus = bus;
         this.serverList = serverList;
+        this.ownsTimer = client == null;
+        this.timer = client != null ? client.getTimer() : new HashedWheelTimer(config.getThreadFactory());
         init();
     }
 
@@ -112,15 +142,17 @@ public class Connection extends Pooled<Connection> implements Closeable, PacketR
         this.sequenceWindow = new SequenceWindow();
         this.signatory = new PacketSignatory(config.getSecurityProvider());
         this.encryptor = new PacketEncryptor(config.getSecurityProvider());
+        this.incomingPacketTimings = new IncomingPacketTimings(config.getTracer() != SmbTracer.NOOP);
 
-        this.packetHandlerChain = new SMB3DecryptingPacketHandler(sessionTable, encryptor).setNext(
+        this.packetHandlerChain = new SMB3DecryptingPacketHandler(sessionTable, encryptor, incomingPacketTimings).setNext(
             new SMB2CompoundedPacketHandler().setNext(
                 new SMB2IsOutstandingPacketHandler(outstandingRequests).setNext(
-                    new SMB2SignatureVerificationPacketHandler(sessionTable, signatory).setNext(
-                        new SMB2CreditGrantingPacketHandler(sequenceWindow).setNext(
-                            new SMB2AsyncResponsePacketHandler(outstandingRequests).setNext(
-                                new SMB2ProcessResponsePacketHandler(messageConverter, outstandingRequests).setNext(
-                                    new SMB1PacketHandler().setNext(new DeadLetterPacketHandler()))))))));
+                    new SMB2OplockBreakPacketHandler(this, bus).setNext(
+                        new SMB2SignatureVerificationPacketHandler(sessionTable, signatory, incomingPacketTimings).setNext(
+                            new SMB2CreditGrantingPacketHandler(sequenceWindow).setNext(
+                                new SMB2AsyncResponsePacketHandler(outstandingRequests).setNext(
+                                    new SMB2ProcessResponsePacketHandler(messageConverter, outstandingRequests, incomingPacketTimings).setNext(
+                                        new SMB1PacketHandler().setNext(new DeadLetterPacketHandler())))))))));
     }
 
     public Connection(Connection connection) {
@@ -129,6 +161,8 @@ public class Connection extends Pooled<Connection> implements Closeable, PacketR
         this.transport = connection.transport;
         this.bus = connection.bus;
         this.serverList = connection.serverList;
+        this.ownsTimer = false;
+        this.timer = connection.timer;
         init();
     }
 
@@ -142,11 +176,34 @@ public class Connection extends Pooled<Connection> implements Closeable, PacketR
         this.signatory.init();
         this.encryptor.init(connectionContext);
 
-        this.pathResolver = new SymlinkPathResolver(PathResolver.LOCAL);
+        SymlinkCache symlinkCache = null;
+        if (config.getSymlinkCacheTimeout() > 0) {
+            symlinkCache = new SymlinkCache(config.getSymlinkCacheTimeout(), TimeUnit.MILLISECONDS, config.getSymlinkCacheSize());
+        }
+        this.pathResolver = new SymlinkPathResolver(PathResolver.LOCAL, symlinkCache);
         if (config.isDfsEnabled() && connectionContext.supportsDFS()) {
-            this.pathResolver = new DFSPathResolver(pathResolver, config.getTransactTimeout());
+            this.pathResolver = new DFSPathResolver(pathResolver, config.getTransactTimeout(), client != null ? client.getDfsCache() : new DFSCache(config));
         }
 
+        config.getMetrics().connectionOpened(hostname, new ConnectionGauges() {
+            @Override
+            public int getCreditsAvailable() {
+                return sequenceWindow.available();
+            }
+
+            @Override
+            public int getCreditWaiters() {
+                // Senders queue on the lock while another sender waits in the sequence window
+                return sequenceWindow.waiters() + lock.getQueueLength();
+            }
+
+            @Override
+            public int getOutstandingRequests() {
+                return outstandingRequests.size();
+            }
+        });
+        lastReceivedNanos = System.nanoTime();
+        scheduleEcho(config.getEchoInterval());
         logger.info("Successfully connected to: {}", getRemoteHostname());
     }
 
@@ -183,7 +240,11 @@ public class Connection extends Pooled<Connection> implements Closeable, PacketR
             }
         } finally {
             transport.disconnect();
+            if (ownsTimer) {
+                timer.close();
+            }
             logger.info("Closed connection to {}", getRemoteHostname());
+            config.getMetrics().connectionClosed(getRemoteHostname());
             bus.publish(new ConnectionClosed(connectionContext.getServer().getServerName(), connectionContext.getServer().getPort()));
         }
     }
@@ -211,38 +272,215 @@ public class Connection extends Pooled<Connection> implements Closeable, PacketR
      */
     public <T extends SMB2Packet> Future<T> send(SMB2Packet packet) throws TransportException {
         Future<T> f = null;
+        Request request = null;
         if (!(packet.getPacket() instanceof SMB2Cancel)) {
+            boolean tracing = incomingPacketTimings.isEnabled();
+            long startNanos = tracing ? System.nanoTime() : 0;
+            CreditStarvation starvation = null;
             // Need to lock around the sequence window calls to ensure no credits get stolen by another thread
             lock.lock();
             try {
                 int availableCredits = sequenceWindow.available();
                 int grantCredits = calculateGrantedCredits(packet, availableCredits);
-                if (availableCredits == 0) {
-                    logger.warn(
-                        "There are no credits left to send {}, will block until there are more credits available.",
-                        packet.getHeader().getMessage());
+                boolean starved = availableCredits < grantCredits;
+                if (starved && !creditStarved) {
+                    starvation = new CreditStarvation(connectionContext.getServerName(), connectionContext.getServer().getPort(), grantCredits, availableCredits);
+                }
+                creditStarved = starved;
+                if (starvation == null) {
+                    assignCredits(packet, availableCredits, grantCredits);
                 }
-                long[] messageIds = sequenceWindow.get(grantCredits);
-                packet.getHeader().setMessageId(messageIds[0]);
-                packet.getHeader().setCreditRequest(Math.max(SequenceWindow.PREFERRED_MINIMUM_CREDITS - availableCredits - grantCredits,
-                        grantCredits));
-                logger.debug("Granted {} (out of {}) credits to {}", grantCredits, availableCredits, packet);
             } finally {
                 lock.unlock();
             }
+            if (starvation != null) {
+                // Published without the lock held, so that listeners do not hold up the other senders
+                bus.publish(starvation);
+                lock.lock();
+                try {
+                    int availableCredits = sequenceWindow.available();
+                    assignCredits(packet, availableCredits, calculateGrantedCredits(packet, availableCredits));
+                } finally {
+                    lock.unlock();
+                }
+            }
 
-            Request request = new Request(packet.getPacket(), packet.getHeader().getMessageId(), UUID.randomUUID());
+            request = new Request(packet.getPacket(), packet.getHeader().getMessageId(), UUID.randomUUID());
+            if (tracing) {
+                startTrace(request, packet, startNanos);
+            }
             outstandingRequests.registerOutstanding(request);
-            f = request.getFuture(new CancelRequest(request, packet.getHeader().getSessionId()));
+            CancelRequest cancel = new CancelRequest(request, packet.getHeader().getSessionId());
+            f = request.getFuture(cancel);
+            scheduleExpiry(request, cancel);
+        }
+        long writeStart = 0;
+        if (request != null && request.getTrace() != null) {
+            writeStart = System.nanoTime();
+            request.writeStarted(writeStart);
         }
         transport.write(packet);
+        if (writeStart != 0) {
+            long written = System.nanoTime();
+            request.written(written);
+            long serialized = request.getSerializedNanos();
+            request.getTrace().stage(TraceStage.WRITE, serialized != 0 ? serialized : writeStart, written);
+        }
         return f;
     }
 
+    private void startTrace(Request request, SMB2Packet packet, long startNanos) {
+        SMB2PacketHeader header = packet.getHeader();
+        RequestInfo info = new RequestInfo(metricsServerName(), header.getMessage(), header.getMessageId(), header.getSessionId(), header.getTreeId(), header.getCreditCharge());
+        RequestTrace trace = config.getTracer().startRequest(info, startNanos);
+        if (trace != null) {
+            trace.stage(TraceStage.CREDIT_WAIT, startNanos, request.getSendNanos());
+            request.setTrace(trace);
+        }
+    }
+
+    /**
+     * [MS-SMB2] 3.2.6.1 Request Expiration Timer
+     * <p>
+     * Expire the request if the server has not answered it within the request timeout. The timer is extended for
+     * requests that the server processes asynchronously, as those may legitimately take long, like a CHANGE_NOTIFY.
+     */
+    private void scheduleExpiry(final Request request, final CancelRequest cancel) {
+        final long timeout = config.getRequestTimeout();
+        if (timeout <= 0) {
+            return;
+        }
+        request.setExpiry(schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (request.getAsyncId() != 0) {
+                    request.setExpiry(schedule(this, timeout));
+                } else {
+                    requestExpired(request, cancel, timeout);
+                }
+            }
+        }, timeout));
+    }
+
+    private void requestExpired(final Request request, final CancelRequest cancel, long timeout) {
+        if (!outstandingRequests.expire(request)) {
+            return;
+        }
+        final String message = format("No response to message << %d >> within %d ms", request.getMessageId(), timeout);
+        logger.warn("{} from {}, cancelling it", message, metricsServerName());
+        // Keep the request for another period, so that the credits granted by a late response are not lost
+        request.setExpiry(schedule(new Runnable() {
+            @Override
+            public void run() {
+                outstandingRequests.remove(request);
+            }
+        }, timeout));
+        config.getCallbackExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                outstandingRequests.failExpired(request, new TimeoutException(message));
+                cancel.cancel();
+            }
+        });
+    }
+
+    /**
+     * Send an ECHO when nothing has been received for the echo interval, so that a dead connection is noticed before
+     * the next request is sent on it.
+     */
+    private void scheduleEcho(long delay) {
+        if (config.getEchoInterval() <= 0) {
+            return;
+        }
+        schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (!isConnected()) {
+                    return;
+                }
+                long interval = config.getEchoInterval();
+                long idle = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastReceivedNanos);
+                if (idle < interval) {
+                    scheduleEcho(interval - idle);
+                } else {
+                    config.getCallbackExecutor().execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            sendEcho();
+                        }
+                    });
+                }
+            }
+        }, delay);
+    }
+
+    private void sendEcho() {
+        final String server = getRemoteHostname();
+        try {
+            logger.debug("Connection to {} is idle, sending ECHO", server);
+            Future<SMB2Packet> echo = send(new SMB2Echo(connectionContext.getNegotiatedProtocol().getDialect()));
+            Futures.toCompletableFuture(echo).whenCompleteAsync(new BiConsumer<SMB2Packet, Throwable>() {
+                @Override
+                public void accept(SMB2Packet response, Throwable failure) {
+                    if (failure == null) {
+                        scheduleEcho(config.getEchoInterval());
+                    } else if (isConnected()) {
+                        logger.warn("No response to ECHO from {}, closing the connection", server);
+                        connectionLost(new TransportException("No response to ECHO from " + server, Futures.unwrap(failure)));
+                    }
+                }
+            }, config.getCallbackExecutor());
+        } catch (TransportException e) {
+            connectionLost(e);
+        }
+    }
+
+    /**
+     * Fail the outstanding requests and disconnect, without logging off the sessions over the dead connection and
+     * regardless of how many users still hold it.
+     */
+    private void connectionLost(Throwable t) {
+        outstandingRequests.handleError(t);
+        try {
+            close(true);
+        } catch (Exception e) {
+            logger.debug("{} while closing lost connection to {}, ignoring: {}", e.getClass().getSimpleName(), getRemoteHostname(), e.getMessage());
+        }
+    }
+
+    /**
+     * @return the timeout, or null if the timer was closed along with the client
+     */
+    private HashedWheelTimer.Timeout schedule(Runnable task, long delayMillis) {
+        try {
+            return timer.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (IllegalStateException e) {
+            logger.debug("Not scheduling {} on {}, the timer is closed", task, metricsServerName());
+            return null;
+        }
+    }
+
     <T extends SMB2Packet> T sendAndReceive(SMB2Packet packet) throws TransportException {
         return Futures.get(this.<T>send(packet), config.getTransactTimeout(), TimeUnit.MILLISECONDS, TransportException.Wrapper);
     }
 
+    /**
+     * Takes the message ids for the packet from the sequence window, waiting for credits if needed. Called with the
+     * lock held.
+     */
+    private void assignCredits(SMB2Packet packet, int availableCredits, int grantCredits) {
+        if (availableCredits == 0) {
+            logger.warn(
+                "There are no credits left to send {}, will block until there are more credits available.",
+                packet.getHeader().getMessage());
+        }
+        long[] messageIds = sequenceWindow.get(grantCredits);
+        packet.getHeader().setMessageId(messageIds[0]);
+        packet.getHeader().setCreditRequest(Math.max(SequenceWindow.PREFERRED_MINIMUM_CREDITS - availableCredits - grantCredits,
+                grantCredits));
+        logger.debug("Granted {} (out of {}) credits to {}", grantCredits, availableCredits, packet);
+    }
+
     private int calculateGrantedCredits(final SMB2Packet packet, final int availableCredits) {
         final int grantCredits;
         int maxPayloadSize = packet.getMaxPayloadSize();
@@ -279,6 +517,8 @@ public class Connection extends Pooled<Connection> implements Closeable, PacketR
 
     @Override
     public void handle(SMBPacketData<?> uncheckedPacket) throws TransportException {
+        lastReceivedNanos = System.nanoTime();
+        incomingPacketTimings.received();
         this.packetHandlerChain.handle(uncheckedPacket);
         // [MS-SMB2] 3.2.5.1.6 Handling Session Expiration
         // if (packet.getHeader().getStatus() == NtStatus.STATUS_NETWORK_SESSION_EXPIRED) {
@@ -311,6 +551,28 @@ public class Connection extends Pooled<Connection> implements Closeable, PacketR
         return connectionContext;
     }
 
+    private void requestCompleted(Request request, Throwable failure) {
+        RequestTrace trace = request.getTrace();
+        if (trace != null && failure != null) {
+            trace.failed(failure, System.nanoTime());
+        }
+        SmbMetrics metrics = config.getMetrics();
+        if (metrics == SmbMetrics.NOOP || !(request.getPacket() instanceof SMB2Packet)) {
+            return;
+        }
+        SMB2MessageCommandCode command = ((SMB2Packet) request.getPacket()).getHeader().getMessage();
+        long latency = System.nanoTime() - request.getSendNanos();
+        if (failure == null) {
+            metrics.requestCompleted(metricsServerName(), command, latency);
+        } else {
+            metrics.requestFailed(metricsServerName(), command, latency);
+        }
+    }
+
+    private String metricsServerName() {
+        return connectionContext != null ? connectionContext.getServerName() : "";
+    }
+
     @Handler
     @SuppressWarnings("unused")
     private void sessionLogoff(SessionLoggedOff loggedOff) {
@@ -346,6 +608,52 @@ public class Connection extends Pooled<Connection> implements Closeable, PacketR
         }
     }
 
+    private class InstrumentedPacketSerializer extends SMBPacketSerializer {
+        @Override
+        public SMBBuffer write(SMBPacket<?, ?> packet) {
+            Request request = incomingPacketTimings.isEnabled() ? tracedRequest(packet) : null;
+            long start = request != null ? System.nanoTime() : 0;
+            SMBBuffer buffer = super.write(packet);
+            if (request != null) {
+                long end = System.nanoTime();
+                request.serialized(end);
+                request.getTrace().stage(serializationStage(packet), start, end);
+            }
+            config.getMetrics().bytesSent(metricsServerName(), buffer.available());
+            return buffer;
+        }
+
+        private Request tracedRequest(SMBPacket<?, ?> packet) {
+            if (!(packet instanceof SMB2Packet) || ((SMB2Packet) packet).getPacket() instanceof SMB2Cancel) {
+                return null;
+            }
+            Request request = outstandingRequests.getRequestByMessageId(((SMB2Packet) packet).getHeader().getMessageId());
+            return request != null && request.getTrace() != null ? request : null;
+        }
+
+        private TraceStage serializationStage(SMBPacket<?, ?> packet) {
+            if (packet instanceof PacketEncryptor.EncryptedPacketWrapper) {
+                return TraceStage.ENCRYPT;
+            } else if (packet instanceof PacketSignatory.SignedPacketWrapper) {
+                return TraceStage.SIGN;
+            }
+            return TraceStage.SERIALIZE;
+        }
+    }
+
+    private class InstrumentedPacketFactory implements PacketFactory<SMBPacketData<?>> {
+        @Override
+        public SMBPacketData<?> read(byte[] data) throws Buffer.BufferException, IOException {
+            config.getMetrics().bytesReceived(metricsServerName(), data.length);
+            return converter.read(data);
+        }
+
+        @Override
+        public boolean canHandle(byte[] data) {
+            return converter.canHandle(data);
+        }
+    }
+
     private class CancelRequest implements CancellableFuture.CancelCallback {
         private Request request;
         private long sessionId;
@@ -368,7 +676,13 @@ public class Connection extends Pooled<Connection> implements Closeable, PacketR
                 request.getMessageId(),
                 request.getAsyncId());
             try {
-                sessionTable.find(sessionId).send(cancel);
+                Session session = sessionTable.find(sessionId);
+                if (session != null) {
+                    session.send(cancel);
+                } else {
+                    // Not sent in a session, like a NEGOTIATE or an ECHO
+                    send(cancel);
+                }
             } catch (TransportException e) {
                 logger.error("Failed to send {}", cancel);
             }
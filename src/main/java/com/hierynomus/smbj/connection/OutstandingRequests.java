@@ -27,6 +27,15 @@ public class OutstandingRequests {
     private ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
     private Map<Long, Request> lookup = new HashMap<>();
     private Map<UUID, Request> cancelLookup = new HashMap<>();
+    private final CompletionListener listener;
+
+    public OutstandingRequests() {
+        this(null);
+    }
+
+    OutstandingRequests(CompletionListener listener) {
+        this.listener = listener;
+    }
 
     public boolean isOutstanding(Long messageId) {
         lock.readLock().lock();
@@ -56,17 +65,74 @@ public class OutstandingRequests {
     }
 
     public Request receivedResponseFor(Long messageId) {
+        Request r;
         lock.writeLock().lock();
         try {
-            Request r = lookup.remove(messageId);
+            r = lookup.remove(messageId);
             if (r == null) {
                 throw new SMBRuntimeException("Unable to find outstanding request for messageId " + messageId);
             }
             cancelLookup.remove(r.getCancelId());
-            return r;
         } finally {
             lock.writeLock().unlock();
         }
+        r.cancelExpiry();
+        if (listener != null && !r.isExpired()) {
+            listener.completed(r, null);
+        }
+        return r;
+    }
+
+    /**
+     * Mark the request expired because no response arrived in time. It stays outstanding, so that a late response is
+     * still processed for its credits, until it is {@link #remove(Request) removed}. The caller fails it through
+     * {@link #failExpired(Request, Throwable)}.
+     *
+     * @return true if the request was still outstanding and is now expired
+     */
+    boolean expire(Request request) {
+        lock.readLock().lock();
+        try {
+            return lookup.get(request.getMessageId()) == request && request.expire();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Complete a request that was {@link #expire(Request) expired} with the failure.
+     */
+    void failExpired(Request request, Throwable t) {
+        if (listener != null) {
+            listener.completed(request, t);
+        }
+        request.getPromise().deliverError(t);
+    }
+
+    /**
+     * Forget the request without completing it, after the server never answered it.
+     */
+    boolean remove(Request request) {
+        lock.writeLock().lock();
+        try {
+            if (lookup.get(request.getMessageId()) != request) {
+                return false;
+            }
+            lookup.remove(request.getMessageId());
+            cancelLookup.remove(request.getCancelId());
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return lookup.size();
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     void registerOutstanding(Request request) {
@@ -85,10 +151,25 @@ public class OutstandingRequests {
             for (Long id : new HashSet<>(lookup.keySet())) {
                 Request removed = lookup.remove(id);
                 cancelLookup.remove(removed.getCancelId());
+                removed.cancelExpiry();
+                if (listener != null && !removed.isExpired()) {
+                    listener.completed(removed, t);
+                }
                 removed.getPromise().deliverError(t);
             }
         } finally {
             lock.writeLock().unlock();
         }
     }
+
+    /**
+     * Notified when an outstanding request is completed, either by its response, by a connection failure or by
+     * expiring.
+     */
+    interface CompletionListener {
+        /**
+         * @param failure the cause of the failure, or null if the response was received
+         */
+        void completed(Request request, Throwable failure);
+    }
 }
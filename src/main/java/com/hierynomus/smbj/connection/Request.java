@@ -18,9 +18,11 @@ package com.hierynomus.smbj.connection;
 import com.hierynomus.mssmb2.SMB2Packet;
 import com.hierynomus.protocol.commons.concurrent.AFuture;
 import com.hierynomus.protocol.commons.concurrent.CancellableFuture;
+import com.hierynomus.protocol.commons.concurrent.HashedWheelTimer;
 import com.hierynomus.protocol.commons.concurrent.Promise;
 import com.hierynomus.smb.SMBPacket;
 import com.hierynomus.smbj.common.SMBRuntimeException;
+import com.hierynomus.smbj.tracing.RequestTrace;
 
 import java.util.Date;
 import java.util.UUID;
@@ -32,13 +34,21 @@ public class Request {
     private final long messageId;
     private final UUID cancelId;
     private final Date timestamp;
-    private long asyncId;
+    private final long sendNanos;
+    private RequestTrace trace;
+    private volatile long writeStartNanos;
+    private volatile long serializedNanos;
+    private volatile long writtenNanos;
+    private volatile long asyncId;
+    private volatile HashedWheelTimer.Timeout expiry;
+    private volatile boolean expired;
 
     public Request(SMBPacket<?, ?> packet, long messageId, UUID cancelId) {
         this.packet = packet;
         this.messageId = messageId;
         this.cancelId = cancelId;
         timestamp = new Date();
+        sendNanos = System.nanoTime();
         this.promise = new Promise<>(String.valueOf(messageId), SMBRuntimeException.Wrapper);
     }
 
@@ -50,6 +60,38 @@ public class Request {
         this.asyncId = asyncId;
     }
 
+    /**
+     * [MS-SMB2] 3.2.6.1 Request Expiration Timer
+     */
+    void setExpiry(HashedWheelTimer.Timeout expiry) {
+        this.expiry = expiry;
+    }
+
+    void cancelExpiry() {
+        HashedWheelTimer.Timeout e = expiry;
+        if (e != null) {
+            e.cancel();
+        }
+    }
+
+    /**
+     * Mark the request as expired. The application has been given up on the response, but the request stays
+     * outstanding so that the credits granted by a late response are not lost.
+     *
+     * @return true if the request was not expired before
+     */
+    synchronized boolean expire() {
+        if (expired) {
+            return false;
+        }
+        expired = true;
+        return true;
+    }
+
+    boolean isExpired() {
+        return expired;
+    }
+
     public Promise<SMB2Packet, SMBRuntimeException> getPromise() {
         return promise;
     }
@@ -72,6 +114,53 @@ public class Request {
         return timestamp;
     }
 
+    /**
+     * @return the {@link System#nanoTime()} at which the request was created, right before it was sent
+     */
+    long getSendNanos() {
+        return sendNanos;
+    }
+
+    /**
+     * @return the trace of this request, or null if it is not traced
+     */
+    public RequestTrace getTrace() {
+        return trace;
+    }
+
+    void setTrace(RequestTrace trace) {
+        this.trace = trace;
+    }
+
+    void writeStarted(long nanos) {
+        writeStartNanos = nanos;
+    }
+
+    void serialized(long nanos) {
+        serializedNanos = nanos;
+    }
+
+    void written(long nanos) {
+        writtenNanos = nanos;
+    }
+
+    long getSerializedNanos() {
+        return serializedNanos;
+    }
+
+    /**
+     * @return the time the request was written to the transport or, if the response raced the recording of that,
+     * the time it was serialized or handed to the transport
+     */
+    public long getSentNanos() {
+        long written = writtenNanos;
+        if (written != 0) {
+            return written;
+        }
+        long serialized = serializedNanos;
+        return serialized != 0 ? serialized : writeStartNanos;
+    }
+
     public SMBPacket<?, ?> getPacket() {
         return packet;
     }
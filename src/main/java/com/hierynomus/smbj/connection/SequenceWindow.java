@@ -19,6 +19,7 @@ import com.hierynomus.smbj.common.SMBRuntimeException;
 
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -41,6 +42,7 @@ public class SequenceWindow {
     private AtomicLong lowestAvailable = new AtomicLong(0);
     private Semaphore available = new Semaphore(1);
     private static final long MAX_WAIT = 5000;
+    private final AtomicInteger waiters = new AtomicInteger();
 
     long get() {
         return get(1)[0];
@@ -48,7 +50,7 @@ public class SequenceWindow {
 
     long[] get(int credits) {
         try {
-            if (available.tryAcquire(credits, MAX_WAIT, TimeUnit.MILLISECONDS)) {
+            if (acquire(credits)) {
                 long lowest = lowestAvailable.getAndAdd(credits);
                 return range(lowest, lowest + credits);
             }
@@ -59,6 +61,18 @@ public class SequenceWindow {
         throw new SMBRuntimeException("Not enough credits (" + available.availablePermits() + " available) to hand out " + credits + " sequence numbers");
     }
 
+    private boolean acquire(int credits) throws InterruptedException {
+        if (available.tryAcquire(credits)) {
+            return true;
+        }
+        waiters.incrementAndGet();
+        try {
+            return available.tryAcquire(credits, MAX_WAIT, TimeUnit.MILLISECONDS);
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
     void disableCredits() {
         this.available = new NoopSemaphore();
     }
@@ -67,6 +81,13 @@ public class SequenceWindow {
         return available.availablePermits();
     }
 
+    /**
+     * @return the number of threads waiting for credits to be granted
+     */
+    public int waiters() {
+        return waiters.get();
+    }
+
     public void creditsGranted(int credits) {
         available.release(credits);
     }
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.connection.packet;
+
+import com.hierynomus.smbj.tracing.RequestTrace;
+import com.hierynomus.smbj.tracing.TraceStage;
+
+/**
+ * The timings of the packet that is currently being handled by the {@link IncomingPacketHandler} chain of a connection,
+ * reported to the {@link RequestTrace} of the request once the response has been matched to it.
+ * <p/>
+ * The chain runs on the single packet reader thread of the connection, so this is not thread-safe. When tracing is
+ * disabled, no timings are taken.
+ */
+public class IncomingPacketTimings {
+    private final boolean enabled;
+    private long receivedNanos;
+    private long decryptStartNanos;
+    private long decryptEndNanos;
+    private long verifyStartNanos;
+    private long verifyEndNanos;
+
+    public IncomingPacketTimings(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * A new packet was received from the transport.
+     */
+    public void received() {
+        if (enabled) {
+            receivedNanos = System.nanoTime();
+            decryptStartNanos = 0;
+            verifyStartNanos = 0;
+        }
+    }
+
+    /**
+     * @return the start time of a stage, or 0 if tracing is disabled
+     */
+    long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    void decrypted(long startNanos) {
+        if (enabled) {
+            decryptStartNanos = startNanos;
+            decryptEndNanos = System.nanoTime();
+        }
+    }
+
+    void verified(long startNanos) {
+        if (enabled) {
+            verifyStartNanos = startNanos;
+            verifyEndNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Reports the stages from the moment the request was sent, up until the response was handed to the final handler.
+     *
+     * @param sentNanos the time the request was written, or serialized if writing has not been recorded yet
+     */
+    void reportTo(RequestTrace trace, long sentNanos) {
+        trace.stage(TraceStage.SERVER, Math.min(sentNanos, receivedNanos), receivedNanos);
+        if (decryptStartNanos != 0) {
+            trace.stage(TraceStage.DECRYPT, decryptStartNanos, decryptEndNanos);
+        }
+        if (verifyStartNanos != 0) {
+            trace.stage(TraceStage.VERIFY_SIGNATURE, verifyStartNanos, verifyEndNanos);
+        }
+    }
+}
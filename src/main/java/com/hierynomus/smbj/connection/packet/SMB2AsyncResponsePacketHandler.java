@@ -50,8 +50,8 @@ public class SMB2AsyncResponsePacketHandler extends SMB2PacketHandler {
         // [MS-SMB2] 3.2.5.1.5 Handling Asynchronous Responses
         if (packetData.isIntermediateAsyncResponse()) {
             logger.debug("Received ASYNC packet {} with AsyncId << {} >>", packetData, packetData.getHeader().getAsyncId());
+            // The expiration timer of the request sees the AsyncId and extends itself
             request.setAsyncId(packetData.getHeader().getAsyncId());
-            // TODO expiration timer
             return;
         }
 
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.connection.packet;
+
+import com.hierynomus.mssmb2.SMB2FileId;
+import com.hierynomus.mssmb2.SMB2PacketData;
+import com.hierynomus.protocol.commons.buffer.Buffer;
+import com.hierynomus.protocol.transport.TransportException;
+import com.hierynomus.smb.SMBBuffer;
+import com.hierynomus.smbj.connection.Connection;
+import com.hierynomus.smbj.connection.ConnectionContext;
+import com.hierynomus.smbj.event.OplockBreak;
+import com.hierynomus.smbj.event.SMBEventBus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * [MS-SMB2] 3.2.5.19 Receiving an SMB2 OPLOCK_BREAK Notification
+ * <p>
+ * Oplock and lease break notifications are not a response to a request, so they are not passed on to the response
+ * processing. Oplock breaks are published as an {@link OplockBreak} event, lease breaks are discarded as this client
+ * does not request leases.
+ */
+public class SMB2OplockBreakPacketHandler extends SMB2PacketHandler {
+    private static final Logger logger = LoggerFactory.getLogger(SMB2OplockBreakPacketHandler.class);
+    private static final int OPLOCK_BREAK_STRUCTURE_SIZE = 24;
+
+    private final Connection connection;
+    private final SMBEventBus bus;
+
+    public SMB2OplockBreakPacketHandler(Connection connection, SMBEventBus bus) {
+        this.connection = connection;
+        this.bus = bus;
+    }
+
+    @Override
+    protected void doSMB2Handle(SMB2PacketData packetData) throws TransportException {
+        if (!packetData.isOplockBreakNotification()) {
+            next.handle(packetData);
+            return;
+        }
+
+        try {
+            SMBBuffer buffer = packetData.getDataBuffer();
+            int structureSize = buffer.readUInt16();
+            if (structureSize != OPLOCK_BREAK_STRUCTURE_SIZE) {
+                logger.debug("Discarding lease break notification");
+                return;
+            }
+            int oplockLevel = buffer.readByte() & 0xFF;
+            buffer.skip(1); // Reserved
+            buffer.skip(4); // Reserved2
+            SMB2FileId fileId = SMB2FileId.read(buffer);
+            ConnectionContext context = connection.getConnectionContext();
+            logger.debug("Received oplock break to level {} for {}", oplockLevel, fileId);
+            bus.publish(new OplockBreak(context.getServerName(), context.getServer().getPort(), fileId, oplockLevel));
+        } catch (Buffer.BufferException e) {
+            throw new TransportException("Unable to read SMB2 OPLOCK_BREAK notification", e);
+        }
+    }
+}
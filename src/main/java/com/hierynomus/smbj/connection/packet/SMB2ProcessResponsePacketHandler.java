@@ -22,6 +22,8 @@ import com.hierynomus.protocol.commons.buffer.Buffer;
 import com.hierynomus.protocol.transport.TransportException;
 import com.hierynomus.smbj.connection.OutstandingRequests;
 import com.hierynomus.smbj.connection.Request;
+import com.hierynomus.smbj.tracing.RequestTrace;
+import com.hierynomus.smbj.tracing.TraceStage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,16 +46,20 @@ public class SMB2ProcessResponsePacketHandler extends SMB2PacketHandler {
     private static final Logger logger = LoggerFactory.getLogger(SMB2ProcessResponsePacketHandler.class);
     private final SMB2MessageConverter smb2Converter;
     private final OutstandingRequests outstandingRequests;
+    private final IncomingPacketTimings timings;
 
-    public SMB2ProcessResponsePacketHandler(SMB2MessageConverter smb2Converter, OutstandingRequests outstandingRequests) {
+    public SMB2ProcessResponsePacketHandler(SMB2MessageConverter smb2Converter, OutstandingRequests outstandingRequests, IncomingPacketTimings timings) {
         this.smb2Converter = smb2Converter;
         this.outstandingRequests = outstandingRequests;
+        this.timings = timings;
     }
 
     @Override
     protected void doSMB2Handle(SMB2PacketData packetData) throws TransportException {
         Request request = outstandingRequests.getRequestByMessageId(packetData.getHeader().getMessageId());
 
+        RequestTrace trace = request.getTrace();
+        long deserializeStart = trace != null ? System.nanoTime() : 0;
         SMB2Packet packet = null;
         try {
             packet = smb2Converter.readPacket(request.getPacket(), packetData);
@@ -63,6 +69,14 @@ public class SMB2ProcessResponsePacketHandler extends SMB2PacketHandler {
             throw new TransportException("Unable to deserialize SMB2 Packet Data.", e);
         }
 
+        long deliverStart = trace != null ? System.nanoTime() : 0;
         outstandingRequests.receivedResponseFor(packet.getHeader().getMessageId()).getPromise().deliver(packet);
+        if (trace != null) {
+            long end = System.nanoTime();
+            timings.reportTo(trace, request.getSentNanos());
+            trace.stage(TraceStage.DESERIALIZE, deserializeStart, deliverStart);
+            trace.stage(TraceStage.DELIVER, deliverStart, end);
+            trace.responded(packet.getHeader().getStatusCode(), end);
+        }
     }
 }
@@ -68,10 +68,12 @@ public class SMB2SignatureVerificationPacketHandler extends SMB2PacketHandler {
     private static final Logger logger = LoggerFactory.getLogger(SMB2SignatureVerificationPacketHandler.class);
     private SessionTable sessionTable;
     private PacketSignatory signatory;
+    private IncomingPacketTimings timings;
 
-    public SMB2SignatureVerificationPacketHandler(SessionTable sessionTable, PacketSignatory signatory) {
+    public SMB2SignatureVerificationPacketHandler(SessionTable sessionTable, PacketSignatory signatory, IncomingPacketTimings timings) {
         this.sessionTable = sessionTable;
         this.signatory = signatory;
+        this.timings = timings;
     }
 
     @Override
@@ -103,7 +105,10 @@ public class SMB2SignatureVerificationPacketHandler extends SMB2PacketHandler {
                 return;
             }
 
-            if (signatory.verify(packetData, session.getSigningKey(packetData.getHeader(), false))) {
+            long verifyStart = timings.start();
+            boolean verified = signatory.verify(packetData, session.getSigningKey(packetData.getHeader(), false));
+            timings.verified(verifyStart);
+            if (verified) {
                 logger.debug("Signature for packet {} verified.", packetData);
                 next.handle(packetData);
                 return;
@@ -86,10 +86,12 @@ public class SMB3DecryptingPacketHandler extends AbstractIncomingPacketHandler {
     private static final Logger logger = LoggerFactory.getLogger(SMB3DecryptingPacketHandler.class);
     private SessionTable sessionTable;
     private PacketEncryptor encryptor;
+    private IncomingPacketTimings timings;
 
-    public SMB3DecryptingPacketHandler(SessionTable sessionTable, PacketEncryptor encryptor) {
+    public SMB3DecryptingPacketHandler(SessionTable sessionTable, PacketEncryptor encryptor, IncomingPacketTimings timings) {
         this.sessionTable = sessionTable;
         this.encryptor = encryptor;
+        this.timings = timings;
     }
 
     @Override
@@ -114,7 +116,9 @@ public class SMB3DecryptingPacketHandler extends AbstractIncomingPacketHandler {
             return;
         }
 
+        long decryptStart = timings.start();
         byte[] decrypted = encryptor.decrypt(data, session.getSessionContext().getDecryptionKey());
+        timings.decrypted(decryptStart);
 
         byte[] decryptedProtocolId = Arrays.copyOf(decrypted, 4);
         if (SMB2TransformHeader.isEncrypted(decryptedProtocolId)) {
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.event;
+
+/**
+ * Published when the {@link com.hierynomus.smbj.SMBClient} establishes a new connection to a server after its previous
+ * connection to that server was closed.
+ */
+public class ConnectionReestablished implements SMBEvent {
+    private final String hostname;
+    private final int port;
+
+    public ConnectionReestablished(String hostname, int port) {
+        this.hostname = hostname;
+        this.port = port;
+    }
+
+    public String getHostname() {
+        return hostname;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionReestablished{hostname='" + hostname + "', port=" + port + '}';
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.event;
+
+/**
+ * Published when a request has to wait for the server to grant credits before it can be sent. Frequent starvation
+ * means that the server grants fewer credits than the client wants to have in flight.
+ */
+public class CreditStarvation implements SMBEvent {
+    private final String hostname;
+    private final int port;
+    private final int requestedCredits;
+    private final int availableCredits;
+
+    public CreditStarvation(String hostname, int port, int requestedCredits, int availableCredits) {
+        this.hostname = hostname;
+        this.port = port;
+        this.requestedCredits = requestedCredits;
+        this.availableCredits = availableCredits;
+    }
+
+    public String getHostname() {
+        return hostname;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public int getRequestedCredits() {
+        return requestedCredits;
+    }
+
+    public int getAvailableCredits() {
+        return availableCredits;
+    }
+
+    @Override
+    public String toString() {
+        return "CreditStarvation{hostname='" + hostname + "', port=" + port + ", requestedCredits=" + requestedCredits + ", availableCredits=" + availableCredits + '}';
+    }
+}
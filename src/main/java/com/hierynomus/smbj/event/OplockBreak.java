@@ -0,0 +1,61 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.event;
+
+import com.hierynomus.mssmb2.SMB2FileId;
+
+/**
+ * [MS-SMB2] 2.2.23.1 Oplock Break Notification
+ * <p>
+ * Published when the server notifies the client that the oplock on an open has been broken to a lower level.
+ */
+public class OplockBreak implements SMBEvent {
+    private final String hostname;
+    private final int port;
+    private final SMB2FileId fileId;
+    private final int oplockLevel;
+
+    public OplockBreak(String hostname, int port, SMB2FileId fileId, int oplockLevel) {
+        this.hostname = hostname;
+        this.port = port;
+        this.fileId = fileId;
+        this.oplockLevel = oplockLevel;
+    }
+
+    public String getHostname() {
+        return hostname;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public SMB2FileId getFileId() {
+        return fileId;
+    }
+
+    /**
+     * @return the oplock level the open was broken to
+     */
+    public int getOplockLevel() {
+        return oplockLevel;
+    }
+
+    @Override
+    public String toString() {
+        return "OplockBreak{hostname='" + hostname + "', port=" + port + ", fileId=" + fileId + ", oplockLevel=" + oplockLevel + '}';
+    }
+}
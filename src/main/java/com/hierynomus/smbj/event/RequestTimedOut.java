@@ -0,0 +1,57 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.event;
+
+/**
+ * Published when no response to a request was received within the configured timeout.
+ */
+public class RequestTimedOut implements SMBEvent {
+    private final String hostname;
+    private final String shareName;
+    private final String operation;
+    private final long timeoutMillis;
+
+    public RequestTimedOut(String hostname, String shareName, String operation, long timeoutMillis) {
+        this.hostname = hostname;
+        this.shareName = shareName;
+        this.operation = operation;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public String getHostname() {
+        return hostname;
+    }
+
+    public String getShareName() {
+        return shareName;
+    }
+
+    /**
+     * @return the name of the operation that timed out, e.g. "Read" or "Create"
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "RequestTimedOut{hostname='" + hostname + "', shareName='" + shareName + "', operation='" + operation + "', timeoutMillis=" + timeoutMillis + '}';
+    }
+}
@@ -22,16 +22,45 @@ import net.engio.mbassy.bus.error.PublicationError;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Our own delegating class to wrap the MBassador event bus. This ensures that we only need to use their annotations
  * throughout the codebase, and can easily switch it out if need be.
+ * <p>
+ * Next to the annotation based subscribers, typed {@link SMBEventListener}s can be registered. Synchronous listeners
+ * are called on the publishing thread, which may be the thread tearing down a connection or reading packets, so they
+ * should return quickly. Asynchronous listeners each get a bounded queue that is drained on the executor of this bus,
+ * so that a slow listener never holds up the publisher. When the queue of a listener is full, new events for that
+ * listener are dropped.
  */
 public class SMBEventBus {
     private static final Logger logger = LoggerFactory.getLogger(SMBEventBus.class);
+    public static final int DEFAULT_ASYNC_QUEUE_CAPACITY = 1024;
 
     private PubSubSupport<SMBEvent> wrappedBus;
+    private final List<Registration<?>> registrations = new CopyOnWriteArrayList<>();
+    private final Executor asyncExecutor;
+    private final int asyncQueueCapacity;
+    private final AtomicLong droppedEvents = new AtomicLong();
 
     public SMBEventBus() {
+        this(ForkJoinPool.commonPool(), DEFAULT_ASYNC_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param asyncExecutor      the executor on which asynchronous listeners are called
+     * @param asyncQueueCapacity the maximum number of pending events per asynchronous listener
+     */
+    public SMBEventBus(Executor asyncExecutor, int asyncQueueCapacity) {
         this(new SyncMessageBus<SMBEvent>(new IPublicationErrorHandler() {
             @Override
             public void handleError(PublicationError error) {
@@ -41,11 +70,20 @@ public class SMBEventBus {
                     logger.error(error.toString());
                 }
             }
-        }));
+        }), asyncExecutor, asyncQueueCapacity);
     }
 
     public SMBEventBus(PubSubSupport<SMBEvent> wrappedBus) {
+        this(wrappedBus, ForkJoinPool.commonPool(), DEFAULT_ASYNC_QUEUE_CAPACITY);
+    }
+
+    public SMBEventBus(PubSubSupport<SMBEvent> wrappedBus, Executor asyncExecutor, int asyncQueueCapacity) {
+        if (asyncQueueCapacity <= 0) {
+            throw new IllegalArgumentException("Async queue capacity must be greater than zero");
+        }
         this.wrappedBus = wrappedBus;
+        this.asyncExecutor = asyncExecutor;
+        this.asyncQueueCapacity = asyncQueueCapacity;
     }
 
     public void subscribe(Object listener) {
@@ -56,7 +94,121 @@ public class SMBEventBus {
         return wrappedBus.unsubscribe(listener);
     }
 
+    /**
+     * Registers a listener that is called on the publishing thread for every event of the given type (or a subtype).
+     */
+    public <E extends SMBEvent> void addListener(Class<E> eventType, SMBEventListener<? super E> listener) {
+        registrations.add(new Registration<>(eventType, listener));
+    }
+
+    /**
+     * Registers a listener that is called on the executor of this bus for every event of the given type (or a
+     * subtype). Events are delivered to the listener one at a time, in the order they were published.
+     */
+    public <E extends SMBEvent> void addAsyncListener(Class<E> eventType, SMBEventListener<? super E> listener) {
+        registrations.add(new AsyncRegistration<>(eventType, listener));
+    }
+
+    /**
+     * Removes all registrations of the listener.
+     *
+     * @return whether the listener was registered
+     */
+    public boolean removeListener(SMBEventListener<?> listener) {
+        boolean removed = false;
+        for (Registration<?> registration : registrations) {
+            if (registration.listener == listener) {
+                removed |= registrations.remove(registration);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * @return the number of events that were not delivered to an asynchronous listener because its queue was full.
+     */
+    public long getDroppedEventCount() {
+        return droppedEvents.get();
+    }
+
     public void publish(SMBEvent message) {
         wrappedBus.publish(message);
+        for (Registration<?> registration : registrations) {
+            registration.offer(message);
+        }
+    }
+
+    private static class Registration<E extends SMBEvent> {
+        final Class<E> eventType;
+        final SMBEventListener<? super E> listener;
+
+        Registration(Class<E> eventType, SMBEventListener<? super E> listener) {
+            this.eventType = eventType;
+            this.listener = listener;
+        }
+
+        void offer(SMBEvent event) {
+            if (eventType.isInstance(event)) {
+                deliver(eventType.cast(event));
+            }
+        }
+
+        void deliver(E event) {
+            dispatch(event);
+        }
+
+        final void dispatch(E event) {
+            try {
+                listener.onEvent(event);
+            } catch (RuntimeException e) {
+                logger.error("Listener {} failed to handle {}", listener, event, e);
+            }
+        }
+    }
+
+    private class AsyncRegistration<E extends SMBEvent> extends Registration<E> implements Runnable {
+        private final BlockingQueue<E> queue = new ArrayBlockingQueue<>(asyncQueueCapacity);
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        AsyncRegistration(Class<E> eventType, SMBEventListener<? super E> listener) {
+            super(eventType, listener);
+        }
+
+        @Override
+        void deliver(E event) {
+            if (!queue.offer(event)) {
+                if (droppedEvents.getAndIncrement() == 0) {
+                    logger.warn("Event queue of listener {} is full, dropping events", listener);
+                } else {
+                    logger.debug("Event queue of listener {} is full, dropping {}", listener, event);
+                }
+                return;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    asyncExecutor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    scheduled.set(false);
+                    logger.warn("Could not dispatch events to listener {}", listener, e);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            E event;
+            while ((event = queue.poll()) != null) {
+                dispatch(event);
+            }
+            scheduled.set(false);
+            // An event may have been queued after the last poll, but before the flag was reset
+            if (!queue.isEmpty()) {
+                schedule();
+            }
+        }
     }
 }
@@ -29,13 +29,14 @@ public abstract class ByteChunkProvider implements Closeable {
     protected int chunkSize = CHUNK_SIZE;
 
     private int lastWriteSize;
+    private byte[] chunk;
 
     public abstract boolean isAvailable();
     public abstract void prepareWrite(int maxBytesToPrepare);
 
     public void writeChunk(OutputStream os) {
         lastWriteSize = 0;
-        byte[] chunk = new byte[chunkSize];
+        byte[] chunk = chunkArray();
         try {
             int size = getChunk(chunk);
             os.write(chunk, 0, size);
@@ -48,11 +49,9 @@ public abstract class ByteChunkProvider implements Closeable {
 
     public void writeChunks(Buffer<?> buffer, int nrChunks) {
         lastWriteSize = 0;
-        byte[] chunk = new byte[chunkSize];
         for (int i = 0; i < nrChunks; i++) {
             try {
-                int size = getChunk(chunk);
-                buffer.putRawBytes(chunk, 0, size);
+                int size = putChunk(buffer);
                 offset += size;
                 lastWriteSize += size;
             } catch (IOException e) {
@@ -63,10 +62,8 @@ public abstract class ByteChunkProvider implements Closeable {
 
     public void writeChunk(Buffer<?> buffer) {
         lastWriteSize = 0;
-        byte[] chunk = new byte[chunkSize];
         try {
-            int size = getChunk(chunk);
-            buffer.putRawBytes(chunk, 0, size);
+            int size = putChunk(buffer);
             offset += size;
             lastWriteSize += size;
         } catch (IOException e) {
@@ -74,6 +71,29 @@ public abstract class ByteChunkProvider implements Closeable {
         }
     }
 
+    /**
+     * Write the next chunk of at most {@link #getChunkSize()} bytes into the buffer.
+     * <p/>
+     * The default implementation reads the chunk through {@link #getChunk(byte[])} and copies it into the buffer.
+     * Providers that can fill the buffer's backing array directly should override this to save the copy.
+     *
+     * @param buffer The buffer to write the chunk to
+     * @return The number of bytes written
+     */
+    protected int putChunk(Buffer<?> buffer) throws IOException {
+        byte[] chunk = chunkArray();
+        int size = getChunk(chunk);
+        buffer.putRawBytes(chunk, 0, size);
+        return size;
+    }
+
+    private byte[] chunkArray() {
+        if (chunk == null || chunk.length != chunkSize) {
+            chunk = new byte[chunkSize];
+        }
+        return chunk;
+    }
+
     public int getChunkSize() {
         return chunkSize;
     }
@@ -15,60 +15,108 @@
  */
 package com.hierynomus.smbj.io;
 
+import com.hierynomus.protocol.commons.buffer.Buffer;
+
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
+/**
+ * Provides the contents of a local file using positional {@link FileChannel} reads.
+ * <p/>
+ * Chunks are read straight into the backing array of the outgoing packet buffer, so no intermediate copies are made,
+ * and starting at an arbitrary position in the file does not require reading (or skipping) the preceding bytes.
+ */
 public class FileByteChunkProvider extends ByteChunkProvider {
 
     private File file;
-    private InputStreamByteChunkProvider underlyingProvider;
+    private FileChannel channel;
+    private long position;
+    private long remaining;
 
     public FileByteChunkProvider(File file) throws IOException {
         this(file, 0);
     }
 
+    /**
+     * Read the file from {@code offset} until the end, writing it at the same offset in the remote file.
+     */
     public FileByteChunkProvider(File file, long offset) throws IOException {
-        this.file = file;
-        FileInputStream fis = new FileInputStream(file);
-        underlyingProvider = new InputStreamByteChunkProvider(fis);
-        ensureSkipped(fis, offset);
-        this.offset = offset;
+        this(file, offset, -1, offset);
     }
 
-    private void ensureSkipped(final FileInputStream fis, final long offset) throws IOException {
-        long skipped = 0;
-        while (skipped < offset && fis.available() > 0) {
-            skipped += fis.skip(offset);
-        }
-
-        if (skipped < offset) {
-            throw new IOException("Was unable to go to the requested offset of " + offset + " of file " + file);
+    /**
+     * Read {@code length} bytes of the file from {@code position}, writing them at {@code fileOffset} in the remote file.
+     *
+     * @param file       The local file
+     * @param position   The position in the local file to start reading from
+     * @param length     The number of bytes to read, or -1 to read until the end of the file
+     * @param fileOffset The offset in the remote file to start writing at
+     */
+    public FileByteChunkProvider(File file, long position, long length, long fileOffset) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        long size = channel.size();
+        if (position < 0 || position > size) {
+            channel.close();
+            throw new IOException("Was unable to go to the requested offset of " + position + " of file " + file);
         }
+        this.position = position;
+        this.remaining = length < 0 ? size - position : Math.min(length, size - position);
+        this.offset = fileOffset;
     }
 
     @Override
     public void prepareWrite(int maxBytesToPrepare) {
-        underlyingProvider.prepareWrite(maxBytesToPrepare);
+        // Chunks are read on demand from the channel, nothing to prepare
     }
 
     @Override
     protected int getChunk(byte[] chunk) throws IOException {
-        return underlyingProvider.getChunk(chunk);
+        return read(ByteBuffer.wrap(chunk, 0, (int) Math.min(chunk.length, remaining)));
+    }
+
+    @Override
+    protected int putChunk(Buffer<?> buffer) throws IOException {
+        int toRead = (int) Math.min(chunkSize, remaining);
+        buffer.ensureCapacity(toRead);
+        int wpos = buffer.wpos();
+        int read = read(ByteBuffer.wrap(buffer.array(), wpos, toRead));
+        buffer.wpos(wpos + read);
+        return read;
+    }
+
+    private int read(ByteBuffer target) throws IOException {
+        int total = 0;
+        while (target.hasRemaining()) {
+            int read = channel.read(target, position);
+            if (read < 0) {
+                // File was truncated underneath us, nothing more to send
+                remaining = 0;
+                break;
+            }
+            position += read;
+            remaining -= read;
+            total += read;
+        }
+        return total;
     }
 
     @Override
     public int bytesLeft() {
-        return underlyingProvider.bytesLeft();
+        return (int) Math.min(remaining, Integer.MAX_VALUE);
     }
 
     @Override
     public boolean isAvailable() {
-        return underlyingProvider.isAvailable();
+        return remaining > 0;
     }
 
     @Override
     public void close() throws IOException {
-        underlyingProvider.close();
+        channel.close();
     }
+
 }
@@ -0,0 +1,36 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.metrics;
+
+/**
+ * The live state of a connection, to be sampled by a {@link SmbMetrics} implementation.
+ */
+public interface ConnectionGauges {
+    /**
+     * @return the number of credits that the server granted and that have not been used yet
+     */
+    int getCreditsAvailable();
+
+    /**
+     * @return the number of threads waiting to send a request, because not enough credits are available
+     */
+    int getCreditWaiters();
+
+    /**
+     * @return the number of requests that have been sent, but have not received a response yet
+     */
+    int getOutstandingRequests();
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.metrics;
+
+import com.hierynomus.mssmb2.SMB2MessageCommandCode;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link SmbMetrics} implementation that keeps the measurements in memory, to be read by the application (e.g. to
+ * expose them over JMX or log them periodically).
+ * <p/>
+ * Latencies are kept per command over all servers, the counters per server.
+ */
+public class InMemorySmbMetrics implements SmbMetrics {
+    private final Map<SMB2MessageCommandCode, LatencyHistogram> latencies = new EnumMap<>(SMB2MessageCommandCode.class);
+    private final Map<SMB2MessageCommandCode, LongAdder> failures = new EnumMap<>(SMB2MessageCommandCode.class);
+    private final ConcurrentMap<String, ServerMetrics> servers = new ConcurrentHashMap<>();
+
+    public InMemorySmbMetrics() {
+        // Fill the maps up front, so that they are only read afterwards and need no synchronization
+        for (SMB2MessageCommandCode command : SMB2MessageCommandCode.values()) {
+            latencies.put(command, new LatencyHistogram());
+            failures.put(command, new LongAdder());
+        }
+    }
+
+    @Override
+    public void connectionOpened(String server, ConnectionGauges gauges) {
+        serverMetrics(server).gauges = gauges;
+    }
+
+    @Override
+    public void connectionClosed(String server) {
+        serverMetrics(server).gauges = null;
+    }
+
+    @Override
+    public void connectionReestablished(String server) {
+        serverMetrics(server).reconnects.increment();
+    }
+
+    @Override
+    public void requestCompleted(String server, SMB2MessageCommandCode command, long latencyNanos) {
+        latencies.get(command).record(latencyNanos);
+    }
+
+    @Override
+    public void requestFailed(String server, SMB2MessageCommandCode command, long latencyNanos) {
+        failures.get(command).increment();
+    }
+
+    @Override
+    public void requestTimedOut(String server, String operation) {
+        serverMetrics(server).timeouts.increment();
+    }
+
+    @Override
+    public void bytesSent(String server, long bytes) {
+        serverMetrics(server).bytesSent.add(bytes);
+    }
+
+    @Override
+    public void bytesReceived(String server, long bytes) {
+        serverMetrics(server).bytesReceived.add(bytes);
+    }
+
+    /**
+     * @return the latencies of the requests of the given command that received a response
+     */
+    public LatencyHistogram getLatency(SMB2MessageCommandCode command) {
+        return latencies.get(command);
+    }
+
+    /**
+     * @return the number of requests of the given command that failed because the connection failed
+     */
+    public long getFailures(SMB2MessageCommandCode command) {
+        return failures.get(command).sum();
+    }
+
+    /**
+     * @return the servers for which measurements were recorded
+     */
+    public Set<String> getServers() {
+        return Collections.unmodifiableSet(servers.keySet());
+    }
+
+    /**
+     * @return the measurements for the server, or null if nothing was recorded for it
+     */
+    public ServerMetrics getServerMetrics(String server) {
+        return servers.get(server);
+    }
+
+    private ServerMetrics serverMetrics(String server) {
+        ServerMetrics metrics = servers.get(server);
+        if (metrics == null) {
+            ServerMetrics created = new ServerMetrics();
+            metrics = servers.putIfAbsent(server, created);
+            if (metrics == null) {
+                metrics = created;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * The counters and gauges of a single server.
+     */
+    public static class ServerMetrics {
+        private final LongAdder bytesSent = new LongAdder();
+        private final LongAdder bytesReceived = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+        private final LongAdder reconnects = new LongAdder();
+        private volatile ConnectionGauges gauges;
+
+        public long getBytesSent() {
+            return bytesSent.sum();
+        }
+
+        public long getBytesReceived() {
+            return bytesReceived.sum();
+        }
+
+        public long getTimeouts() {
+            return timeouts.sum();
+        }
+
+        public long getReconnects() {
+            return reconnects.sum();
+        }
+
+        /**
+         * @return the live values of the current connection to the server, or null if it is not connected
+         */
+        public ConnectionGauges getGauges() {
+            return gauges;
+        }
+    }
+}
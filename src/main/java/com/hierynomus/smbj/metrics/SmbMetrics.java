@@ -0,0 +1,83 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.metrics;
+
+import com.hierynomus.mssmb2.SMB2MessageCommandCode;
+
+/**
+ * Receives the client-side performance measurements of the library. Configure an implementation through
+ * {@link com.hierynomus.smbj.SmbConfig.Builder#withMetrics(SmbMetrics)} to bridge them to a metrics library of choice;
+ * {@link InMemorySmbMetrics} keeps them in memory.
+ * <p/>
+ * The methods are called on the threads doing the I/O, including the packet reader thread, so implementations should be
+ * cheap and must not block. All methods have an empty default implementation, so an implementation only needs to
+ * override the measurements it is interested in.
+ * <p/>
+ * The {@code server} parameter is the hostname of the server, as it was passed to
+ * {@link com.hierynomus.smbj.SMBClient#connect(String)}.
+ */
+public interface SmbMetrics {
+    /**
+     * Does not record anything; the default.
+     */
+    SmbMetrics NOOP = new SmbMetrics() {
+    };
+
+    /**
+     * A connection to the server has been established.
+     *
+     * @param gauges the live values of the connection, valid until {@link #connectionClosed(String)}
+     */
+    default void connectionOpened(String server, ConnectionGauges gauges) {
+    }
+
+    default void connectionClosed(String server) {
+    }
+
+    /**
+     * A connection to the server was established again after an earlier connection to it was closed.
+     */
+    default void connectionReestablished(String server) {
+    }
+
+    /**
+     * A response was received for a request.
+     *
+     * @param latencyNanos the time between sending the request and receiving its (final) response
+     */
+    default void requestCompleted(String server, SMB2MessageCommandCode command, long latencyNanos) {
+    }
+
+    /**
+     * A request failed without receiving a response, because the connection failed.
+     */
+    default void requestFailed(String server, SMB2MessageCommandCode command, long latencyNanos) {
+    }
+
+    /**
+     * No response was received within the configured timeout.
+     *
+     * @param operation the name of the operation that timed out, e.g. "Read" or "Create"
+     */
+    default void requestTimedOut(String server, String operation) {
+    }
+
+    default void bytesSent(String server, long bytes) {
+    }
+
+    default void bytesReceived(String server, long bytes) {
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.nio;
+
+import com.hierynomus.msfscc.fileinformation.FileIdBothDirectoryInformation;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.smbj.share.Directory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Streams the entries of a remote directory as they are returned by the server, rather than listing the whole
+ * directory up front. The attributes of each entry are put in the file system's attribute cache.
+ */
+class SmbDirectoryStream implements DirectoryStream<Path> {
+    private final SmbFilePath dir;
+    private final Directory directory;
+    private final Filter<? super Path> filter;
+    private boolean iteratorReturned;
+    private volatile boolean closed;
+
+    SmbDirectoryStream(SmbFilePath dir, Directory directory, Filter<? super Path> filter) {
+        this.dir = dir;
+        this.directory = directory;
+        this.filter = filter;
+    }
+
+    @Override
+    public synchronized Iterator<Path> iterator() {
+        if (closed) {
+            throw new IllegalStateException("Directory stream for " + dir + " is closed");
+        }
+        if (iteratorReturned) {
+            throw new IllegalStateException("Directory stream for " + dir + " can only be iterated once");
+        }
+        iteratorReturned = true;
+        final Iterator<FileIdBothDirectoryInformation> entries = directory.iterator(FileIdBothDirectoryInformation.class);
+        return new Iterator<Path>() {
+            private Path next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null && !closed) {
+                    next = advance();
+                }
+                return next != null;
+            }
+
+            @Override
+            public Path next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Path result = next;
+                next = null;
+                return result;
+            }
+
+            private Path advance() {
+                try {
+                    while (entries.hasNext()) {
+                        FileIdBothDirectoryInformation entry = entries.next();
+                        String name = entry.getFileName();
+                        if (".".equals(name) || "..".equals(name)) {
+                            continue;
+                        }
+                        SmbFilePath child = dir.resolve(name);
+                        dir.getFileSystem().cache(child.toAbsolutePath(), SmbFileAttributes.of(entry));
+                        if (filter == null || filter.accept(child)) {
+                            return child;
+                        }
+                    }
+                    return null;
+                } catch (IOException e) {
+                    throw new DirectoryIteratorException(e);
+                } catch (SMBApiException e) {
+                    throw new DirectoryIteratorException(SmbFileSystem.translate(e, dir, null));
+                }
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            directory.closeSilently();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.nio;
+
+import com.hierynomus.msfscc.FileAttributes;
+import com.hierynomus.msfscc.fileinformation.FileBasicInformation;
+
+import java.io.IOException;
+import java.nio.file.attribute.DosFileAttributeView;
+import java.nio.file.attribute.FileTime;
+
+import static com.hierynomus.msfscc.FileAttributes.*;
+import static com.hierynomus.msfscc.fileinformation.FileBasicInformation.DONT_SET;
+
+/**
+ * Attribute view for the {@code basic} and {@code dos} views; updates are sent as a {@link FileBasicInformation}.
+ */
+class SmbFileAttributeView implements DosFileAttributeView {
+    private final SmbFilePath path;
+    private final String name;
+
+    SmbFileAttributeView(SmbFilePath path, String name) {
+        this.path = path;
+        this.name = name;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public SmbFileAttributes readAttributes() throws IOException {
+        return path.getFileSystem().readAttributes(path);
+    }
+
+    @Override
+    public void setTimes(FileTime lastModifiedTime, FileTime lastAccessTime, FileTime createTime) throws IOException {
+        path.getFileSystem().setBasicInformation(path, new FileBasicInformation(SmbFileAttributes.toSmbTime(createTime),
+            SmbFileAttributes.toSmbTime(lastAccessTime), SmbFileAttributes.toSmbTime(lastModifiedTime), DONT_SET, 0));
+    }
+
+    @Override
+    public void setReadOnly(boolean value) throws IOException {
+        setAttribute(FILE_ATTRIBUTE_READONLY, value);
+    }
+
+    @Override
+    public void setHidden(boolean value) throws IOException {
+        setAttribute(FILE_ATTRIBUTE_HIDDEN, value);
+    }
+
+    @Override
+    public void setSystem(boolean value) throws IOException {
+        setAttribute(FILE_ATTRIBUTE_SYSTEM, value);
+    }
+
+    @Override
+    public void setArchive(boolean value) throws IOException {
+        setAttribute(FILE_ATTRIBUTE_ARCHIVE, value);
+    }
+
+    private void setAttribute(FileAttributes attribute, boolean value) throws IOException {
+        SmbFileSystem fileSystem = path.getFileSystem();
+        fileSystem.invalidate(path);
+        long current = fileSystem.readAttributes(path).getFileAttributes();
+        long updated = value ? current | attribute.getValue() : current & ~attribute.getValue();
+        if (updated == current) {
+            return;
+        }
+        if (updated == 0) {
+            // A value of 0 means 'do not change' on the wire
+            updated = FILE_ATTRIBUTE_NORMAL.getValue();
+        }
+        fileSystem.setBasicInformation(path, new FileBasicInformation(DONT_SET, DONT_SET, DONT_SET, DONT_SET, updated));
+    }
+}
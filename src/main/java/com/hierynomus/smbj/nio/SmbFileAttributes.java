@@ -0,0 +1,171 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.nio;
+
+import com.hierynomus.msfscc.FileAttributes;
+import com.hierynomus.msfscc.fileinformation.FileAllInformation;
+import com.hierynomus.msfscc.fileinformation.FileBasicInformation;
+import com.hierynomus.msfscc.fileinformation.FileIdBothDirectoryInformation;
+
+import java.nio.file.attribute.DosFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.hierynomus.msfscc.FileAttributes.*;
+import static com.hierynomus.protocol.commons.EnumWithValue.EnumUtils.isSet;
+
+/**
+ * The attributes of a file or directory on an SMB share, as returned by the server in either a
+ * {@link FileAllInformation} query or a {@link FileIdBothDirectoryInformation} directory entry.
+ */
+public class SmbFileAttributes implements DosFileAttributes {
+    static final SmbFileAttributes ROOT = new SmbFileAttributes(0, 0, 0, 0, FILE_ATTRIBUTE_DIRECTORY.getValue(), 0);
+
+    private final long creationTime;
+    private final long lastAccessTime;
+    private final long lastWriteTime;
+    private final long size;
+    private final long fileAttributes;
+    private final long fileId;
+
+    private SmbFileAttributes(long creationTime, long lastAccessTime, long lastWriteTime, long size, long fileAttributes, long fileId) {
+        this.creationTime = creationTime;
+        this.lastAccessTime = lastAccessTime;
+        this.lastWriteTime = lastWriteTime;
+        this.size = size;
+        this.fileAttributes = fileAttributes;
+        this.fileId = fileId;
+    }
+
+    static SmbFileAttributes of(FileAllInformation info) {
+        FileBasicInformation basic = info.getBasicInformation();
+        return new SmbFileAttributes(basic.getCreationTime().toEpochMillis(), basic.getLastAccessTime().toEpochMillis(),
+            basic.getLastWriteTime().toEpochMillis(), info.getStandardInformation().getEndOfFile(), basic.getFileAttributes(),
+            info.getInternalInformation().getIndexNumber());
+    }
+
+    static SmbFileAttributes of(FileIdBothDirectoryInformation info) {
+        return new SmbFileAttributes(info.getCreationTime().toEpochMillis(), info.getLastAccessTime().toEpochMillis(),
+            info.getLastWriteTime().toEpochMillis(), info.getEndOfFile(), info.getFileAttributes(), info.getFileId());
+    }
+
+    @Override
+    public FileTime lastModifiedTime() {
+        return FileTime.fromMillis(lastWriteTime);
+    }
+
+    @Override
+    public FileTime lastAccessTime() {
+        return FileTime.fromMillis(lastAccessTime);
+    }
+
+    @Override
+    public FileTime creationTime() {
+        return FileTime.fromMillis(creationTime);
+    }
+
+    @Override
+    public boolean isRegularFile() {
+        return !isDirectory() && !isSymbolicLink();
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return is(FILE_ATTRIBUTE_DIRECTORY);
+    }
+
+    /**
+     * Reparse points are reported as symbolic links, as that is what they are in practically all cases.
+     */
+    @Override
+    public boolean isSymbolicLink() {
+        return is(FILE_ATTRIBUTE_REPARSE_POINT) && !isDirectory();
+    }
+
+    @Override
+    public boolean isOther() {
+        return false;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return The server's file index number, which is unique per file on a share (if the server supports it).
+     */
+    @Override
+    public Long fileKey() {
+        return fileId == 0 ? null : fileId;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return is(FILE_ATTRIBUTE_READONLY);
+    }
+
+    @Override
+    public boolean isHidden() {
+        return is(FILE_ATTRIBUTE_HIDDEN);
+    }
+
+    @Override
+    public boolean isArchive() {
+        return is(FILE_ATTRIBUTE_ARCHIVE);
+    }
+
+    @Override
+    public boolean isSystem() {
+        return is(FILE_ATTRIBUTE_SYSTEM);
+    }
+
+    /**
+     * @return The raw MS-FSCC file attributes
+     */
+    public long getFileAttributes() {
+        return fileAttributes;
+    }
+
+    private boolean is(FileAttributes attribute) {
+        return isSet(fileAttributes, attribute);
+    }
+
+    Map<String, Object> toMap(String view) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("lastModifiedTime", lastModifiedTime());
+        map.put("lastAccessTime", lastAccessTime());
+        map.put("creationTime", creationTime());
+        map.put("size", size());
+        map.put("isRegularFile", isRegularFile());
+        map.put("isDirectory", isDirectory());
+        map.put("isSymbolicLink", isSymbolicLink());
+        map.put("isOther", isOther());
+        map.put("fileKey", fileKey());
+        if ("dos".equals(view)) {
+            map.put("readonly", isReadOnly());
+            map.put("hidden", isHidden());
+            map.put("archive", isArchive());
+            map.put("system", isSystem());
+        }
+        return map;
+    }
+
+    static com.hierynomus.msdtyp.FileTime toSmbTime(FileTime time) {
+        return time == null ? FileBasicInformation.DONT_SET : com.hierynomus.msdtyp.FileTime.ofEpochMillis(time.toMillis());
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.nio;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A {@link Path} on a {@link SmbFileSystem}.
+ * <p/>
+ * Absolute paths have the form {@code /share/dir/file}: the first name element is the share name and the remaining
+ * elements form the path on that share. The root {@code /} itself represents the server.
+ */
+public class SmbFilePath implements Path {
+    private static final String[] EMPTY = new String[0];
+
+    private final SmbFileSystem fileSystem;
+    private final boolean absolute;
+    private final String[] names;
+
+    SmbFilePath(SmbFileSystem fileSystem, String path) {
+        this(fileSystem, path.startsWith("/") || path.startsWith("\\"), split(path));
+    }
+
+    private SmbFilePath(SmbFileSystem fileSystem, boolean absolute, String[] names) {
+        this.fileSystem = fileSystem;
+        this.absolute = absolute;
+        this.names = names;
+    }
+
+    private static String[] split(String path) {
+        List<String> names = new ArrayList<>();
+        for (String name : path.split("[/\\\\]")) {
+            if (!name.isEmpty()) {
+                names.add(name);
+            }
+        }
+        return names.toArray(EMPTY);
+    }
+
+    /**
+     * @return The name of the share this (absolute) path is on, or {@code null} for the root.
+     */
+    String getShareName() {
+        checkAbsolute();
+        return names.length > 0 ? names[0] : null;
+    }
+
+    /**
+     * @return The path relative to the share root, in the form expected by {@link com.hierynomus.smbj.share.DiskShare}.
+     */
+    String getSharePath() {
+        checkAbsolute();
+        StringBuilder b = new StringBuilder();
+        for (int i = 1; i < names.length; i++) {
+            if (i > 1) {
+                b.append('\\');
+            }
+            b.append(names[i]);
+        }
+        return b.toString();
+    }
+
+    boolean isOnSameShare(SmbFilePath other) {
+        return fileSystem == other.fileSystem && names.length > 0 && other.names.length > 0 && names[0].equalsIgnoreCase(other.names[0]);
+    }
+
+    private void checkAbsolute() {
+        if (!absolute) {
+            throw new IllegalStateException("Path " + this + " is not absolute");
+        }
+    }
+
+    @Override
+    public SmbFileSystem getFileSystem() {
+        return fileSystem;
+    }
+
+    @Override
+    public boolean isAbsolute() {
+        return absolute;
+    }
+
+    @Override
+    public SmbFilePath getRoot() {
+        return absolute ? new SmbFilePath(fileSystem, true, EMPTY) : null;
+    }
+
+    @Override
+    public SmbFilePath getFileName() {
+        return names.length == 0 ? null : new SmbFilePath(fileSystem, false, new String[]{names[names.length - 1]});
+    }
+
+    @Override
+    public SmbFilePath getParent() {
+        if (names.length == 0 || (names.length == 1 && !absolute)) {
+            return null;
+        }
+        return new SmbFilePath(fileSystem, absolute, Arrays.copyOf(names, names.length - 1));
+    }
+
+    @Override
+    public int getNameCount() {
+        return names.length;
+    }
+
+    @Override
+    public SmbFilePath getName(int index) {
+        return subpath(index, index + 1);
+    }
+
+    @Override
+    public SmbFilePath subpath(int beginIndex, int endIndex) {
+        if (beginIndex < 0 || endIndex > names.length || beginIndex >= endIndex) {
+            throw new IllegalArgumentException("Invalid subpath [" + beginIndex + ", " + endIndex + ") of " + this);
+        }
+        return new SmbFilePath(fileSystem, false, Arrays.copyOfRange(names, beginIndex, endIndex));
+    }
+
+    @Override
+    public boolean startsWith(Path other) {
+        if (!(other instanceof SmbFilePath)) {
+            return false;
+        }
+        SmbFilePath o = (SmbFilePath) other;
+        if (o.fileSystem != fileSystem || o.absolute != absolute || o.names.length > names.length) {
+            return false;
+        }
+        for (int i = 0; i < o.names.length; i++) {
+            if (!names[i].equals(o.names[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean startsWith(String other) {
+        return startsWith(fileSystem.getPath(other));
+    }
+
+    @Override
+    public boolean endsWith(Path other) {
+        if (!(other instanceof SmbFilePath)) {
+            return false;
+        }
+        SmbFilePath o = (SmbFilePath) other;
+        if (o.fileSystem != fileSystem || o.names.length > names.length || (o.absolute && !equals(o))) {
+            return false;
+        }
+        int offset = names.length - o.names.length;
+        for (int i = 0; i < o.names.length; i++) {
+            if (!names[offset + i].equals(o.names[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean endsWith(String other) {
+        return endsWith(fileSystem.getPath(other));
+    }
+
+    @Override
+    public SmbFilePath normalize() {
+        List<String> normalized = new ArrayList<>(names.length);
+        for (String name : names) {
+            if (".".equals(name)) {
+                continue;
+            }
+            if ("..".equals(name) && !normalized.isEmpty() && !"..".equals(normalized.get(normalized.size() - 1))) {
+                normalized.remove(normalized.size() - 1);
+            } else if (!"..".equals(name) || !absolute) {
+                normalized.add(name);
+            }
+        }
+        return new SmbFilePath(fileSystem, absolute, normalized.toArray(EMPTY));
+    }
+
+    @Override
+    public SmbFilePath resolve(Path other) {
+        SmbFilePath o = checkPath(other);
+        if (o.absolute) {
+            return o;
+        }
+        String[] resolved = Arrays.copyOf(names, names.length + o.names.length);
+        System.arraycopy(o.names, 0, resolved, names.length, o.names.length);
+        return new SmbFilePath(fileSystem, absolute, resolved);
+    }
+
+    @Override
+    public SmbFilePath resolve(String other) {
+        return resolve(fileSystem.getPath(other));
+    }
+
+    @Override
+    public Path resolveSibling(Path other) {
+        SmbFilePath parent = getParent();
+        return parent == null ? checkPath(other) : parent.resolve(other);
+    }
+
+    @Override
+    public Path resolveSibling(String other) {
+        return resolveSibling(fileSystem.getPath(other));
+    }
+
+    @Override
+    public SmbFilePath relativize(Path other) {
+        SmbFilePath o = checkPath(other);
+        if (o.absolute != absolute) {
+            throw new IllegalArgumentException("Cannot relativize " + other + " against " + this);
+        }
+        int common = 0;
+        while (common < names.length && common < o.names.length && names[common].equals(o.names[common])) {
+            common++;
+        }
+        List<String> relative = new ArrayList<>();
+        for (int i = common; i < names.length; i++) {
+            relative.add("..");
+        }
+        relative.addAll(Arrays.asList(o.names).subList(common, o.names.length));
+        return new SmbFilePath(fileSystem, false, relative.toArray(EMPTY));
+    }
+
+    @Override
+    public URI toUri() {
+        try {
+            return new URI(SmbFileSystemProvider.SCHEME, null, fileSystem.getHostname(), fileSystem.getPort() == SmbFileSystem.DEFAULT_PORT ? -1 : fileSystem.getPort(),
+                toAbsolutePath().toString(), null, null);
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("Cannot create URI for " + this, e);
+        }
+    }
+
+    @Override
+    public SmbFilePath toAbsolutePath() {
+        return absolute ? this : new SmbFilePath(fileSystem, true, names);
+    }
+
+    @Override
+    public SmbFilePath toRealPath(LinkOption... options) throws IOException {
+        SmbFilePath real = toAbsolutePath().normalize();
+        fileSystem.provider().checkAccess(real);
+        return real;
+    }
+
+    @Override
+    public File toFile() {
+        throw new UnsupportedOperationException("SMB paths cannot be converted to java.io.File");
+    }
+
+    @Override
+    public WatchKey register(WatchService watcher, WatchEvent.Kind<?>[] events, WatchEvent.Modifier... modifiers) {
+        throw new UnsupportedOperationException("Watching SMB paths is not supported");
+    }
+
+    @Override
+    public WatchKey register(WatchService watcher, WatchEvent.Kind<?>... events) {
+        return register(watcher, events, new WatchEvent.Modifier[0]);
+    }
+
+    @Override
+    public Iterator<Path> iterator() {
+        List<Path> elements = new ArrayList<>(names.length);
+        for (int i = 0; i < names.length; i++) {
+            elements.add(getName(i));
+        }
+        return elements.iterator();
+    }
+
+    @Override
+    public int compareTo(Path other) {
+        return toString().compareTo(checkPath(other).toString());
+    }
+
+    private SmbFilePath checkPath(Path other) {
+        if (!(other instanceof SmbFilePath) || ((SmbFilePath) other).fileSystem != fileSystem) {
+            throw new ProviderMismatchException("Path " + other + " is not on " + fileSystem);
+        }
+        return (SmbFilePath) other;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SmbFilePath that = (SmbFilePath) o;
+        return fileSystem == that.fileSystem && absolute == that.absolute && Arrays.equals(names, that.names);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(names) + (absolute ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder();
+        if (absolute) {
+            b.append('/');
+        }
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) {
+                b.append('/');
+            }
+            b.append(names[i]);
+        }
+        return b.toString();
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.nio;
+
+import com.hierynomus.msfscc.fileinformation.ShareInfo;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.smbj.share.DiskShare;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.DosFileAttributeView;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileStoreAttributeView;
+
+/**
+ * A {@link FileStore} for a disk share, reporting the space figures from the share's full size information.
+ */
+class SmbFileStore extends FileStore {
+    private final DiskShare share;
+
+    SmbFileStore(DiskShare share) {
+        this.share = share;
+    }
+
+    @Override
+    public String name() {
+        return share.getSmbPath().getShareName();
+    }
+
+    @Override
+    public String type() {
+        return SmbFileSystemProvider.SCHEME;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    @Override
+    public long getTotalSpace() throws IOException {
+        return shareInfo().getTotalSpace();
+    }
+
+    @Override
+    public long getUsableSpace() throws IOException {
+        return shareInfo().getCallerFreeSpace();
+    }
+
+    @Override
+    public long getUnallocatedSpace() throws IOException {
+        return shareInfo().getFreeSpace();
+    }
+
+    private ShareInfo shareInfo() throws IOException {
+        try {
+            return share.getShareInformation();
+        } catch (SMBApiException e) {
+            throw SmbFileSystem.translate(e, null, null);
+        }
+    }
+
+    @Override
+    public boolean supportsFileAttributeView(Class<? extends FileAttributeView> type) {
+        return type == BasicFileAttributeView.class || type == DosFileAttributeView.class;
+    }
+
+    @Override
+    public boolean supportsFileAttributeView(String name) {
+        return "basic".equals(name) || "dos".equals(name);
+    }
+
+    @Override
+    public <V extends FileStoreAttributeView> V getFileStoreAttributeView(Class<V> type) {
+        return null;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) {
+        throw new UnsupportedOperationException("File store attribute " + attribute + " is not supported");
+    }
+
+    @Override
+    public String toString() {
+        return share.getSmbPath().toUncPath();
+    }
+}
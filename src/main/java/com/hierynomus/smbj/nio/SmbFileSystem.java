@@ -0,0 +1,438 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.nio;
+
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.msfscc.fileinformation.FileBasicInformation;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.smbj.SMBClient;
+import com.hierynomus.smbj.session.Session;
+import com.hierynomus.smbj.share.DiskShare;
+import com.hierynomus.smbj.share.Share;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.ClosedFileSystemException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link FileSystem} on a single SMB server, accessed through one authenticated {@link Session}.
+ * <p/>
+ * Shares are connected on first use and kept connected until the file system is closed. File attributes are cached
+ * for a short time, so that walking a tree (which lists each directory and then stats each entry) only needs the
+ * directory listings. The cache holds a limited number of paths, evicting the least recently used ones.
+ */
+public class SmbFileSystem extends FileSystem {
+    private static final Logger logger = LoggerFactory.getLogger(SmbFileSystem.class);
+    static final int DEFAULT_PORT = SMBClient.DEFAULT_PORT;
+
+    private final SmbFileSystemProvider provider;
+    private final String key;
+    private final String hostname;
+    private final int port;
+    private final Session session;
+    private final long attributeCacheTimeout;
+    private final ConcurrentHashMap<String, DiskShare> shares = new ConcurrentHashMap<>();
+    private final Map<SmbFilePath, CachedAttributes> attributeCache;
+    // Attributes cached in an earlier generation are stale, bumping it drops whole subtrees at once
+    private final AtomicLong generation = new AtomicLong();
+    private volatile boolean open = true;
+
+    SmbFileSystem(SmbFileSystemProvider provider, String key, String hostname, int port, Session session, long attributeCacheTimeout, final int attributeCacheSize) {
+        if (attributeCacheSize <= 0) {
+            throw new IllegalArgumentException("Attribute cache size must be greater than zero");
+        }
+        this.provider = provider;
+        this.key = key;
+        this.hostname = hostname;
+        this.port = port;
+        this.session = session;
+        this.attributeCacheTimeout = attributeCacheTimeout;
+        this.attributeCache = new LinkedHashMap<SmbFilePath, CachedAttributes>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SmbFilePath, CachedAttributes> eldest) {
+                return size() > attributeCacheSize;
+            }
+        };
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    String getHostname() {
+        return hostname;
+    }
+
+    int getPort() {
+        return port;
+    }
+
+    /**
+     * @return The session this file system uses to access the server
+     */
+    public Session getSession() {
+        return session;
+    }
+
+    @Override
+    public SmbFileSystemProvider provider() {
+        return provider;
+    }
+
+    /**
+     * Disconnects all shares and logs off the session. The underlying connection is owned by the {@link SMBClient}
+     * and stays available to other users.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        provider.remove(this);
+        synchronized (attributeCache) {
+            attributeCache.clear();
+        }
+        for (Share share : shares.values()) {
+            try {
+                share.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close share {}: {}", share.getSmbPath(), e.getMessage());
+            }
+        }
+        shares.clear();
+        session.close();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    @Override
+    public String getSeparator() {
+        return "/";
+    }
+
+    @Override
+    public Iterable<Path> getRootDirectories() {
+        return Collections.<Path>singletonList(new SmbFilePath(this, "/"));
+    }
+
+    @Override
+    public Iterable<FileStore> getFileStores() {
+        List<FileStore> stores = new ArrayList<>();
+        for (DiskShare share : shares.values()) {
+            stores.add(new SmbFileStore(share));
+        }
+        return stores;
+    }
+
+    @Override
+    public Set<String> supportedFileAttributeViews() {
+        return new HashSet<>(Arrays.asList("basic", "dos"));
+    }
+
+    @Override
+    public SmbFilePath getPath(String first, String... more) {
+        StringBuilder b = new StringBuilder(first);
+        for (String s : more) {
+            if (!s.isEmpty()) {
+                b.append('/').append(s);
+            }
+        }
+        return new SmbFilePath(this, b.toString());
+    }
+
+    @Override
+    public PathMatcher getPathMatcher(String syntaxAndPattern) {
+        int idx = syntaxAndPattern.indexOf(':');
+        if (idx <= 0) {
+            throw new IllegalArgumentException("Expected 'syntax:pattern', got: " + syntaxAndPattern);
+        }
+        String syntax = syntaxAndPattern.substring(0, idx);
+        String pattern = syntaxAndPattern.substring(idx + 1);
+        final Pattern regex;
+        if ("regex".equalsIgnoreCase(syntax)) {
+            regex = Pattern.compile(pattern);
+        } else if ("glob".equalsIgnoreCase(syntax)) {
+            regex = Pattern.compile(globToRegex(pattern));
+        } else {
+            throw new UnsupportedOperationException("Syntax " + syntax + " is not supported");
+        }
+        return path -> regex.matcher(path.toString()).matches();
+    }
+
+    static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        boolean inGroup = false;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            switch (c) {
+                case '*':
+                    if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                        regex.append(".*");
+                        i++;
+                    } else {
+                        regex.append("[^/]*");
+                    }
+                    break;
+                case '?':
+                    regex.append("[^/]");
+                    break;
+                case '{':
+                    regex.append("(?:");
+                    inGroup = true;
+                    break;
+                case '}':
+                    regex.append(')');
+                    inGroup = false;
+                    break;
+                case ',':
+                    regex.append(inGroup ? "|" : ",");
+                    break;
+                case '[':
+                    int end = glob.indexOf(']', i);
+                    if (end < 0) {
+                        throw new IllegalArgumentException("Unclosed character class in glob: " + glob);
+                    }
+                    String set = glob.substring(i + 1, end).replace("\\", "\\\\");
+                    regex.append('[').append(set.startsWith("!") ? "^" + set.substring(1) : set).append(']');
+                    i = end;
+                    break;
+                case '\\':
+                    if (++i < glob.length()) {
+                        regex.append(Pattern.quote(String.valueOf(glob.charAt(i))));
+                    }
+                    break;
+                default:
+                    regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return regex.toString();
+    }
+
+    @Override
+    public UserPrincipalLookupService getUserPrincipalLookupService() {
+        throw new UnsupportedOperationException("User principal lookup is not supported");
+    }
+
+    @Override
+    public WatchService newWatchService() {
+        throw new UnsupportedOperationException("Watch service is not supported");
+    }
+
+    /**
+     * Get the connected {@link DiskShare} that the (absolute) path is on, connecting it if needed.
+     */
+    DiskShare share(SmbFilePath path) throws IOException {
+        if (!open) {
+            throw new ClosedFileSystemException();
+        }
+        String shareName = path.getShareName();
+        if (shareName == null) {
+            throw new FileSystemException(path.toString(), null, "Operation is not supported on the server root");
+        }
+        String shareKey = shareName.toLowerCase();
+        DiskShare share = shares.get(shareKey);
+        if (share != null) {
+            return share;
+        }
+        Share connected;
+        try {
+            connected = session.connectShare(shareName);
+        } catch (SMBApiException e) {
+            throw translate(e, path, null);
+        }
+        if (!(connected instanceof DiskShare)) {
+            connected.close();
+            throw new FileSystemException(path.toString(), null, "Share " + shareName + " is not a disk share");
+        }
+        DiskShare existing = shares.putIfAbsent(shareKey, (DiskShare) connected);
+        if (existing != null) {
+            connected.close();
+            return existing;
+        }
+        return (DiskShare) connected;
+    }
+
+    SmbFileAttributes readAttributes(SmbFilePath path) throws IOException {
+        SmbFilePath absolute = path.toAbsolutePath();
+        if (absolute.getShareName() == null) {
+            return SmbFileAttributes.ROOT;
+        }
+        SmbFileAttributes cached = cached(absolute);
+        if (cached != null) {
+            return cached;
+        }
+        DiskShare share = share(absolute);
+        // Taken before asking the server, so that a subtree invalidated in the meantime is not cached
+        long fetchedIn = generation.get();
+        try {
+            SmbFileAttributes attributes = SmbFileAttributes.of(share.getFileInformation(absolute.getSharePath()));
+            cache(absolute, attributes, fetchedIn);
+            return attributes;
+        } catch (SMBApiException e) {
+            throw translate(e, absolute, null);
+        }
+    }
+
+    void setBasicInformation(SmbFilePath path, FileBasicInformation information) throws IOException {
+        SmbFilePath absolute = path.toAbsolutePath();
+        DiskShare share = share(absolute);
+        try {
+            share.setFileInformation(absolute.getSharePath(), information);
+        } catch (SMBApiException e) {
+            throw translate(e, absolute, null);
+        } finally {
+            invalidate(absolute);
+        }
+    }
+
+    private SmbFileAttributes cached(SmbFilePath path) {
+        synchronized (attributeCache) {
+            CachedAttributes cached = attributeCache.get(path);
+            if (cached == null) {
+                return null;
+            }
+            if (cached.isExpired() || cached.generation != generation.get()) {
+                attributeCache.remove(path);
+                return null;
+            }
+            return cached.attributes;
+        }
+    }
+
+    void cache(SmbFilePath path, SmbFileAttributes attributes) {
+        cache(path, attributes, generation.get());
+    }
+
+    private void cache(SmbFilePath path, SmbFileAttributes attributes, long fetchedIn) {
+        if (attributeCacheTimeout > 0) {
+            CachedAttributes cached = new CachedAttributes(attributes, System.nanoTime() + attributeCacheTimeout * 1000000L, fetchedIn);
+            synchronized (attributeCache) {
+                attributeCache.put(path, cached);
+            }
+        }
+    }
+
+    /**
+     * Drop the cached attributes of the path, and those of its parent directory, whose modification time changes with
+     * it.
+     */
+    void invalidate(SmbFilePath path) {
+        SmbFilePath absolute = path.toAbsolutePath();
+        SmbFilePath parent = absolute.getParent();
+        synchronized (attributeCache) {
+            attributeCache.remove(absolute);
+            if (parent != null) {
+                attributeCache.remove(parent);
+            }
+        }
+    }
+
+    /**
+     * Drop the cached attributes of the path, its parent and everything below it. Rather than searching the cache for
+     * the paths below it, this starts a new generation, which makes all cached attributes stale.
+     */
+    void invalidateTree(SmbFilePath path) {
+        generation.incrementAndGet();
+        invalidate(path);
+    }
+
+    static IOException translate(SMBApiException e, Path path, Path other) {
+        String file = path == null ? null : path.toString();
+        String otherFile = other == null ? null : other.toString();
+        IOException translated;
+        NtStatus status = e.getStatus();
+        switch (status) {
+            case STATUS_OBJECT_NAME_NOT_FOUND:
+            case STATUS_OBJECT_PATH_NOT_FOUND:
+            case STATUS_NO_SUCH_FILE:
+            case STATUS_BAD_NETWORK_NAME:
+            case STATUS_DELETE_PENDING:
+                translated = new NoSuchFileException(file, otherFile, status.name());
+                break;
+            case STATUS_OBJECT_NAME_COLLISION:
+                translated = new FileAlreadyExistsException(file, otherFile, status.name());
+                break;
+            case STATUS_DIRECTORY_NOT_EMPTY:
+                translated = new DirectoryNotEmptyException(file);
+                break;
+            case STATUS_NOT_A_DIRECTORY:
+                translated = new NotDirectoryException(file);
+                break;
+            case STATUS_ACCESS_DENIED:
+            case STATUS_SHARING_VIOLATION:
+                translated = new AccessDeniedException(file, otherFile, status.name());
+                break;
+            default:
+                translated = new FileSystemException(file, otherFile, e.getMessage());
+        }
+        translated.initCause(e);
+        return translated;
+    }
+
+    @Override
+    public String toString() {
+        return "SmbFileSystem{" + key + "}";
+    }
+
+    private static class CachedAttributes {
+        private final SmbFileAttributes attributes;
+        private final long expiresAt;
+        private final long generation;
+
+        CachedAttributes(SmbFileAttributes attributes, long expiresAt, long generation) {
+            this.attributes = attributes;
+            this.expiresAt = expiresAt;
+            this.generation = generation;
+        }
+
+        boolean isExpired() {
+            return System.nanoTime() - expiresAt > 0;
+        }
+    }
+}
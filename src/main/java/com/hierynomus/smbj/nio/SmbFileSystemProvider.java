@@ -0,0 +1,639 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.nio;
+
+import com.hierynomus.msdtyp.AccessMask;
+import com.hierynomus.msfscc.FileAttributes;
+import com.hierynomus.msfscc.fileinformation.FileBasicInformation;
+import com.hierynomus.mssmb2.SMB2CreateDisposition;
+import com.hierynomus.mssmb2.SMB2CreateOptions;
+import com.hierynomus.mssmb2.SMB2ShareAccess;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.protocol.commons.buffer.Buffer;
+import com.hierynomus.smbj.SMBClient;
+import com.hierynomus.smbj.auth.AuthenticationContext;
+import com.hierynomus.smbj.connection.Connection;
+import com.hierynomus.smbj.session.Session;
+import com.hierynomus.smbj.share.DiskEntry;
+import com.hierynomus.smbj.share.DiskShare;
+import com.hierynomus.smbj.share.File;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AccessMode;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributeView;
+import java.nio.file.attribute.DosFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import static com.hierynomus.msdtyp.AccessMask.*;
+import static com.hierynomus.mssmb2.SMB2CreateDisposition.*;
+import static com.hierynomus.mssmb2.SMB2CreateOptions.FILE_DELETE_ON_CLOSE;
+import static com.hierynomus.mssmb2.SMB2CreateOptions.FILE_NON_DIRECTORY_FILE;
+
+/**
+ * A {@link FileSystemProvider} for {@code smb://[[domain;]user[:password]@]host[:port]/share/path} URIs.
+ * <p/>
+ * Every file system is bound to one server and one authenticated {@link Session}. Connections come from an
+ * {@link SMBClient}, so file systems on the same server share a single connection. The following entries in the
+ * environment map of {@link #newFileSystem(URI, Map)} are recognised:
+ * <ul>
+ * <li>{@value #ENV_AUTHENTICATION_CONTEXT}: the {@link AuthenticationContext} to use. When absent, credentials are
+ * taken from the user info of the URI, and an anonymous session is set up if there are none.</li>
+ * <li>{@value #ENV_ATTRIBUTE_CACHE_TIMEOUT}: how long (in milliseconds, as a {@link Number}) attributes are cached.
+ * Defaults to {@link #DEFAULT_ATTRIBUTE_CACHE_TIMEOUT}; 0 disables caching.</li>
+ * <li>{@value #ENV_ATTRIBUTE_CACHE_SIZE}: the maximum number of paths (as a {@link Number}) whose attributes are
+ * cached. Defaults to {@link #DEFAULT_ATTRIBUTE_CACHE_SIZE}.</li>
+ * </ul>
+ * Copies within a share use server-side copy-chunk; moves within a share are renames.
+ * <p/>
+ * When the provider was created without an {@link SMBClient}, it creates one on first use, and closes it again when
+ * the last file system is closed.
+ */
+public class SmbFileSystemProvider extends FileSystemProvider {
+    public static final String SCHEME = "smb";
+    public static final String ENV_AUTHENTICATION_CONTEXT = "authenticationContext";
+    public static final String ENV_ATTRIBUTE_CACHE_TIMEOUT = "attributeCacheTimeout";
+    public static final long DEFAULT_ATTRIBUTE_CACHE_TIMEOUT = 2000;
+    public static final String ENV_ATTRIBUTE_CACHE_SIZE = "attributeCacheSize";
+    public static final int DEFAULT_ATTRIBUTE_CACHE_SIZE = 10000;
+
+    // File systems that are being created are in here too, so that they are only created once
+    private final ConcurrentHashMap<String, CompletableFuture<SmbFileSystem>> fileSystems = new ConcurrentHashMap<>();
+    private final boolean ownsClient;
+    private SMBClient client;
+
+    /**
+     * Constructor used by the {@link java.util.ServiceLoader}; a default {@link SMBClient} is created on first use.
+     */
+    public SmbFileSystemProvider() {
+        this.ownsClient = true;
+    }
+
+    public SmbFileSystemProvider(SMBClient client) {
+        this.client = client;
+        this.ownsClient = false;
+    }
+
+    private synchronized SMBClient client() {
+        if (client == null) {
+            client = new SMBClient();
+        }
+        return client;
+    }
+
+    /**
+     * Closes the default client once no file system uses it. A file system that is being created is registered before
+     * it asks for the client, so it either finds the client open or creates a new one.
+     */
+    private synchronized void closeClientIfUnused() {
+        if (ownsClient && client != null && fileSystems.isEmpty()) {
+            client.close();
+            client = null;
+        }
+    }
+
+    @Override
+    public String getScheme() {
+        return SCHEME;
+    }
+
+    @Override
+    public SmbFileSystem newFileSystem(URI uri, Map<String, ?> env) throws IOException {
+        checkUri(uri);
+        String key = keyOf(uri);
+        CompletableFuture<SmbFileSystem> created = new CompletableFuture<>();
+        if (fileSystems.putIfAbsent(key, created) != null) {
+            throw new FileSystemAlreadyExistsException(key);
+        }
+        return create(uri, key, env, created);
+    }
+
+    @Override
+    public SmbFileSystem getFileSystem(URI uri) {
+        checkUri(uri);
+        String key = keyOf(uri);
+        CompletableFuture<SmbFileSystem> fileSystem = fileSystems.get(key);
+        if (fileSystem == null) {
+            throw new FileSystemNotFoundException(key);
+        }
+        try {
+            return await(fileSystem);
+        } catch (IOException e) {
+            throw new FileSystemNotFoundException(key);
+        }
+    }
+
+    /**
+     * Get the path for the URI, creating a file system with the credentials from the URI if none exists yet.
+     */
+    @Override
+    public SmbFilePath getPath(URI uri) {
+        checkUri(uri);
+        String key = keyOf(uri);
+        SmbFileSystem fileSystem;
+        try {
+            CompletableFuture<SmbFileSystem> created = new CompletableFuture<>();
+            CompletableFuture<SmbFileSystem> existing = fileSystems.putIfAbsent(key, created);
+            if (existing != null) {
+                fileSystem = await(existing);
+            } else {
+                fileSystem = create(uri, key, Collections.<String, Object>emptyMap(), created);
+            }
+        } catch (IOException e) {
+            throw new FileSystemNotFoundException("Could not connect to " + key + ": " + e.getMessage());
+        }
+        return fileSystem.getPath(uri.getPath() == null || uri.getPath().isEmpty() ? "/" : uri.getPath());
+    }
+
+    void remove(SmbFileSystem fileSystem) {
+        CompletableFuture<SmbFileSystem> registered = fileSystems.get(fileSystem.getKey());
+        if (registered != null && registered.getNow(null) == fileSystem) {
+            fileSystems.remove(fileSystem.getKey(), registered);
+        }
+        closeClientIfUnused();
+    }
+
+    /**
+     * Connects and authenticates the file system registered as {@code created}, without holding a lock, so that
+     * creating a file system does not hold up the users of other file systems.
+     */
+    private SmbFileSystem create(URI uri, String key, Map<String, ?> env, CompletableFuture<SmbFileSystem> created) throws IOException {
+        SmbFileSystem fileSystem;
+        try {
+            fileSystem = create(uri, key, env);
+        } catch (IOException | RuntimeException e) {
+            fileSystems.remove(key, created);
+            created.completeExceptionally(e);
+            closeClientIfUnused();
+            throw e;
+        }
+        created.complete(fileSystem);
+        return fileSystem;
+    }
+
+    /**
+     * Waits for a file system that another thread is creating.
+     */
+    private static SmbFileSystem await(CompletableFuture<SmbFileSystem> fileSystem) throws IOException {
+        try {
+            return fileSystem.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for file system to be created");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private SmbFileSystem create(URI uri, String key, Map<String, ?> env) throws IOException {
+        AuthenticationContext authenticationContext = (AuthenticationContext) env.get(ENV_AUTHENTICATION_CONTEXT);
+        if (authenticationContext == null) {
+            authenticationContext = authenticationContextOf(uri);
+        }
+        Number cacheTimeout = (Number) env.get(ENV_ATTRIBUTE_CACHE_TIMEOUT);
+        Number cacheSize = (Number) env.get(ENV_ATTRIBUTE_CACHE_SIZE);
+        int port = uri.getPort() == -1 ? SmbFileSystem.DEFAULT_PORT : uri.getPort();
+        Connection connection = client().connect(uri.getHost(), port);
+        Session session = connection.authenticate(authenticationContext);
+        return new SmbFileSystem(this, key, uri.getHost(), port, session,
+            cacheTimeout == null ? DEFAULT_ATTRIBUTE_CACHE_TIMEOUT : cacheTimeout.longValue(),
+            cacheSize == null ? DEFAULT_ATTRIBUTE_CACHE_SIZE : cacheSize.intValue());
+    }
+
+    private static void checkUri(URI uri) {
+        if (!SCHEME.equalsIgnoreCase(uri.getScheme())) {
+            throw new IllegalArgumentException("URI scheme should be " + SCHEME + ", was: " + uri);
+        }
+        if (uri.getHost() == null) {
+            throw new IllegalArgumentException("URI should contain a host: " + uri);
+        }
+    }
+
+    /**
+     * File systems are identified by user, host and port, so that different credentials get different sessions.
+     */
+    private static String keyOf(URI uri) {
+        String userInfo = uri.getRawUserInfo();
+        String user = userInfo == null ? "" : userInfo.split(":", 2)[0] + "@";
+        int port = uri.getPort() == -1 ? SmbFileSystem.DEFAULT_PORT : uri.getPort();
+        return user + uri.getHost().toLowerCase() + ":" + port;
+    }
+
+    private static AuthenticationContext authenticationContextOf(URI uri) throws IOException {
+        String userInfo = uri.getRawUserInfo();
+        if (userInfo == null || userInfo.isEmpty()) {
+            return AuthenticationContext.anonymous();
+        }
+        String[] userAndPassword = userInfo.split(":", 2);
+        String user = URLDecoder.decode(userAndPassword[0], "UTF-8");
+        String password = userAndPassword.length > 1 ? URLDecoder.decode(userAndPassword[1], "UTF-8") : "";
+        String domain = null;
+        int idx = user.indexOf(';');
+        if (idx >= 0) {
+            domain = user.substring(0, idx);
+            user = user.substring(idx + 1);
+        }
+        return new AuthenticationContext(user, password.toCharArray(), domain);
+    }
+
+    private static SmbFilePath toSmbPath(Path path) {
+        if (!(path instanceof SmbFilePath)) {
+            throw new ProviderMismatchException("Not an SMB path: " + path);
+        }
+        return ((SmbFilePath) path).toAbsolutePath();
+    }
+
+    @Override
+    public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs) throws IOException {
+        SmbFilePath p = toSmbPath(path);
+        boolean append = options.contains(StandardOpenOption.APPEND);
+        boolean write = append || options.contains(StandardOpenOption.WRITE);
+        boolean truncate = write && options.contains(StandardOpenOption.TRUNCATE_EXISTING);
+        if (append && (options.contains(StandardOpenOption.READ) || truncate)) {
+            throw new IllegalArgumentException("APPEND cannot be combined with READ or TRUNCATE_EXISTING");
+        }
+
+        Set<AccessMask> accessMask = EnumSet.noneOf(AccessMask.class);
+        if (!write || options.contains(StandardOpenOption.READ)) {
+            accessMask.add(GENERIC_READ);
+        }
+        if (write) {
+            accessMask.add(GENERIC_WRITE);
+        }
+        Set<SMB2CreateOptions> createOptions = EnumSet.of(FILE_NON_DIRECTORY_FILE);
+        if (options.contains(StandardOpenOption.DELETE_ON_CLOSE)) {
+            accessMask.add(DELETE);
+            createOptions.add(FILE_DELETE_ON_CLOSE);
+        }
+
+        SMB2CreateDisposition disposition;
+        if (write && options.contains(StandardOpenOption.CREATE_NEW)) {
+            disposition = FILE_CREATE;
+        } else if (write && options.contains(StandardOpenOption.CREATE)) {
+            disposition = truncate ? FILE_OVERWRITE_IF : FILE_OPEN_IF;
+        } else {
+            disposition = truncate ? FILE_OVERWRITE : FILE_OPEN;
+        }
+
+        DiskShare share = p.getFileSystem().share(p);
+        if (write) {
+            p.getFileSystem().invalidate(p);
+        }
+        File file;
+        try {
+            file = share.openFile(p.getSharePath(), accessMask, EnumSet.of(FileAttributes.FILE_ATTRIBUTE_NORMAL),
+                SMB2ShareAccess.ALL, disposition, createOptions);
+        } catch (SMBApiException e) {
+            throw SmbFileSystem.translate(e, p, null);
+        }
+        SmbSeekableByteChannel channel = new SmbSeekableByteChannel(p, file);
+        if (append) {
+            channel.position(channel.size());
+        }
+        return channel;
+    }
+
+    @Override
+    public DirectoryStream<Path> newDirectoryStream(Path dir, DirectoryStream.Filter<? super Path> filter) throws IOException {
+        SmbFilePath p = toSmbPath(dir);
+        DiskShare share = p.getFileSystem().share(p);
+        try {
+            return new SmbDirectoryStream(p, share.openDirectory(p.getSharePath(), EnumSet.of(FILE_LIST_DIRECTORY, FILE_READ_ATTRIBUTES),
+                null, SMB2ShareAccess.ALL, FILE_OPEN, null), filter);
+        } catch (SMBApiException e) {
+            throw SmbFileSystem.translate(e, p, null);
+        }
+    }
+
+    @Override
+    public void createDirectory(Path dir, FileAttribute<?>... attrs) throws IOException {
+        SmbFilePath p = toSmbPath(dir);
+        DiskShare share = p.getFileSystem().share(p);
+        try {
+            share.mkdir(p.getSharePath());
+        } catch (SMBApiException e) {
+            throw SmbFileSystem.translate(e, p, null);
+        } finally {
+            p.getFileSystem().invalidate(p);
+        }
+    }
+
+    @Override
+    public void delete(Path path) throws IOException {
+        SmbFilePath p = toSmbPath(path);
+        SmbFileSystem fileSystem = p.getFileSystem();
+        fileSystem.invalidate(p);
+        boolean directory = fileSystem.readAttributes(p).isDirectory();
+        DiskShare share = fileSystem.share(p);
+        try {
+            if (directory) {
+                share.rmdir(p.getSharePath(), false);
+            } else {
+                share.rm(p.getSharePath());
+            }
+        } catch (SMBApiException e) {
+            throw SmbFileSystem.translate(e, p, null);
+        } finally {
+            fileSystem.invalidate(p);
+        }
+    }
+
+    @Override
+    public void copy(Path source, Path target, CopyOption... options) throws IOException {
+        SmbFilePath src = toSmbPath(source);
+        SmbFilePath dst = toSmbPath(target);
+        List<CopyOption> copyOptions = Arrays.asList(options);
+        boolean replace = copyOptions.contains(StandardCopyOption.REPLACE_EXISTING);
+        if (copyOptions.contains(StandardCopyOption.ATOMIC_MOVE)) {
+            throw new UnsupportedOperationException("ATOMIC_MOVE is not supported for copy");
+        }
+
+        SmbFileAttributes attributes = src.getFileSystem().readAttributes(src);
+        if (src.equals(dst)) {
+            return;
+        }
+        prepareTarget(dst, replace);
+        if (attributes.isDirectory()) {
+            createDirectory(dst);
+        } else {
+            copyFile(src, dst, replace);
+        }
+        if (copyOptions.contains(StandardCopyOption.COPY_ATTRIBUTES)) {
+            dst.getFileSystem().setBasicInformation(dst, new FileBasicInformation(
+                SmbFileAttributes.toSmbTime(attributes.creationTime()), SmbFileAttributes.toSmbTime(attributes.lastAccessTime()),
+                SmbFileAttributes.toSmbTime(attributes.lastModifiedTime()), FileBasicInformation.DONT_SET, 0));
+        }
+    }
+
+    private void prepareTarget(SmbFilePath dst, boolean replace) throws IOException {
+        SmbFileSystem fileSystem = dst.getFileSystem();
+        fileSystem.invalidate(dst);
+        try {
+            SmbFileAttributes existing = fileSystem.readAttributes(dst);
+            if (!replace) {
+                throw new FileAlreadyExistsException(dst.toString());
+            }
+            if (existing.isDirectory()) {
+                delete(dst);
+            }
+        } catch (NoSuchFileException e) {
+            // Target does not exist, nothing to prepare
+        }
+    }
+
+    private void copyFile(SmbFilePath src, SmbFilePath dst, boolean replace) throws IOException {
+        DiskShare srcShare = src.getFileSystem().share(src);
+        DiskShare dstShare = dst.getFileSystem().share(dst);
+        File in = null;
+        File out = null;
+        try {
+            in = srcShare.openFile(src.getSharePath(), EnumSet.of(GENERIC_READ), null, SMB2ShareAccess.ALL, FILE_OPEN, EnumSet.of(FILE_NON_DIRECTORY_FILE));
+            out = dstShare.openFile(dst.getSharePath(), EnumSet.of(GENERIC_WRITE), EnumSet.of(FileAttributes.FILE_ATTRIBUTE_NORMAL),
+                SMB2ShareAccess.ALL, replace ? FILE_OVERWRITE_IF : FILE_CREATE, EnumSet.of(FILE_NON_DIRECTORY_FILE));
+            if (src.isOnSameShare(dst)) {
+                // Same share, so the server can copy the data without it passing through the client
+                in.remoteCopyTo(out);
+            } else {
+                try (OutputStream os = out.getOutputStream()) {
+                    in.read(os);
+                }
+            }
+        } catch (SMBApiException e) {
+            throw SmbFileSystem.translate(e, src, dst);
+        } catch (Buffer.BufferException e) {
+            throw new FileSystemException(src.toString(), dst.toString(), e.getMessage());
+        } finally {
+            if (in != null) {
+                in.closeSilently();
+            }
+            if (out != null) {
+                out.closeSilently();
+            }
+            dst.getFileSystem().invalidate(dst);
+        }
+    }
+
+    @Override
+    public void move(Path source, Path target, CopyOption... options) throws IOException {
+        SmbFilePath src = toSmbPath(source);
+        SmbFilePath dst = toSmbPath(target);
+        List<CopyOption> copyOptions = Arrays.asList(options);
+        boolean replace = copyOptions.contains(StandardCopyOption.REPLACE_EXISTING);
+        if (src.equals(dst)) {
+            return;
+        }
+        if (!src.isOnSameShare(dst)) {
+            if (copyOptions.contains(StandardCopyOption.ATOMIC_MOVE)) {
+                throw new AtomicMoveNotSupportedException(src.toString(), dst.toString(), "Cannot move atomically between shares");
+            }
+            copy(src, dst, replace ? new CopyOption[]{StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES}
+                : new CopyOption[]{StandardCopyOption.COPY_ATTRIBUTES});
+            delete(src);
+            return;
+        }
+
+        SmbFileSystem fileSystem = src.getFileSystem();
+        DiskShare share = fileSystem.share(src);
+        // Renaming a directory moves everything below it too
+        fileSystem.invalidateTree(src);
+        fileSystem.invalidate(dst);
+        try (DiskEntry entry = share.open(src.getSharePath(), EnumSet.of(DELETE, FILE_READ_ATTRIBUTES), null, SMB2ShareAccess.ALL, FILE_OPEN, null)) {
+            entry.rename(dst.getSharePath(), replace);
+        } catch (SMBApiException e) {
+            throw SmbFileSystem.translate(e, src, dst);
+        }
+    }
+
+    @Override
+    public boolean isSameFile(Path path, Path path2) throws IOException {
+        if (path.equals(path2)) {
+            return true;
+        }
+        if (!(path instanceof SmbFilePath) || !(path2 instanceof SmbFilePath)) {
+            return false;
+        }
+        SmbFilePath p1 = toSmbPath(path).normalize();
+        SmbFilePath p2 = toSmbPath(path2).normalize();
+        if (p1.equals(p2)) {
+            return true;
+        }
+        if (!p1.isOnSameShare(p2)) {
+            return false;
+        }
+        Object key1 = p1.getFileSystem().readAttributes(p1).fileKey();
+        return key1 != null && key1.equals(p2.getFileSystem().readAttributes(p2).fileKey());
+    }
+
+    @Override
+    public boolean isHidden(Path path) throws IOException {
+        SmbFilePath p = toSmbPath(path);
+        return p.getFileSystem().readAttributes(p).isHidden();
+    }
+
+    @Override
+    public FileStore getFileStore(Path path) throws IOException {
+        SmbFilePath p = toSmbPath(path);
+        return new SmbFileStore(p.getFileSystem().share(p));
+    }
+
+    @Override
+    public void checkAccess(Path path, AccessMode... modes) throws IOException {
+        SmbFilePath p = toSmbPath(path);
+        SmbFileAttributes attributes = p.getFileSystem().readAttributes(p);
+        for (AccessMode mode : modes) {
+            if (mode == AccessMode.WRITE && attributes.isReadOnly() && !attributes.isDirectory()) {
+                throw new AccessDeniedException(p.toString(), null, "File is read-only");
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <V extends FileAttributeView> V getFileAttributeView(Path path, Class<V> type, LinkOption... options) {
+        SmbFilePath p = toSmbPath(path);
+        if (type == BasicFileAttributeView.class) {
+            return (V) new SmbFileAttributeView(p, "basic");
+        } else if (type == DosFileAttributeView.class) {
+            return (V) new SmbFileAttributeView(p, "dos");
+        }
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <A extends BasicFileAttributes> A readAttributes(Path path, Class<A> type, LinkOption... options) throws IOException {
+        if (type != BasicFileAttributes.class && type != DosFileAttributes.class && type != SmbFileAttributes.class) {
+            throw new UnsupportedOperationException("Attributes of type " + type.getName() + " are not supported");
+        }
+        SmbFilePath p = toSmbPath(path);
+        return (A) p.getFileSystem().readAttributes(p);
+    }
+
+    @Override
+    public Map<String, Object> readAttributes(Path path, String attributes, LinkOption... options) throws IOException {
+        String view = "basic";
+        String names = attributes;
+        int idx = attributes.indexOf(':');
+        if (idx >= 0) {
+            view = attributes.substring(0, idx);
+            names = attributes.substring(idx + 1);
+        }
+        if (!"basic".equals(view) && !"dos".equals(view)) {
+            throw new UnsupportedOperationException("Attribute view " + view + " is not supported");
+        }
+        SmbFilePath p = toSmbPath(path);
+        Map<String, Object> all = p.getFileSystem().readAttributes(p).toMap(view);
+        if ("*".equals(names)) {
+            return all;
+        }
+        Map<String, Object> result = new HashMap<>();
+        for (String name : new HashSet<>(Arrays.asList(names.split(",")))) {
+            if ("*".equals(name)) {
+                result.putAll(all);
+            } else if (all.containsKey(name)) {
+                result.put(name, all.get(name));
+            } else {
+                throw new IllegalArgumentException("Unknown attribute " + name + " in view " + view);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void setAttribute(Path path, String attribute, Object value, LinkOption... options) throws IOException {
+        String view = "basic";
+        String name = attribute;
+        int idx = attribute.indexOf(':');
+        if (idx >= 0) {
+            view = attribute.substring(0, idx);
+            name = attribute.substring(idx + 1);
+        }
+        if (!"basic".equals(view) && !"dos".equals(view)) {
+            throw new UnsupportedOperationException("Attribute view " + view + " is not supported");
+        }
+        SmbFileAttributeView attributeView = new SmbFileAttributeView(toSmbPath(path), view);
+        switch (name) {
+            case "lastModifiedTime":
+                attributeView.setTimes((FileTime) value, null, null);
+                return;
+            case "lastAccessTime":
+                attributeView.setTimes(null, (FileTime) value, null);
+                return;
+            case "creationTime":
+                attributeView.setTimes(null, null, (FileTime) value);
+                return;
+            default:
+        }
+        if ("dos".equals(view)) {
+            switch (name) {
+                case "readonly":
+                    attributeView.setReadOnly((Boolean) value);
+                    return;
+                case "hidden":
+                    attributeView.setHidden((Boolean) value);
+                    return;
+                case "system":
+                    attributeView.setSystem((Boolean) value);
+                    return;
+                case "archive":
+                    attributeView.setArchive((Boolean) value);
+                    return;
+                default:
+            }
+        }
+        throw new IllegalArgumentException("Attribute " + attribute + " cannot be set");
+    }
+}
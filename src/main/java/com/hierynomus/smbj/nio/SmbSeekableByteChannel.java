@@ -0,0 +1,112 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.nio;
+
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.smbj.share.File;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Wraps the channel of a {@link File} so that closing the channel also closes the file, and invalidates the cached
+ * attributes of the path if it was written to.
+ */
+class SmbSeekableByteChannel implements SeekableByteChannel {
+    private final SmbFilePath path;
+    private final File file;
+    private final SeekableByteChannel channel;
+    private boolean written;
+
+    SmbSeekableByteChannel(SmbFilePath path, File file) {
+        this.path = path;
+        this.file = file;
+        this.channel = file.openChannel();
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        try {
+            return channel.read(dst);
+        } catch (SMBApiException e) {
+            throw SmbFileSystem.translate(e, path, null);
+        }
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        written = true;
+        try {
+            return channel.write(src);
+        } catch (SMBApiException e) {
+            throw SmbFileSystem.translate(e, path, null);
+        }
+    }
+
+    @Override
+    public long position() throws IOException {
+        return channel.position();
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+        channel.position(newPosition);
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        try {
+            return channel.size();
+        } catch (SMBApiException e) {
+            throw SmbFileSystem.translate(e, path, null);
+        }
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) throws IOException {
+        written = true;
+        try {
+            channel.truncate(size);
+        } catch (SMBApiException e) {
+            throw SmbFileSystem.translate(e, path, null);
+        }
+        return this;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (SMBApiException e) {
+            throw SmbFileSystem.translate(e, path, null);
+        } finally {
+            file.closeSilently();
+            if (written) {
+                path.getFileSystem().invalidate(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.paths;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hierynomus.msdfsc.DomainCache;
+import com.hierynomus.msdfsc.ReferralCache;
+import com.hierynomus.msdfsc.ReferralCacheSnapshot;
+import com.hierynomus.msdfsc.TargetHealth;
+import com.hierynomus.protocol.commons.concurrent.DaemonThreadFactory;
+import com.hierynomus.smbj.SmbConfig;
+
+/**
+ * The DFS state that is shared by all connections of an {@link com.hierynomus.smbj.SMBClient}: the ReferralCache and
+ * DomainCache, the health of the DFS targets, the background thread that refreshes referrals and saves the
+ * snapshot of the caches, and the threads that run hedged requests. Threads are only started when first needed.
+ */
+public class DFSCache implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(DFSCache.class);
+    private static final long SNAPSHOT_DELAY_MILLIS = 1000;
+
+    private final ReferralCache referralCache = new ReferralCache();
+    private final DomainCache domainCache = new DomainCache();
+    private final TargetHealth targetHealth = new TargetHealth();
+    private final long staleTimeout;
+    private final File snapshotFile;
+    private final double hedgePercentile;
+    private final int hedgeThreads;
+    private final ThreadFactory threadFactory;
+    private final AtomicReference<ScheduledExecutorService> scheduler = new AtomicReference<>();
+    private final AtomicReference<ExecutorService> hedgeExecutor = new AtomicReference<>();
+    private final AtomicBoolean snapshotScheduled = new AtomicBoolean();
+
+    public DFSCache() {
+        this(0, null, 0, 1, new DaemonThreadFactory());
+    }
+
+    public DFSCache(SmbConfig config) {
+        this(config.getDfsStaleCacheTimeout(), config.getDfsCacheSnapshot(), config.getDfsHedgePercentile(), config.getDfsHedgeThreads(), config.getThreadFactory());
+    }
+
+    /**
+     * @param staleTimeout    How long in milliseconds an expired referral may still be used while it is refreshed in the
+     *                        background. If 0, referrals are neither refreshed ahead nor used beyond their TTL.
+     * @param snapshotFile    The file to save the caches to and load them from, or {@code null}.
+     * @param hedgePercentile The percentile of a target's latency after which a read-only open is also sent to the
+     *                        next target, or 0 to never hedge.
+     * @param hedgeThreads    The maximum number of threads that run hedged requests.
+     * @param threadFactory   The factory for the background threads.
+     */
+    public DFSCache(long staleTimeout, File snapshotFile, double hedgePercentile, int hedgeThreads, ThreadFactory threadFactory) {
+        this.staleTimeout = staleTimeout;
+        this.snapshotFile = snapshotFile;
+        this.hedgePercentile = hedgePercentile;
+        this.hedgeThreads = hedgeThreads;
+        this.threadFactory = threadFactory;
+        if (snapshotFile != null && snapshotFile.isFile()) {
+            try {
+                ReferralCacheSnapshot.read(snapshotFile, referralCache, domainCache);
+                logger.debug("Loaded {} DFS referrals from {}", referralCache.entries().size(), snapshotFile);
+            } catch (IOException e) {
+                logger.warn("Could not load DFS cache snapshot from {}, starting empty", snapshotFile, e);
+                referralCache.clear();
+            }
+        }
+    }
+
+    public ReferralCache getReferralCache() {
+        return referralCache;
+    }
+
+    public DomainCache getDomainCache() {
+        return domainCache;
+    }
+
+    public TargetHealth getTargetHealth() {
+        return targetHealth;
+    }
+
+    public long getStaleTimeout() {
+        return staleTimeout;
+    }
+
+    public boolean isRefreshEnabled() {
+        return staleTimeout > 0;
+    }
+
+    public double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    public boolean isHedgingEnabled() {
+        return hedgePercentile > 0;
+    }
+
+    /**
+     * The executor for the attempts of a hedged request. Its threads block on the I/O of the attempt, so attempts are
+     * not queued: when all threads are busy, the executor rejects the attempt and the caller does without hedging.
+     */
+    Executor hedgeExecutor() {
+        ExecutorService executor = hedgeExecutor.get();
+        if (executor == null) {
+            final AtomicInteger counter = new AtomicInteger();
+            executor = new ThreadPoolExecutor(0, hedgeThreads, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = threadFactory.newThread(r);
+                    t.setName("SMB DFS Hedge-" + counter.incrementAndGet());
+                    return t;
+                }
+            });
+            if (!hedgeExecutor.compareAndSet(null, executor)) {
+                executor.shutdown();
+                executor = hedgeExecutor.get();
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Run a refresh in the background.
+     */
+    void execute(Runnable task) {
+        scheduler().execute(task);
+    }
+
+    /**
+     * Signal that the caches have changed. The snapshot, if configured, is written shortly after, so that a burst
+     * of referrals results in a single write.
+     */
+    void updated() {
+        if (snapshotFile == null || !snapshotScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        scheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                snapshotScheduled.set(false);
+                save();
+            }
+        }, SNAPSHOT_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Write the snapshot now, if one is configured.
+     */
+    public void save() {
+        if (snapshotFile == null) {
+            return;
+        }
+        try {
+            ReferralCacheSnapshot.write(snapshotFile, referralCache, domainCache);
+        } catch (IOException e) {
+            logger.warn("Could not save DFS cache snapshot to {}", snapshotFile, e);
+        }
+    }
+
+    private ScheduledExecutorService scheduler() {
+        ScheduledExecutorService executor = scheduler.get();
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = threadFactory.newThread(r);
+                    t.setName("SMB DFS Cache Refresh");
+                    return t;
+                }
+            });
+            if (!scheduler.compareAndSet(null, executor)) {
+                executor.shutdown();
+                executor = scheduler.get();
+            }
+        }
+        return executor;
+    }
+
+    @Override
+    public void close() {
+        ScheduledExecutorService executor = scheduler.get();
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        ExecutorService hedging = hedgeExecutor.get();
+        if (hedging != null) {
+            hedging.shutdownNow();
+        }
+        save();
+    }
+}
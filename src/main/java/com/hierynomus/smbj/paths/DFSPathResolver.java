@@ -19,6 +19,7 @@ import com.hierynomus.msdfsc.DFSException;
 import com.hierynomus.msdfsc.DFSPath;
 import com.hierynomus.msdfsc.DomainCache;
 import com.hierynomus.msdfsc.ReferralCache;
+import com.hierynomus.msdfsc.TargetHealth;
 import com.hierynomus.msdfsc.messages.SMB2GetDFSReferralRequest;
 import com.hierynomus.msdfsc.messages.SMB2GetDFSReferralResponse;
 import com.hierynomus.mserref.NtStatus;
@@ -30,6 +31,7 @@ import com.hierynomus.protocol.commons.concurrent.Futures;
 import com.hierynomus.protocol.transport.TransportException;
 import com.hierynomus.smb.SMBBuffer;
 import com.hierynomus.smbj.auth.AuthenticationContext;
+import com.hierynomus.smbj.common.SMBRuntimeException;
 import com.hierynomus.smbj.common.SmbPath;
 import com.hierynomus.smbj.connection.Connection;
 import com.hierynomus.smbj.io.BufferByteChunkProvider;
@@ -40,13 +42,23 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 
 public class DFSPathResolver implements PathResolver {
     private static final Logger logger = LoggerFactory.getLogger(DFSPathResolver.class);
     private static final long FSCTL_DFS_GET_REFERRALS = 0x00060194L;
     private static final long FSCTL_DFS_GET_REFERRALS_EX = 0x000601B0L;
+    private static final long DEFAULT_HEDGE_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
     private final StatusHandler statusHandler;
 
     private final PathResolver wrapped;
@@ -59,14 +71,23 @@ public class DFSPathResolver implements PathResolver {
         LINK
     }
 
-    private ReferralCache referralCache = new ReferralCache();
-
-    private DomainCache domainCache = new DomainCache();
+    private final DFSCache cache;
+    private final ReferralCache referralCache;
+    private final DomainCache domainCache;
+    private final TargetHealth targetHealth;
     private long transactTimeout;
 
     public DFSPathResolver(final PathResolver wrapped, long transactTimeout) {
+        this(wrapped, transactTimeout, new DFSCache());
+    }
+
+    public DFSPathResolver(final PathResolver wrapped, long transactTimeout, DFSCache cache) {
         this.wrapped = wrapped;
         this.transactTimeout = transactTimeout;
+        this.cache = cache;
+        this.referralCache = cache.getReferralCache();
+        this.domainCache = cache.getDomainCache();
+        this.targetHealth = cache.getTargetHealth();
         this.statusHandler = new StatusHandler() {
             @Override
             public boolean isSuccess(long statusCode) {
@@ -106,12 +127,42 @@ public class DFSPathResolver implements PathResolver {
 
     @Override
     public <T> T resolve(Session session, SmbPath smbPath, ResolveAction<T> action) throws PathResolveException {
-        T target = start(session, smbPath, action);
-        if (!smbPath.equals(target)) {
-            logger.info("DFS resolved {} -> {}", smbPath, target);
-            return target;
+        return start(session, smbPath, thenResolveWrapped(session, action));
+    }
+
+    /**
+     * Continue the proactive resolution of the DFS target with the wrapped resolver, like a cached symbolic link.
+     * A hedgeable action stays hedgeable.
+     */
+    private <T> ResolveAction<T> thenResolveWrapped(final Session session, final ResolveAction<T> action) {
+        if (action instanceof HedgeableResolveAction) {
+            final HedgeableResolveAction<T> hedgeable = (HedgeableResolveAction<T>) action;
+            return new HedgeableResolveAction<T>() {
+                @Override
+                public T apply(SmbPath target) {
+                    return resolveWrapped(session, target, action);
+                }
+
+                @Override
+                public void discard(T result) {
+                    hedgeable.discard(result);
+                }
+            };
+        }
+        return new ResolveAction<T>() {
+            @Override
+            public T apply(SmbPath target) {
+                return resolveWrapped(session, target, action);
+            }
+        };
+    }
+
+    private <T> T resolveWrapped(Session session, SmbPath target, ResolveAction<T> action) {
+        try {
+            return wrapped.resolve(session, target, action);
+        } catch (PathResolveException e) {
+            throw new SMBRuntimeException(e);
         }
-        return wrapped.resolve(session, smbPath, action);
     }
 
     private <T> T start(Session session, SmbPath uncPath, ResolveAction<T> action) throws PathResolveException {
@@ -142,10 +193,21 @@ public class DFSPathResolver implements PathResolver {
      * - If RootOrLink indicates DFS link targets, goto step 9.
      * 3. If an entry contains DFS link targets as indicated by RootOrLink, go to step 4; otherwise, go to
      * step 3.
+     * <p>
+     * If a stale cache timeout is configured, the TTL is used as the soft time-out and TTL plus the stale cache timeout
+     * as the hard time-out that 3.1.1 allows for. An entry past its soft time-out is still used, while it is refreshed
+     * in the background. Only an entry past its hard time-out is resolved again as described above.
      */
     private <T> T step2(Session session, ResolveState<T> state) throws DFSException {
         logger.trace("DFS[2]: {}", state);
         ReferralCache.ReferralCacheEntry lookup = referralCache.lookup(state.path);
+        if (lookup != null && cache.isRefreshEnabled() && lookup.needsRefresh() && !lookup.isExpired(cache.getStaleTimeout())) {
+            refreshInBackground(session, lookup);
+            if (lookup.isLink()) {
+                return step4(session, state, lookup);
+            }
+            return step3(session, state, lookup);
+        }
         if (lookup == null || (lookup.isExpired() && lookup.isRoot())) {
             return step5(session, state); // Resolve Root Referral
         }
@@ -167,21 +229,37 @@ public class DFSPathResolver implements PathResolver {
      */
     private <T> T step3(Session session, ResolveState<T> state, ReferralCache.ReferralCacheEntry lookup) {
         logger.trace("DFS[3]: {}", state);
-        ReferralCache.TargetSetEntry target = lookup.getTargetHint();
-        SMBApiException lastException = null;
+        // Try the targets in order of measured health instead of strictly from the TargetHint onwards, see TargetHealth.
+        List<ReferralCache.TargetSetEntry> targets = targetHealth.order(lookup.getTargetList());
+        if (cache.isHedgingEnabled() && targets.size() > 1 && state.action instanceof PathResolver.HedgeableResolveAction) {
+            return hedge(session, state, lookup, targets, (PathResolver.HedgeableResolveAction<T>) state.action);
+        }
+        return tryTargets(session, state, lookup, targets, null);
+    }
+
+    private <T> T tryTargets(Session session, ResolveState<T> state, ReferralCache.ReferralCacheEntry lookup, List<ReferralCache.TargetSetEntry> targets, RuntimeException previousException) {
+        RuntimeException lastException = previousException;
         DFSPath initialPath = state.path;
-        while (target != null) {
+        for (ReferralCache.TargetSetEntry target : targets) {
+            long start = System.nanoTime();
             try {
-                state.path = state.path.replacePrefix(lookup.getDfsPathPrefix(), lookup.getTargetHint().getTargetPath());
+                state.path = initialPath.replacePrefix(lookup.getDfsPathPrefix(), target.getTargetPath());
                 state.isDFSPath = true;
-                return step8(session, state, lookup);
+                T result = step8(session, state, lookup);
+                targetHealth.succeeded(target.getTargetPath(), System.nanoTime() - start);
+                lookup.setTargetHint(target);
+                return result;
             } catch (SMBApiException e) {
-                lastException = e;
-                if (e.getStatusCode() != NtStatus.STATUS_PATH_NOT_COVERED.getValue()) {
-                    target = lookup.nextTargetHint();
-                    state.path = initialPath;
+                if (e.getStatusCode() == NtStatus.STATUS_PATH_NOT_COVERED.getValue()) {
+                    throw e;
                 }
+                lastException = e;
+            } catch (SMBRuntimeException e) {
+                lastException = e;
             }
+            logger.debug("DFS target {} for {} failed, trying the next target", target.getTargetPath(), lookup.getDfsPathPrefix(), lastException);
+            targetHealth.failed(target.getTargetPath());
+            state.path = initialPath;
         }
 
         if (lastException != null) {
@@ -191,6 +269,93 @@ public class DFSPathResolver implements PathResolver {
         throw new IllegalStateException("Unknown error resolving DFS");
     }
 
+    /**
+     * Steps 3 and 8 for an action without side effects: apply the action to the preferred target, and if it has not
+     * completed within the configured percentile of that target's latency, also to the next target. The first result
+     * is used and the other one is discarded. If both fail, the remaining targets are tried one by one. When all hedge
+     * threads are busy, the targets are tried one by one on the calling thread instead.
+     */
+    private <T> T hedge(Session session, ResolveState<T> state, ReferralCache.ReferralCacheEntry lookup, List<ReferralCache.TargetSetEntry> targets, final PathResolver.HedgeableResolveAction<T> action) {
+        DFSPath initialPath = state.path;
+        state.isDFSPath = true;
+        ReferralCache.TargetSetEntry primary = targets.get(0);
+        CompletableFuture<T> first;
+        try {
+            first = attempt(initialPath, lookup, primary, action);
+        } catch (RejectedExecutionException e) {
+            logger.debug("No thread free to hedge {}, trying its targets one by one", lookup.getDfsPathPrefix());
+            return tryTargets(session, state, lookup, targets, null);
+        }
+        long delay = targetHealth.getLatencyPercentileNanos(primary.getTargetPath(), cache.getHedgePercentile());
+        if (delay < 0) {
+            delay = DEFAULT_HEDGE_DELAY_NANOS;
+        }
+        CompletableFuture<T> result = first;
+        int tried = 1;
+        try {
+            try {
+                return first.get(delay, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                ReferralCache.TargetSetEntry secondary = targets.get(1);
+                try {
+                    result = firstSuccessful(first, attempt(initialPath, lookup, secondary, action), action);
+                    tried = 2;
+                    logger.debug("DFS target {} did not answer within {} ms, hedging to {}", primary.getTargetPath(), TimeUnit.NANOSECONDS.toMillis(delay), secondary.getTargetPath());
+                } catch (RejectedExecutionException re) {
+                    logger.debug("DFS target {} did not answer within {} ms, no thread free to hedge to {}", primary.getTargetPath(), TimeUnit.NANOSECONDS.toMillis(delay), secondary.getTargetPath());
+                }
+            }
+            return result.get();
+        } catch (ExecutionException e) {
+            RuntimeException cause = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new SMBRuntimeException(e.getCause());
+            if (cause instanceof SMBApiException && ((SMBApiException) cause).getStatusCode() == NtStatus.STATUS_PATH_NOT_COVERED.getValue()) {
+                throw cause;
+            }
+            state.path = initialPath;
+            return tryTargets(session, state, lookup, targets.subList(tried, targets.size()), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SMBRuntimeException(e);
+        }
+    }
+
+    private <T> CompletableFuture<T> attempt(final DFSPath path, final ReferralCache.ReferralCacheEntry lookup, final ReferralCache.TargetSetEntry target, final PathResolver.ResolveAction<T> action) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                T result = action.apply(SmbPath.parse(path.replacePrefix(lookup.getDfsPathPrefix(), target.getTargetPath()).toPath()));
+                targetHealth.succeeded(target.getTargetPath(), System.nanoTime() - start);
+                lookup.setTargetHint(target);
+                return result;
+            } catch (SMBApiException e) {
+                if (e.getStatusCode() != NtStatus.STATUS_PATH_NOT_COVERED.getValue()) {
+                    targetHealth.failed(target.getTargetPath());
+                }
+                throw e;
+            } catch (SMBRuntimeException e) {
+                targetHealth.failed(target.getTargetPath());
+                throw e;
+            }
+        }, cache.hedgeExecutor());
+    }
+
+    private static <T> CompletableFuture<T> firstSuccessful(CompletableFuture<T> first, CompletableFuture<T> second, final PathResolver.HedgeableResolveAction<T> action) {
+        final CompletableFuture<T> winner = new CompletableFuture<>();
+        final AtomicInteger failures = new AtomicInteger();
+        BiConsumer<T, Throwable> complete = (value, failure) -> {
+            if (failure == null) {
+                if (!winner.complete(value) && value != null) {
+                    action.discard(value);
+                }
+            } else if (failures.incrementAndGet() == 2) {
+                winner.completeExceptionally(failure instanceof CompletionException ? failure.getCause() : failure);
+            }
+        };
+        first.whenComplete(complete);
+        second.whenComplete(complete);
+        return winner;
+    }
+
     /**
      * Step 4: [ReferralCache hit, unexpired TTL, RootOrLink=link]
      * 1. If the second component of the path is "SYSVOL" or "NETLOGON" go to step 3.
@@ -232,6 +397,9 @@ public class DFSPathResolver implements PathResolver {
         }
 
         // 5.2
+        if (cache.isRefreshEnabled() && domainCacheEntry.isExpired()) {
+            refreshInBackground(session, domainCacheEntry);
+        }
         if (domainCacheEntry.getDCHint() == null || domainCacheEntry.getDCHint().isEmpty()) { // 5.2.1
             // Send DC referral request
             String bootstrapDC = session.getAuthenticationContext().getDomain();
@@ -411,6 +579,75 @@ public class DFSPathResolver implements PathResolver {
         throw new DFSException(result.status, "DFS request failed for path " + state.path);
     }
 
+    /**
+     * Refresh a ReferralCache entry past its soft time-out without blocking the I/O request that found it. A root
+     * referral is requested again from the root server or the domain's DC, a link referral from the root target,
+     * as in steps 5 and 9. If the refresh fails, the stale entry is kept until its hard time-out.
+     */
+    private void refreshInBackground(final Session session, final ReferralCache.ReferralCacheEntry entry) {
+        if (!entry.startRefresh()) {
+            return;
+        }
+        cache.execute(new Runnable() {
+            @Override
+            public void run() {
+                DFSPath prefix = new DFSPath(entry.getDfsPathPrefix());
+                try {
+                    ReferralResult result;
+                    if (entry.isRoot()) {
+                        String hostName = prefix.getPathComponents().get(0);
+                        DomainCache.DomainCacheEntry domainCacheEntry = domainCache.lookup(hostName);
+                        if (domainCacheEntry != null && domainCacheEntry.getDCHint() != null && !domainCacheEntry.getDCHint().isEmpty()) {
+                            hostName = domainCacheEntry.getDCHint();
+                        }
+                        result = sendDfsReferralRequest(DfsRequestType.ROOT, hostName, session, prefix);
+                    } else {
+                        DFSPath rootPath = new DFSPath(prefix.getPathComponents().subList(0, 2));
+                        ReferralCache.ReferralCacheEntry rootEntry = referralCache.lookup(rootPath);
+                        if (rootEntry == null || rootEntry == entry) {
+                            logger.debug("No root referral for {}, not refreshing {}", rootPath, prefix);
+                            entry.refreshFailed();
+                            return;
+                        }
+                        result = sendDfsReferralRequest(DfsRequestType.LINK, rootEntry.getTargetHint().getTargetPath().getPathComponents().get(0), session, prefix);
+                    }
+                    if (!NtStatus.isSuccess(result.status)) {
+                        logger.debug("Refreshing DFS referral for {} failed with status 0x{}", prefix, Long.toHexString(result.status));
+                        entry.refreshFailed();
+                    }
+                } catch (DFSException | RuntimeException e) {
+                    logger.debug("Refreshing DFS referral for {} failed", prefix, e);
+                    entry.refreshFailed();
+                }
+            }
+        });
+    }
+
+    /**
+     * Refresh the DC list of an expired DomainCache entry in the background, as in step 5.2.1.
+     */
+    private void refreshInBackground(final Session session, final DomainCache.DomainCacheEntry entry) {
+        if (!entry.startRefresh()) {
+            return;
+        }
+        cache.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    String bootstrapDC = session.getAuthenticationContext().getDomain();
+                    DFSPath domainPath = new DFSPath(Collections.singletonList(entry.getDomainName()));
+                    ReferralResult result = sendDfsReferralRequest(DfsRequestType.DC, bootstrapDC, session, domainPath);
+                    if (!NtStatus.isSuccess(result.status) || result.domainCacheEntry == null) {
+                        entry.refreshFailed();
+                    }
+                } catch (DFSException | RuntimeException e) {
+                    logger.debug("Refreshing DC list for domain {} failed", entry.getDomainName(), e);
+                    entry.refreshFailed();
+                }
+            }
+        });
+    }
+
     private ReferralResult sendDfsReferralRequest(DfsRequestType type, String hostName, Session session, DFSPath path) throws DFSException {
         // The client MUST initiate a server session with the SMB server, as specified in [MS-CIFS] section 3.4.4.7,
         // by passing HostName and UserCredentials as input parameters and receiving an opaque ClientGenericContext,
@@ -482,6 +719,7 @@ public class DFSPathResolver implements PathResolver {
         ReferralCache.ReferralCacheEntry referralCacheEntry = new ReferralCache.ReferralCacheEntry(response, domainCache);
         logger.info("Got DFS Referral result: {}", referralCacheEntry);
         referralCache.put(referralCacheEntry);
+        cache.updated();
         result.referralCacheEntry = referralCacheEntry;
     }
 
@@ -491,6 +729,7 @@ public class DFSPathResolver implements PathResolver {
         }
         DomainCache.DomainCacheEntry domainCacheEntry = new DomainCache.DomainCacheEntry(response);
         domainCache.put(domainCacheEntry);
+        cache.updated();
         result.domainCacheEntry = domainCacheEntry;
     }
 
@@ -62,5 +62,16 @@ public interface PathResolver {
     interface ResolveAction<T> {
         T apply(SmbPath target);
     }
+
+    /**
+     * An action without side effects on the server, which a resolver may therefore apply to more than one target at
+     * the same time and use the first result of.
+     */
+    interface HedgeableResolveAction<T> extends ResolveAction<T> {
+        /**
+         * Release the result of an application of the action that was not used.
+         */
+        void discard(T result);
+    }
 }
 
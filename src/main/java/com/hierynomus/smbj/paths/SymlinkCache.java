@@ -0,0 +1,158 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.paths;
+
+import com.hierynomus.smbj.common.SmbPath;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the symbolic links that a server reported with STATUS_STOPPED_ON_SYMLINK, so that later opens of paths
+ * through the same link are sent to the link target right away instead of being redirected by the server first.
+ * <p>
+ * Entries expire after a fixed time, and the least recently used entry is evicted when the cache is full. Link paths
+ * are compared case-insensitively, like the server does.
+ */
+public class SymlinkCache {
+    /**
+     * The maximum number of links followed in a single lookup, which also stops a lookup in a cycle of links.
+     */
+    private static final int MAX_LINKS = 32;
+
+    private final long timeoutNanos;
+    private final Map<String, Link> entries;
+
+    /**
+     * @param timeout    How long the target of a link is used without asking the server again.
+     * @param maxEntries The maximum number of links remembered.
+     */
+    public SymlinkCache(long timeout, TimeUnit timeoutUnit, final int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Symlink cache size must be greater than zero");
+        }
+        this.timeoutNanos = timeoutUnit.toNanos(timeout);
+        this.entries = new LinkedHashMap<String, Link>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Link> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Remember that {@code linkPath} on the share of {@code smbPath} is a link to {@code linkTarget}.
+     */
+    public synchronized void put(SmbPath smbPath, String linkPath, String linkTarget) {
+        entries.put(key(smbPath, linkPath), new Link(linkTarget, System.nanoTime() + timeoutNanos));
+    }
+
+    /**
+     * Rewrite the path by replacing the longest known link that it passes through by its target, repeatedly.
+     *
+     * @return the rewritten path and the links it passed through, or null if the path passes through no known link
+     */
+    public synchronized Resolution lookup(SmbPath smbPath) {
+        String path = smbPath.getPath();
+        if (path == null || entries.isEmpty()) {
+            return null;
+        }
+        long now = System.nanoTime();
+        List<String> links = null;
+        while (true) {
+            String prefix = path;
+            String key = null;
+            Link entry = null;
+            while (!prefix.isEmpty()) {
+                key = key(smbPath, prefix);
+                entry = entries.get(key);
+                if (entry != null && now - entry.expires >= 0) {
+                    entries.remove(key);
+                    entry = null;
+                }
+                if (entry != null) {
+                    break;
+                }
+                int idx = prefix.lastIndexOf('\\');
+                prefix = idx > 0 ? prefix.substring(0, idx) : "";
+            }
+            if (entry == null) {
+                break;
+            }
+            if (links == null) {
+                links = new ArrayList<>();
+            } else if (links.size() >= MAX_LINKS) {
+                return null;
+            }
+            links.add(key);
+            path = SymlinkPathResolver.normalizePath(entry.target + path.substring(prefix.length()));
+        }
+        if (links == null) {
+            return null;
+        }
+        return new Resolution(new SmbPath(smbPath.getHostname(), smbPath.getShareName(), path), links);
+    }
+
+    /**
+     * Forget the links that the resolution passed through, for instance because the target did not exist (anymore).
+     */
+    public synchronized void invalidate(Resolution resolution) {
+        for (String link : resolution.links) {
+            entries.remove(link);
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private static String key(SmbPath smbPath, String linkPath) {
+        return (smbPath.getHostname() + "\\" + smbPath.getShareName() + "\\" + linkPath).toLowerCase(Locale.ROOT);
+    }
+
+    private static class Link {
+        private final String target;
+        private final long expires;
+
+        private Link(String target, long expires) {
+            this.target = target;
+            this.expires = expires;
+        }
+    }
+
+    public static class Resolution {
+        private final SmbPath target;
+        private final List<String> links;
+
+        private Resolution(SmbPath target, List<String> links) {
+            this.target = target;
+            this.links = Collections.unmodifiableList(links);
+        }
+
+        public SmbPath getTarget() {
+            return target;
+        }
+    }
+}
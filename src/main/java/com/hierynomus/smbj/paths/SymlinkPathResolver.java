@@ -19,12 +19,15 @@ import com.hierynomus.mserref.NtStatus;
 import com.hierynomus.mssmb2.SMB2Error;
 import com.hierynomus.mssmb2.SMB2Functions;
 import com.hierynomus.mssmb2.SMB2Packet;
+import com.hierynomus.mssmb2.SMBApiException;
 import com.hierynomus.protocol.commons.Charsets;
 import com.hierynomus.smbj.common.SmbPath;
 import com.hierynomus.smbj.session.Session;
 import com.hierynomus.smbj.share.StatusHandler;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
 
 import static com.hierynomus.utils.Strings.join;
 import static com.hierynomus.utils.Strings.split;
@@ -32,9 +35,18 @@ import static com.hierynomus.utils.Strings.split;
 public class SymlinkPathResolver implements PathResolver {
     private PathResolver wrapped;
     private StatusHandler statusHandler;
+    private final SymlinkCache cache;
 
     public SymlinkPathResolver(final PathResolver wrapped) {
+        this(wrapped, null);
+    }
+
+    /**
+     * @param cache The cache of the links that were followed, or null to ask the server every time.
+     */
+    public SymlinkPathResolver(final PathResolver wrapped, SymlinkCache cache) {
         this.wrapped = wrapped;
+        this.cache = cache;
         this.statusHandler = new StatusHandler() {
             @Override
             public boolean isSuccess(long statusCode) {
@@ -50,7 +62,14 @@ public class SymlinkPathResolver implements PathResolver {
             if (symlinkData == null) {
                 throw new PathResolveException(responsePacket.getHeader().getStatusCode(), "Create failed for " + smbPath + ": missing symlink data");
             }
-            String target = resolveSymlinkTarget(smbPath.getPath(), symlinkData);
+            String originalFileName = smbPath.getPath();
+            int unparsedPathLength = symlinkData.getUnparsedPathLength();
+            String linkPath = getSymlinkParsedPath(originalFileName, unparsedPathLength);
+            String linkTarget = resolveLinkTarget(linkPath, symlinkData);
+            if (cache != null) {
+                cache.put(smbPath, linkPath, linkTarget);
+            }
+            String target = normalizePath(linkTarget + getSymlinkUnparsedPath(originalFileName, unparsedPathLength));
             return action.apply(new SmbPath(smbPath.getHostname(), smbPath.getShareName(), target));
         }
 
@@ -59,7 +78,42 @@ public class SymlinkPathResolver implements PathResolver {
 
     @Override
     public <T> T resolve(Session session, SmbPath smbPath, ResolveAction<T> action) throws PathResolveException {
-        return wrapped.resolve(session, smbPath, action);
+        final SymlinkCache.Resolution cached = cache != null ? cache.lookup(smbPath) : null;
+        if (cached == null) {
+            return wrapped.resolve(session, smbPath, action);
+        }
+
+        T result;
+        try {
+            result = wrapped.resolve(session, cached.getTarget(), action);
+        } catch (SMBApiException e) {
+            if (e.getStatusCode() != NtStatus.STATUS_OBJECT_PATH_NOT_FOUND.getValue()) {
+                throw e;
+            }
+            // The link may have been changed or removed, let the server resolve the original path again
+            cache.invalidate(cached);
+            return wrapped.resolve(session, smbPath, action);
+        }
+        if (result instanceof CompletableFuture) {
+            ((CompletableFuture<?>) result).whenComplete(new BiConsumer<Object, Throwable>() {
+                @Override
+                public void accept(Object o, Throwable t) {
+                    if (isPathNotFound(t)) {
+                        cache.invalidate(cached);
+                    }
+                }
+            });
+        }
+        return result;
+    }
+
+    private static boolean isPathNotFound(Throwable t) {
+        for (Throwable c = t; c != null; c = c.getCause()) {
+            if (c instanceof SMBApiException) {
+                return ((SMBApiException) c).getStatusCode() == NtStatus.STATUS_OBJECT_PATH_NOT_FOUND.getValue();
+            }
+        }
+        return false;
     }
 
 
@@ -80,28 +134,22 @@ public class SymlinkPathResolver implements PathResolver {
         return null;
     }
 
-    private String resolveSymlinkTarget(String originalFileName, SMB2Error.SymbolicLinkError symlinkData) {
-        int unparsedPathLength = symlinkData.getUnparsedPathLength();
-        String unparsedPath = getSymlinkUnparsedPath(originalFileName, unparsedPathLength);
+    /**
+     * The target of the link itself, to which the unparsed remainder of the original path is appended.
+     */
+    private String resolveLinkTarget(String linkPath, SMB2Error.SymbolicLinkError symlinkData) {
         String substituteName = symlinkData.getSubstituteName();
-
-        String target;
         if (symlinkData.isAbsolute()) {
-            target = substituteName + unparsedPath;
-        } else {
-            String parsedPath = getSymlinkParsedPath(originalFileName, unparsedPathLength);
-            StringBuilder b = new StringBuilder();
-            int startIndex = parsedPath.lastIndexOf("\\");
-            if (startIndex != -1) {
-                b.append(parsedPath, 0, startIndex);
-                b.append('\\');
-            }
-            b.append(substituteName);
-            b.append(unparsedPath);
-            target = b.toString();
+            return substituteName;
         }
-
-        return normalizePath(target);
+        StringBuilder b = new StringBuilder();
+        int startIndex = linkPath.lastIndexOf("\\");
+        if (startIndex != -1) {
+            b.append(linkPath, 0, startIndex);
+            b.append('\\');
+        }
+        b.append(substituteName);
+        return b.toString();
     }
 
     private String getSymlinkParsedPath(String fileName, int unparsedPathLength) {
@@ -114,7 +162,7 @@ public class SymlinkPathResolver implements PathResolver {
         return new String(fileNameBytes, fileNameBytes.length - unparsedPathLength, unparsedPathLength, Charsets.UTF_16LE);
     }
 
-    private String normalizePath(String path) {
+    static String normalizePath(String path) {
         List<String> parts = split(path, '\\');
 
         for (int i = 0; i < parts.size(); ) {
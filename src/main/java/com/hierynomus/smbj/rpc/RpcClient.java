@@ -0,0 +1,184 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.rpc;
+
+import com.hierynomus.msrpce.RpcException;
+import com.hierynomus.msrpce.SyntaxId;
+import com.hierynomus.msrpce.messages.RpcBindAck;
+import com.hierynomus.msrpce.messages.RpcBindRequest;
+import com.hierynomus.msrpce.messages.RpcHeader;
+import com.hierynomus.msrpce.messages.RpcRequest;
+import com.hierynomus.msrpce.messages.RpcResponse;
+import com.hierynomus.protocol.commons.buffer.Buffer;
+import com.hierynomus.protocol.commons.concurrent.Futures;
+import com.hierynomus.smbj.common.SMBRuntimeException;
+import com.hierynomus.smbj.share.NamedPipe;
+import com.hierynomus.smbj.share.NamedPipePool;
+import com.hierynomus.smbj.share.PipeShare;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A connection-oriented DCE/RPC client for a single interface, using named pipes on an IPC$ share as transport.
+ * <p/>
+ * Calls are spread over a {@link NamedPipePool}; every pipe instance is bound to the interface when it is opened, so
+ * up to {@code maxConcurrentCalls} calls can be in flight at the same time. Request stub data is split into fragments
+ * of at most the negotiated transmit size, and response fragments are reassembled before the stub data is returned.
+ * <p/>
+ * Authentication at the RPC level is not supported; the SMB session already authenticates the pipe.
+ */
+public class RpcClient implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(RpcClient.class);
+
+    public static final int DEFAULT_MAX_FRAG = 4280;
+    private static final int CONTEXT_ID = 0;
+    private static final long PIPE_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final SyntaxId abstractSyntax;
+    private final NamedPipePool pool;
+    private final Executor callbackExecutor;
+    private final AtomicLong callIds = new AtomicLong();
+    private volatile int maxXmitFrag = DEFAULT_MAX_FRAG;
+
+    /**
+     * @param share              the IPC$ share
+     * @param pipeName           the name of the pipe the interface is served on, e.g. "srvsvc"
+     * @param abstractSyntax     the interface to bind to
+     * @param maxConcurrentCalls the maximum number of pipe instances, and thus concurrent calls
+     */
+    public RpcClient(PipeShare share, String pipeName, SyntaxId abstractSyntax, int maxConcurrentCalls) {
+        this.abstractSyntax = abstractSyntax;
+        this.pool = new NamedPipePool(share, pipeName, maxConcurrentCalls, PIPE_WAIT_MILLIS, this::bind);
+        this.callbackExecutor = share.getTreeConnect().getConfig().getCallbackExecutor();
+    }
+
+    private CompletableFuture<Void> bind(final NamedPipe pipe) {
+        byte[] request = new RpcBindRequest(callIds.incrementAndGet(), DEFAULT_MAX_FRAG, DEFAULT_MAX_FRAG, CONTEXT_ID, abstractSyntax).toBytes();
+        return pipe.transactAsync(request).thenAccept(pdu -> {
+            try {
+                RpcBindAck ack = RpcBindAck.read(pdu);
+                maxXmitFrag = Math.min(DEFAULT_MAX_FRAG, ack.getMaxRecvFrag());
+                logger.debug("Bound {} to {}, max fragment size {}", pipe.getName(), abstractSyntax, maxXmitFrag);
+            } catch (Buffer.BufferException e) {
+                throw Futures.asCompletionException(new RpcException("Malformed bind response: " + e.getMessage()));
+            }
+        });
+    }
+
+    /**
+     * Calls an operation of the interface.
+     *
+     * @param opnum the operation number
+     * @param stub  the NDR encoded input parameters
+     * @return a future for the NDR encoded output parameters and return value
+     */
+    public CompletableFuture<byte[]> callAsync(int opnum, byte[] stub) {
+        return pool.withPipe(pipe -> call(pipe, opnum, stub), RpcClient::isFault);
+    }
+
+    /**
+     * Calls an operation of the interface, and waits for the result.
+     *
+     * @see #callAsync(int, byte[])
+     */
+    public byte[] call(int opnum, byte[] stub) {
+        return await(callAsync(opnum, stub));
+    }
+
+    private CompletableFuture<byte[]> call(NamedPipe pipe, int opnum, byte[] stub) {
+        long callId = callIds.incrementAndGet();
+        int maxStub = maxXmitFrag - RpcRequest.HEADER_LENGTH;
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        return send(pipe, callId, opnum, stub, 0, maxStub).thenComposeAsync(pdu -> collect(pipe, callId, pdu, result), callbackExecutor);
+    }
+
+    /**
+     * Sends the request fragments from {@code offset} on, each one once the write of the previous one has completed.
+     * All fragments but the last are plain writes, the server only responds once it has the last fragment. The next
+     * fragment is sent from the callback executor, not from the packet reader thread that completes the write.
+     *
+     * @return a future for the first response PDU
+     */
+    private CompletableFuture<byte[]> send(NamedPipe pipe, long callId, int opnum, byte[] stub, int offset, int maxStub) {
+        int flags = offset == 0 ? RpcHeader.PFC_FIRST_FRAG : 0;
+        if (stub.length - offset <= maxStub) {
+            flags |= RpcHeader.PFC_LAST_FRAG;
+            return pipe.transactAsync(new RpcRequest(callId, flags, CONTEXT_ID, opnum, stub.length).toBytes(stub, offset, stub.length - offset));
+        }
+        byte[] fragment = new RpcRequest(callId, flags, CONTEXT_ID, opnum, stub.length).toBytes(stub, offset, maxStub);
+        return pipe.writeAsync(fragment, 0, fragment.length)
+            .thenComposeAsync(written -> send(pipe, callId, opnum, stub, offset + maxStub, maxStub), callbackExecutor);
+    }
+
+    private CompletableFuture<byte[]> collect(NamedPipe pipe, long callId, byte[] pdu, ByteArrayOutputStream result) {
+        RpcResponse response;
+        try {
+            response = RpcResponse.read(pdu);
+        } catch (Buffer.BufferException e) {
+            throw Futures.asCompletionException(new RpcException("Malformed response: " + e.getMessage()));
+        }
+        if (response.getHeader().getCallId() != callId) {
+            throw Futures.asCompletionException(new RpcException("Expected response to call " + callId + ", got " + response.getHeader().getCallId()));
+        }
+        byte[] stub = response.getStub();
+        result.write(stub, 0, stub.length);
+        if (response.getHeader().isLastFragment()) {
+            return CompletableFuture.completedFuture(result.toByteArray());
+        }
+        return pipe.readMessageAsync().thenComposeAsync(next -> collect(pipe, callId, next, result), callbackExecutor);
+    }
+
+    /**
+     * A fault PDU completes the call like a response does, so the pipe instance is ready for the next call.
+     */
+    private static boolean isFault(Throwable failure) {
+        return failure instanceof RpcException && ((RpcException) failure).getStatus() != 0;
+    }
+
+    /**
+     * Waits for the future and rethrows its failure unwrapped, for the blocking variants of the RPC operations.
+     */
+    public static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SMBRuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SMBRuntimeException(cause);
+        }
+    }
+
+    /**
+     * Closes the idle pipe instances; instances in use are closed when their call completes.
+     */
+    @Override
+    public void close() {
+        pool.close();
+    }
+}
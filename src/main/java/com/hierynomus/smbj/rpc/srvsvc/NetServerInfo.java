@@ -0,0 +1,75 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.rpc.srvsvc;
+
+/**
+ * [MS-SRVS] 2.2.4.41 SERVER_INFO_101, as returned by {@link ServerService#netServerGetInfo()}.
+ */
+public class NetServerInfo {
+    private final long platformId;
+    private final String name;
+    private final long versionMajor;
+    private final long versionMinor;
+    private final long type;
+    private final String comment;
+
+    public NetServerInfo(long platformId, String name, long versionMajor, long versionMinor, long type, String comment) {
+        this.platformId = platformId;
+        this.name = name;
+        this.versionMajor = versionMajor;
+        this.versionMinor = versionMinor;
+        this.type = type;
+        this.comment = comment;
+    }
+
+    public long getPlatformId() {
+        return platformId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getVersionMajor() {
+        return versionMajor;
+    }
+
+    public long getVersionMinor() {
+        return versionMinor;
+    }
+
+    /**
+     * @return the SV_TYPE_ flags describing the server's roles
+     */
+    public long getType() {
+        return type;
+    }
+
+    public String getComment() {
+        return comment;
+    }
+
+    @Override
+    public String toString() {
+        return "NetServerInfo{" +
+            "platformId=" + platformId +
+            ", name='" + name + '\'' +
+            ", version=" + versionMajor + "." + versionMinor +
+            ", type=0x" + Long.toHexString(type) +
+            ", comment='" + comment + '\'' +
+            '}';
+    }
+}
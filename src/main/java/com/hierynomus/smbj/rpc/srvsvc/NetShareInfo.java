@@ -0,0 +1,75 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.rpc.srvsvc;
+
+/**
+ * [MS-SRVS] 2.2.4.23 SHARE_INFO_1, a share as returned by {@link ServerService#netShareEnumAll()}.
+ */
+public class NetShareInfo {
+    public static final long STYPE_DISKTREE = 0x00000000L;
+    public static final long STYPE_PRINTQ = 0x00000001L;
+    public static final long STYPE_DEVICE = 0x00000002L;
+    public static final long STYPE_IPC = 0x00000003L;
+    public static final long STYPE_TEMPORARY = 0x40000000L;
+    public static final long STYPE_SPECIAL = 0x80000000L;
+
+    private static final long STYPE_MASK = 0x000000FFL;
+
+    private final String netName;
+    private final long type;
+    private final String remark;
+
+    public NetShareInfo(String netName, long type, String remark) {
+        this.netName = netName;
+        this.type = type;
+        this.remark = remark;
+    }
+
+    public String getNetName() {
+        return netName;
+    }
+
+    /**
+     * @return the share type: one of the {@code STYPE_} base types, possibly combined with {@link #STYPE_TEMPORARY} and {@link #STYPE_SPECIAL}
+     */
+    public long getType() {
+        return type;
+    }
+
+    public String getRemark() {
+        return remark;
+    }
+
+    public boolean isDiskTree() {
+        return (type & STYPE_MASK) == STYPE_DISKTREE;
+    }
+
+    /**
+     * @return whether this is a special share, such as an administrative share (C$, ADMIN$) or IPC$
+     */
+    public boolean isSpecial() {
+        return (type & STYPE_SPECIAL) != 0;
+    }
+
+    @Override
+    public String toString() {
+        return "NetShareInfo{" +
+            "netName='" + netName + '\'' +
+            ", type=0x" + Long.toHexString(type) +
+            ", remark='" + remark + '\'' +
+            '}';
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.rpc.srvsvc;
+
+import com.hierynomus.msrpce.NdrBuffer;
+import com.hierynomus.msrpce.RpcException;
+import com.hierynomus.msrpce.SyntaxId;
+import com.hierynomus.protocol.commons.buffer.Buffer;
+import com.hierynomus.protocol.commons.concurrent.Futures;
+import com.hierynomus.smbj.rpc.RpcClient;
+import com.hierynomus.smbj.share.PipeShare;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Client for the [MS-SRVS] Server Service Remote Protocol, served on the "srvsvc" pipe.
+ */
+public class ServerService implements Closeable {
+    public static final SyntaxId SRVSVC = new SyntaxId(UUID.fromString("4b324fc8-1670-01d3-1278-5a47bf6ee188"), 3, 0);
+
+    private static final int NETR_SHARE_ENUM = 15;
+    private static final int NETR_SERVER_GET_INFO = 21;
+    private static final long MAX_PREFERRED_LENGTH = 0xFFFFFFFFL;
+    private static final long ERROR_SUCCESS = 0;
+    private static final long ERROR_MORE_DATA = 234;
+
+    private final RpcClient rpc;
+    private final String serverName;
+
+    public ServerService(PipeShare share) {
+        this(share, 1);
+    }
+
+    /**
+     * @param share              the IPC$ share of the server
+     * @param maxConcurrentCalls the number of srvsvc pipe instances to use for concurrent calls
+     */
+    public ServerService(PipeShare share, int maxConcurrentCalls) {
+        this.rpc = new RpcClient(share, "srvsvc", SRVSVC, maxConcurrentCalls);
+        this.serverName = "\\\\" + share.getSmbPath().getHostname();
+    }
+
+    /**
+     * [MS-SRVS] 3.1.4.8 NetrShareEnum, at information level 1. Despite the name, this returns all shares, including the
+     * special and hidden ones.
+     */
+    public CompletableFuture<List<NetShareInfo>> netShareEnumAllAsync() {
+        return netShareEnum(new ArrayList<NetShareInfo>(), 0);
+    }
+
+    public List<NetShareInfo> netShareEnumAll() {
+        return RpcClient.await(netShareEnumAllAsync());
+    }
+
+    private CompletableFuture<List<NetShareInfo>> netShareEnum(final List<NetShareInfo> shares, long resumeHandle) {
+        NdrBuffer request = new NdrBuffer();
+        request.putUniqueString(serverName);
+        request.align(4);
+        request.putUInt32(1); // InfoStruct.Level
+        request.putUInt32(1); // ShareInfo union discriminant
+        request.putReferent(true); // ShareInfo.Level1
+        request.putUInt32(0); // EntriesRead
+        request.putReferent(false); // Buffer
+        request.putUInt32(MAX_PREFERRED_LENGTH);
+        request.putReferent(true); // ResumeHandle
+        request.putUInt32(resumeHandle);
+        return rpc.callAsync(NETR_SHARE_ENUM, request.getCompactData()).thenCompose(response -> {
+            long nextResumeHandle;
+            long status;
+            try {
+                NdrBuffer buffer = new NdrBuffer(response);
+                readShareInfo1Container(buffer, shares);
+                buffer.alignRead(4);
+                buffer.readUInt32(); // TotalEntries
+                nextResumeHandle = buffer.readReferent() ? buffer.readUInt32() : 0;
+                status = buffer.readUInt32();
+            } catch (Buffer.BufferException e) {
+                throw Futures.asCompletionException(new RpcException("Malformed NetrShareEnum response: " + e.getMessage()));
+            }
+            if (status == ERROR_MORE_DATA) {
+                return netShareEnum(shares, nextResumeHandle);
+            } else if (status != ERROR_SUCCESS) {
+                throw Futures.asCompletionException(new RpcException(status, "NetrShareEnum failed"));
+            }
+            return CompletableFuture.completedFuture(shares);
+        });
+    }
+
+    private static void readShareInfo1Container(NdrBuffer buffer, List<NetShareInfo> shares) throws Buffer.BufferException {
+        buffer.readUInt32(); // InfoStruct.Level
+        buffer.readUInt32(); // ShareInfo union discriminant
+        if (!buffer.readReferent()) {
+            return;
+        }
+        buffer.readUInt32(); // EntriesRead
+        if (!buffer.readReferent()) {
+            return;
+        }
+        int count = buffer.readUInt32AsInt();
+        boolean[] hasName = new boolean[count];
+        long[] types = new long[count];
+        boolean[] hasRemark = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            hasName[i] = buffer.readReferent();
+            types[i] = buffer.readUInt32();
+            hasRemark[i] = buffer.readReferent();
+        }
+        // The strings are deferred until after the array, in the order their pointers appeared
+        for (int i = 0; i < count; i++) {
+            String name = hasName[i] ? buffer.readConformantVaryingString() : null;
+            String remark = hasRemark[i] ? buffer.readConformantVaryingString() : null;
+            shares.add(new NetShareInfo(name, types[i], remark));
+        }
+    }
+
+    /**
+     * [MS-SRVS] 3.1.4.17 NetrServerGetInfo, at information level 101.
+     */
+    public CompletableFuture<NetServerInfo> netServerGetInfoAsync() {
+        NdrBuffer request = new NdrBuffer();
+        request.putUniqueString(serverName);
+        request.align(4);
+        request.putUInt32(101); // Level
+        return rpc.callAsync(NETR_SERVER_GET_INFO, request.getCompactData()).thenApply(response -> {
+            NetServerInfo info = null;
+            long status;
+            try {
+                NdrBuffer buffer = new NdrBuffer(response);
+                buffer.readUInt32(); // InfoStruct union discriminant
+                if (buffer.readReferent()) {
+                    long platformId = buffer.readUInt32();
+                    boolean hasName = buffer.readReferent();
+                    long versionMajor = buffer.readUInt32();
+                    long versionMinor = buffer.readUInt32();
+                    long type = buffer.readUInt32();
+                    boolean hasComment = buffer.readReferent();
+                    String name = hasName ? buffer.readConformantVaryingString() : null;
+                    String comment = hasComment ? buffer.readConformantVaryingString() : null;
+                    info = new NetServerInfo(platformId, name, versionMajor, versionMinor, type, comment);
+                }
+                buffer.alignRead(4);
+                status = buffer.readUInt32();
+            } catch (Buffer.BufferException e) {
+                throw Futures.asCompletionException(new RpcException("Malformed NetrServerGetInfo response: " + e.getMessage()));
+            }
+            if (status != ERROR_SUCCESS) {
+                throw Futures.asCompletionException(new RpcException(status, "NetrServerGetInfo failed"));
+            }
+            return info;
+        });
+    }
+
+    public NetServerInfo netServerGetInfo() {
+        return RpcClient.await(netServerGetInfoAsync());
+    }
+
+    @Override
+    public void close() {
+        rpc.close();
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.share;
+
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.msfscc.fileinformation.FileIdBothDirectoryInformation;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.smbj.common.SMBRuntimeException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.hierynomus.msfscc.FileAttributes.FILE_ATTRIBUTE_DIRECTORY;
+import static com.hierynomus.msfscc.FileAttributes.FILE_ATTRIBUTE_REPARSE_POINT;
+import static com.hierynomus.protocol.commons.EnumWithValue.EnumUtils.isSet;
+
+/**
+ * Deletes a directory tree with many deletes in flight.
+ * <p>
+ * Directories are listed as they are discovered and their entries are deleted in parallel. Each entry is opened with
+ * FILE_DELETE_ON_CLOSE, so it costs a CREATE and a CLOSE rather than a separate SET_INFO as well. A directory is
+ * removed once all of its entries are gone; if any of them could not be deleted, the directory and its ancestors are
+ * left in place. Links to directories are removed themselves, not followed.
+ * <p>
+ * An entry that cannot be deleted because it is read-only has that attribute cleared first if so requested.
+ */
+class BulkDelete extends BulkOperation<Void> {
+    private final DiskShare share;
+    private final String root;
+    private final boolean clearReadOnly;
+    private final BulkOperationListener listener;
+    private final AtomicReference<SMBRuntimeException> firstFailure = new AtomicReference<>();
+
+    BulkDelete(DiskShare share, String root, boolean clearReadOnly, BulkOperationListener listener, Executor executor, int concurrency) {
+        super(executor, concurrency);
+        this.share = share;
+        this.root = root.replace('/', '\\').replaceAll("\\\\+$", "");
+        this.clearReadOnly = clearReadOnly;
+        this.listener = listener;
+    }
+
+    @Override
+    CompletableFuture<Void> start() {
+        final Directory directory = new Directory(root, null);
+        submit(() -> list(directory));
+        return super.start();
+    }
+
+    @Override
+    protected void refill() {
+        // All tasks are submitted as directories are listed
+    }
+
+    @Override
+    protected void complete(CompletableFuture<Void> done) {
+        SMBRuntimeException failure = firstFailure.get();
+        if (failure != null) {
+            done.completeExceptionally(failure);
+        } else {
+            done.complete(null);
+        }
+    }
+
+    private void list(final Directory directory) {
+        share.listAsync(directory.path).whenComplete((listing, failure) -> {
+            if (failure != null) {
+                failed(directory.path, Share.asSmbException(failure));
+                childFinished(directory, false);
+            } else {
+                for (FileIdBothDirectoryInformation information : listing) {
+                    String name = information.getFileName();
+                    if (name.equals(".") || name.equals("..")) {
+                        continue;
+                    }
+                    final String path = directory.path + "\\" + name;
+                    long attributes = information.getFileAttributes();
+                    directory.childAdded();
+                    if (isSet(attributes, FILE_ATTRIBUTE_DIRECTORY) && !isSet(attributes, FILE_ATTRIBUTE_REPARSE_POINT)) {
+                        final Directory child = new Directory(path, directory);
+                        submit(() -> list(child));
+                    } else {
+                        submit(() -> delete(path, false, directory));
+                    }
+                }
+                // The listing itself counted as an outstanding child
+                childFinished(directory, true);
+            }
+            taskDone();
+        });
+    }
+
+    private void delete(final String path, final boolean directory, final Directory parent) {
+        share.deleteOnOpenAsync(path, directory).whenComplete((ignored, failure) -> {
+            if (failure != null && clearReadOnly && isCannotDelete(failure)) {
+                share.clearReadOnlyAndDeleteAsync(path, directory).whenComplete((ignored2, retryFailure) -> deleted(path, parent, retryFailure));
+            } else {
+                deleted(path, parent, failure);
+            }
+        });
+    }
+
+    private void deleted(final String path, Directory parent, Throwable failure) {
+        if (failure == null) {
+            deliver(() -> listener.succeeded(path));
+        } else {
+            failed(path, Share.asSmbException(failure));
+        }
+        childFinished(parent, failure == null);
+        taskDone();
+    }
+
+    private void failed(final String path, final SMBRuntimeException failure) {
+        firstFailure.compareAndSet(null, failure);
+        deliver(() -> listener.failed(path, failure));
+    }
+
+    /**
+     * Once the last entry of a directory is gone, the directory itself is removed. If any entry could not be deleted,
+     * the directory is left, and so are its ancestors.
+     */
+    private void childFinished(final Directory directory, boolean success) {
+        if (directory == null || !directory.childFinished(success)) {
+            return;
+        }
+        if (directory.isFailed()) {
+            childFinished(directory.parent, false);
+        } else {
+            submitFirst(() -> delete(directory.path, true, directory.parent));
+        }
+    }
+
+    private static boolean isCannotDelete(Throwable failure) {
+        SMBRuntimeException e = Share.asSmbException(failure);
+        return e instanceof SMBApiException && ((SMBApiException) e).getStatus() == NtStatus.STATUS_CANNOT_DELETE;
+    }
+
+    private static class Directory {
+        private final String path;
+        private final Directory parent;
+        private int remaining = 1; // The listing
+        private boolean failed;
+
+        Directory(String path, Directory parent) {
+            this.path = path;
+            this.parent = parent;
+        }
+
+        synchronized void childAdded() {
+            remaining++;
+        }
+
+        /**
+         * @return whether this was the last outstanding entry
+         */
+        synchronized boolean childFinished(boolean success) {
+            failed |= !success;
+            return --remaining == 0;
+        }
+
+        synchronized boolean isFailed() {
+            return failed;
+        }
+    }
+}
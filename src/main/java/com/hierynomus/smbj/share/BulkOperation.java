@@ -0,0 +1,163 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.share;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs the tasks of a bulk operation on a share with a bounded number of them in flight.
+ * <p>
+ * Tasks are started from the callback executor, never from the packet reader thread, as sending may block on credits
+ * which are only granted by responses that the packet reader thread has to process. A task reports that it has
+ * finished through {@link #taskDone()}, after submitting any follow-up tasks, so that the operation does not complete
+ * in between. The operation completes once no tasks are pending or in flight and {@link #refill()} adds no more, and
+ * all results have been {@link #deliver(Runnable) delivered}.
+ */
+abstract class BulkOperation<T> {
+    private static final Logger logger = LoggerFactory.getLogger(BulkOperation.class);
+
+    private final Executor executor;
+    private final int concurrency;
+    private final CompletableFuture<T> done = new CompletableFuture<>();
+
+    private final Object lock = new Object();
+    private final Deque<Runnable> pending = new ArrayDeque<>();
+    private int inFlight;
+    private boolean pumping;
+    private boolean completing;
+    private CompletableFuture<Void> delivered = CompletableFuture.completedFuture(null);
+
+    BulkOperation(Executor executor, int concurrency) {
+        this.executor = executor;
+        this.concurrency = concurrency;
+    }
+
+    CompletableFuture<T> start() {
+        executor.execute(this::pump);
+        return done;
+    }
+
+    /**
+     * Called when no tasks are pending, to add the next batch of tasks, if any. It is only called by the pumping thread
+     * and without the lock held, so it may pull from a caller supplied iterator that is slow or blocks, while tasks that
+     * finish in the meantime can still report back.
+     */
+    protected abstract void refill();
+
+    /**
+     * Called once all tasks have finished.
+     */
+    protected abstract void complete(CompletableFuture<T> done);
+
+    protected void submit(Runnable task) {
+        synchronized (lock) {
+            pending.addLast(task);
+        }
+    }
+
+    /**
+     * Submits a task ahead of all pending ones, for instance a retry, so that work in progress finishes first.
+     */
+    protected void submitFirst(Runnable task) {
+        synchronized (lock) {
+            pending.addFirst(task);
+        }
+    }
+
+    /**
+     * Runs a callback of the caller on the executor, after all callbacks delivered before it. Results arrive on the
+     * packet reader thread, which must not run caller code, and in any order; the callbacks run one at a time, in the
+     * order in which they were delivered.
+     */
+    protected void deliver(final Runnable callback) {
+        synchronized (lock) {
+            delivered = delivered.thenRunAsync(() -> {
+                try {
+                    callback.run();
+                } catch (RuntimeException e) {
+                    logger.warn("Callback of bulk operation failed", e);
+                }
+            }, executor);
+        }
+    }
+
+    protected void taskDone() {
+        synchronized (lock) {
+            inFlight--;
+        }
+        executor.execute(this::pump);
+    }
+
+    /**
+     * Starts as many tasks as the concurrency allows. Only one thread pumps at a time, the lock is not held while
+     * refilling or running a task.
+     */
+    private void pump() {
+        synchronized (lock) {
+            if (pumping) {
+                return;
+            }
+            pumping = true;
+        }
+        try {
+            while (true) {
+                boolean empty;
+                synchronized (lock) {
+                    if (done.isDone() || completing || inFlight >= concurrency) {
+                        pumping = false;
+                        return;
+                    }
+                    empty = pending.isEmpty();
+                }
+                if (empty) {
+                    refill();
+                }
+                Runnable task;
+                CompletableFuture<Void> lastDelivery = null;
+                synchronized (lock) {
+                    task = pending.pollFirst();
+                    if (task == null) {
+                        pumping = false;
+                        if (inFlight == 0) {
+                            completing = true;
+                            lastDelivery = delivered;
+                        }
+                    } else {
+                        inFlight++;
+                    }
+                }
+                if (task == null) {
+                    if (lastDelivery != null) {
+                        lastDelivery.whenComplete((ignored, failure) -> complete(done));
+                    }
+                    return;
+                }
+                task.run();
+            }
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                pumping = false;
+            }
+            done.completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.share;
+
+import com.hierynomus.smbj.common.SMBRuntimeException;
+
+/**
+ * Receives the progress of a bulk delete or rename on a {@link DiskShare}, one call per path as soon as it is done.
+ * Calls are made on the {@link com.hierynomus.smbj.SmbConfig#getCallbackExecutor() callback executor}, one at a time.
+ */
+public interface BulkOperationListener {
+    BulkOperationListener NOOP = new BulkOperationListener() {
+        @Override
+        public void succeeded(String path) {
+        }
+
+        @Override
+        public void failed(String path, SMBRuntimeException failure) {
+        }
+    };
+
+    void succeeded(String path);
+
+    void failed(String path, SMBRuntimeException failure);
+}
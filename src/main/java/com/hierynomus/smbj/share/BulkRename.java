@@ -0,0 +1,79 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.share;
+
+import com.hierynomus.smbj.common.SMBRuntimeException;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Renames or moves many paths with a bounded number of renames in flight. Each rename opens the source with DELETE
+ * access, sets the {@link com.hierynomus.msfscc.fileinformation.FileRenameInformation} and closes it again.
+ */
+class BulkRename extends BulkOperation<Void> {
+    private final DiskShare share;
+    private final Iterator<Map.Entry<String, String>> renames;
+    private final boolean replaceIfExists;
+    private final BulkOperationListener listener;
+    private final int batchSize;
+    private final AtomicReference<SMBRuntimeException> firstFailure = new AtomicReference<>();
+
+    BulkRename(DiskShare share, Map<String, String> renames, boolean replaceIfExists, BulkOperationListener listener, Executor executor, int concurrency) {
+        super(executor, concurrency);
+        this.share = share;
+        this.renames = renames.entrySet().iterator();
+        this.replaceIfExists = replaceIfExists;
+        this.listener = listener;
+        this.batchSize = concurrency;
+    }
+
+    @Override
+    protected void refill() {
+        for (int i = 0; i < batchSize && renames.hasNext(); i++) {
+            Map.Entry<String, String> rename = renames.next();
+            final String source = rename.getKey();
+            final String target = rename.getValue();
+            submit(() -> rename(source, target));
+        }
+    }
+
+    @Override
+    protected void complete(CompletableFuture<Void> done) {
+        SMBRuntimeException failure = firstFailure.get();
+        if (failure != null) {
+            done.completeExceptionally(failure);
+        } else {
+            done.complete(null);
+        }
+    }
+
+    private void rename(final String source, String target) {
+        share.renameAsync(source, target, replaceIfExists).whenComplete((ignored, failure) -> {
+            if (failure == null) {
+                deliver(() -> listener.succeeded(source));
+            } else {
+                final SMBRuntimeException e = Share.asSmbException(failure);
+                firstFailure.compareAndSet(null, e);
+                deliver(() -> listener.failed(source, e));
+            }
+            taskDone();
+        });
+    }
+}
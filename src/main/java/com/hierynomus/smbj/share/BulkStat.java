@@ -0,0 +1,174 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.share;
+
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.msfscc.FileAttributes;
+import com.hierynomus.msfscc.fileinformation.FileIdBothDirectoryInformation;
+import com.hierynomus.mssmb2.SMB2MessageCommandCode;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.protocol.commons.EnumWithValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Retrieves the metadata of many paths with a bounded number of requests in flight.
+ * <p>
+ * Paths are taken from the iterable in batches and grouped by their parent directory. A directory for which at least
+ * the listing threshold of paths is requested is listed once, and every path in it is answered from that listing.
+ * Every other path is opened for FILE_READ_ATTRIBUTES only: the CREATE response already carries the times, sizes and
+ * attributes, so no QUERY_INFO is needed, and the CLOSE is sent without delaying the result.
+ */
+class BulkStat extends BulkOperation<Void> {
+    private static final Logger logger = LoggerFactory.getLogger(BulkStat.class);
+    private static final int MIN_BATCH_SIZE = 1024;
+
+    private final DiskShare share;
+    private final Iterator<String> paths;
+    private final Consumer<FileStat> consumer;
+    private final int listingThreshold;
+    private final int batchSize;
+
+    BulkStat(DiskShare share, Iterable<String> paths, Consumer<FileStat> consumer, Executor executor, int concurrency, int listingThreshold) {
+        super(executor, concurrency);
+        this.share = share;
+        this.paths = paths.iterator();
+        this.consumer = consumer;
+        this.listingThreshold = listingThreshold;
+        this.batchSize = Math.max(MIN_BATCH_SIZE, Math.max(concurrency, listingThreshold) * 4);
+    }
+
+    @Override
+    protected void refill() {
+        Map<String, List<String[]>> byParent = new LinkedHashMap<>();
+        for (int i = 0; i < batchSize && paths.hasNext(); i++) {
+            final String path = paths.next();
+            String[] parentAndName = splitParent(path);
+            if (parentAndName[1].isEmpty()) {
+                // The root of the share is not in any listing
+                submit(() -> open(path));
+                continue;
+            }
+            List<String[]> siblings = byParent.get(parentAndName[0]);
+            if (siblings == null) {
+                siblings = new ArrayList<>();
+                byParent.put(parentAndName[0], siblings);
+            }
+            siblings.add(new String[]{path, parentAndName[1]});
+        }
+
+        for (Map.Entry<String, List<String[]>> entry : byParent.entrySet()) {
+            final List<String[]> siblings = entry.getValue();
+            if (listingThreshold > 0 && siblings.size() >= listingThreshold) {
+                final String parent = entry.getKey();
+                submit(() -> list(parent, siblings));
+            } else {
+                for (final String[] sibling : siblings) {
+                    submit(() -> open(sibling[0]));
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void complete(CompletableFuture<Void> done) {
+        done.complete(null);
+    }
+
+    private void open(final String path) {
+        share.openAttributesAsync(path).whenComplete((context, failure) -> {
+            if (failure != null) {
+                deliver(FileStat.failed(path, Share.asSmbException(failure)));
+                taskDone();
+                return;
+            }
+            deliver(FileStat.of(path, context.resp));
+            context.share.closeFileIdAsync(context.resp.getFileId()).whenComplete((close, closeFailure) -> {
+                if (closeFailure != null) {
+                    logger.debug("Could not close the handle used to stat {}", path, closeFailure);
+                }
+                taskDone();
+            });
+        });
+    }
+
+    private void list(final String parent, final List<String[]> siblings) {
+        share.listAsync(parent).whenComplete((listing, failure) -> {
+            List<String[]> unresolved = new ArrayList<>();
+            if (failure != null) {
+                logger.debug("Could not list {}, opening its {} paths instead", parent, siblings.size(), failure);
+                unresolved.addAll(siblings);
+            } else {
+                Map<String, FileIdBothDirectoryInformation> exact = new HashMap<>();
+                Map<String, FileIdBothDirectoryInformation> ignoringCase = new HashMap<>();
+                for (FileIdBothDirectoryInformation information : listing) {
+                    exact.put(information.getFileName(), information);
+                    ignoringCase.put(information.getFileName().toLowerCase(Locale.ROOT), information);
+                }
+                for (String[] sibling : siblings) {
+                    FileIdBothDirectoryInformation information = exact.get(sibling[1]);
+                    if (information == null) {
+                        information = ignoringCase.get(sibling[1].toLowerCase(Locale.ROOT));
+                    }
+                    if (information == null) {
+                        deliver(FileStat.failed(sibling[0], new SMBApiException(NtStatus.STATUS_OBJECT_NAME_NOT_FOUND.getValue(),
+                            SMB2MessageCommandCode.SMB2_QUERY_DIRECTORY, "No entry " + sibling[1] + " in " + parent, null)));
+                    } else if (EnumWithValue.EnumUtils.isSet(information.getFileAttributes(), FileAttributes.FILE_ATTRIBUTE_REPARSE_POINT)) {
+                        // The listing describes the link itself, opening the path describes what it points to
+                        unresolved.add(sibling);
+                    } else {
+                        deliver(FileStat.of(sibling[0], information));
+                    }
+                }
+            }
+            for (int i = unresolved.size() - 1; i >= 0; i--) {
+                final String path = unresolved.get(i)[0];
+                submitFirst(() -> open(path));
+            }
+            taskDone();
+        });
+    }
+
+    private void deliver(final FileStat stat) {
+        deliver(() -> consumer.accept(stat));
+    }
+
+    /**
+     * Splits a share relative path into its parent directory and name, accepting both separators.
+     */
+    static String[] splitParent(String path) {
+        String normalized = path.replace('/', '\\');
+        int end = normalized.length();
+        while (end > 0 && normalized.charAt(end - 1) == '\\') {
+            end--;
+        }
+        int start = 0;
+        while (start < end && normalized.charAt(start) == '\\') {
+            start++;
+        }
+        normalized = normalized.substring(start, end);
+        int separator = normalized.lastIndexOf('\\');
+        if (separator < 0) {
+            return new String[]{"", normalized};
+        }
+        return new String[]{normalized.substring(0, separator), normalized.substring(separator + 1)};
+    }
+}
@@ -19,6 +19,7 @@ import com.hierynomus.mserref.NtStatus;
 import com.hierynomus.msfscc.FileInformationClass;
 import com.hierynomus.msfscc.fileinformation.FileDirectoryQueryableInformation;
 import com.hierynomus.msfscc.fileinformation.FileIdBothDirectoryInformation;
+import com.hierynomus.msfscc.fileinformation.FileIdBothDirectoryInformationView;
 import com.hierynomus.msfscc.fileinformation.FileInformation;
 import com.hierynomus.msfscc.fileinformation.FileInformationFactory;
 import com.hierynomus.mssmb2.SMB2ChangeNotifyFlags;
@@ -31,7 +32,9 @@ import com.hierynomus.mssmb2.messages.SMB2QueryDirectoryResponse;
 import com.hierynomus.smbj.common.SmbPath;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
+import java.util.function.Function;
 
 public class Directory extends DiskEntry implements Iterable<FileIdBothDirectoryInformation> {
     Directory(SMB2FileId fileId, DiskShare diskShare, SmbPath fileName) {
@@ -71,6 +74,50 @@ public class Directory extends DiskEntry implements Iterable<FileIdBothDirectory
         return fileList;
     }
 
+    /**
+     * Equivalent to calling {@link #listAsync(Class, String) listAsync(FileIdBothDirectoryInformation.class, null)}.
+     *
+     * @see #listAsync(Class, String)
+     */
+    public CompletableFuture<List<FileIdBothDirectoryInformation>> listAsync() {
+        return listAsync(FileIdBothDirectoryInformation.class, null);
+    }
+
+    /**
+     * Asynchronous variant of {@link #list(Class, String)}. Each subsequent query directory request is sent when the
+     * response to the previous one is received, no thread is blocked while waiting for the server.
+     *
+     * @see #iterator(Class, String)
+     */
+    public <F extends FileDirectoryQueryableInformation> CompletableFuture<List<F>> listAsync(Class<F> informationClass, String searchPattern) {
+        FileInformation.Decoder<F> decoder = FileInformationFactory.getDecoder(informationClass);
+        return queryDirectoryAsync(decoder, searchPattern, true, null, new ArrayList<F>());
+    }
+
+    private <F extends FileDirectoryQueryableInformation> CompletableFuture<List<F>> queryDirectoryAsync(final FileInformation.Decoder<F> decoder, final String searchPattern, boolean firstQuery, final byte[] previousBuffer, final List<F> collector) {
+        EnumSet<SMB2QueryDirectoryRequest.SMB2QueryDirectoryFlags> flags;
+        if (firstQuery) {
+            flags = EnumSet.of(SMB2QueryDirectoryRequest.SMB2QueryDirectoryFlags.SMB2_RESTART_SCANS);
+        } else {
+            flags = EnumSet.noneOf(SMB2QueryDirectoryRequest.SMB2QueryDirectoryFlags.class);
+        }
+
+        return share.queryDirectoryAsync(fileId, flags, decoder.getInformationClass(), searchPattern).thenCompose(qdResp -> {
+            long status = qdResp.getHeader().getStatusCode();
+            byte[] buffer = qdResp.getOutputBuffer();
+            // See DirectoryIterator#queryDirectory for the termination conditions
+            if (status == NtStatus.STATUS_NO_MORE_FILES.getValue() || status == NtStatus.STATUS_NO_SUCH_FILE.getValue() || (previousBuffer != null && Arrays.equals(previousBuffer, buffer))) {
+                return CompletableFuture.completedFuture(collector);
+            }
+
+            Iterator<F> iterator = FileInformationFactory.createFileInformationIterator(buffer, decoder);
+            while (iterator.hasNext()) {
+                collector.add(iterator.next());
+            }
+            return queryDirectoryAsync(decoder, searchPattern, false, buffer, collector);
+        });
+    }
+
     /**
      * Equivalent to calling {@link #iterator(Class, String) iterator(FileIdBothDirectoryInformation.class, null)}.
      *
@@ -109,7 +156,37 @@ public class Directory extends DiskEntry implements Iterable<FileIdBothDirectory
      * string("") match all files in a directory.
      */
     public <F extends FileDirectoryQueryableInformation> Iterator<F> iterator(Class<F> informationClass, String searchPattern) {
-        return new DirectoryIterator<>(informationClass, searchPattern);
+        final FileInformation.Decoder<F> decoder = FileInformationFactory.getDecoder(informationClass);
+        return new DirectoryIterator<>(decoder.getInformationClass(), searchPattern, new Function<byte[], Iterator<F>>() {
+            @Override
+            public Iterator<F> apply(byte[] buffer) {
+                return FileInformationFactory.createFileInformationIterator(buffer, decoder);
+            }
+        });
+    }
+
+    /**
+     * Equivalent to calling {@link #viewIterator(String) viewIterator(null)}.
+     *
+     * @see #viewIterator(String)
+     */
+    public Iterator<FileIdBothDirectoryInformationView> viewIterator() {
+        return viewIterator(null);
+    }
+
+    /**
+     * Returns an iterator of the contents of this directory, like {@link #iterator(Class, String)
+     * iterator(FileIdBothDirectoryInformation.class, searchPattern)}, but without decoding the entries up front. Each
+     * {@link FileIdBothDirectoryInformationView} reads its fields from the QUERY_DIRECTORY response when they are
+     * requested, which keeps listing very large directories cheap when only a few fields are needed.
+     */
+    public Iterator<FileIdBothDirectoryInformationView> viewIterator(String searchPattern) {
+        return new DirectoryIterator<>(FileInformationClass.FileIdBothDirectoryInformation, searchPattern, new Function<byte[], Iterator<FileIdBothDirectoryInformationView>>() {
+            @Override
+            public Iterator<FileIdBothDirectoryInformationView> apply(byte[] buffer) {
+                return FileInformationFactory.createFileIdBothDirectoryViewIterator(buffer);
+            }
+        });
     }
 
     /***
@@ -135,15 +212,17 @@ public class Directory extends DiskEntry implements Iterable<FileIdBothDirectory
         return String.format("Directory{fileId=%s, fileName='%s'}", fileId, name.toUncPath());
     }
 
-    private class DirectoryIterator<F extends FileDirectoryQueryableInformation> implements Iterator<F> {
-        private final FileInformation.Decoder<F> decoder;
+    private class DirectoryIterator<F> implements Iterator<F> {
+        private final FileInformationClass informationClass;
+        private final Function<byte[], Iterator<F>> entries;
         private Iterator<F> currentIterator;
         private byte[] currentBuffer;
         private F next;
         private String searchPattern;
 
-        DirectoryIterator(Class<F> informationClass, String searchPattern) {
-            decoder = FileInformationFactory.getDecoder(informationClass);
+        DirectoryIterator(FileInformationClass informationClass, String searchPattern, Function<byte[], Iterator<F>> entries) {
+            this.informationClass = informationClass;
+            this.entries = entries;
             this.searchPattern = searchPattern;
             queryDirectory(true);
             this.next = prepareNext();
@@ -187,8 +266,6 @@ public class Directory extends DiskEntry implements Iterable<FileIdBothDirectory
                 flags = EnumSet.noneOf(SMB2QueryDirectoryRequest.SMB2QueryDirectoryFlags.class);
             }
 
-            FileInformationClass informationClass = decoder.getInformationClass();
-
             SMB2QueryDirectoryResponse qdResp = share.queryDirectory(fileId, flags, informationClass, searchPattern);
 
             long status = qdResp.getHeader().getStatusCode();
@@ -203,7 +280,7 @@ public class Directory extends DiskEntry implements Iterable<FileIdBothDirectory
                 currentBuffer = null;
             } else {
                 currentBuffer = buffer;
-                currentIterator = FileInformationFactory.createFileInformationIterator(currentBuffer, decoder);
+                currentIterator = entries.apply(currentBuffer);
             }
         }
 
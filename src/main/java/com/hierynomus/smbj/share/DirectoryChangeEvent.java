@@ -0,0 +1,96 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.share;
+
+import com.hierynomus.msfscc.FileNotifyAction;
+import com.hierynomus.msfscc.fileinformation.FileIdBothDirectoryInformation;
+
+import java.util.List;
+
+/**
+ * A change on a directory watched by a {@link DirectoryWatcher}.
+ */
+public class DirectoryChangeEvent {
+    public enum Kind {
+        /**
+         * A single file or directory changed, see {@link #getAction()} and {@link #getFileName()}.
+         */
+        CHANGE,
+        /**
+         * The server (or the watcher's queue) could not keep track of the individual changes. The directory has been
+         * rescanned and {@link #getListing()} contains its current contents.
+         */
+        OVERFLOW,
+        /**
+         * The watch was ended by the server, for instance because the directory handle was closed or deleted.
+         */
+        INVALIDATED
+    }
+
+    private final DirectoryWatchKey key;
+    private final Kind kind;
+    private final FileNotifyAction action;
+    private final String fileName;
+    private final List<FileIdBothDirectoryInformation> listing;
+
+    DirectoryChangeEvent(DirectoryWatchKey key, Kind kind, FileNotifyAction action, String fileName, List<FileIdBothDirectoryInformation> listing) {
+        this.key = key;
+        this.kind = kind;
+        this.action = action;
+        this.fileName = fileName;
+        this.listing = listing;
+    }
+
+    public DirectoryWatchKey getKey() {
+        return key;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return The action, only set for {@link Kind#CHANGE} events
+     */
+    public FileNotifyAction getAction() {
+        return action;
+    }
+
+    /**
+     * @return The name of the changed file relative to the watched directory, only set for {@link Kind#CHANGE} events
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * @return The directory contents after a rescan, only set for {@link Kind#OVERFLOW} events. This is empty if the
+     * rescan itself failed.
+     */
+    public List<FileIdBothDirectoryInformation> getListing() {
+        return listing;
+    }
+
+    @Override
+    public String toString() {
+        return "DirectoryChangeEvent{" +
+            "directory=" + key.getDirectory().getUncPath() +
+            ", kind=" + kind +
+            ", action=" + action +
+            ", fileName='" + fileName + '\'' +
+            '}';
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.share;
+
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.msfscc.directory.FileNotifyInformation;
+import com.hierynomus.msfscc.fileinformation.FileIdBothDirectoryInformation;
+import com.hierynomus.mssmb2.SMB2CompletionFilter;
+import com.hierynomus.mssmb2.messages.SMB2ChangeNotifyResponse;
+import com.hierynomus.protocol.commons.concurrent.Futures;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * The registration of a {@link Directory} with a {@link DirectoryWatcher}.
+ * <p/>
+ * The key keeps {@link DirectoryWatcher#PIPELINE_DEPTH} CHANGE_NOTIFY requests outstanding, and sends a new one as soon
+ * as one completes, so that there is always a request the server can complete while the previous response is being
+ * processed. Responses are processed in the order the requests were sent.
+ */
+public class DirectoryWatchKey {
+    private static final Logger logger = LoggerFactory.getLogger(DirectoryWatchKey.class);
+
+    private final DirectoryWatcher watcher;
+    private final Directory directory;
+    private final Set<SMB2CompletionFilter> completionFilter;
+    private final boolean watchTree;
+    private final Executor executor;
+    private final Queue<Future<SMB2ChangeNotifyResponse>> outstanding = new ConcurrentLinkedQueue<>();
+    private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+    private volatile boolean valid = true;
+
+    DirectoryWatchKey(DirectoryWatcher watcher, Directory directory, Set<SMB2CompletionFilter> completionFilter, boolean watchTree) {
+        this.watcher = watcher;
+        this.directory = directory;
+        this.completionFilter = completionFilter;
+        this.watchTree = watchTree;
+        this.executor = directory.getDiskShare().getCallbackExecutor();
+    }
+
+    public Directory getDirectory() {
+        return directory;
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * Stop watching the directory. Outstanding CHANGE_NOTIFY requests are cancelled; the directory itself is not closed.
+     */
+    public void cancel() {
+        if (!valid) {
+            return;
+        }
+        valid = false;
+        watcher.remove(this);
+        Future<SMB2ChangeNotifyResponse> f;
+        while ((f = outstanding.poll()) != null) {
+            f.cancel(true);
+        }
+    }
+
+    synchronized void arm() {
+        if (!valid) {
+            return;
+        }
+        final Future<SMB2ChangeNotifyResponse> future = directory.watchAsync(completionFilter, watchTree);
+        outstanding.add(future);
+        final CompletableFuture<SMB2ChangeNotifyResponse> response = Futures.toCompletableFuture(future);
+        response.whenCompleteAsync((r, t) -> {
+            outstanding.remove(future);
+            if (t == null && isRearmable(r.getHeader().getStatusCode())) {
+                try {
+                    arm();
+                } catch (RuntimeException e) {
+                    logger.warn("Could not re-arm change notification on {}", directory, e);
+                    invalidate();
+                }
+            }
+        }, executor);
+        tail = tail.thenCompose(v -> response.handleAsync(this::process, executor).thenCompose(Function.identity()));
+    }
+
+    /**
+     * Rescan the directory after the events that are already being processed, and deliver the result as an overflow.
+     */
+    synchronized void scheduleRescan() {
+        tail = tail.thenCompose(v -> rescan());
+    }
+
+    private static boolean isRearmable(long status) {
+        return status == NtStatus.STATUS_SUCCESS.getValue() || status == NtStatus.STATUS_NOTIFY_ENUM_DIR.getValue();
+    }
+
+    private CompletableFuture<Void> process(SMB2ChangeNotifyResponse response, Throwable t) {
+        if (!valid) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (t != null) {
+            logger.warn("Change notification on {} failed", directory, Futures.unwrap(t));
+            invalidate();
+            return CompletableFuture.completedFuture(null);
+        }
+        long status = response.getHeader().getStatusCode();
+        List<FileNotifyInformation> changes = response.getFileNotifyInfoList();
+        if (status == NtStatus.STATUS_NOTIFY_ENUM_DIR.getValue() || (status == NtStatus.STATUS_SUCCESS.getValue() && changes.isEmpty())) {
+            // Too many changes to fit in the response; the server no longer knows what changed
+            logger.debug("Change notification overflow on {}, rescanning", directory);
+            return rescan();
+        }
+        if (status != NtStatus.STATUS_SUCCESS.getValue()) {
+            logger.debug("Change notification on {} ended with {}", directory, NtStatus.valueOf(status));
+            invalidate();
+            return CompletableFuture.completedFuture(null);
+        }
+        for (FileNotifyInformation change : changes) {
+            watcher.deliver(new DirectoryChangeEvent(this, DirectoryChangeEvent.Kind.CHANGE, change.getAction(), change.getFileName(), null));
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private CompletableFuture<Void> rescan() {
+        if (!valid) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<List<FileIdBothDirectoryInformation>> listing;
+        try {
+            listing = directory.listAsync();
+        } catch (RuntimeException e) {
+            listing = Futures.failed(e);
+        }
+        return listing.handleAsync((l, t) -> {
+            if (t != null) {
+                logger.warn("Rescan of {} failed", directory, Futures.unwrap(t));
+                l = Collections.emptyList();
+            }
+            if (valid) {
+                watcher.deliver(new DirectoryChangeEvent(this, DirectoryChangeEvent.Kind.OVERFLOW, null, null, l));
+            }
+            return null;
+        }, executor);
+    }
+
+    private void invalidate() {
+        if (valid) {
+            cancel();
+            watcher.deliver(new DirectoryChangeEvent(this, DirectoryChangeEvent.Kind.INVALIDATED, null, null, null));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DirectoryWatchKey{" + directory.getUncPath() + ", valid=" + valid + "}";
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.share;
+
+import com.hierynomus.mssmb2.SMB2CompletionFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.nio.file.ClosedWatchServiceException;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Watches any number of directories, on any number of shares, for changes.
+ * <p/>
+ * Each watched directory keeps change notification requests continuously outstanding (see {@link DirectoryWatchKey}),
+ * so no changes are missed between two responses. When the server reports that it could not track the individual
+ * changes ({@code STATUS_NOTIFY_ENUM_DIR}), the directory is listed again and an {@link DirectoryChangeEvent.Kind#OVERFLOW}
+ * event carrying the listing is delivered instead.
+ * <p/>
+ * Events are either delivered to a listener, or put in a bounded queue from which they can be taken with
+ * {@link #poll()} and {@link #take()}. When the queue is full, the events for that directory are dropped and the
+ * directory is rescanned as soon as there is room again. Events for a single directory are always delivered in order;
+ * they are processed on the callback executor of the share.
+ */
+public class DirectoryWatcher implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(DirectoryWatcher.class);
+
+    /**
+     * The number of CHANGE_NOTIFY requests kept outstanding per watched directory.
+     */
+    public static final int PIPELINE_DEPTH = 2;
+
+    private final Set<DirectoryWatchKey> keys = ConcurrentHashMap.newKeySet();
+    private final BlockingQueue<DirectoryChangeEvent> queue;
+    private final Consumer<DirectoryChangeEvent> listener;
+    private final Set<DirectoryWatchKey> overflowed = ConcurrentHashMap.newKeySet();
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * Create a watcher that queues events, to be taken with {@link #poll()} or {@link #take()}.
+     *
+     * @param queueCapacity The maximum number of queued events
+     */
+    public DirectoryWatcher(int queueCapacity) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.listener = null;
+    }
+
+    /**
+     * Create a watcher that delivers all events to the listener.
+     */
+    public DirectoryWatcher(Consumer<DirectoryChangeEvent> listener) {
+        this.queue = null;
+        this.listener = listener;
+    }
+
+    /**
+     * Start watching a directory. The directory should have been opened with
+     * {@link com.hierynomus.msdtyp.AccessMask#FILE_LIST_DIRECTORY} access and must stay open while it is watched.
+     *
+     * @param directory        The directory to watch
+     * @param completionFilter The types of changes to watch for
+     * @param watchTree        Whether to also watch all subdirectories
+     * @return The key for the registration
+     */
+    public DirectoryWatchKey watch(Directory directory, Set<SMB2CompletionFilter> completionFilter, boolean watchTree) {
+        if (closed) {
+            throw new ClosedWatchServiceException();
+        }
+        DirectoryWatchKey key = new DirectoryWatchKey(this, directory, completionFilter, watchTree);
+        keys.add(key);
+        try {
+            for (int i = 0; i < PIPELINE_DEPTH; i++) {
+                key.arm();
+            }
+        } catch (RuntimeException e) {
+            key.cancel();
+            throw e;
+        }
+        return key;
+    }
+
+    /**
+     * @return The next event, or {@code null} if there is none
+     */
+    public DirectoryChangeEvent poll() {
+        return taken(checkQueue().poll());
+    }
+
+    /**
+     * @return The next event, or {@code null} if none arrived within the timeout
+     */
+    public DirectoryChangeEvent poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return taken(checkQueue().poll(timeout, unit));
+    }
+
+    /**
+     * Wait for the next event.
+     */
+    public DirectoryChangeEvent take() throws InterruptedException {
+        return taken(checkQueue().take());
+    }
+
+    private BlockingQueue<DirectoryChangeEvent> checkQueue() {
+        if (queue == null) {
+            throw new IllegalStateException("Events of this watcher are delivered to its listener");
+        }
+        if (closed && queue.isEmpty()) {
+            throw new ClosedWatchServiceException();
+        }
+        return queue;
+    }
+
+    private DirectoryChangeEvent taken(DirectoryChangeEvent event) {
+        if (event != null && !overflowed.isEmpty()) {
+            for (DirectoryWatchKey key : overflowed) {
+                if (queue.remainingCapacity() == 0) {
+                    break;
+                }
+                if (overflowed.remove(key)) {
+                    key.scheduleRescan();
+                }
+            }
+        }
+        return event;
+    }
+
+    /**
+     * @return The number of events dropped because the queue was full
+     */
+    public long getDroppedEventCount() {
+        return droppedEvents.get();
+    }
+
+    void deliver(DirectoryChangeEvent event) {
+        if (listener != null) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException e) {
+                logger.warn("Listener failed to handle {}", event, e);
+            }
+        } else if (!queue.offer(event)) {
+            droppedEvents.incrementAndGet();
+            if (event.getKey().isValid()) {
+                overflowed.add(event.getKey());
+            }
+        }
+    }
+
+    void remove(DirectoryWatchKey key) {
+        keys.remove(key);
+        overflowed.remove(key);
+    }
+
+    /**
+     * Cancel all watches. Events that are still queued can be taken until the queue is empty.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (DirectoryWatchKey key : new ArrayList<>(keys)) {
+            key.cancel();
+        }
+    }
+}
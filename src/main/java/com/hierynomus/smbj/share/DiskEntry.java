@@ -17,6 +17,7 @@ package com.hierynomus.smbj.share;
 
 import java.util.EnumSet;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import com.hierynomus.msdtyp.SecurityDescriptor;
 import com.hierynomus.msdtyp.SecurityInformation;
@@ -89,6 +90,18 @@ public abstract class DiskEntry extends Open<DiskShare> {
         share.setFileInformation(fileId, information);
     }
 
+    public CompletableFuture<FileAllInformation> getFileInformationAsync() {
+        return getFileInformationAsync(FileAllInformation.class);
+    }
+
+    public <F extends FileQueryableInformation> CompletableFuture<F> getFileInformationAsync(Class<F> informationClass) {
+        return share.getFileInformationAsync(fileId, informationClass);
+    }
+
+    public <F extends FileSettableInformation> CompletableFuture<Void> setFileInformationAsync(F information) {
+        return share.setFileInformationAsync(fileId, information);
+    }
+
     public SecurityDescriptor getSecurityInformation(Set<SecurityInformation> securityInfo) throws SMBApiException {
         return share.getSecurityInfo(fileId, securityInfo);
     }
@@ -227,10 +240,18 @@ public abstract class DiskEntry extends Open<DiskShare> {
         share.flush(fileId);
     }
 
+    public CompletableFuture<Void> flushAsync() {
+        return share.flushAsync(fileId).thenApply(r -> null);
+    }
+
     public void deleteOnClose() {
         share.deleteOnClose(fileId);
     }
 
+    public CompletableFuture<Void> deleteOnCloseAsync() {
+        return share.deleteOnCloseAsync(fileId);
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -25,19 +25,28 @@ import com.hierynomus.mssmb2.*;
 import com.hierynomus.mssmb2.messages.SMB2CreateResponse;
 import com.hierynomus.mssmb2.messages.SMB2QueryInfoRequest;
 import com.hierynomus.mssmb2.messages.SMB2SetInfoRequest;
-import com.hierynomus.protocol.commons.EnumWithValue;
 import com.hierynomus.protocol.commons.buffer.Buffer;
 import com.hierynomus.protocol.commons.buffer.Endian;
+import com.hierynomus.protocol.commons.concurrent.Futures;
 import com.hierynomus.smb.SMBBuffer;
+import com.hierynomus.smbj.SmbConfig;
 import com.hierynomus.smbj.common.SMBRuntimeException;
 import com.hierynomus.smbj.common.SmbPath;
 import com.hierynomus.smbj.paths.PathResolveException;
 import com.hierynomus.smbj.paths.PathResolver;
 import com.hierynomus.smbj.session.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static com.hierynomus.msdtyp.AccessMask.*;
 import static com.hierynomus.mserref.NtStatus.*;
@@ -46,13 +55,19 @@ import static com.hierynomus.msfscc.FileAttributes.FILE_ATTRIBUTE_NORMAL;
 import static com.hierynomus.mssmb2.SMB2CreateDisposition.FILE_CREATE;
 import static com.hierynomus.mssmb2.SMB2CreateDisposition.FILE_OPEN;
 import static com.hierynomus.mssmb2.SMB2CreateOptions.FILE_DIRECTORY_FILE;
+import static com.hierynomus.mssmb2.SMB2CreateOptions.FILE_DELETE_ON_CLOSE;
 import static com.hierynomus.mssmb2.SMB2CreateOptions.FILE_NON_DIRECTORY_FILE;
+import static com.hierynomus.mssmb2.SMB2CreateOptions.FILE_OPEN_REPARSE_POINT;
 import static com.hierynomus.mssmb2.SMB2ShareAccess.*;
 import static com.hierynomus.mssmb2.messages.SMB2QueryInfoRequest.SMB2QueryInfoType.SMB2_0_INFO_SECURITY;
 import static java.util.EnumSet.noneOf;
 import static java.util.EnumSet.of;
 
 public class DiskShare extends Share {
+    private static final Logger logger = LoggerFactory.getLogger(DiskShare.class);
+    private static final Set<AccessMask> READ_ONLY_ACCESS = EnumSet.of(FILE_READ_DATA, FILE_EXECUTE, FILE_READ_ATTRIBUTES,
+        FILE_READ_EA, READ_CONTROL, SYNCHRONIZE, GENERIC_READ, GENERIC_EXECUTE);
+
     private final PathResolver resolver;
 
     public DiskShare(SmbPath smbPath, TreeConnect treeConnect, PathResolver pathResolver) {
@@ -66,6 +81,21 @@ public class DiskShare extends Share {
         return getDiskEntry(response);
     }
 
+    /**
+     * Asynchronous variant of {@link #open(String, Set, Set, Set, SMB2CreateDisposition, Set)}.
+     * <p>
+     * The create request is sent without blocking. If the server answers that the path needs to be resolved (e.g.
+     * a symbolic link or DFS link), the resolution and any follow-up requests happen on the configured
+     * {@link com.hierynomus.smbj.SmbConfig#getCallbackExecutor() callback executor}, never on the
+     * thread that receives the responses. A proactive DFS referral lookup may still happen on the calling thread.
+     *
+     * @return a future that completes with the opened {@link DiskEntry}, or exceptionally with an {@link SMBApiException}
+     */
+    public CompletableFuture<DiskEntry> openAsync(String path, Set<AccessMask> accessMask, Set<FileAttributes> attributes, Set<SMB2ShareAccess> shareAccesses, SMB2CreateDisposition createDisposition, Set<SMB2CreateOptions> createOptions) {
+        SmbPath pathAndFile = new SmbPath(smbPath, path);
+        return resolveAndCreateFileAsync(pathAndFile, null, accessMask, attributes, shareAccesses, createDisposition, createOptions).thenApply(this::getDiskEntry);
+    }
+
     @Override
     protected StatusHandler getCreateStatusHandler() {
         return resolver.statusHandler();
@@ -102,13 +132,17 @@ public class DiskShare extends Share {
             final Set<FileAttributes> fileAttributes, final Set<SMB2ShareAccess> shareAccess,
             final SMB2CreateDisposition createDisposition, final Set<SMB2CreateOptions> createOptions) {
         try {
-            SMB2CreateResponseContext target = resolver.resolve(session, path, new PathResolver.ResolveAction<SMB2CreateResponseContext>(){
+            PathResolver.ResolveAction<SMB2CreateResponseContext> action = new PathResolver.ResolveAction<SMB2CreateResponseContext>(){
                 @Override
                 public SMB2CreateResponseContext apply(SmbPath target) {
                     DiskShare resolvedShare = rerouteIfNeeded(path, target);
                     return resolvedShare.createFileAndResolve(target, impersonationLevel, accessMask, fileAttributes,
                             shareAccess, createDisposition, createOptions);                }
-            });
+            };
+            if (isReadOnlyOpen(accessMask, createDisposition, createOptions)) {
+                action = hedgeable(action);
+            }
+            SMB2CreateResponseContext target = resolver.resolve(session, path, action);
 
             return target;
         } catch (PathResolveException pre) {
@@ -117,6 +151,128 @@ public class DiskShare extends Share {
         }
     }
 
+    /**
+     * An open of an existing entry that does not modify it can be sent to more than one replica of a DFS link.
+     */
+    private static boolean isReadOnlyOpen(Set<AccessMask> accessMask, SMB2CreateDisposition createDisposition, Set<SMB2CreateOptions> createOptions) {
+        if (createDisposition != FILE_OPEN || accessMask == null || accessMask.isEmpty()) {
+            return false;
+        }
+        if (createOptions != null && createOptions.contains(SMB2CreateOptions.FILE_DELETE_ON_CLOSE)) {
+            return false;
+        }
+        return READ_ONLY_ACCESS.containsAll(accessMask);
+    }
+
+    private static PathResolver.ResolveAction<SMB2CreateResponseContext> hedgeable(final PathResolver.ResolveAction<SMB2CreateResponseContext> action) {
+        return new PathResolver.HedgeableResolveAction<SMB2CreateResponseContext>() {
+            @Override
+            public SMB2CreateResponseContext apply(SmbPath target) {
+                return action.apply(target);
+            }
+
+            @Override
+            public void discard(SMB2CreateResponseContext result) {
+                try {
+                    result.share.closeFileIdNoWait(result.resp.getFileId());
+                } catch (SMBRuntimeException e) {
+                    logger.debug("Could not close the unused handle to {}", result.target, e);
+                }
+            }
+        };
+    }
+
+    private CompletableFuture<SMB2CreateResponseContext> createFileAndResolveAsync(final SmbPath path, final SMB2ImpersonationLevel impersonationLevel, final Set<AccessMask> accessMask, final Set<FileAttributes> fileAttributes, final Set<SMB2ShareAccess> shareAccess, final SMB2CreateDisposition createDisposition, final Set<SMB2CreateOptions> createOptions) {
+        return super.createFileAsync(path, impersonationLevel, accessMask, fileAttributes, shareAccess, createDisposition, createOptions).thenCompose(resp -> {
+            if (resp.getHeader().getStatusCode() == STATUS_SUCCESS.getValue()) {
+                return CompletableFuture.completedFuture(new SMB2CreateResponseContext(resp, path, this));
+            }
+
+            // Resolving may need to connect to another host or share, which blocks; don't do that on the packet reader thread.
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    CompletableFuture<SMB2CreateResponseContext> target = resolver.resolve(session, resp, path, new PathResolver.ResolveAction<CompletableFuture<SMB2CreateResponseContext>>() {
+                        @Override
+                        public CompletableFuture<SMB2CreateResponseContext> apply(SmbPath target) {
+                            DiskShare resolveShare = rerouteIfNeeded(path, target);
+                            if (!path.equals(target)) {
+                                return resolveShare.createFileAndResolveAsync(target, impersonationLevel, accessMask, fileAttributes, shareAccess, createDisposition, createOptions);
+                            } else {
+                                return null;
+                            }
+                        }
+                    });
+
+                    if (target != null) {
+                        return target;
+                    }
+
+                    return CompletableFuture.completedFuture(new SMB2CreateResponseContext(resp, path, this));
+                } catch (PathResolveException e) {
+                    throw new SMBApiException(e.getStatusCode(), SMB2MessageCommandCode.SMB2_CREATE,
+                            "Cannot resolve path " + path, e);
+                }
+            }, getCallbackExecutor()).thenCompose(Function.identity());
+        });
+    }
+
+    private CompletableFuture<SMB2CreateResponseContext> resolveAndCreateFileAsync(final SmbPath path,
+            final SMB2ImpersonationLevel impersonationLevel, final Set<AccessMask> accessMask,
+            final Set<FileAttributes> fileAttributes, final Set<SMB2ShareAccess> shareAccess,
+            final SMB2CreateDisposition createDisposition, final Set<SMB2CreateOptions> createOptions) {
+        try {
+            return resolver.resolve(session, path, new PathResolver.ResolveAction<CompletableFuture<SMB2CreateResponseContext>>() {
+                @Override
+                public CompletableFuture<SMB2CreateResponseContext> apply(SmbPath target) {
+                    DiskShare resolvedShare = rerouteIfNeeded(path, target);
+                    return resolvedShare.createFileAndResolveAsync(target, impersonationLevel, accessMask, fileAttributes,
+                            shareAccess, createDisposition, createOptions);
+                }
+            });
+        } catch (PathResolveException pre) {
+            return Futures.failed(new SMBApiException(pre.getStatus().getValue(), SMB2MessageCommandCode.SMB2_CREATE,
+                    "Cannot resolve path " + path, pre));
+        } catch (SMBRuntimeException e) {
+            return Futures.failed(e);
+        }
+    }
+
+    /**
+     * Runs the action on the opened entry and closes the entry once the action has completed, regardless of its
+     * outcome. A failure of the action takes precedence over a failure to close.
+     */
+    private <E extends DiskEntry, T> CompletableFuture<T> withEntryAsync(CompletableFuture<E> open, final Function<E, CompletableFuture<T>> action) {
+        return open.thenCompose(entry -> {
+            CompletableFuture<T> result;
+            try {
+                result = action.apply(entry);
+            } catch (RuntimeException e) {
+                result = Futures.failed(e);
+            }
+            return result.handle((value, failure) -> entry.closeAsync().handle((ignored, closeFailure) -> {
+                if (failure != null) {
+                    throw Futures.asCompletionException(Futures.unwrap(failure));
+                } else if (closeFailure != null) {
+                    throw Futures.asCompletionException(Futures.unwrap(closeFailure));
+                }
+                return value;
+            })).thenCompose(Function.identity());
+        });
+    }
+
+    private static <T> CompletableFuture<T> recoverStatus(CompletableFuture<T> future, final StatusHandler statusHandler, final T recovered) {
+        return future.handle((value, failure) -> {
+            if (failure == null) {
+                return value;
+            }
+            Throwable cause = Futures.unwrap(failure);
+            if (cause instanceof SMBApiException && statusHandler.isSuccess(((SMBApiException) cause).getStatusCode())) {
+                return recovered;
+            }
+            throw Futures.asCompletionException(cause);
+        });
+    }
+
     private DiskShare rerouteIfNeeded(SmbPath path, SmbPath target) {
         Session connectedSession = this.session;
         if (!path.isOnSameHost(target)) {
@@ -141,39 +297,71 @@ public class DiskShare extends Share {
      * Get a handle to a directory in the given path
      */
     public Directory openDirectory(String path, Set<AccessMask> accessMask, Set<FileAttributes> attributes, Set<SMB2ShareAccess> shareAccesses, SMB2CreateDisposition createDisposition, Set<SMB2CreateOptions> createOptions) {
+        return (Directory) open(
+            path,
+            accessMask,
+            directoryAttributes(attributes),
+            shareAccesses,
+            createDisposition,
+            directoryCreateOptions(createOptions)
+        );
+    }
+
+    /**
+     * Asynchronous variant of {@link #openDirectory(String, Set, Set, Set, SMB2CreateDisposition, Set)}.
+     *
+     * @see #openAsync(String, Set, Set, Set, SMB2CreateDisposition, Set)
+     */
+    public CompletableFuture<Directory> openDirectoryAsync(String path, Set<AccessMask> accessMask, Set<FileAttributes> attributes, Set<SMB2ShareAccess> shareAccesses, SMB2CreateDisposition createDisposition, Set<SMB2CreateOptions> createOptions) {
+        return openAsync(path, accessMask, directoryAttributes(attributes), shareAccesses, createDisposition, directoryCreateOptions(createOptions))
+            .thenApply(e -> (Directory) e);
+    }
+
+    private static EnumSet<SMB2CreateOptions> directoryCreateOptions(Set<SMB2CreateOptions> createOptions) {
         EnumSet<SMB2CreateOptions> actualCreateOptions = createOptions != null ? EnumSet.copyOf(createOptions) : EnumSet.noneOf(SMB2CreateOptions.class);
         actualCreateOptions.add(FILE_DIRECTORY_FILE);
         actualCreateOptions.remove(FILE_NON_DIRECTORY_FILE);
+        return actualCreateOptions;
+    }
 
+    private static EnumSet<FileAttributes> directoryAttributes(Set<FileAttributes> attributes) {
         EnumSet<FileAttributes> actualAttributes = attributes != null ? EnumSet.copyOf(attributes) : EnumSet.noneOf(FileAttributes.class);
         actualAttributes.add(FILE_ATTRIBUTE_DIRECTORY);
+        return actualAttributes;
+    }
 
-        return (Directory) open(
+    public File openFile(String path, Set<AccessMask> accessMask, Set<FileAttributes> attributes, Set<SMB2ShareAccess> shareAccesses, SMB2CreateDisposition createDisposition, Set<SMB2CreateOptions> createOptions) {
+        return (File) open(
             path,
             accessMask,
-            actualAttributes,
+            fileAttributes(attributes),
             shareAccesses,
             createDisposition,
-            actualCreateOptions
+            fileCreateOptions(createOptions)
         );
     }
 
-    public File openFile(String path, Set<AccessMask> accessMask, Set<FileAttributes> attributes, Set<SMB2ShareAccess> shareAccesses, SMB2CreateDisposition createDisposition, Set<SMB2CreateOptions> createOptions) {
+    /**
+     * Asynchronous variant of {@link #openFile(String, Set, Set, Set, SMB2CreateDisposition, Set)}.
+     *
+     * @see #openAsync(String, Set, Set, Set, SMB2CreateDisposition, Set)
+     */
+    public CompletableFuture<File> openFileAsync(String path, Set<AccessMask> accessMask, Set<FileAttributes> attributes, Set<SMB2ShareAccess> shareAccesses, SMB2CreateDisposition createDisposition, Set<SMB2CreateOptions> createOptions) {
+        return openAsync(path, accessMask, fileAttributes(attributes), shareAccesses, createDisposition, fileCreateOptions(createOptions))
+            .thenApply(e -> (File) e);
+    }
+
+    private static EnumSet<SMB2CreateOptions> fileCreateOptions(Set<SMB2CreateOptions> createOptions) {
         EnumSet<SMB2CreateOptions> actualCreateOptions = createOptions != null ? EnumSet.copyOf(createOptions) : EnumSet.noneOf(SMB2CreateOptions.class);
         actualCreateOptions.add(FILE_NON_DIRECTORY_FILE);
         actualCreateOptions.remove(FILE_DIRECTORY_FILE);
+        return actualCreateOptions;
+    }
 
+    private static EnumSet<FileAttributes> fileAttributes(Set<FileAttributes> attributes) {
         EnumSet<FileAttributes> actualAttributes = attributes != null ? EnumSet.copyOf(attributes) : EnumSet.noneOf(FileAttributes.class);
         actualAttributes.remove(FILE_ATTRIBUTE_DIRECTORY);
-
-        return (File) open(
-            path,
-            accessMask,
-            actualAttributes,
-            shareAccesses,
-            createDisposition,
-            actualCreateOptions
-        );
+        return actualAttributes;
     }
 
     private static final StatusHandler FILE_EXISTS_STATUS_HANDLER = new StatusHandler() {
@@ -210,6 +398,26 @@ public class DiskShare extends Share {
         return exists(path, of(FILE_DIRECTORY_FILE), FOLDER_EXISTS_STATUS_HANDLER);
     }
 
+    /**
+     * Asynchronous variant of {@link #fileExists(String)}.
+     */
+    public CompletableFuture<Boolean> fileExistsAsync(String path) {
+        return existsAsync(path, of(FILE_NON_DIRECTORY_FILE), FILE_EXISTS_STATUS_HANDLER);
+    }
+
+    /**
+     * Asynchronous variant of {@link #folderExists(String)}.
+     */
+    public CompletableFuture<Boolean> folderExistsAsync(String path) {
+        return existsAsync(path, of(FILE_DIRECTORY_FILE), FOLDER_EXISTS_STATUS_HANDLER);
+    }
+
+    private CompletableFuture<Boolean> existsAsync(String path, EnumSet<SMB2CreateOptions> createOptions, StatusHandler statusHandler) {
+        CompletableFuture<Boolean> exists = withEntryAsync(openAsync(path, of(FILE_READ_ATTRIBUTES), of(FILE_ATTRIBUTE_NORMAL), ALL, FILE_OPEN, createOptions),
+            e -> CompletableFuture.completedFuture(true));
+        return recoverStatus(exists, statusHandler, false);
+    }
+
     private boolean exists(String path, EnumSet<SMB2CreateOptions> createOptions, StatusHandler statusHandler) throws SMBApiException {
         try (DiskEntry ignored = open(path, of(FILE_READ_ATTRIBUTES), of(FILE_ATTRIBUTE_NORMAL), ALL, FILE_OPEN, createOptions)) {
             return true;
@@ -267,6 +475,27 @@ public class DiskShare extends Share {
         }
     }
 
+    /**
+     * Equivalent to calling {@link #listAsync(String, Class, String, EnumSet<AccessMask>) listAsync(path, FileIdBothDirectoryInformation.class, null, null)}.
+     *
+     * @see #listAsync(String, Class, String, EnumSet<AccessMask>)
+     */
+    public CompletableFuture<List<FileIdBothDirectoryInformation>> listAsync(String path) {
+        return listAsync(path, FileIdBothDirectoryInformation.class, null, null);
+    }
+
+    /**
+     * Asynchronous variant of {@link #list(String, Class, String, EnumSet<AccessMask>)}.
+     *
+     * @see Directory#listAsync(Class, String)
+     */
+    public <I extends FileDirectoryQueryableInformation> CompletableFuture<List<I>> listAsync(String path, final Class<I> informationClass, final String searchPattern, EnumSet<AccessMask> accessMask) {
+        return withEntryAsync(openDirectoryAsync(path,
+                accessMask == null ? of(FILE_LIST_DIRECTORY, FILE_READ_ATTRIBUTES, FILE_READ_EA) : accessMask,
+                null, ALL, FILE_OPEN, null),
+            d -> d.listAsync(informationClass, searchPattern));
+    }
+
     /**
      * Create a directory in the given path.
      */
@@ -281,6 +510,19 @@ public class DiskShare extends Share {
         fileHandle.close();
     }
 
+    /**
+     * Asynchronous variant of {@link #mkdir(String)}.
+     */
+    public CompletableFuture<Void> mkdirAsync(String path) {
+        return withEntryAsync(openDirectoryAsync(
+            path,
+            of(FILE_LIST_DIRECTORY, FILE_ADD_SUBDIRECTORY),
+            of(FILE_ATTRIBUTE_DIRECTORY),
+            ALL,
+            FILE_CREATE,
+            of(FILE_DIRECTORY_FILE)), d -> CompletableFuture.<Void>completedFuture(null));
+    }
+
     /**
      * Get information about the given path.
      **/
@@ -297,6 +539,65 @@ public class DiskShare extends Share {
         }
     }
 
+    /**
+     * Asynchronous variant of {@link #getFileInformation(String)}.
+     **/
+    public CompletableFuture<FileAllInformation> getFileInformationAsync(String path) {
+        return getFileInformationAsync(path, FileAllInformation.class);
+    }
+
+    /**
+     * Asynchronous variant of {@link #getFileInformation(String, Class)}.
+     **/
+    public <F extends FileQueryableInformation> CompletableFuture<F> getFileInformationAsync(String path, final Class<F> informationClass) {
+        return withEntryAsync(openAsync(path, of(FILE_READ_ATTRIBUTES, FILE_READ_EA), null, ALL, FILE_OPEN, null),
+            e -> e.getFileInformationAsync(informationClass));
+    }
+
+    /**
+     * Retrieves the basic metadata (times, sizes and attributes) of all given paths. Equivalent to calling
+     * {@link #getFileStatsAsync(Iterable, Consumer)} and collecting the results in completion order.
+     *
+     * @see #getFileStatsAsync(Iterable, Consumer)
+     */
+    public List<FileStat> getFileStats(Iterable<String> paths) {
+        final List<FileStat> stats = new ArrayList<>();
+        await(getFileStatsAsync(paths, new Consumer<FileStat>() {
+            @Override
+            public void accept(FileStat stat) {
+                stats.add(stat);
+            }
+        }));
+        return stats;
+    }
+
+    /**
+     * Retrieves the basic metadata (times, sizes and attributes) of many paths, with up to
+     * {@link com.hierynomus.smbj.SmbConfig#getBulkConcurrency()} requests in flight, and passes each result to the
+     * consumer as soon as it is known. The consumer is called on the {@link com.hierynomus.smbj.SmbConfig#getCallbackExecutor()
+     * callback executor}, one result at a time.
+     * <p>
+     * A path is opened only to read its attributes, which are returned in the CREATE response, so each path costs a
+     * single round trip. When many paths are requested in the same directory (see
+     * {@link com.hierynomus.smbj.SmbConfig#getBulkStatListingThreshold()}), that directory is listed once instead. A
+     * failure for one path, like STATUS_OBJECT_NAME_NOT_FOUND, is reported in its {@link FileStat} and does not affect
+     * the other paths.
+     *
+     * @param paths the paths relative to this share, which are read lazily
+     * @return a future that completes once a result has been passed to the consumer for every path
+     */
+    public CompletableFuture<Void> getFileStatsAsync(Iterable<String> paths, Consumer<FileStat> consumer) {
+        SmbConfig config = getTreeConnect().getConfig();
+        return new BulkStat(this, paths, consumer, getCallbackExecutor(), config.getBulkConcurrency(), config.getBulkStatListingThreshold()).start();
+    }
+
+    /**
+     * Opens the path only to read its attributes, the metadata is in the returned create response.
+     */
+    CompletableFuture<SMB2CreateResponseContext> openAttributesAsync(String path) {
+        return resolveAndCreateFileAsync(new SmbPath(smbPath, path), null, of(FILE_READ_ATTRIBUTES), null, ALL, FILE_OPEN, null);
+    }
+
     /**
      * Get information for a given fileId
      **/
@@ -315,6 +616,25 @@ public class DiskShare extends Share {
             null
         ).getOutputBuffer();
 
+        return decodeFileInformation(decoder, outputBuffer);
+    }
+
+    /**
+     * Asynchronous variant of {@link #getFileInformation(SMB2FileId, Class)}.
+     */
+    public <F extends FileQueryableInformation> CompletableFuture<F> getFileInformationAsync(SMB2FileId fileId, Class<F> informationClass) {
+        final FileInformation.Decoder<F> decoder = FileInformationFactory.getDecoder(informationClass);
+
+        return queryInfoAsync(
+            fileId,
+            SMB2QueryInfoRequest.SMB2QueryInfoType.SMB2_0_INFO_FILE,
+            null,
+            decoder.getInformationClass(),
+            null
+        ).thenApply(resp -> decodeFileInformation(decoder, resp.getOutputBuffer()));
+    }
+
+    private static <F extends FileQueryableInformation> F decodeFileInformation(FileInformation.Decoder<F> decoder, byte[] outputBuffer) {
         try {
             return decoder.read(new Buffer.PlainBuffer(outputBuffer, Endian.LE));
         } catch (Buffer.BufferException e) {
@@ -336,6 +656,31 @@ public class DiskShare extends Share {
         );
     }
 
+    /**
+     * Asynchronous variant of {@link #setFileInformation(SMB2FileId, FileSettableInformation)}.
+     */
+    public <F extends FileSettableInformation> CompletableFuture<Void> setFileInformationAsync(SMB2FileId fileId, F information) {
+        SMBBuffer buffer = new SMBBuffer();
+        FileInformation.Encoder<F> encoder = FileInformationFactory.getEncoder(information);
+        encoder.write(information, buffer);
+
+        return setInfoAsync(
+            fileId,
+            SMB2SetInfoRequest.SMB2InfoType.SMB2_0_INFO_FILE,
+            null,
+            encoder.getInformationClass(),
+            buffer.getCompactData()
+        ).thenApply(r -> null);
+    }
+
+    /**
+     * Asynchronous variant of {@link #setFileInformation(String, FileSettableInformation)}.
+     */
+    public <F extends FileSettableInformation> CompletableFuture<Void> setFileInformationAsync(String path, final F information) {
+        return withEntryAsync(openAsync(path, of(FILE_WRITE_ATTRIBUTES, FILE_WRITE_EA), null, ALL, FILE_OPEN, null),
+            e -> e.setFileInformationAsync(information));
+    }
+
     /**
      * Get information for a given path
      **/
@@ -376,7 +721,9 @@ public class DiskShare extends Share {
     };
 
     /**
-     * Remove the directory at the given path.
+     * Remove the directory at the given path. A recursive removal deletes the entries of the directory tree in
+     * parallel, see {@link #deleteTreeAsync(String, boolean, BulkOperationListener)}, and throws the first failure
+     * once everything that could be deleted is gone.
      */
     public void rmdir(String path, boolean recursive) throws SMBApiException {
         if (path == null || path.isEmpty()) {
@@ -384,19 +731,7 @@ public class DiskShare extends Share {
         }
 
         if (recursive) {
-            List<FileIdBothDirectoryInformation> list = list(path);
-            for (FileIdBothDirectoryInformation fi : list) {
-                if (fi.getFileName().equals(".") || fi.getFileName().equals("..")) {
-                    continue;
-                }
-                String childPath = path + "\\" + fi.getFileName();
-                if (!EnumWithValue.EnumUtils.isSet(fi.getFileAttributes(), FILE_ATTRIBUTE_DIRECTORY)) {
-                    rm(childPath);
-                } else {
-                    rmdir(childPath, true);
-                }
-            }
-            rmdir(path, false);
+            await(deleteTreeAsync(path, false, BulkOperationListener.NOOP));
         } else {
             try (DiskEntry e = open(
                 path,
@@ -437,10 +772,142 @@ public class DiskShare extends Share {
         }
     }
 
+    /**
+     * Asynchronous variant of {@link #rm(String)}.
+     */
+    public CompletableFuture<Void> rmAsync(String path) {
+        CompletableFuture<Void> rm = withEntryAsync(openAsync(
+            path,
+            of(DELETE),
+            of(FILE_ATTRIBUTE_NORMAL),
+            of(FILE_SHARE_DELETE, FILE_SHARE_WRITE, FILE_SHARE_READ),
+            FILE_OPEN,
+            of(FILE_NON_DIRECTORY_FILE)
+        ), DiskEntry::deleteOnCloseAsync);
+        return recoverStatus(rm, ALREADY_DELETED_STATUS_HANDLER, null);
+    }
+
+    /**
+     * Asynchronous variant of {@link #rmdir(String, boolean) rmdir(path, false)}, removes the empty directory at the
+     * given path.
+     */
+    public CompletableFuture<Void> rmdirAsync(String path) {
+        if (path == null || path.isEmpty()) {
+            return Futures.failed(new IllegalArgumentException("rmdir: path should be non-null and non-empty"));
+        }
+
+        CompletableFuture<Void> rmdir = withEntryAsync(openAsync(
+            path,
+            of(DELETE),
+            of(FILE_ATTRIBUTE_DIRECTORY),
+            of(FILE_SHARE_DELETE, FILE_SHARE_WRITE, FILE_SHARE_READ),
+            FILE_OPEN,
+            of(FILE_DIRECTORY_FILE)
+        ), DiskEntry::deleteOnCloseAsync);
+        return recoverStatus(rmdir, ALREADY_DELETED_STATUS_HANDLER, null);
+    }
+
+    /**
+     * Deletes the directory at the given path with everything in it, with up to
+     * {@link com.hierynomus.smbj.SmbConfig#getBulkConcurrency()} deletes in flight. Every entry is opened with
+     * FILE_DELETE_ON_CLOSE, so each delete takes a CREATE and a CLOSE, and directories are removed once their entries
+     * are gone. Links are removed themselves, their targets are left alone.
+     * <p>
+     * A failure to delete one entry does not stop the others; the directories containing it are left in place.
+     *
+     * @param clearReadOnly whether to clear the read-only attribute of entries that cannot be deleted because of it
+     * @param listener      is told about every deleted entry and every failure as they happen
+     * @return a future that completes when the tree is gone, or exceptionally with the first failure once everything
+     * else has been deleted
+     */
+    public CompletableFuture<Void> deleteTreeAsync(String path, boolean clearReadOnly, BulkOperationListener listener) {
+        if (path == null || path.isEmpty()) {
+            return Futures.failed(new IllegalArgumentException("deleteTree: path should be non-null and non-empty"));
+        }
+        return new BulkDelete(this, path, clearReadOnly, listener, getCallbackExecutor(), getTreeConnect().getConfig().getBulkConcurrency()).start();
+    }
+
+    /**
+     * Renames or moves every path in the map to the path it maps to, both relative to this share.
+     *
+     * @see #renameAllAsync(Map, boolean, BulkOperationListener)
+     */
+    public void renameAll(Map<String, String> renames, boolean replaceIfExists) throws SMBApiException {
+        await(renameAllAsync(renames, replaceIfExists, BulkOperationListener.NOOP));
+    }
+
+    /**
+     * Renames or moves every path in the map to the path it maps to, both relative to this share, with up to
+     * {@link com.hierynomus.smbj.SmbConfig#getBulkConcurrency()} renames in flight, in the iteration order of the map.
+     * A failure to rename one path does not stop the others.
+     *
+     * @param listener is told about every renamed path (by its old name) and every failure as they happen
+     * @return a future that completes when all paths are renamed, or exceptionally with the first failure once all
+     * other renames are done
+     */
+    public CompletableFuture<Void> renameAllAsync(Map<String, String> renames, boolean replaceIfExists, BulkOperationListener listener) {
+        return new BulkRename(this, renames, replaceIfExists, listener, getCallbackExecutor(), getTreeConnect().getConfig().getBulkConcurrency()).start();
+    }
+
+    /**
+     * Opens the entry itself (not the target of a link) with FILE_DELETE_ON_CLOSE and closes it again.
+     */
+    CompletableFuture<Void> deleteOnOpenAsync(String path, boolean directory) {
+        CompletableFuture<Void> delete = withEntryAsync(openAsync(
+            path,
+            of(DELETE),
+            of(directory ? FILE_ATTRIBUTE_DIRECTORY : FILE_ATTRIBUTE_NORMAL),
+            of(FILE_SHARE_DELETE, FILE_SHARE_WRITE, FILE_SHARE_READ),
+            FILE_OPEN,
+            of(directory ? FILE_DIRECTORY_FILE : FILE_NON_DIRECTORY_FILE, FILE_OPEN_REPARSE_POINT, FILE_DELETE_ON_CLOSE)
+        ), e -> CompletableFuture.completedFuture(null));
+        return recoverStatus(delete, ALREADY_DELETED_STATUS_HANDLER, null);
+    }
+
+    /**
+     * Resets the attributes of the entry to normal, which clears the read-only attribute, and deletes it.
+     */
+    CompletableFuture<Void> clearReadOnlyAndDeleteAsync(String path, boolean directory) {
+        final FileBasicInformation normal = new FileBasicInformation(FileBasicInformation.DONT_SET, FileBasicInformation.DONT_SET,
+            FileBasicInformation.DONT_SET, FileBasicInformation.DONT_SET, FILE_ATTRIBUTE_NORMAL.getValue());
+        CompletableFuture<Void> delete = withEntryAsync(openAsync(
+            path,
+            of(DELETE, FILE_WRITE_ATTRIBUTES),
+            null,
+            of(FILE_SHARE_DELETE, FILE_SHARE_WRITE, FILE_SHARE_READ),
+            FILE_OPEN,
+            of(directory ? FILE_DIRECTORY_FILE : FILE_NON_DIRECTORY_FILE, FILE_OPEN_REPARSE_POINT)
+        ), e -> e.setFileInformationAsync(normal).thenCompose(ignored -> e.deleteOnCloseAsync()));
+        return recoverStatus(delete, ALREADY_DELETED_STATUS_HANDLER, null);
+    }
+
+    CompletableFuture<Void> renameAsync(String source, String target, boolean replaceIfExists) {
+        final FileRenameInformation rename = new FileRenameInformation(replaceIfExists, 0, target.replace('/', '\\'));
+        return withEntryAsync(openAsync(source, of(DELETE), null, ALL, FILE_OPEN, null), e -> e.setFileInformationAsync(rename));
+    }
+
+    /**
+     * Waits for the future and rethrows its failure as is.
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SMBRuntimeException(e);
+        } catch (ExecutionException e) {
+            throw Share.asSmbException(e.getCause());
+        }
+    }
+
     public void deleteOnClose(SMB2FileId fileId) {
         setFileInformation(fileId, new FileDispositionInformation(true));
     }
 
+    public CompletableFuture<Void> deleteOnCloseAsync(SMB2FileId fileId) {
+        return setFileInformationAsync(fileId, new FileDispositionInformation(true));
+    }
+
     /**
      * The SecurityDescriptor(MS-DTYP 2.4.6 SECURITY_DESCRIPTOR) for the Given Path
      */
@@ -19,6 +19,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -402,6 +403,19 @@ public class File extends DiskEntry {
         return new FileInputStream(this, share.getReadBufferSize(), share.getReadTimeout(), listener);
     }
 
+    /**
+     * Open a {@link SeekableByteChannel} on this file.
+     * <p/>
+     * The channel caches blocks of the read buffer size, reads ahead when it is read sequentially, and coalesces
+     * writes into write buffer size aligned WRITE requests. Closing the channel flushes pending writes, but does not
+     * close this file.
+     *
+     * @return A new channel positioned at the start of the file
+     */
+    public SeekableByteChannel openChannel() {
+        return new FileByteChannel(this, share.getReadBufferSize(), share.getWriteBufferSize(), share.getReadTimeout());
+    }
+
     @Override
     public String toString() {
         return "File{" +
@@ -0,0 +1,330 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.share;
+
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.msfscc.fileinformation.FileStandardInformation;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.mssmb2.messages.SMB2ReadResponse;
+import com.hierynomus.protocol.commons.concurrent.Futures;
+import com.hierynomus.protocol.transport.TransportException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link SeekableByteChannel} over a remote {@link File}.
+ * <p/>
+ * Reads are served from a small LRU cache of {@code readBufferSize} blocks. When the channel detects sequential access,
+ * it reads ahead asynchronously, doubling the window on every consecutive block up to {@link #MAX_READ_AHEAD}; a seek
+ * to a non-adjacent block switches read-ahead off again.
+ * <p/>
+ * Writes are collected in a buffer of {@code writeBufferSize} bytes and sent as a single WRITE request when the buffer
+ * reaches a {@code writeBufferSize} aligned boundary, on a non-contiguous write, before reads, and on close.
+ */
+class FileByteChannel implements SeekableByteChannel {
+    private static final Logger logger = LoggerFactory.getLogger(FileByteChannel.class);
+
+    static final int MAX_READ_AHEAD = 8;
+    private static final int MAX_CACHED_BLOCKS = MAX_READ_AHEAD * 2;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final File file;
+    private final int blockSize;
+    private final long readTimeout;
+
+    private final Map<Long, byte[]> blocks = new LinkedHashMap<Long, byte[]>(MAX_CACHED_BLOCKS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+            return size() > MAX_CACHED_BLOCKS;
+        }
+    };
+    private final Map<Long, Future<SMB2ReadResponse>> readAhead = new LinkedHashMap<>();
+    private long lastBlock = -1;
+    private int readAheadWindow;
+    private long eofBlock = Long.MAX_VALUE;
+
+    private final byte[] writeBuffer;
+    private long writeOffset;
+    private int writeLength;
+
+    private long position;
+    private boolean open = true;
+
+    FileByteChannel(File file, int readBufferSize, int writeBufferSize, long readTimeout) {
+        this.file = file;
+        this.blockSize = readBufferSize;
+        this.readTimeout = readTimeout;
+        this.writeBuffer = new byte[writeBufferSize];
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        lock.lock();
+        try {
+            ensureOpen();
+            flushWrites();
+            int total = 0;
+            while (dst.hasRemaining()) {
+                long index = position / blockSize;
+                int blockOffset = (int) (position % blockSize);
+                byte[] block = getBlock(index);
+                if (block.length <= blockOffset) {
+                    break;
+                }
+                int n = Math.min(dst.remaining(), block.length - blockOffset);
+                dst.put(block, blockOffset, n);
+                position += n;
+                total += n;
+                if (block.length < blockSize) {
+                    break;
+                }
+            }
+            return total == 0 && dst.hasRemaining() ? -1 : total;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        lock.lock();
+        try {
+            ensureOpen();
+            int total = 0;
+            while (src.hasRemaining()) {
+                if (writeLength > 0 && writeOffset + writeLength != position) {
+                    flushWrites();
+                }
+                if (writeLength == 0) {
+                    writeOffset = position;
+                }
+                // Stop at the next writeBufferSize boundary, so that every full WRITE request is aligned
+                long boundary = (writeOffset / writeBuffer.length + 1) * writeBuffer.length;
+                int n = (int) Math.min(src.remaining(), boundary - position);
+                src.get(writeBuffer, writeLength, n);
+                writeLength += n;
+                position += n;
+                total += n;
+                if (position == boundary) {
+                    flushWrites();
+                }
+            }
+            return total;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long position() throws IOException {
+        lock.lock();
+        try {
+            ensureOpen();
+            return position;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Position should be non-negative, was: " + newPosition);
+        }
+        lock.lock();
+        try {
+            ensureOpen();
+            position = newPosition;
+            return this;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long size() throws IOException {
+        lock.lock();
+        try {
+            ensureOpen();
+            flushWrites();
+            return file.getFileInformation(FileStandardInformation.class).getEndOfFile();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) throws IOException {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size should be non-negative, was: " + size);
+        }
+        lock.lock();
+        try {
+            ensureOpen();
+            flushWrites();
+            if (size < file.getFileInformation(FileStandardInformation.class).getEndOfFile()) {
+                file.setLength(size);
+                invalidate(size, Long.MAX_VALUE - size);
+            }
+            position = Math.min(position, size);
+            return this;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Flushes any buffered writes and releases the cache. This does not close the underlying {@link File}.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (!open) {
+                return;
+            }
+            try {
+                flushWrites();
+            } finally {
+                open = false;
+                blocks.clear();
+                readAhead.clear();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    private void flushWrites() {
+        if (writeLength == 0) {
+            return;
+        }
+        long offset = writeOffset;
+        int length = writeLength;
+        writeLength = 0;
+        invalidate(offset, length);
+        file.write(writeBuffer, offset, 0, length);
+    }
+
+    /**
+     * Drop the cached data of a range that is written or truncated. As the write or truncate may change the size of the
+     * file, the cached block that holds the old end of the file is dropped as well, together with any outstanding
+     * read-ahead, which may still return the old end of the file.
+     */
+    private void invalidate(long offset, long length) {
+        long first = offset / blockSize;
+        long last = (offset + length - 1) / blockSize;
+        for (Iterator<Map.Entry<Long, byte[]>> it = blocks.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Long, byte[]> block = it.next();
+            long index = block.getKey();
+            if (index >= first && index <= last || block.getValue().length < blockSize) {
+                it.remove();
+            }
+        }
+        readAhead.clear();
+        eofBlock = Long.MAX_VALUE;
+    }
+
+    private byte[] getBlock(long index) throws IOException {
+        adaptReadAhead(index);
+        byte[] block = blocks.get(index);
+        if (block == null) {
+            Future<SMB2ReadResponse> pending = readAhead.remove(index);
+            block = loadBlock(index, pending != null ? pending : file.readAsync(index * blockSize, blockSize));
+            blocks.put(index, block);
+        }
+        scheduleReadAhead(index);
+        return block;
+    }
+
+    private void adaptReadAhead(long index) {
+        if (index == lastBlock) {
+            return;
+        }
+        if (index == lastBlock + 1) {
+            readAheadWindow = Math.min(MAX_READ_AHEAD, Math.max(1, readAheadWindow * 2));
+        } else {
+            // Random access, the outstanding read-ahead is unlikely to be used
+            readAheadWindow = 0;
+            readAhead.clear();
+        }
+        lastBlock = index;
+    }
+
+    private void scheduleReadAhead(long index) {
+        long last = Math.min(index + readAheadWindow, eofBlock);
+        for (long next = index + 1; next <= last; next++) {
+            if (!blocks.containsKey(next) && !readAhead.containsKey(next)) {
+                readAhead.put(next, file.readAsync(next * blockSize, blockSize));
+            }
+        }
+    }
+
+    /**
+     * Load a whole block, issuing additional reads if the server returns less than was asked for. The returned block
+     * is only shorter than the block size when it contains the end of the file.
+     */
+    private byte[] loadBlock(long index, Future<SMB2ReadResponse> response) throws IOException {
+        byte[] block = new byte[blockSize];
+        int length = 0;
+        while (true) {
+            SMB2ReadResponse res = Futures.get(response, readTimeout, TimeUnit.MILLISECONDS, TransportException.Wrapper);
+            long status = res.getHeader().getStatusCode();
+            if (status == NtStatus.STATUS_END_OF_FILE.getValue() || (status == NtStatus.STATUS_SUCCESS.getValue() && res.getDataLength() == 0)) {
+                break;
+            }
+            if (status != NtStatus.STATUS_SUCCESS.getValue()) {
+                throw new SMBApiException(res.getHeader(), "Read failed for " + file);
+            }
+            byte[] data = res.getData();
+            int n = Math.min(data.length, blockSize - length);
+            System.arraycopy(data, 0, block, length, n);
+            length += n;
+            if (length == blockSize) {
+                return block;
+            }
+            response = file.readAsync(index * blockSize + length, blockSize - length);
+        }
+
+        logger.debug("EOF in block {} after {} bytes", index, length);
+        eofBlock = Math.min(eofBlock, index);
+        byte[] tail = new byte[length];
+        System.arraycopy(block, 0, tail, 0, length);
+        return tail;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.share;
+
+import com.hierynomus.msdtyp.FileTime;
+import com.hierynomus.msfscc.FileAttributes;
+import com.hierynomus.msfscc.fileinformation.FileIdBothDirectoryInformation;
+import com.hierynomus.mssmb2.messages.SMB2CreateResponse;
+import com.hierynomus.protocol.commons.EnumWithValue;
+import com.hierynomus.smbj.common.SMBRuntimeException;
+
+/**
+ * The basic metadata of a single path, as reported by {@link DiskShare#getFileStatsAsync(Iterable, java.util.function.Consumer)}.
+ * <p>
+ * Either the metadata is set, or the failure that prevented retrieving it, for instance an
+ * {@link com.hierynomus.mssmb2.SMBApiException} with STATUS_OBJECT_NAME_NOT_FOUND.
+ */
+public class FileStat {
+    private final String path;
+    private final FileTime creationTime;
+    private final FileTime lastAccessTime;
+    private final FileTime lastWriteTime;
+    private final FileTime changeTime;
+    private final long endOfFile;
+    private final long allocationSize;
+    private final long fileAttributes;
+    private final SMBRuntimeException failure;
+
+    @SuppressWarnings("PMD.ExcessiveParameterList")
+    private FileStat(String path, FileTime creationTime, FileTime lastAccessTime, FileTime lastWriteTime, FileTime changeTime, long endOfFile, long allocationSize, long fileAttributes, SMBRuntimeException failure) {
+        this.path = path;
+        this.creationTime = creationTime;
+        this.lastAccessTime = lastAccessTime;
+        this.lastWriteTime = lastWriteTime;
+        this.changeTime = changeTime;
+        this.endOfFile = endOfFile;
+        this.allocationSize = allocationSize;
+        this.fileAttributes = fileAttributes;
+        this.failure = failure;
+    }
+
+    static FileStat of(String path, SMB2CreateResponse response) {
+        return new FileStat(path, response.getCreationTime(), response.getLastAccessTime(), response.getLastWriteTime(), response.getChangeTime(),
+            response.getEndOfFile(), response.getAllocationSize(), EnumWithValue.EnumUtils.toLong(response.getFileAttributes()), null);
+    }
+
+    static FileStat of(String path, FileIdBothDirectoryInformation information) {
+        return new FileStat(path, information.getCreationTime(), information.getLastAccessTime(), information.getLastWriteTime(), information.getChangeTime(),
+            information.getEndOfFile(), information.getAllocationSize(), information.getFileAttributes(), null);
+    }
+
+    static FileStat failed(String path, SMBRuntimeException failure) {
+        return new FileStat(path, null, null, null, null, 0, 0, 0, failure);
+    }
+
+    /**
+     * @return The path exactly as it was requested
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public boolean isSuccess() {
+        return failure == null;
+    }
+
+    /**
+     * @return The reason the metadata could not be retrieved, or null on success
+     */
+    public SMBRuntimeException getFailure() {
+        return failure;
+    }
+
+    public FileTime getCreationTime() {
+        return creationTime;
+    }
+
+    public FileTime getLastAccessTime() {
+        return lastAccessTime;
+    }
+
+    public FileTime getLastWriteTime() {
+        return lastWriteTime;
+    }
+
+    public FileTime getChangeTime() {
+        return changeTime;
+    }
+
+    public long getEndOfFile() {
+        return endOfFile;
+    }
+
+    public long getAllocationSize() {
+        return allocationSize;
+    }
+
+    public long getFileAttributes() {
+        return fileAttributes;
+    }
+
+    public boolean isDirectory() {
+        return EnumWithValue.EnumUtils.isSet(fileAttributes, FileAttributes.FILE_ATTRIBUTE_DIRECTORY);
+    }
+
+    @Override
+    public String toString() {
+        return "FileStat{" +
+            "path='" + path + '\'' +
+            (failure == null ? ", endOfFile=" + endOfFile + ", fileAttributes=" + fileAttributes : ", failure=" + failure) +
+            '}';
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.share;
+
+import static com.hierynomus.mssmb2.SMB2Packet.SINGLE_CREDIT_PAYLOAD_SIZE;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import com.hierynomus.mssmb2.SMB2LockFlag;
+import com.hierynomus.mssmb2.SMB2PacketHeader;
+import com.hierynomus.mssmb2.messages.submodule.SMB2LockElement;
+import com.hierynomus.protocol.commons.concurrent.Futures;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Locks and unlocks the byte ranges of a {@link Open.LockBuilder} with as few LOCK requests as the protocol allows.
+ * <p>
+ * [MS-SMB2] 3.3.5.14 A LOCK request either unlocks ranges or locks them, and only locks that fail immediately can be
+ * combined in one request. So the unlocks are sent first, in batches. Then the locks that fail immediately are sent in
+ * batches, together with one request for each lock that waits for a conflicting lock to be released. A waiting
+ * request does not hold a thread; the server answers it with STATUS_PENDING and completes it later. If a lock is
+ * refused, or the operation is cancelled, the ranges that this operation already locked are unlocked again.
+ */
+final class LockOperation extends CompletableFuture<Void> {
+    private static final Logger logger = LoggerFactory.getLogger(LockOperation.class);
+
+    private static final int LOCK_ELEMENT_SIZE = 24;
+    /**
+     * A LOCK request is charged a single credit, so its elements must fit in a 64 KiB message
+     */
+    static final int MAX_ELEMENTS_PER_REQUEST = (SINGLE_CREDIT_PAYLOAD_SIZE - SMB2PacketHeader.STRUCTURE_SIZE
+            - LOCK_ELEMENT_SIZE) / LOCK_ELEMENT_SIZE;
+
+    private final Open<?> open;
+    private final List<SMB2LockElement> elements;
+    private final Executor executor;
+
+    // Guarded by this
+    private final List<CompletableFuture<Void>> outstanding = new ArrayList<>();
+    private final List<SMB2LockElement> locked = new ArrayList<>();
+    private int remaining;
+
+    LockOperation(Open<?> open, List<SMB2LockElement> elements, Executor executor) {
+        this.open = open;
+        this.elements = new ArrayList<>(elements);
+        this.executor = executor;
+    }
+
+    CompletableFuture<Void> start() {
+        List<SMB2LockElement> unlocks = new ArrayList<>();
+        for (SMB2LockElement element : elements) {
+            if (element.getLockFlags().contains(SMB2LockFlag.SMB2_LOCKFLAG_UNLOCK)) {
+                unlocks.add(element);
+            }
+        }
+        if (unlocks.isEmpty()) {
+            lock();
+            return this;
+        }
+
+        List<CompletableFuture<Void>> requests = new ArrayList<>();
+        for (List<SMB2LockElement> batch : batches(unlocks)) {
+            requests.add(open.lockAsync(batch));
+        }
+        synchronized (this) {
+            outstanding.addAll(requests);
+        }
+        CompletableFuture.allOf(requests.toArray(new CompletableFuture<?>[0])).whenCompleteAsync((v, t) -> {
+            if (t != null) {
+                fail(t);
+            } else {
+                lock();
+            }
+        }, executor);
+        return this;
+    }
+
+    private void lock() {
+        List<SMB2LockElement> immediate = new ArrayList<>();
+        List<List<SMB2LockElement>> requests = new ArrayList<>();
+        for (SMB2LockElement element : elements) {
+            if (element.getLockFlags().contains(SMB2LockFlag.SMB2_LOCKFLAG_UNLOCK)) {
+                continue;
+            }
+            if (element.getLockFlags().contains(SMB2LockFlag.SMB2_LOCKFLAG_FAIL_IMMEDIATELY)) {
+                immediate.add(element);
+            } else {
+                List<SMB2LockElement> single = new ArrayList<>(1);
+                single.add(element);
+                requests.add(single);
+            }
+        }
+        requests.addAll(0, batches(immediate));
+
+        synchronized (this) {
+            if (isDone()) {
+                return;
+            }
+            outstanding.clear();
+            remaining = requests.size();
+        }
+        if (requests.isEmpty()) {
+            complete(null);
+            return;
+        }
+        for (final List<SMB2LockElement> request : requests) {
+            CompletableFuture<Void> f = open.lockAsync(request);
+            boolean done;
+            synchronized (this) {
+                done = isDone();
+                if (!done) {
+                    outstanding.add(f);
+                }
+            }
+            if (done) {
+                // A previous request failed. If the server already granted this one, it ignores the cancel, and the
+                // request unlocks the ranges again once the grant arrives
+                f.cancel(true);
+                return;
+            }
+            f.whenComplete((v, t) -> {
+                if (t != null) {
+                    fail(t);
+                } else {
+                    granted(request);
+                }
+            });
+        }
+    }
+
+    private void granted(List<SMB2LockElement> request) {
+        boolean last;
+        synchronized (this) {
+            if (isDone()) {
+                last = false;
+            } else {
+                // Unlocked by release() if this operation fails or is cancelled from now on
+                locked.addAll(request);
+                if (--remaining > 0) {
+                    return;
+                }
+                last = true;
+            }
+        }
+        if (last) {
+            complete(null);
+        } else {
+            // Failed or cancelled while this request was outstanding
+            unlock(request);
+        }
+    }
+
+    private void fail(Throwable t) {
+        if (completeExceptionally(Futures.unwrap(t))) {
+            release();
+        }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (!super.cancel(mayInterruptIfRunning)) {
+            return false;
+        }
+        release();
+        return true;
+    }
+
+    /**
+     * Cancel the requests that are still outstanding, and unlock the ranges that were locked.
+     */
+    private void release() {
+        List<CompletableFuture<Void>> requests;
+        List<SMB2LockElement> ranges;
+        synchronized (this) {
+            requests = new ArrayList<>(outstanding);
+            ranges = new ArrayList<>(locked);
+            outstanding.clear();
+            locked.clear();
+        }
+        for (CompletableFuture<Void> request : requests) {
+            request.cancel(true);
+        }
+        unlock(ranges);
+    }
+
+    private void unlock(List<SMB2LockElement> ranges) {
+        for (List<SMB2LockElement> batch : batches(Open.unlockElements(ranges))) {
+            open.lockAsync(batch).whenComplete((v, t) -> {
+                if (t != null) {
+                    logger.warn("Failed to unlock {} ranges of {}", batch.size(), open.name, Futures.unwrap(t));
+                }
+            });
+        }
+    }
+
+    static List<List<SMB2LockElement>> batches(List<SMB2LockElement> elements) {
+        List<List<SMB2LockElement>> batches = new ArrayList<>();
+        for (int i = 0; i < elements.size(); i += MAX_ELEMENTS_PER_REQUEST) {
+            batches.add(new ArrayList<>(elements.subList(i, Math.min(elements.size(), i + MAX_ELEMENTS_PER_REQUEST))));
+        }
+        return batches;
+    }
+}
@@ -17,9 +17,13 @@ package com.hierynomus.smbj.share;
 
 import com.hierynomus.msfscc.fsctl.FsCtlPipePeekResponse;
 import com.hierynomus.mssmb2.SMB2FileId;
+import com.hierynomus.mssmb2.SMB2Packet;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.mssmb2.messages.SMB2IoctlResponse;
 import com.hierynomus.mssmb2.messages.SMB2ReadResponse;
 import com.hierynomus.mssmb2.messages.SMB2WriteResponse;
 import com.hierynomus.protocol.commons.buffer.Buffer;
+import com.hierynomus.protocol.commons.concurrent.Futures;
 import com.hierynomus.smb.SMBBuffer;
 import com.hierynomus.smbj.common.SMBRuntimeException;
 import com.hierynomus.smbj.common.SmbPath;
@@ -27,6 +31,12 @@ import com.hierynomus.smbj.io.ArrayByteChunkProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.CompletableFuture;
+
+import static com.hierynomus.mserref.NtStatus.STATUS_BUFFER_OVERFLOW;
+import static com.hierynomus.mserref.NtStatus.STATUS_SUCCESS;
+
 public class NamedPipe extends Open<PipeShare> {
     private static final long FSCTL_PIPE_PEEK = 0x0011400cL;
     private static final long FSCTL_PIPE_TRANSCEIVE = 0x0011c017L;
@@ -66,6 +76,24 @@ public class NamedPipe extends Open<PipeShare> {
         return (int) wresp.getBytesWritten();
     }
 
+    /**
+     * Writes the data in buffer to this pipe without blocking.
+     *
+     * @param buffer the data to write
+     * @param offset the start offset in the data
+     * @param length the number of bytes that are written
+     * @return a future for the actual number of bytes that was written to the pipe
+     */
+    public CompletableFuture<Integer> writeAsync(byte[] buffer, int offset, int length) {
+        CompletableFuture<SMB2WriteResponse> response;
+        try {
+            response = Futures.toCompletableFuture(share.writeAsync(fileId, new ArrayByteChunkProvider(buffer, offset, length, 0)));
+        } catch (SMBRuntimeException e) {
+            return Futures.failed(e);
+        }
+        return response.thenApply(r -> Share.checkStatus(r, "Write", name, StatusHandler.SUCCESS).getBytesWritten());
+    }
+
     /**
      * Read data from this pipe starting into the given buffer.
      *
@@ -199,4 +227,87 @@ public class NamedPipe extends Open<PipeShare> {
     public int ioctl(long ctlCode, boolean isFsCtl, byte[] inData, int inOffset, int inLength, byte[] outData, int outOffset, int outLength) {
         return share.ioctl(fileId, ctlCode, isFsCtl, inData, inOffset, inLength, outData, outOffset, outLength);
     }
+
+    /**
+     * Performs a transaction on this pipe without blocking. If the response message does not fit in a single
+     * response ({@code STATUS_BUFFER_OVERFLOW}), the remaining fragments are read and the whole message is returned.
+     *
+     * @param inBuffer the input message
+     * @return a future for the complete output message
+     */
+    public CompletableFuture<byte[]> transactAsync(byte[] inBuffer) {
+        CompletableFuture<SMB2IoctlResponse> response;
+        try {
+            response = Futures.toCompletableFuture(share.ioctlAsync(fileId, FSCTL_PIPE_TRANSCEIVE, true, new ArrayByteChunkProvider(inBuffer, 0), -1));
+        } catch (SMBRuntimeException e) {
+            return Futures.failed(e);
+        }
+        return response.thenCompose(r -> {
+            long status = checkStatus(r, "Transceive");
+            byte[] output = r.getOutputBuffer();
+            if (status != STATUS_BUFFER_OVERFLOW.getValue()) {
+                return CompletableFuture.completedFuture(output);
+            }
+            ByteArrayOutputStream message = new ByteArrayOutputStream();
+            message.write(output, 0, output.length);
+            return readFragmentsAsync(message);
+        });
+    }
+
+    /**
+     * Reads the next message from this (message mode) pipe without blocking, reading as many fragments as needed.
+     *
+     * @return a future for the complete message
+     */
+    public CompletableFuture<byte[]> readMessageAsync() {
+        return readFragmentsAsync(new ByteArrayOutputStream());
+    }
+
+    /**
+     * Opens a {@link PipeChannel} on this pipe, which keeps <code>readsInFlight</code> reads outstanding. The
+     * pipe should not be used for transactions while the channel is open.
+     *
+     * @param readsInFlight the number of reads to keep outstanding
+     * @return the channel
+     */
+    public PipeChannel openChannel(int readsInFlight) {
+        return new PipeChannel(this, readsInFlight);
+    }
+
+    private CompletableFuture<byte[]> readFragmentsAsync(final ByteArrayOutputStream message) {
+        return readFragmentAsync().thenCompose(r -> {
+            if (appendFragment(message, r)) {
+                return CompletableFuture.completedFuture(message.toByteArray());
+            }
+            return readFragmentsAsync(message);
+        });
+    }
+
+    CompletableFuture<SMB2ReadResponse> readFragmentAsync() {
+        try {
+            return Futures.toCompletableFuture(share.readAsync(fileId, 0, share.getReadBufferSize()));
+        } catch (SMBRuntimeException e) {
+            return Futures.failed(e);
+        }
+    }
+
+    /**
+     * Append the data of a read response to the message.
+     *
+     * @return whether this was the last fragment of the message
+     */
+    boolean appendFragment(ByteArrayOutputStream message, SMB2ReadResponse response) {
+        long status = checkStatus(response, "Read");
+        byte[] data = response.getData();
+        message.write(data, 0, data.length);
+        return status != STATUS_BUFFER_OVERFLOW.getValue();
+    }
+
+    private long checkStatus(SMB2Packet response, String operation) {
+        long status = response.getHeader().getStatusCode();
+        if (status != STATUS_SUCCESS.getValue() && status != STATUS_BUFFER_OVERFLOW.getValue()) {
+            throw new SMBApiException(response.getHeader(), operation + " failed for " + name);
+        }
+        return status;
+    }
 }
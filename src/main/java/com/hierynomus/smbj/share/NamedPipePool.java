@@ -0,0 +1,311 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.share;
+
+import com.hierynomus.msdtyp.AccessMask;
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.mssmb2.SMB2CreateDisposition;
+import com.hierynomus.mssmb2.SMB2ShareAccess;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.protocol.commons.concurrent.Futures;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A pool of instances of a single named pipe, so that independent RPC calls can be issued concurrently without
+ * serializing on one pipe instance.
+ * <p/>
+ * Instances are opened lazily up to {@code maxSize}. When the server has no free instance of the pipe available, the
+ * pool waits for one using {@link PipeShare#waitForPipeAsync(String, long, TimeUnit)}. Callers that find the pool
+ * exhausted are queued and handed the next released instance. Opening, waiting and initializing an instance do not
+ * block a thread.
+ */
+public class NamedPipePool implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(NamedPipePool.class);
+
+    private final PipeShare share;
+    private final String name;
+    private final int maxSize;
+    private final long waitTimeoutMillis;
+    private final Function<NamedPipe, CompletableFuture<?>> initializer;
+    private final Deque<NamedPipe> idle = new ArrayDeque<>();
+    private final Deque<CompletableFuture<NamedPipe>> waiters = new ArrayDeque<>();
+    private int size;
+    private boolean closed;
+
+    /**
+     * @param share             the IPC$ share the pipe lives on
+     * @param name              the name of the pipe, without the "\pipe\" prefix
+     * @param maxSize           the maximum number of pipe instances to open
+     * @param waitTimeoutMillis how long to wait for the server to make an instance available when it has none
+     */
+    public NamedPipePool(PipeShare share, String name, int maxSize, long waitTimeoutMillis) {
+        this(share, name, maxSize, waitTimeoutMillis, null);
+    }
+
+    /**
+     * @param share             the IPC$ share the pipe lives on
+     * @param name              the name of the pipe, without the "\pipe\" prefix
+     * @param maxSize           the maximum number of pipe instances to open
+     * @param waitTimeoutMillis how long to wait for the server to make an instance available when it has none
+     * @param initializer       called with each newly opened instance before it is handed out (e.g. to bind an RPC
+     *                          interface), the instance is handed out once the returned future completes, may be null
+     */
+    public NamedPipePool(PipeShare share, String name, int maxSize, long waitTimeoutMillis, Function<NamedPipe, CompletableFuture<?>> initializer) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size should be at least 1, was: " + maxSize);
+        }
+        if (waitTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("Wait timeout should be greater than 0, was: " + waitTimeoutMillis);
+        }
+        this.share = share;
+        this.name = name;
+        this.maxSize = maxSize;
+        this.waitTimeoutMillis = waitTimeoutMillis;
+        this.initializer = initializer;
+    }
+
+    /**
+     * Acquires an instance of the pipe. The instance should be handed back using {@link #release(NamedPipe)}, or
+     * {@link #invalidate(NamedPipe)} if it is no longer usable.
+     */
+    public CompletableFuture<NamedPipe> acquireAsync() {
+        synchronized (this) {
+            if (closed) {
+                return Futures.failed(new IllegalStateException("Pool for pipe " + name + " is closed"));
+            }
+            NamedPipe pipe = idle.pollFirst();
+            if (pipe != null) {
+                return CompletableFuture.completedFuture(pipe);
+            }
+            if (size >= maxSize) {
+                CompletableFuture<NamedPipe> waiter = new CompletableFuture<>();
+                waiters.addLast(waiter);
+                return waiter;
+            }
+            size++;
+        }
+        return openPipe().whenComplete((p, t) -> {
+            if (t != null) {
+                discarded();
+            }
+        });
+    }
+
+    /**
+     * Returns an instance of the pipe to the pool.
+     */
+    public void release(NamedPipe pipe) {
+        CompletableFuture<NamedPipe> waiter;
+        synchronized (this) {
+            if (closed) {
+                closeQuietly(pipe);
+                size--;
+                return;
+            }
+            waiter = waiters.pollFirst();
+            if (waiter == null) {
+                idle.addFirst(pipe);
+                return;
+            }
+        }
+        waiter.complete(pipe);
+    }
+
+    /**
+     * Closes an instance of the pipe that is no longer usable, making room for a new one.
+     */
+    public void invalidate(NamedPipe pipe) {
+        closeQuietly(pipe);
+        discarded();
+    }
+
+    /**
+     * Runs {@code call} on an instance of the pipe, and returns it to the pool once the call has completed. When the
+     * call fails, the instance is closed, as its state is unknown.
+     */
+    public <T> CompletableFuture<T> withPipe(Function<NamedPipe, CompletableFuture<T>> call) {
+        return withPipe(call, t -> false);
+    }
+
+    /**
+     * Runs {@code call} on an instance of the pipe, and returns it to the pool once the call has completed. When the
+     * call fails, the instance is only returned to the pool if {@code intact} accepts the failure, such as an error
+     * reply that completed the exchange. On any other failure, like a transport or pipe error, the instance is closed,
+     * as its state is unknown.
+     *
+     * @param call   the call to run
+     * @param intact whether a failure of the call, unwrapped from any {@link java.util.concurrent.CompletionException},
+     *               left the instance ready for the next call
+     */
+    public <T> CompletableFuture<T> withPipe(Function<NamedPipe, CompletableFuture<T>> call, Predicate<Throwable> intact) {
+        return acquireAsync().thenCompose(pipe -> {
+            CompletableFuture<T> result;
+            try {
+                result = call.apply(pipe);
+            } catch (RuntimeException e) {
+                result = Futures.failed(e);
+            }
+            return result.whenComplete((r, t) -> {
+                if (t == null || intact.test(Futures.unwrap(t))) {
+                    release(pipe);
+                } else {
+                    invalidate(pipe);
+                }
+            });
+        });
+    }
+
+    /**
+     * Sends a message on an instance of the pipe and receives the reply.
+     *
+     * @see NamedPipe#transactAsync(byte[])
+     */
+    public CompletableFuture<byte[]> transactAsync(byte[] inBuffer) {
+        return withPipe(pipe -> pipe.transactAsync(inBuffer));
+    }
+
+    /**
+     * Closes all idle instances and fails any queued callers. Instances that are in use are closed when released.
+     */
+    @Override
+    public void close() {
+        Deque<NamedPipe> toClose;
+        Deque<CompletableFuture<NamedPipe>> toFail;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            toClose = new ArrayDeque<>(idle);
+            toFail = new ArrayDeque<>(waiters);
+            size -= idle.size();
+            idle.clear();
+            waiters.clear();
+        }
+        for (NamedPipe pipe : toClose) {
+            closeQuietly(pipe);
+        }
+        for (CompletableFuture<NamedPipe> waiter : toFail) {
+            waiter.completeExceptionally(new IllegalStateException("Pool for pipe " + name + " is closed"));
+        }
+    }
+
+    /**
+     * Opens and initializes a new instance. Requests are only sent from the callback executor, never from the packet
+     * reader thread that completes the previous step, as sending may block on credits.
+     */
+    private CompletableFuture<NamedPipe> openPipe() {
+        Executor executor = share.getCallbackExecutor();
+        CompletableFuture<NamedPipe> opened = CompletableFuture.supplyAsync(this::openInstance, executor).thenCompose(Function.identity());
+        if (initializer == null) {
+            return opened;
+        }
+        return opened.thenComposeAsync(pipe -> {
+            CompletableFuture<?> initialized;
+            try {
+                initialized = initializer.apply(pipe);
+            } catch (RuntimeException e) {
+                initialized = Futures.failed(e);
+            }
+            return initialized.handle((v, t) -> {
+                if (t != null) {
+                    closeQuietly(pipe);
+                    throw Futures.asCompletionException(Futures.unwrap(t));
+                }
+                return pipe;
+            });
+        }, executor);
+    }
+
+    private CompletableFuture<NamedPipe> openInstance() {
+        CompletableFuture<NamedPipe> open;
+        try {
+            open = share.openAsync(name, null, EnumSet.of(AccessMask.GENERIC_READ, AccessMask.GENERIC_WRITE), null, EnumSet.of(SMB2ShareAccess.FILE_SHARE_READ, SMB2ShareAccess.FILE_SHARE_WRITE), SMB2CreateDisposition.FILE_OPEN, null);
+        } catch (RuntimeException e) {
+            open = Futures.failed(e);
+        }
+        return open.handle((pipe, t) -> {
+            if (t == null) {
+                return CompletableFuture.completedFuture(pipe);
+            }
+            final Throwable failure = Futures.unwrap(t);
+            if (!isNoInstanceAvailable(failure)) {
+                return Futures.<NamedPipe>failed(failure);
+            }
+            logger.debug("No instance of pipe {} available, waiting", name);
+            return share.waitForPipeAsync(name, waitTimeoutMillis, TimeUnit.MILLISECONDS).thenComposeAsync(available -> {
+                if (!available) {
+                    throw Futures.asCompletionException(failure);
+                }
+                return openInstance();
+            }, share.getCallbackExecutor());
+        }).thenCompose(Function.identity());
+    }
+
+    private static boolean isNoInstanceAvailable(Throwable failure) {
+        if (!(failure instanceof SMBApiException)) {
+            return false;
+        }
+        NtStatus status = ((SMBApiException) failure).getStatus();
+        return status == NtStatus.STATUS_PIPE_NOT_AVAILABLE || status == NtStatus.STATUS_PIPE_BUSY;
+    }
+
+    private void discarded() {
+        CompletableFuture<NamedPipe> waiter;
+        synchronized (this) {
+            size--;
+            waiter = closed ? null : waiters.pollFirst();
+            if (waiter != null) {
+                size++;
+            }
+        }
+        if (waiter != null) {
+            openPipe().whenComplete((p, t) -> {
+                if (t != null) {
+                    waiter.completeExceptionally(t);
+                    discarded();
+                } else {
+                    waiter.complete(p);
+                }
+            });
+        }
+    }
+
+    private void closeQuietly(NamedPipe pipe) {
+        CompletableFuture<Void> close;
+        try {
+            close = pipe.closeAsync();
+        } catch (RuntimeException e) {
+            close = Futures.failed(e);
+        }
+        close.whenComplete((v, t) -> {
+            if (t != null) {
+                logger.debug("Failed to close instance of pipe {}", name, Futures.unwrap(t));
+            }
+        });
+    }
+}
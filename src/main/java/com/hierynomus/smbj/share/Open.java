@@ -20,11 +20,21 @@ import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import com.hierynomus.mssmb2.SMB2Dialect;
 import com.hierynomus.mssmb2.SMB2FileId;
 import com.hierynomus.mssmb2.SMB2LockFlag;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.mssmb2.messages.SMB2LockResponse;
 import com.hierynomus.mssmb2.messages.submodule.SMB2LockElement;
+import com.hierynomus.protocol.commons.concurrent.Futures;
+import com.hierynomus.protocol.transport.TransportException;
+import com.hierynomus.smbj.common.SMBRuntimeException;
 import com.hierynomus.smbj.common.SmbPath;
 import com.hierynomus.smbj.share.OperationBuckets.OperationBucket;
 
@@ -61,27 +71,55 @@ public class Open<S extends Share> implements Closeable {
      *
      * @param lockElements List (an array) of LockCount (2.2.26.1 SMB2_LOCK_ELEMENT
      *                     Structure) structures.
-     * @return Server response to lock request. 2.2.27 SMB2 LOCK Response
      */
     void lockRequest(List<SMB2LockElement> lockElements) {
-        // [MS-SMB2].pdf 3.2.4.19 Application Requests Locking of an Array of Byte
-        // Ranges
-        // If any of the Booleans Open.ResilientHandle, Open.IsPersistent, or
-        // Connection.SupportsMultiChannel is TRUE, ...
-        // Otherwise the client MUST set LockSequenceIndex and LockSequenceNumber to 0.
-
-        int sequenceNumber = 0, sequenceIndex = 0;
-        if (share.getDialect() != SMB2Dialect.SMB_2_0_2) {
-            OperationBucket b = operationBuckets.takeFreeBucket();
-            sequenceNumber = b.getSequenceNumber();
-            sequenceIndex = b.getIndex();
+        CompletableFuture<Void> lock = lockAsync(lockElements);
+        try {
+            lock.get(share.getTransactTimeout(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            lock.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new SMBRuntimeException(e);
+        } catch (TimeoutException e) {
+            lock.cancel(true);
+            throw new SMBRuntimeException(e);
+        } catch (ExecutionException e) {
+            throw Share.asSmbException(e.getCause());
         }
+    }
 
-        share.sendLockRequest(fileId, (short) sequenceNumber, sequenceIndex, lockElements);
+    /**
+     * Sends a single LOCK request without blocking. Cancelling the returned future cancels the request on the server.
+     * <p>
+     * [MS-SMB2].pdf 3.2.4.19 Application Requests Locking of an Array of Byte Ranges
+     * If any of the Booleans Open.ResilientHandle, Open.IsPersistent, or Connection.SupportsMultiChannel is TRUE, the
+     * client numbers the request with a LockSequenceIndex and LockSequenceNumber. Otherwise the client MUST set
+     * LockSequenceIndex and LockSequenceNumber to 0.
+     *
+     * @param lockElements the elements of the request, which are all unlocks, all locks that fail immediately, or a
+     *                     single lock that waits
+     * @return a future that completes once the server has granted the request
+     */
+    CompletableFuture<Void> lockAsync(List<SMB2LockElement> lockElements) {
+        LockRequest request = new LockRequest(lockElements);
+        if (share.getDialect() == SMB2Dialect.SMB_2_0_2) {
+            request.send();
+            return request;
+        }
 
-        if (share.getDialect() != SMB2Dialect.SMB_2_0_2) {
-            operationBuckets.freeBucket(sequenceIndex);
+        if (isWaitingLock(lockElements)) {
+            // Sent without a lock sequence, and so not replayed, if waiting locks hold their share of the buckets
+            request.send(operationBuckets.takeFreeBucketForWaitingLock());
+            return request;
+        }
+        CompletableFuture<OperationBucket> bucket = operationBuckets.takeFreeBucket();
+        if (bucket.isDone()) {
+            request.send(bucket.join());
+        } else {
+            // Freed on the thread that received a response, which must not block on sending the next request
+            bucket.thenAcceptAsync(request::send, share.getCallbackExecutor());
         }
+        return request;
     }
 
     public SMB2FileId getFileId() {
@@ -92,6 +130,15 @@ public class Open<S extends Share> implements Closeable {
         share.closeFileId(fileId);
     }
 
+    /**
+     * Closes this open without blocking.
+     *
+     * @return a future that completes once the server has acknowledged the close
+     */
+    public CompletableFuture<Void> closeAsync() {
+        return share.closeFileIdAsync(fileId).thenApply(r -> null);
+    }
+
     public void closeSilently() {
         try {
             close();
@@ -100,6 +147,130 @@ public class Open<S extends Share> implements Closeable {
         }
     }
 
+    /**
+     * A LOCK request that replays itself with the same lock sequence when the server did not answer it, so that the
+     * server does not apply the locks twice.
+     */
+    private final class LockRequest extends CompletableFuture<Void> {
+        private final List<SMB2LockElement> lockElements;
+        private OperationBucket bucket;
+        private Future<SMB2LockResponse> response;
+        private boolean replayed;
+
+        private LockRequest(List<SMB2LockElement> lockElements) {
+            this.lockElements = lockElements;
+        }
+
+        private void send(OperationBucket bucket) {
+            this.bucket = bucket;
+            send();
+        }
+
+        private void send() {
+            if (isDone()) {
+                answered();
+                return;
+            }
+            Future<SMB2LockResponse> f;
+            try {
+                f = bucket == null ? share.sendLockRequestAsync(fileId, (short) 0, 0, lockElements)
+                        : share.sendLockRequestAsync(fileId, bucket.getSequenceNumber(), bucket.getIndex(), lockElements);
+            } catch (SMBRuntimeException e) {
+                answered();
+                completeExceptionally(e);
+                return;
+            }
+            synchronized (this) {
+                response = f;
+            }
+            if (isCancelled()) {
+                f.cancel(true);
+            }
+            Futures.toCompletableFuture(f).whenComplete(this::received);
+        }
+
+        private void received(SMB2LockResponse resp, Throwable t) {
+            if (t != null) {
+                if (bucket != null && !replayed && !isDone() && isUnanswered(t)) {
+                    replayed = true;
+                    logger.debug("No response to lock request {} on {}, replaying it", bucket.getIndex(), name);
+                    share.getCallbackExecutor().execute(this::send);
+                    return;
+                }
+                answered();
+                completeExceptionally(Futures.unwrap(t));
+                return;
+            }
+            answered();
+            try {
+                Share.checkStatus(resp, "Lock", fileId, StatusHandler.SUCCESS);
+            } catch (SMBApiException e) {
+                completeExceptionally(e);
+                return;
+            }
+            if (!complete(null) && !isUnlock(lockElements)) {
+                // Cancelled, but the server granted the locks before it saw the cancel
+                lockAsync(unlockElements(lockElements));
+            }
+        }
+
+        private void answered() {
+            if (bucket != null) {
+                operationBuckets.freeBucket(bucket);
+                bucket = null;
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (!super.cancel(mayInterruptIfRunning)) {
+                return false;
+            }
+            Future<SMB2LockResponse> f;
+            synchronized (this) {
+                f = response;
+            }
+            if (f != null) {
+                f.cancel(mayInterruptIfRunning);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The request was sent, but it expired before the server answered, or the connection failed before it did.
+     */
+    private static boolean isUnanswered(Throwable t) {
+        for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TimeoutException || cause instanceof TransportException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean isUnlock(List<SMB2LockElement> lockElements) {
+        return lockElements.get(0).getLockFlags().contains(SMB2LockFlag.SMB2_LOCKFLAG_UNLOCK);
+    }
+
+    /**
+     * A lock that waits for a conflicting lock is always sent on its own.
+     */
+    static boolean isWaitingLock(List<SMB2LockElement> lockElements) {
+        Set<SMB2LockFlag> flags = lockElements.get(0).getLockFlags();
+        return lockElements.size() == 1 && !flags.contains(SMB2LockFlag.SMB2_LOCKFLAG_UNLOCK)
+                && !flags.contains(SMB2LockFlag.SMB2_LOCKFLAG_FAIL_IMMEDIATELY);
+    }
+
+    static List<SMB2LockElement> unlockElements(List<SMB2LockElement> lockElements) {
+        List<SMB2LockElement> unlocks = new ArrayList<>(lockElements.size());
+        for (SMB2LockElement element : lockElements) {
+            unlocks.add(new SMB2LockElement(element.getOffset(), element.getLength(),
+                    EnumSet.of(SMB2LockFlag.SMB2_LOCKFLAG_UNLOCK)));
+        }
+        return unlocks;
+    }
+
     public final class LockBuilder {
         private List<SMB2LockElement> elements = new ArrayList<>();
 
@@ -141,5 +312,17 @@ public class Open<S extends Share> implements Closeable {
         public void send() {
             Open.this.lockRequest(elements);
         }
+
+        /**
+         * Sends the lock and unlock requests without blocking a thread while the server waits for conflicting locks to
+         * be released. Cancelling the returned future cancels the requests that are still waiting, and unlocks the
+         * ranges of this builder that were already locked.
+         *
+         * @return a future that completes once all ranges have been locked or unlocked
+         * @see LockOperation
+         */
+        public CompletableFuture<Void> sendAsync() {
+            return new LockOperation(Open.this, elements, share.getCallbackExecutor()).start();
+        }
     }
 }
@@ -15,52 +15,115 @@
  */
 package com.hierynomus.smbj.share;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-
-import com.hierynomus.smbj.common.SMBRuntimeException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * [MS-SMB2] 3.2.1.6 Per Open: Open.OperationBuckets
+ * <p>
+ * The 64 buckets that number the LOCK requests of an Open, so that the server can recognize a replayed request. A
+ * bucket is taken for as long as a request is outstanding; when all buckets are taken, the next request waits until
+ * one is freed instead of failing.
+ * <p>
+ * A lock that waits for a conflicting lock holds its bucket until that lock is released, which may take forever. So
+ * waiting locks may hold at most half of the buckets, and never wait for one; otherwise the unlocks that would release
+ * them could be queued behind them.
+ */
 class OperationBuckets {
-    private List<OperationBucket> buckets = new ArrayList<>();
-    private ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private static final int MAX_BUCKETS = 64;
+    private static final int MAX_WAITING_BUCKETS = MAX_BUCKETS / 2;
+
+    private final List<OperationBucket> buckets = new ArrayList<>();
+    private final Deque<CompletableFuture<OperationBucket>> waiters = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private int waitingBuckets;
 
-    OperationBucket takeFreeBucket() {
-        lock.writeLock().lock();
+    /**
+     * @return a future that completes with a bucket once one is free
+     */
+    CompletableFuture<OperationBucket> takeFreeBucket() {
+        lock.lock();
         try {
-            for (OperationBucket bucket : buckets) {
-                if (bucket.free) {
-                    bucket.free = false;
-                    return bucket;
-                }
+            OperationBucket bucket = takeBucket();
+            if (bucket != null) {
+                return CompletableFuture.completedFuture(bucket);
             }
+            CompletableFuture<OperationBucket> waiter = new CompletableFuture<>();
+            waiters.add(waiter);
+            return waiter;
+        } finally {
+            lock.unlock();
+        }
+    }
 
-            // Max 64 buckets exist
-            if (buckets.size() < 64) {
-                OperationBucket bucket = new OperationBucket(buckets.size() + 1);
-                buckets.add(bucket);
-                return bucket;
+    /**
+     * Take a bucket for a lock that waits for a conflicting lock to be released.
+     *
+     * @return the bucket, or null if none is free or waiting locks already hold their share of the buckets
+     */
+    OperationBucket takeFreeBucketForWaitingLock() {
+        lock.lock();
+        try {
+            if (waitingBuckets >= MAX_WAITING_BUCKETS) {
+                return null;
             }
-
-            throw new SMBRuntimeException("No OperationBucket found which is free");
+            OperationBucket bucket = takeBucket();
+            if (bucket != null) {
+                bucket.waiting = true;
+                waitingBuckets++;
+            }
+            return bucket;
         } finally {
-            lock.writeLock().unlock();
+            lock.unlock();
         }
     }
 
-    void freeBucket(int index) {
-        lock.writeLock().lock();
+    private OperationBucket takeBucket() {
+        for (OperationBucket bucket : buckets) {
+            if (bucket.free) {
+                bucket.free = false;
+                return bucket;
+            }
+        }
+        if (buckets.size() < MAX_BUCKETS) {
+            OperationBucket bucket = new OperationBucket(buckets.size() + 1);
+            buckets.add(bucket);
+            return bucket;
+        }
+        return null;
+    }
+
+    /**
+     * Free the bucket once the request that used it has been answered, or given up on. The sequence number is
+     * advanced, so that the next request with this bucket is not mistaken for a replay of the previous one.
+     */
+    void freeBucket(OperationBucket bucket) {
+        CompletableFuture<OperationBucket> waiter;
+        lock.lock();
         try {
-            OperationBucket bucket = buckets.get(index - 1);
-            bucket.free = true;
-            bucket.sequenceNumber += 1 % 16;
+            bucket.sequenceNumber = (short) ((bucket.sequenceNumber + 1) % 16);
+            if (bucket.waiting) {
+                bucket.waiting = false;
+                waitingBuckets--;
+            }
+            waiter = waiters.poll();
+            if (waiter == null) {
+                bucket.free = true;
+                return;
+            }
         } finally {
-            lock.writeLock().unlock();
+            lock.unlock();
         }
+        waiter.complete(bucket);
     }
 
     class OperationBucket {
         private boolean free;
+        private boolean waiting;
         private final int index;
         private short sequenceNumber;
 
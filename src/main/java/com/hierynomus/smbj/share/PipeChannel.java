@@ -0,0 +1,105 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.share;
+
+import com.hierynomus.mssmb2.messages.SMB2ReadResponse;
+import com.hierynomus.protocol.commons.concurrent.Futures;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A message channel over a {@link NamedPipe} that keeps a number of READ requests outstanding, so that the next
+ * message (or fragment of a message) is already on its way when the previous one is consumed.
+ * <p/>
+ * Reads on a pipe are completed by the server in the order they were sent. Fragments of a message that did not fit in a
+ * single read ({@code STATUS_BUFFER_OVERFLOW}) are reassembled before the message is returned.
+ */
+public class PipeChannel implements Closeable {
+    private final NamedPipe pipe;
+    private final int readsInFlight;
+    private final Deque<CompletableFuture<SMB2ReadResponse>> outstanding = new ArrayDeque<>();
+    private CompletableFuture<?> tail = CompletableFuture.completedFuture(null);
+    private boolean closed;
+
+    PipeChannel(NamedPipe pipe, int readsInFlight) {
+        if (readsInFlight < 1) {
+            throw new IllegalArgumentException("At least one read should be in flight, was: " + readsInFlight);
+        }
+        this.pipe = pipe;
+        this.readsInFlight = readsInFlight;
+    }
+
+
+    /**
+     * Writes a message to the pipe without blocking.
+     */
+    public CompletableFuture<Integer> writeAsync(byte[] message) {
+        return pipe.writeAsync(message, 0, message.length);
+    }
+
+    /**
+     * Receives the next message from the pipe. Calls may overlap; the messages are handed out in the order of the calls.
+     *
+     * @return a future for the next complete message
+     */
+    public synchronized CompletableFuture<byte[]> readMessageAsync() {
+        if (closed) {
+            return Futures.failed(new ClosedChannelException());
+        }
+        CompletableFuture<byte[]> message = tail.handle((v, t) -> null).thenCompose(v -> nextMessage(new ByteArrayOutputStream()));
+        tail = message;
+        return message;
+    }
+
+    private CompletableFuture<byte[]> nextMessage(final ByteArrayOutputStream message) {
+        return nextFragment().thenCompose(r -> {
+            if (pipe.appendFragment(message, r)) {
+                return CompletableFuture.completedFuture(message.toByteArray());
+            }
+            return nextMessage(message);
+        });
+    }
+
+    private synchronized CompletableFuture<SMB2ReadResponse> nextFragment() {
+        if (closed) {
+            return Futures.failed(new ClosedChannelException());
+        }
+        while (outstanding.size() < readsInFlight) {
+            outstanding.addLast(pipe.readFragmentAsync());
+        }
+        return outstanding.removeFirst();
+    }
+
+    /**
+     * Cancels the outstanding reads. The pipe itself stays open.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        CompletableFuture<SMB2ReadResponse> read;
+        while ((read = outstanding.poll()) != null) {
+            read.cancel(true);
+        }
+    }
+}
@@ -20,11 +20,14 @@ import com.hierynomus.msfscc.FileAttributes;
 import com.hierynomus.msfscc.fsctl.FsCtlPipeWaitRequest;
 import com.hierynomus.mssmb2.*;
 import com.hierynomus.mssmb2.messages.SMB2IoctlResponse;
+import com.hierynomus.protocol.commons.concurrent.Futures;
 import com.hierynomus.smb.SMBBuffer;
+import com.hierynomus.smbj.common.SMBRuntimeException;
 import com.hierynomus.smbj.common.SmbPath;
 import com.hierynomus.smbj.io.ArrayByteChunkProvider;
 
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
@@ -79,7 +82,35 @@ public class PipeShare extends Share {
         }
 
         SMB2IoctlResponse response = receive(responseFuture, timeoutMs);
+        return isPipeAvailable(name, response);
+    }
+
+    /**
+     * Requests that the server wait until an instance of the specified named pipe is available for connection, without
+     * blocking.
+     * <p>
+     * Name must not include the "\pipe\", so if the operation was on \\server\pipe\pipename, the name would be "pipename".
+     *
+     * @param name        the name of the named pipe.
+     * @param timeout     the amount of time to wait until an instance is available
+     * @param timeoutUnit the unit in which timeout is specified
+     * @return a future for whether an instance of the pipe is available, false if a timeout occurred
+     * @see #waitForPipe(String, long, TimeUnit)
+     */
+    public CompletableFuture<Boolean> waitForPipeAsync(final String name, long timeout, TimeUnit timeoutUnit) {
+        SMBBuffer buffer = new SMBBuffer();
+        new FsCtlPipeWaitRequest(name, timeout, timeoutUnit, timeout > 0).write(buffer);
+
+        CompletableFuture<SMB2IoctlResponse> response;
+        try {
+            response = Futures.toCompletableFuture(ioctlAsync(FSCTL_PIPE_WAIT, true, new ArrayByteChunkProvider(buffer.getCompactData(), 0)));
+        } catch (SMBRuntimeException e) {
+            return Futures.failed(e);
+        }
+        return response.thenApply(r -> isPipeAvailable(name, r));
+    }
 
+    private static boolean isPipeAvailable(String name, SMB2IoctlResponse response) {
         long status = response.getHeader().getStatusCode();
         if (status == STATUS_SUCCESS.getValue()) {
             return true;
@@ -96,6 +127,17 @@ public class PipeShare extends Share {
         return new NamedPipe(response, this, path);
     }
 
+    /**
+     * Opens the named pipe without blocking.
+     *
+     * @see #open(String, SMB2ImpersonationLevel, Set, Set, Set, SMB2CreateDisposition, Set)
+     */
+    public CompletableFuture<NamedPipe> openAsync(String name, SMB2ImpersonationLevel impersonationLevel, Set<AccessMask> accessMask, Set<FileAttributes> attributes, Set<SMB2ShareAccess> shareAccesses, SMB2CreateDisposition createDisposition, Set<SMB2CreateOptions> createOptions) {
+        final SmbPath path = new SmbPath(smbPath, name);
+        return createFileAsync(path, impersonationLevel, accessMask, attributes, shareAccesses, createDisposition, createOptions)
+            .thenApply(r -> new NamedPipe(r.getFileId(), this, path));
+    }
+
     public SMB2FileId openFileId(String name, SMB2ImpersonationLevel impersonationLevel, Set<AccessMask> accessMask, Set<FileAttributes> fileAttributes, Set<SMB2ShareAccess> shareAccess, SMB2CreateDisposition createDisposition, Set<SMB2CreateOptions> createOptions) {
         SmbPath path = new SmbPath(smbPath, name);
         return super.openFileId(path, impersonationLevel, accessMask, fileAttributes, shareAccess, createDisposition, createOptions);
@@ -30,6 +30,7 @@ import com.hierynomus.smbj.SmbConfig;
 import com.hierynomus.smbj.common.SMBRuntimeException;
 import com.hierynomus.smbj.common.SmbPath;
 import com.hierynomus.smbj.connection.NegotiatedProtocol;
+import com.hierynomus.smbj.event.RequestTimedOut;
 import com.hierynomus.smbj.io.ArrayByteChunkProvider;
 import com.hierynomus.smbj.io.ByteChunkProvider;
 import com.hierynomus.smbj.io.EmptyByteChunkProvider;
@@ -38,8 +39,11 @@ import com.hierynomus.smbj.session.Session;
 import java.io.IOException;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class Share implements AutoCloseable {
@@ -91,6 +95,7 @@ public class Share implements AutoCloseable {
     private final int transactBufferSize;
     private final long transactTimeout;
     private final long sessionId;
+    private final Executor callbackExecutor;
     private final AtomicBoolean disconnected = new AtomicBoolean(false);
 
     Share(SmbPath smbPath, TreeConnect treeConnect) {
@@ -107,6 +112,7 @@ public class Share implements AutoCloseable {
         transactBufferSize = Math.min(config.getTransactBufferSize(), negotiatedProtocol.getMaxTransactSize());
         transactTimeout = config.getTransactTimeout();
         sessionId = session.getSessionId();
+        callbackExecutor = config.getCallbackExecutor();
         treeId = treeConnect.getTreeId();
     }
 
@@ -133,6 +139,10 @@ public class Share implements AutoCloseable {
         return readBufferSize;
     }
 
+    Executor getCallbackExecutor() {
+        return callbackExecutor;
+    }
+
     long getReadTimeout() {
         return readTimeout;
     }
@@ -141,6 +151,10 @@ public class Share implements AutoCloseable {
         return writeBufferSize;
     }
 
+    long getTransactTimeout() {
+        return transactTimeout;
+    }
+
     SMB2FileId openFileId(SmbPath path, SMB2ImpersonationLevel impersonationLevel, Set<AccessMask> accessMask,
             Set<FileAttributes> fileAttributes, Set<SMB2ShareAccess> shareAccess,
             SMB2CreateDisposition createDisposition, Set<SMB2CreateOptions> createOptions) {
@@ -338,14 +352,6 @@ public class Share implements AutoCloseable {
         return send(ioreq);
     }
 
-    SMB2LockResponse sendLockRequest(SMB2FileId fileId, short lockSequenceNumber, int lockSequenceIndex,
-            List<SMB2LockElement> lockElements) {
-        SMB2LockRequest qreq = new SMB2LockRequest(dialect, sessionId, treeId, lockSequenceNumber, lockSequenceIndex,
-                fileId, lockElements);
-
-        return sendReceive(qreq, "Lock", fileId, StatusHandler.SUCCESS, transactTimeout);
-    }
-
     Future<SMB2ChangeNotifyResponse> changeNotifyAsync(SMB2FileId fileId, Set<SMB2CompletionFilter> completionFilter,
             Set<SMB2ChangeNotifyFlags> flags) {
         SMB2ChangeNotifyRequest cnreq = new SMB2ChangeNotifyRequest(dialect, sessionId, treeId, fileId,
@@ -353,12 +359,86 @@ public class Share implements AutoCloseable {
         return send(cnreq);
     }
 
+    /**
+     * Asynchronous variant of {@link #createFile(SmbPath, SMB2ImpersonationLevel, Set, Set, Set, SMB2CreateDisposition, Set)}.
+     */
+    CompletableFuture<SMB2CreateResponse> createFileAsync(SmbPath path, SMB2ImpersonationLevel impersonationLevel,
+            Set<AccessMask> accessMask, Set<FileAttributes> fileAttributes, Set<SMB2ShareAccess> shareAccess,
+            SMB2CreateDisposition createDisposition, Set<SMB2CreateOptions> createOptions) {
+        SMB2CreateRequest cr = new SMB2CreateRequest(dialect, sessionId, treeId, impersonationLevel, accessMask,
+                fileAttributes, shareAccess, createDisposition, createOptions, path);
+        return sendReceiveAsync(cr, "Create", path, getCreateStatusHandler());
+    }
+
+    CompletableFuture<SMB2Flush> flushAsync(SMB2FileId fileId) {
+        SMB2Flush flushReq = new SMB2Flush(dialect, fileId, sessionId, treeId);
+        return sendReceiveAsync(flushReq, "Flush", fileId, StatusHandler.SUCCESS);
+    }
+
+    CompletableFuture<SMB2Close> closeFileIdAsync(SMB2FileId fileId) {
+        SMB2Close closeReq = new SMB2Close(dialect, sessionId, treeId, fileId);
+        return sendReceiveAsync(closeReq, "Close", fileId, SUCCESS_OR_CLOSED);
+    }
+
+    CompletableFuture<SMB2QueryInfoResponse> queryInfoAsync(SMB2FileId fileId,
+            SMB2QueryInfoRequest.SMB2QueryInfoType infoType, Set<SecurityInformation> securityInfo,
+            FileInformationClass fileInformationClass, FileSystemInformationClass fileSystemInformationClass) {
+        SMB2QueryInfoRequest qreq = new SMB2QueryInfoRequest(dialect, sessionId, treeId, fileId, infoType,
+                fileInformationClass, fileSystemInformationClass, null, securityInfo);
+        return sendReceiveAsync(qreq, "QueryInfo", fileId, StatusHandler.SUCCESS);
+    }
+
+    CompletableFuture<SMB2SetInfoResponse> setInfoAsync(SMB2FileId fileId, SMB2SetInfoRequest.SMB2InfoType infoType,
+            Set<SecurityInformation> securityInfo, FileInformationClass fileInformationClass, byte[] buffer) {
+        SMB2SetInfoRequest qreq = new SMB2SetInfoRequest(dialect, sessionId, treeId, infoType, fileId,
+                fileInformationClass, securityInfo, buffer);
+        return sendReceiveAsync(qreq, "SetInfo", fileId, StatusHandler.SUCCESS);
+    }
+
+    CompletableFuture<SMB2QueryDirectoryResponse> queryDirectoryAsync(SMB2FileId fileId,
+            Set<SMB2QueryDirectoryRequest.SMB2QueryDirectoryFlags> flags, FileInformationClass informationClass,
+            String searchPattern) {
+        SMB2QueryDirectoryRequest qdr = new SMB2QueryDirectoryRequest(dialect, sessionId, treeId, fileId,
+                informationClass, flags, 0, searchPattern, transactBufferSize);
+        return sendReceiveAsync(qdr, "Query directory", fileId, SUCCESS_OR_NO_MORE_FILES_OR_NO_SUCH_FILE);
+    }
+
+    /**
+     * Sends a LOCK request without checking the status of the response. Cancelling the returned future sends an SMB2
+     * CANCEL for the request, which the server answers with STATUS_CANCELLED if it is still waiting to grant the locks.
+     */
+    Future<SMB2LockResponse> sendLockRequestAsync(SMB2FileId fileId, short lockSequenceNumber,
+            int lockSequenceIndex, List<SMB2LockElement> lockElements) {
+        SMB2LockRequest qreq = new SMB2LockRequest(dialect, sessionId, treeId, lockSequenceNumber, lockSequenceIndex,
+                fileId, lockElements);
+        return send(qreq);
+    }
+
     private <T extends SMB2Packet> T sendReceive(SMB2Packet request, String name, Object target,
             StatusHandler statusHandler, long timeout) {
         Future<T> fut = send(request);
         return receive(fut, name, target, statusHandler, timeout);
     }
 
+    /**
+     * Sends the request and returns a {@link CompletableFuture} that completes with the response once it has been
+     * received, or exceptionally with an {@link SMBApiException} if the status of the response is not accepted by the
+     * statusHandler. The future completes on the thread that receives the response, so dependent stages that
+     * perform further blocking calls must be run on a separate executor.
+     * <p>
+     * Unlike the blocking calls, the returned future is not bound by the configured read, write or transact timeout.
+     */
+    <T extends SMB2Packet> CompletableFuture<T> sendReceiveAsync(SMB2Packet request, final String name,
+            final Object target, final StatusHandler statusHandler) {
+        CompletableFuture<T> fut;
+        try {
+            fut = Futures.toCompletableFuture(this.<T>send(request));
+        } catch (SMBRuntimeException e) {
+            return Futures.failed(e);
+        }
+        return fut.thenApply(resp -> checkStatus(resp, name, target, statusHandler));
+    }
+
     private <T extends SMB2Packet> Future<T> send(SMB2Packet request) {
         if (!isConnected()) {
             throw new SMBRuntimeException(getClass().getSimpleName() + " has already been closed");
@@ -373,8 +453,11 @@ public class Share implements AutoCloseable {
 
     <T extends SMB2Packet> T receive(Future<T> fut, String name, Object target, StatusHandler statusHandler,
             long timeout) {
-        T resp = receive(fut, timeout);
+        return checkStatus(receive(fut, name, timeout), name, target, statusHandler);
+    }
 
+    static <T extends SMB2Packet> T checkStatus(T resp, String name, Object target,
+            StatusHandler statusHandler) {
         long status = resp.getHeader().getStatusCode();
         if (!statusHandler.isSuccess(status)) {
             throw new SMBApiException(resp.getHeader(), name + " failed for " + target);
@@ -383,6 +466,10 @@ public class Share implements AutoCloseable {
     }
 
     <T extends SMB2Packet> T receive(Future<T> fut, long timeout) {
+        return receive(fut, "Request", timeout);
+    }
+
+    private <T extends SMB2Packet> T receive(Future<T> fut, String name, long timeout) {
         T resp;
         try {
             if (timeout > 0) {
@@ -391,11 +478,34 @@ public class Share implements AutoCloseable {
                 resp = Futures.get(fut, TransportException.Wrapper);
             }
         } catch (TransportException e) {
+            if (isTimeout(e)) {
+                treeConnect.getConfig().getMetrics().requestTimedOut(smbPath.getHostname(), name);
+                treeConnect.getBus().publish(new RequestTimedOut(smbPath.getHostname(), smbPath.getShareName(), name, timeout));
+            }
             throw new SMBRuntimeException(e);
         }
         return resp;
     }
 
+    /**
+     * Returns the {@link SMBRuntimeException} that a failed asynchronous request completed with, wrapping any other
+     * failure.
+     */
+    static SMBRuntimeException asSmbException(Throwable failure) {
+        Throwable cause = Futures.unwrap(failure);
+        return cause instanceof SMBRuntimeException ? (SMBRuntimeException) cause : new SMBRuntimeException(cause);
+    }
+
+    private static boolean isTimeout(Throwable t) {
+        // The TimeoutException is wrapped in the exceptions of the promise and the future
+        for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     SMB2Dialect getDialect() {
         return dialect;
     }
@@ -84,6 +84,10 @@ public class TreeConnect {
         return treeId;
     }
 
+    SMBEventBus getBus() {
+        return bus;
+    }
+
     public Session getSession() {
         return session;
     }
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.tracing;
+
+import com.hierynomus.mssmb2.SMB2MessageCommandCode;
+
+/**
+ * The identifiers of a traced request, to be used as span attributes.
+ */
+public class RequestInfo {
+    private final String server;
+    private final SMB2MessageCommandCode command;
+    private final long messageId;
+    private final long sessionId;
+    private final long treeId;
+    private final int creditCharge;
+
+    public RequestInfo(String server, SMB2MessageCommandCode command, long messageId, long sessionId, long treeId, int creditCharge) {
+        this.server = server;
+        this.command = command;
+        this.messageId = messageId;
+        this.sessionId = sessionId;
+        this.treeId = treeId;
+        this.creditCharge = creditCharge;
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public SMB2MessageCommandCode getCommand() {
+        return command;
+    }
+
+    public long getMessageId() {
+        return messageId;
+    }
+
+    /**
+     * @return the session ID, 0 for requests outside a session (e.g. NEGOTIATE)
+     */
+    public long getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * @return the tree ID, 0 for requests outside a tree connect
+     */
+    public long getTreeId() {
+        return treeId;
+    }
+
+    public int getCreditCharge() {
+        return creditCharge;
+    }
+
+    @Override
+    public String toString() {
+        return command + "{server='" + server + "', messageId=" + messageId + ", sessionId=" + sessionId + ", treeId=" + treeId + '}';
+    }
+}
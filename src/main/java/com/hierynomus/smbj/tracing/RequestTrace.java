@@ -0,0 +1,41 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.tracing;
+
+/**
+ * The trace of a single request, receiving the timings of the stages it passes through.
+ * <p/>
+ * All times are {@link System#nanoTime()} values. Stages are reported when they have ended; a request that does not
+ * pass through a stage (e.g. {@link TraceStage#DECRYPT} on an unencrypted session) does not report it.
+ */
+public interface RequestTrace {
+    /**
+     * A stage of the request has completed.
+     */
+    void stage(TraceStage stage, long startNanos, long endNanos);
+
+    /**
+     * The (final) response to the request has been delivered to the caller. This ends the trace.
+     *
+     * @param statusCode the NT status code of the response
+     */
+    void responded(long statusCode, long endNanos);
+
+    /**
+     * The request failed without a response, because the connection failed. This ends the trace.
+     */
+    void failed(Throwable cause, long endNanos);
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.tracing;
+
+/**
+ * Creates a {@link RequestTrace} for every request that is sent. Configure an implementation through
+ * {@link com.hierynomus.smbj.SmbConfig.Builder#withTracer(SmbTracer)}, e.g. one that starts an OpenTelemetry span per
+ * request and a child span per {@link TraceStage}.
+ * <p/>
+ * The tracer is called on the thread sending the request, and the trace on the threads doing the I/O, including the
+ * packet reader thread. Implementations should be cheap and must not block.
+ */
+public interface SmbTracer {
+    /**
+     * Does not trace anything; the default. When this tracer is configured, no timings are taken at all.
+     */
+    SmbTracer NOOP = new SmbTracer() {
+        @Override
+        public RequestTrace startRequest(RequestInfo request, long startNanos) {
+            return null;
+        }
+    };
+
+    /**
+     * Called when a request has been assigned its message ID, right before it is written to the transport.
+     *
+     * @param request    the identifiers of the request
+     * @param startNanos the {@link System#nanoTime()} at which sending started, before waiting for credits
+     * @return the trace of the request, or null to not trace this request
+     */
+    RequestTrace startRequest(RequestInfo request, long startNanos);
+}
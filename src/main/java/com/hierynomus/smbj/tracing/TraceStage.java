@@ -0,0 +1,62 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.tracing;
+
+/**
+ * The stages a request passes through, in order.
+ */
+public enum TraceStage {
+    /**
+     * Waiting for the server to grant enough credits to send the request.
+     */
+    CREDIT_WAIT,
+    /**
+     * Serializing an unsigned and unencrypted request.
+     */
+    SERIALIZE,
+    /**
+     * Serializing and signing the request.
+     */
+    SIGN,
+    /**
+     * Serializing and encrypting the request.
+     */
+    ENCRYPT,
+    /**
+     * Handing the serialized request to the transport, which writes it to the socket.
+     */
+    WRITE,
+    /**
+     * From the request being written until its response arrived: network round trip and server processing.
+     */
+    SERVER,
+    /**
+     * Decrypting the response.
+     */
+    DECRYPT,
+    /**
+     * Verifying the signature of the response.
+     */
+    VERIFY_SIGNATURE,
+    /**
+     * Deserializing the response.
+     */
+    DESERIALIZE,
+    /**
+     * Completing the future of the request, including any callbacks that run synchronously on completion.
+     */
+    DELIVER
+}
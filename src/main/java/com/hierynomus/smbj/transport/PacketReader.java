@@ -17,9 +17,11 @@ package com.hierynomus.smbj.transport;
 
 import java.io.BufferedInputStream;
 import java.io.InputStream;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.hierynomus.protocol.PacketData;
+import com.hierynomus.protocol.commons.concurrent.DaemonThreadFactory;
 import com.hierynomus.protocol.transport.PacketReceiver;
 import com.hierynomus.protocol.transport.TransportException;
 
@@ -36,14 +38,22 @@ public abstract class PacketReader<D extends PacketData<?>> implements Runnable
     private Thread thread;
 
     public PacketReader(String host, InputStream in, PacketReceiver<D> handler) {
+        this(host, in, handler, new DaemonThreadFactory());
+    }
+
+    /**
+     * @param threadFactory the factory that creates the thread that reads the packets, e.g. one that creates virtual
+     *                      threads. The created thread is named after the host.
+     */
+    public PacketReader(String host, InputStream in, PacketReceiver<D> handler, ThreadFactory threadFactory) {
         if (in instanceof BufferedInputStream) {
             this.in = in;
         } else {
             this.in = new BufferedInputStream(in);
         }
         this.handler = handler;
-        this.thread = new Thread(this, "Packet Reader for " + host);
-        this.thread.setDaemon(true);
+        this.thread = threadFactory.newThread(this);
+        this.thread.setName("Packet Reader for " + host);
     }
 
     @Override
@@ -19,6 +19,9 @@ import com.hierynomus.protocol.Packet;
 import com.hierynomus.protocol.PacketData;
 import com.hierynomus.protocol.commons.buffer.Buffer;
 import com.hierynomus.protocol.commons.buffer.Buffer.BufferException;
+import com.hierynomus.protocol.commons.concurrent.DaemonThreadFactory;
+import com.hierynomus.protocol.commons.socket.HappyEyeballsConnector;
+import com.hierynomus.protocol.commons.socket.SocketOptions;
 import com.hierynomus.protocol.transport.PacketHandlers;
 import com.hierynomus.protocol.transport.TransportException;
 import com.hierynomus.protocol.transport.TransportLayer;
@@ -27,16 +30,20 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.AsynchronousChannelGroup;
 import java.nio.channels.AsynchronousSocketChannel;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.CompletionHandler;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * A transport layer over Direct TCP/IP that uses asynchronous I/O.
@@ -47,22 +54,31 @@ public class AsyncDirectTcpTransport<D extends PacketData<?>, P extends Packet<?
 
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
     private final PacketHandlers<D, P> handlers;
-    private final AsynchronousSocketChannel socketChannel;
-    private final AsyncPacketReader<D> packetReader;
+    private final AsynchronousChannelGroup group;
+    private final SocketOptions socketOptions;
+    private final HappyEyeballsConnector connector;
+    private volatile AsynchronousSocketChannel socketChannel;
     private final AtomicBoolean connected;
     private int soTimeout = 0;
 
     // AsynchronousSocketChannel doesn't support concurrent writes, so queue pending writes for later
     private final Queue<ByteBuffer> writeQueue;
     private AtomicBoolean writingNow;
+    // A j.u.c. lock rather than a monitor, so that virtual threads writing packets don't pin their carrier
+    private final ReentrantLock writeLock = new ReentrantLock();
 
     public AsyncDirectTcpTransport(int soTimeout, PacketHandlers<D, P> handlers, AsynchronousChannelGroup group)
         throws IOException {
+        this(soTimeout, SocketOptions.DEFAULT, HappyEyeballsConnector.DEFAULT_ATTEMPT_DELAY, handlers, group, new DaemonThreadFactory());
+    }
+
+    public AsyncDirectTcpTransport(int soTimeout, SocketOptions socketOptions, long connectAttemptDelay,
+                                   PacketHandlers<D, P> handlers, AsynchronousChannelGroup group, ThreadFactory threadFactory) {
         this.soTimeout = soTimeout;
         this.handlers = handlers;
-        this.socketChannel = AsynchronousSocketChannel.open(group);
-        this.packetReader = new AsyncPacketReader<>(this.socketChannel, handlers.getPacketFactory(),
-            handlers.getReceiver());
+        this.group = group;
+        this.socketOptions = socketOptions;
+        this.connector = new HappyEyeballsConnector(connectAttemptDelay, threadFactory);
         this.writeQueue = new LinkedBlockingQueue<>();
         this.connected = new AtomicBoolean(false);
         this.writingNow = new AtomicBoolean(false);
@@ -76,35 +92,72 @@ public class AsyncDirectTcpTransport<D extends PacketData<?>, P extends Packet<?
     }
 
     private void writeOrEnqueue(ByteBuffer buffer) {
-        synchronized (this) {
+        writeLock.lock();
+        try {
             writeQueue.add(buffer);
             if (!writingNow.getAndSet(true)) {
                 startAsyncWrite();
             }
+        } finally {
+            writeLock.unlock();
         }
     }
 
     @Override
     public void connect(InetSocketAddress remoteAddress) throws IOException {
         String remoteHostname = remoteAddress.getHostString();
+        List<InetSocketAddress> addresses = HappyEyeballsConnector.resolve(remoteHostname, remoteAddress.getPort());
         try {
-            Future<Void> connectFuture = socketChannel.connect(remoteAddress);
-            connectFuture.get(DEFAULT_CONNECT_TIMEOUT, TimeUnit.MILLISECONDS);
-            connected.set(true);
-        } catch (ExecutionException | TimeoutException e) {
+            socketChannel = connector.connect(addresses, new HappyEyeballsConnector.Attempt<AsynchronousSocketChannel>() {
+                @Override
+                public AsynchronousSocketChannel open() throws IOException {
+                    AsynchronousSocketChannel channel = AsynchronousSocketChannel.open(group);
+                    try {
+                        socketOptions.applyTo(channel);
+                    } catch (IOException | RuntimeException e) {
+                        channel.close();
+                        throw e;
+                    }
+                    return channel;
+                }
+
+                @Override
+                public void connect(AsynchronousSocketChannel channel, InetSocketAddress address) throws IOException {
+                    connectChannel(channel, address);
+                }
+            });
+        } catch (IOException e) {
             throw TransportException.Wrapper.wrap(e);
+        }
+        connected.set(true);
+        new AsyncPacketReader<>(socketChannel, handlers.getPacketFactory(), handlers.getReceiver()).start(remoteHostname, this.soTimeout);
+    }
+
+    private static void connectChannel(AsynchronousSocketChannel channel, InetSocketAddress address) throws IOException {
+        try {
+            Future<Void> connectFuture = channel.connect(address);
+            connectFuture.get(DEFAULT_CONNECT_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new SocketTimeoutException("Connecting to " + address + " timed out after " + DEFAULT_CONNECT_TIMEOUT + " ms");
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            throw TransportException.Wrapper.wrap(e);
+            throw new InterruptedIOException("Interrupted while connecting to " + address);
         }
-        packetReader.start(remoteHostname, this.soTimeout);
     }
 
     @Override
     public void disconnect() throws IOException {
         // Mark disconnected first
         connected.set(false);
-        socketChannel.close();
+        AsynchronousSocketChannel channel = socketChannel;
+        if (channel != null) {
+            channel.close();
+        }
     }
 
     @Override
@@ -143,7 +196,8 @@ public class AsyncDirectTcpTransport<D extends PacketData<?>, P extends Packet<?
             }
 
             private void startNextWriteIfWaiting() {
-                synchronized (AsyncDirectTcpTransport.this) {
+                writeLock.lock();
+                try {
                     ByteBuffer head = writeQueue.peek();
                     if (head != null && head.hasRemaining()) {
                         startAsyncWrite();
@@ -153,6 +207,8 @@ public class AsyncDirectTcpTransport<D extends PacketData<?>, P extends Packet<?
                     } else {
                         writingNow.set(false);
                     }
+                } finally {
+                    writeLock.unlock();
                 }
             }
         });
@@ -20,7 +20,6 @@ import com.hierynomus.protocol.PacketData;
 import com.hierynomus.protocol.transport.PacketHandlers;
 import com.hierynomus.protocol.transport.TransportLayer;
 import com.hierynomus.smbj.SmbConfig;
-import com.hierynomus.smbj.common.SMBRuntimeException;
 import com.hierynomus.smbj.transport.TransportLayerFactory;
 
 import java.io.IOException;
@@ -33,11 +32,7 @@ public class AsyncDirectTcpTransportFactory<D extends PacketData<?>, P extends P
 
     @Override
     public TransportLayer<P> createTransportLayer(PacketHandlers<D, P> handlers, SmbConfig config) {
-        try {
-            return new AsyncDirectTcpTransport<>(config.getSoTimeout(), handlers, group);
-        } catch (IOException e) {
-            throw new SMBRuntimeException(e);
-        }
+        return new AsyncDirectTcpTransport<>(config.getSoTimeout(), config.getSocketOptions(), config.getConnectAttemptDelay(), handlers, group, config.getThreadFactory());
     }
 
     public AsyncDirectTcpTransportFactory() {
@@ -26,6 +26,7 @@ import com.hierynomus.smbj.transport.PacketReader;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.ThreadFactory;
 
 public class DirectTcpPacketReader<D extends PacketData<?>> extends PacketReader<D> {
 
@@ -36,6 +37,11 @@ public class DirectTcpPacketReader<D extends PacketData<?>> extends PacketReader
         this.packetFactory = packetFactory;
     }
 
+    public DirectTcpPacketReader(String host, InputStream in, PacketFactory<D> packetFactory, PacketReceiver<D> handler, ThreadFactory threadFactory) {
+        super(host, in, handler, threadFactory);
+        this.packetFactory = packetFactory;
+    }
+
     private D readPacket(int packetLength) throws IOException, Buffer.BufferException {
         byte[] buf = new byte[packetLength];
         readFully(buf);
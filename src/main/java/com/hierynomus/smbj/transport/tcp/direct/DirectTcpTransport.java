@@ -21,6 +21,7 @@ import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.net.SocketFactory;
@@ -31,7 +32,10 @@ import org.slf4j.LoggerFactory;
 import com.hierynomus.protocol.Packet;
 import com.hierynomus.protocol.PacketData;
 import com.hierynomus.protocol.commons.buffer.Buffer;
+import com.hierynomus.protocol.commons.concurrent.DaemonThreadFactory;
+import com.hierynomus.protocol.commons.socket.HappyEyeballsConnector;
 import com.hierynomus.protocol.commons.socket.ProxySocketFactory;
+import com.hierynomus.protocol.commons.socket.SocketOptions;
 import com.hierynomus.protocol.transport.PacketHandlers;
 import com.hierynomus.protocol.transport.TransportException;
 import com.hierynomus.protocol.transport.TransportLayer;
@@ -48,6 +52,9 @@ public class DirectTcpTransport<D extends PacketData<?>, P extends Packet<?>> im
 
     private SocketFactory socketFactory = new ProxySocketFactory();
     private int soTimeout;
+    private final SocketOptions socketOptions;
+    private final long connectAttemptDelay;
+    private final ThreadFactory threadFactory;
 
     private Socket socket;
     private BufferedOutputStream output;
@@ -56,9 +63,20 @@ public class DirectTcpTransport<D extends PacketData<?>, P extends Packet<?>> im
     private static final int INITIAL_BUFFER_SIZE = 9000;
 
     public DirectTcpTransport(SocketFactory socketFactory, int soTimeout, PacketHandlers<D, P> handlers) {
+        this(socketFactory, soTimeout, handlers, new DaemonThreadFactory());
+    }
+
+    public DirectTcpTransport(SocketFactory socketFactory, int soTimeout, PacketHandlers<D, P> handlers, ThreadFactory threadFactory) {
+        this(socketFactory, soTimeout, SocketOptions.DEFAULT, HappyEyeballsConnector.DEFAULT_ATTEMPT_DELAY, handlers, threadFactory);
+    }
+
+    public DirectTcpTransport(SocketFactory socketFactory, int soTimeout, SocketOptions socketOptions, long connectAttemptDelay, PacketHandlers<D, P> handlers, ThreadFactory threadFactory) {
         this.soTimeout = soTimeout;
         this.socketFactory = socketFactory;
+        this.socketOptions = socketOptions;
+        this.connectAttemptDelay = connectAttemptDelay;
         this.handlers = handlers;
+        this.threadFactory = threadFactory;
     }
 
     @Override
@@ -92,14 +110,20 @@ public class DirectTcpTransport<D extends PacketData<?>, P extends Packet<?>> im
     @Override
     public void connect(InetSocketAddress remoteAddress) throws IOException {
         String remoteHostname = remoteAddress.getHostString();
-        this.socket = socketFactory.createSocket(remoteHostname, remoteAddress.getPort());
+        if (socketFactory instanceof ProxySocketFactory) {
+            HappyEyeballsConnector connector = new HappyEyeballsConnector(connectAttemptDelay, threadFactory);
+            this.socket = ((ProxySocketFactory) socketFactory).createSocket(remoteHostname, remoteAddress.getPort(), socketOptions, connector);
+        } else {
+            this.socket = socketFactory.createSocket(remoteHostname, remoteAddress.getPort());
+            socketOptions.applyTo(this.socket);
+        }
         initWithSocket(remoteHostname);
     }
 
     private void initWithSocket(String remoteHostname) throws IOException {
         this.socket.setSoTimeout(soTimeout);
         this.output = new BufferedOutputStream(this.socket.getOutputStream(), INITIAL_BUFFER_SIZE);
-        packetReaderThread = new DirectTcpPacketReader<>(remoteHostname, socket.getInputStream(), handlers.getPacketFactory(), handlers.getReceiver());
+        packetReaderThread = new DirectTcpPacketReader<>(remoteHostname, socket.getInputStream(), handlers.getPacketFactory(), handlers.getReceiver(), threadFactory);
         packetReaderThread.start();
     }
 
@@ -15,6 +15,8 @@
  */
 package com.hierynomus.smbj.io
 
+import com.hierynomus.protocol.commons.buffer.Buffer
+import com.hierynomus.protocol.commons.buffer.Endian
 import spock.lang.Specification
 
 class FileByteChunkProviderSpec extends Specification {
@@ -93,6 +95,48 @@ class FileByteChunkProviderSpec extends Specification {
     file.delete()
   }
 
+  def "should write chunks directly into buffer"() {
+    given:
+    def file = getFileWithRandomData(ByteChunkProvider.CHUNK_SIZE + 1024)
+    def provider = new FileByteChunkProvider(file)
+    def buffer = new Buffer.PlainBuffer(Endian.LE)
+    buffer.putUInt16(0xCAFE)
+
+    when:
+    provider.prepareWrite(ByteChunkProvider.CHUNK_SIZE * 2)
+    provider.writeChunks(buffer, 2)
+
+    then:
+    buffer.readUInt16() == 0xCAFE
+    buffer.readRawBytes(buffer.available()) == file.bytes
+    provider.offset == ByteChunkProvider.CHUNK_SIZE + 1024
+    provider.lastWriteSize == ByteChunkProvider.CHUNK_SIZE + 1024
+    !provider.isAvailable()
+
+    cleanup:
+    provider.close()
+    file.delete()
+  }
+
+  def "should read range of file to separate remote offset"() {
+    given:
+    def file = getFileWithRandomData(4096)
+    def provider = new FileByteChunkProvider(file, 1000, 2000, 50000)
+    def baos = new ByteArrayOutputStream()
+
+    when:
+    provider.writeChunk(baos)
+
+    then:
+    baos.toByteArray() == Arrays.copyOfRange(file.bytes, 1000, 3000)
+    provider.offset == 52000
+    !provider.isAvailable()
+
+    cleanup:
+    provider.close()
+    file.delete()
+  }
+
   private def getFileWithRandomData(int size) {
     def bytes = new byte[size]
     new Random().nextBytes(bytes)
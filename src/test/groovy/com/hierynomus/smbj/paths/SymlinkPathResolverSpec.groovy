@@ -23,6 +23,8 @@ import com.hierynomus.smbj.common.SmbPath
 import spock.lang.Shared
 import spock.lang.Specification
 
+import java.util.concurrent.TimeUnit
+
 class SymlinkPathResolverSpec extends Specification {
 
   @Shared
@@ -62,6 +64,27 @@ class SymlinkPathResolverSpec extends Specification {
     target.path == "DonHall\\Documents\\PDocs\\DailyDocs\\[MS-SMB].doc"
   }
 
+  def "should open later paths through a cached symlink directly"() {
+    given:
+    def cache = new SymlinkCache(1, TimeUnit.MINUTES, 16)
+    def resolver = new SymlinkPathResolver(PathResolver.LOCAL, cache)
+    def original = "Public\\ProtocolDocs\\DailyDocs\\[MS-SMB].doc"
+    def resp = getResponse(false, 0x2E, "..\\DonHall\\Documents\\PDocs", "..\\DonHall\\Documents\\PDocs")
+    def identity = new PathResolver.ResolveAction<SmbPath>() {
+      @Override
+      SmbPath apply(SmbPath target) {
+        return target
+      }
+    }
+    resolver.resolve(null, resp, new SmbPath("localhost", "test", original), identity)
+
+    when:
+    def target = resolver.resolve(null, new SmbPath("localhost", "test", "public\\protocoldocs\\DailyDocs\\[MS-SMB2].doc"), identity)
+
+    then:
+    target.path == "DonHall\\Documents\\PDocs\\DailyDocs\\[MS-SMB2].doc"
+  }
+
   private SMB2CreateResponse getResponse(Boolean absolute, Integer unparsedPathLength, String substituteName, String printName) {
     def symlink = new SMB2Error.SymbolicLinkError()
     symlink['absolute'] = absolute
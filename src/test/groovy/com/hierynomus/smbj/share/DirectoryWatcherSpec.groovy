@@ -0,0 +1,118 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.share
+
+import com.hierynomus.msdtyp.AccessMask
+import com.hierynomus.mserref.NtStatus
+import com.hierynomus.msfscc.FileAttributes
+import com.hierynomus.msfscc.FileNotifyAction
+import com.hierynomus.msfscc.directory.FileNotifyInformation
+import com.hierynomus.mssmb2.*
+import com.hierynomus.mssmb2.messages.SMB2ChangeNotifyRequest
+import com.hierynomus.mssmb2.messages.SMB2ChangeNotifyResponse
+import com.hierynomus.mssmb2.messages.SMB2CreateRequest
+import com.hierynomus.mssmb2.messages.SMB2CreateResponse
+import com.hierynomus.smbj.SMBClient
+import com.hierynomus.smbj.SmbConfig
+import com.hierynomus.smbj.auth.AuthenticationContext
+import com.hierynomus.smbj.connection.Connection
+import com.hierynomus.smbj.testing.PacketProcessor.DefaultPacketProcessor
+import com.hierynomus.smbj.testing.StubAuthenticator
+import com.hierynomus.smbj.testing.StubTransportLayerFactory
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class DirectoryWatcherSpec extends Specification {
+  private Directory directory
+  private Connection connection
+  private int notifies
+
+  def setup() {
+    def responder = new DefaultPacketProcessor().wrap({ req ->
+      req = req.packet
+      if (req instanceof SMB2CreateRequest)
+        return createResponse()
+      if (req instanceof SMB2ChangeNotifyRequest)
+        return changeNotifyResponse(++notifies)
+
+      null
+    })
+
+    def config = SmbConfig.builder()
+      .withDfsEnabled(false)
+      .withTransportLayerFactory(new StubTransportLayerFactory(responder))
+      .withAuthenticators(new StubAuthenticator.Factory())
+      .build()
+    def client = new SMBClient(config)
+
+    connection = client.connect("127.0.0.1")
+    def session = connection.authenticate(new AuthenticationContext("username", "password".toCharArray(), "domain.com"))
+    def share = session.connectShare("share") as DiskShare
+    directory = share.openDirectory(
+      "dir",
+      EnumSet.of(AccessMask.FILE_LIST_DIRECTORY),
+      null,
+      SMB2ShareAccess.ALL,
+      SMB2CreateDisposition.FILE_OPEN,
+      null
+    )
+  }
+
+  def cleanup() {
+    connection.close()
+  }
+
+  def "should deliver changes in order until the server ends the watch"() {
+    given:
+    def watcher = new DirectoryWatcher(16)
+
+    when:
+    def key = watcher.watch(directory, EnumSet.of(SMB2CompletionFilter.FILE_NOTIFY_CHANGE_FILE_NAME), false)
+    def events = (1..4).collect { watcher.poll(5, TimeUnit.SECONDS) }
+
+    then:
+    events*.kind == [DirectoryChangeEvent.Kind.CHANGE, DirectoryChangeEvent.Kind.CHANGE, DirectoryChangeEvent.Kind.CHANGE, DirectoryChangeEvent.Kind.INVALIDATED]
+    events[0..2]*.fileName == ["file1", "file2", "file3"]
+    events[0..2]*.action == [FileNotifyAction.FILE_ACTION_ADDED] * 3
+    !key.valid
+
+    cleanup:
+    watcher.close()
+  }
+
+  SMB2Packet createResponse() {
+    def response = new SMB2CreateResponse()
+    response.header.statusCode = NtStatus.STATUS_SUCCESS.value
+    response.fileAttributes = EnumSet.of(FileAttributes.FILE_ATTRIBUTE_DIRECTORY)
+    response.fileId = new SMB2FileId(new byte[0], new byte[0])
+    response
+  }
+
+  SMB2Packet changeNotifyResponse(int n) {
+    def response = new SMB2ChangeNotifyResponse()
+    if (n <= 3) {
+      response.header.statusCode = NtStatus.STATUS_SUCCESS.value
+      def info = new FileNotifyInformation()
+      info.action = FileNotifyAction.FILE_ACTION_ADDED
+      info.fileName = "file" + n
+      response.fileNotifyInfoList.add(info)
+    } else {
+      response.header.statusCode = NtStatus.STATUS_NOTIFY_CLEANUP.value
+    }
+    response
+  }
+}
@@ -35,6 +35,7 @@ import com.hierynomus.smbj.testing.StubAuthenticator
 import com.hierynomus.smbj.testing.StubTransportLayerFactory
 import spock.lang.Specification
 
+import java.nio.ByteBuffer
 import java.security.DigestOutputStream
 import java.security.MessageDigest
 
@@ -211,6 +212,50 @@ class FileReadSpec extends Specification {
     out.toByteArray()[1..-1] == fileData[10001..-1]
   }
 
+  def "should read entire file contents via channel"() {
+    when:
+    def out = new DigestOutputStream(new ByteArrayOutputStream(), digest)
+    def buffer = ByteBuffer.allocate(100)
+
+    def channel = file.openChannel()
+    while (channel.read(buffer) != -1) {
+      out.write(buffer.array(), 0, buffer.position())
+      buffer.clear()
+    }
+
+    then:
+    ByteArrayUtils.printHex(digest.digest()) == ByteArrayUtils.printHex(expectedDigest)
+    channel.position() == fileData.length
+
+    cleanup:
+    channel.close()
+  }
+
+  def "should read from arbitrary position via channel"() {
+    given:
+    def channel = file.openChannel()
+    def buffer = ByteBuffer.allocate(3000)
+
+    when:
+    channel.position(5000)
+    channel.read(buffer)
+
+    then:
+    buffer.array() == fileData[5000..7999] as byte[]
+    channel.position() == 8000
+
+    when:
+    buffer = ByteBuffer.allocate(100)
+    channel.position(12300)
+
+    then:
+    channel.read(buffer) == 45
+    channel.read(buffer) == -1
+
+    cleanup:
+    channel.close()
+  }
+
   byte[] randomData(int seed, int length) {
     Random rng = new Random(seed)
     byte[] data = new byte[length]
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.share
+
+import com.hierynomus.mserref.NtStatus
+import com.hierynomus.msfscc.FileAttributes
+import com.hierynomus.mssmb2.SMB2FileId
+import com.hierynomus.mssmb2.SMB2Packet
+import com.hierynomus.mssmb2.SMB2ShareCapabilities
+import com.hierynomus.mssmb2.SMB2ShareFlags
+import com.hierynomus.mssmb2.messages.SMB2Close
+import com.hierynomus.mssmb2.messages.SMB2CreateRequest
+import com.hierynomus.mssmb2.messages.SMB2CreateResponse
+import com.hierynomus.mssmb2.messages.SMB2IoctlRequest
+import com.hierynomus.mssmb2.messages.SMB2IoctlResponse
+import com.hierynomus.mssmb2.messages.SMB2ReadRequest
+import com.hierynomus.mssmb2.messages.SMB2ReadResponse
+import com.hierynomus.mssmb2.messages.SMB2TreeConnectRequest
+import com.hierynomus.mssmb2.messages.SMB2TreeConnectResponse
+import com.hierynomus.smbj.SMBClient
+import com.hierynomus.smbj.SmbConfig
+import com.hierynomus.smbj.auth.AuthenticationContext
+import com.hierynomus.smbj.connection.Connection
+import com.hierynomus.smbj.testing.PacketProcessor.DefaultPacketProcessor
+import com.hierynomus.smbj.testing.StubAuthenticator
+import com.hierynomus.smbj.testing.StubTransportLayerFactory
+import spock.lang.Specification
+
+import java.util.concurrent.ConcurrentLinkedDeque
+import java.util.concurrent.TimeUnit
+
+class NamedPipeSpec extends Specification {
+  private static final long FSCTL_PIPE_WAIT = 0x00110018L
+
+  private PipeShare share
+  private Connection connection
+  private Deque<byte[]> fragments = new ConcurrentLinkedDeque<>()
+  private int unavailable
+  private int waits
+
+  def setup() {
+    def responder = new DefaultPacketProcessor().wrap({ req ->
+      req = req.packet
+      if (req instanceof SMB2TreeConnectRequest)
+        return pipeShareResponse()
+      if (req instanceof SMB2CreateRequest)
+        return createResponse()
+      if (req instanceof SMB2IoctlRequest)
+        return ioctlResponse(req as SMB2IoctlRequest)
+      if (req instanceof SMB2ReadRequest)
+        return readResponse()
+      if (req instanceof SMB2Close)
+        return status(new SMB2Close(), NtStatus.STATUS_SUCCESS)
+
+      null
+    })
+
+    def config = SmbConfig.builder()
+      .withDfsEnabled(false)
+      .withTransportLayerFactory(new StubTransportLayerFactory(responder))
+      .withAuthenticators(new StubAuthenticator.Factory())
+      .build()
+    def client = new SMBClient(config)
+
+    connection = client.connect("127.0.0.1")
+    def session = connection.authenticate(new AuthenticationContext("username", "password".toCharArray(), "domain.com"))
+    share = session.connectShare("IPC\$") as PipeShare
+  }
+
+  def cleanup() {
+    connection.close()
+  }
+
+  def "should reassemble a transceive reply that overflowed into reads"() {
+    given:
+    def pool = new NamedPipePool(share, "srvsvc", 2, 1000)
+    unavailable = 1
+
+    when:
+    def reply = pool.transactAsync([9] as byte[]).get(5, TimeUnit.SECONDS)
+
+    then:
+    reply == [1, 2, 3, 4, 5, 6] as byte[]
+    waits == 1
+
+    cleanup:
+    pool.close()
+  }
+
+  def "should reassemble message fragments read through a channel"() {
+    given:
+    def pipe = share.open("srvsvc", null, null, null, null, null, null)
+    def channel = pipe.openChannel(2)
+    fragments.addAll([[1] as byte[], [2] as byte[], [3] as byte[]])
+
+    when:
+    def message = channel.readMessageAsync().get(5, TimeUnit.SECONDS)
+
+    then:
+    message == [1, 2, 3] as byte[]
+
+    cleanup:
+    channel.close()
+    pipe.close()
+  }
+
+  SMB2Packet pipeShareResponse() {
+    def response = new SMB2TreeConnectResponse()
+    response.capabilities = EnumSet.noneOf(SMB2ShareCapabilities)
+    response.shareFlags = EnumSet.noneOf(SMB2ShareFlags)
+    response.shareType = (byte) 0x02
+    status(response, NtStatus.STATUS_SUCCESS)
+  }
+
+  SMB2Packet createResponse() {
+    def response = new SMB2CreateResponse()
+    if (unavailable-- > 0)
+      return status(response, NtStatus.STATUS_PIPE_NOT_AVAILABLE)
+    response.fileAttributes = EnumSet.of(FileAttributes.FILE_ATTRIBUTE_NORMAL)
+    response.fileId = new SMB2FileId(new byte[0], new byte[0])
+    status(response, NtStatus.STATUS_SUCCESS)
+  }
+
+  SMB2Packet ioctlResponse(SMB2IoctlRequest request) {
+    def response = new SMB2IoctlResponse()
+    if (request.@controlCode == FSCTL_PIPE_WAIT) {
+      waits++
+      return status(response, NtStatus.STATUS_SUCCESS)
+    }
+    response.@outputBuffer = [1, 2, 3] as byte[]
+    fragments.addAll([[4, 5] as byte[], [6] as byte[]])
+    status(response, NtStatus.STATUS_BUFFER_OVERFLOW)
+  }
+
+  SMB2Packet readResponse() {
+    def response = new SMB2ReadResponse()
+    def data = fragments.poll()
+    if (data == null)
+      return status(response, NtStatus.STATUS_END_OF_FILE)
+    response.@data = data
+    response.@dataLength = data.length
+    status(response, fragments.isEmpty() ? NtStatus.STATUS_SUCCESS : NtStatus.STATUS_BUFFER_OVERFLOW)
+  }
+
+  private static SMB2Packet status(SMB2Packet response, NtStatus status) {
+    response.header.statusCode = status.value
+    response
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.msdfsc;
+
+import org.junit.jupiter.api.Test;
+
+import com.hierynomus.msdfsc.messages.DFSReferral;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class ReferralCacheRefreshTest {
+    @Test
+    public void shouldRefreshBeforeHardTimeout() {
+        long now = System.currentTimeMillis();
+        ReferralCache.ReferralCacheEntry fresh = entry("\\domain\\dfs", now + TimeUnit.SECONDS.toMillis(300), 300, "\\server1\\share");
+        ReferralCache.ReferralCacheEntry aging = entry("\\domain\\dfs", now + TimeUnit.SECONDS.toMillis(10), 300, "\\server1\\share");
+        ReferralCache.ReferralCacheEntry stale = entry("\\domain\\dfs", now - TimeUnit.SECONDS.toMillis(10), 300, "\\server1\\share");
+
+        assertFalse(fresh.needsRefresh());
+        assertTrue(aging.needsRefresh());
+        assertFalse(aging.isExpired());
+        assertTrue(stale.isExpired());
+        assertFalse(stale.isExpired(TimeUnit.MINUTES.toMillis(1)));
+        assertTrue(stale.isExpired(TimeUnit.SECONDS.toMillis(5)));
+
+        assertTrue(stale.startRefresh());
+        assertFalse(stale.startRefresh());
+        stale.refreshFailed();
+        assertTrue(stale.startRefresh());
+    }
+
+    @Test
+    public void shouldRestoreCachesFromSnapshot() throws Exception {
+        long expires = System.currentTimeMillis() + 60000;
+        ReferralCache referralCache = new ReferralCache();
+        ReferralCache.ReferralCacheEntry root = entry("\\domain\\dfs", expires, 300, "\\server1\\share", "\\server2\\share");
+        root.setTargetHint(root.getTargetList().get(1));
+        referralCache.put(root);
+        referralCache.put(entry("\\domain\\dfs\\link", expires, 1800, "\\server3\\data"));
+        DomainCache domainCache = new DomainCache();
+        domainCache.put(new DomainCache.DomainCacheEntry("domain", "dc1.domain", Arrays.asList("dc1.domain", "dc2.domain"), expires));
+
+        File file = File.createTempFile("dfs", ".cache");
+        try {
+            ReferralCacheSnapshot.write(file, referralCache, domainCache);
+            ReferralCache restored = new ReferralCache();
+            DomainCache restoredDomains = new DomainCache();
+            ReferralCacheSnapshot.read(file, restored, restoredDomains);
+
+            assertEquals(2, restored.entries().size());
+            ReferralCache.ReferralCacheEntry restoredRoot = restored.lookup(new DFSPath("\\domain\\dfs\\folder"));
+            assertEquals("\\domain\\dfs", restoredRoot.getDfsPathPrefix());
+            assertTrue(restoredRoot.isRoot());
+            assertEquals(expires, restoredRoot.getExpires());
+            assertEquals("\\server2\\share", restoredRoot.getTargetHint().getTargetPath().toPath());
+            ReferralCache.ReferralCacheEntry restoredLink = restored.lookup(new DFSPath("\\domain\\dfs\\link\\file"));
+            assertTrue(restoredLink.isLink());
+            assertEquals(1800, restoredLink.getTtl());
+            assertEquals(Arrays.asList("dc1.domain", "dc2.domain"), restoredDomains.lookup("domain").getDCList());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void shouldPreferFastestHealthyTargetWithinTargetSet() {
+        TargetHealth health = new TargetHealth();
+        List<ReferralCache.TargetSetEntry> targets = Arrays.asList(
+            new ReferralCache.TargetSetEntry("\\site1a\\share", true),
+            new ReferralCache.TargetSetEntry("\\site1b\\share", false),
+            new ReferralCache.TargetSetEntry("\\site1c\\share", false),
+            new ReferralCache.TargetSetEntry("\\site2a\\share", true),
+            new ReferralCache.TargetSetEntry("\\site2b\\share", false));
+
+        assertEquals(Arrays.asList("site1a", "site1b", "site1c", "site2a", "site2b"), servers(health.order(targets)));
+
+        health.succeeded(new DFSPath("\\site1a\\share"), TimeUnit.MILLISECONDS.toNanos(40));
+        health.succeeded(new DFSPath("\\site1c\\share"), TimeUnit.MILLISECONDS.toNanos(5));
+        health.failed(new DFSPath("\\site2a\\share"));
+        health.succeeded(new DFSPath("\\site2b\\share"), TimeUnit.MILLISECONDS.toNanos(1));
+
+        assertFalse(health.isAvailable(new DFSPath("\\SITE2A\\other")));
+        assertEquals(Arrays.asList("site1c", "site1a", "site1b", "site2b", "site2a"), servers(health.order(targets)));
+
+        health.succeeded(new DFSPath("\\site2a\\share"), TimeUnit.MILLISECONDS.toNanos(1));
+        assertTrue(health.isAvailable(new DFSPath("\\site2a\\share")));
+    }
+
+    private static ReferralCache.ReferralCacheEntry entry(String prefix, long expires, int ttl, String... targets) {
+        List<ReferralCache.TargetSetEntry> targetList = new ArrayList<>();
+        for (String target : targets) {
+            targetList.add(new ReferralCache.TargetSetEntry(target, false));
+        }
+        DFSReferral.ServerType type = prefix.split("\\\\").length > 3 ? DFSReferral.ServerType.LINK : DFSReferral.ServerType.ROOT;
+        return new ReferralCache.ReferralCacheEntry(prefix, type, false, ttl, expires, false, 0, targetList);
+    }
+
+    private static List<String> servers(List<ReferralCache.TargetSetEntry> targets) {
+        List<String> servers = new ArrayList<>();
+        for (ReferralCache.TargetSetEntry target : targets) {
+            servers.add(target.getTargetPath().getPathComponents().get(0));
+        }
+        return servers;
+    }
+}
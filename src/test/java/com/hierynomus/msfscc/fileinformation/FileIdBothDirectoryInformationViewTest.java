@@ -0,0 +1,155 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.msfscc.fileinformation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.hierynomus.msdtyp.AccessMask;
+import com.hierynomus.msdtyp.FileTime;
+import com.hierynomus.msdtyp.MsDataTypes;
+import com.hierynomus.msfscc.FileAttributes;
+import com.hierynomus.mssmb2.SMB2CreateDisposition;
+import com.hierynomus.mssmb2.SMB2ShareAccess;
+import com.hierynomus.protocol.commons.Charsets;
+import com.hierynomus.smb.SMBBuffer;
+import com.hierynomus.smbj.SMBClient;
+import com.hierynomus.smbj.SmbConfig;
+import com.hierynomus.smbj.auth.AuthenticationContext;
+import com.hierynomus.smbj.common.SMBRuntimeException;
+import com.hierynomus.smbj.connection.Connection;
+import com.hierynomus.smbj.share.Directory;
+import com.hierynomus.smbj.share.DiskShare;
+import com.hierynomus.smbj.testing.InMemoryFileTree;
+import com.hierynomus.smbj.testing.LoopbackSmbServer;
+import com.hierynomus.smbj.testing.StubAuthenticator;
+
+public class FileIdBothDirectoryInformationViewTest {
+    @Test
+    public void shouldReadSameFieldsAsFullDecoding() {
+        byte[] listing = listing("a.txt", "LONGER~1.DOC", "directory with a longer name");
+        List<FileIdBothDirectoryInformation> decoded = FileInformationFactory.parseFileInformationList(listing,
+            FileInformationFactory.getDecoder(FileIdBothDirectoryInformation.class));
+
+        Iterator<FileIdBothDirectoryInformationView> views = FileInformationFactory.createFileIdBothDirectoryViewIterator(listing);
+        for (FileIdBothDirectoryInformation info : decoded) {
+            assertTrue(views.hasNext());
+            FileIdBothDirectoryInformationView view = views.next();
+            assertEquals(info.getFileIndex(), view.getFileIndex());
+            assertEquals(info.getFileName(), view.getFileName());
+            assertEquals(info.getShortName(), view.getShortName());
+            assertEquals(info.getCreationTime().getWindowsTimeStamp(), view.getCreationTime());
+            assertEquals(info.getLastAccessTime().getWindowsTimeStamp(), view.getLastAccessTime());
+            assertEquals(info.getLastWriteTime().getWindowsTimeStamp(), view.getLastWriteTime());
+            assertEquals(info.getChangeTime().getWindowsTimeStamp(), view.getChangeTime());
+            assertEquals(info.getEndOfFile(), view.getEndOfFile());
+            assertEquals(info.getAllocationSize(), view.getAllocationSize());
+            assertEquals(info.getFileAttributes(), view.getFileAttributes());
+            assertEquals(info.getEaSize(), view.getEaSize());
+            assertEquals(info.getFileId(), view.getFileId());
+            assertEquals(info.getFileName(), view.toFileIdBothDirectoryInformation().getFileName());
+        }
+        assertFalse(views.hasNext());
+    }
+
+    @Test
+    public void shouldRejectTruncatedEntry() {
+        byte[] listing = listing("first", "second");
+        Iterator<FileIdBothDirectoryInformationView> views = FileInformationFactory.createFileIdBothDirectoryViewIterator(
+            Arrays.copyOf(listing, listing.length - 2));
+        assertEquals("first", views.next().getFileName());
+        assertThrows(SMBRuntimeException.class, views::next);
+    }
+
+    @Test
+    public void shouldIterateDirectoryAsViews() throws Exception {
+        InMemoryFileTree tree = new InMemoryFileTree();
+        tree.mkdirs("docs/sub");
+        for (int i = 0; i < 100; i++) {
+            tree.write(String.format("docs/file-%03d.txt", i), new byte[i]);
+        }
+        SmbConfig config = SmbConfig.builder().withAuthenticators(new StubAuthenticator.Factory()).build();
+
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withShare("share", tree).build().start();
+             SMBClient client = new SMBClient(config);
+             Connection connection = client.connect(server.getHostname(), server.getPort())) {
+            DiskShare share = (DiskShare) connection.authenticate(new AuthenticationContext("user", "password".toCharArray(), null)).connectShare("share");
+            List<String> expected = new ArrayList<>();
+            for (FileIdBothDirectoryInformation info : share.list("docs")) {
+                expected.add(info.getFileName() + ":" + info.getEndOfFile());
+            }
+
+            List<String> names = new ArrayList<>();
+            try (Directory directory = share.openDirectory("docs", EnumSet.of(AccessMask.FILE_LIST_DIRECTORY), null,
+                SMB2ShareAccess.ALL, SMB2CreateDisposition.FILE_OPEN, null)) {
+                Iterator<FileIdBothDirectoryInformationView> views = directory.viewIterator();
+                while (views.hasNext()) {
+                    FileIdBothDirectoryInformationView view = views.next();
+                    names.add(view.getFileName() + ":" + view.getEndOfFile());
+                    if (view.getFileName().equals("sub")) {
+                        assertTrue(view.hasAttribute(FileAttributes.FILE_ATTRIBUTE_DIRECTORY));
+                    }
+                }
+            }
+            assertEquals(expected, names);
+            assertEquals(103, names.size());
+        }
+    }
+
+    /**
+     * [MS-FSCC] 2.4.17 FileIdBothDirectoryInformation, entries are 8-byte aligned.
+     */
+    private static byte[] listing(String... fileNames) {
+        SMBBuffer buffer = new SMBBuffer();
+        for (int i = 0; i < fileNames.length; i++) {
+            byte[] fileName = fileNames[i].getBytes(Charsets.UTF_16LE);
+            byte[] shortName = fileNames[i].length() <= 12 ? fileName : new byte[0];
+            int start = buffer.wpos();
+            int length = (104 + fileName.length + 7) & ~7;
+            buffer.putUInt32(i == fileNames.length - 1 ? 0 : length); // NextEntryOffset (4 bytes)
+            buffer.putUInt32(i); // FileIndex (4 bytes)
+            MsDataTypes.putFileTime(new FileTime(130610513710000000L + i), buffer); // CreationTime (8 bytes)
+            MsDataTypes.putFileTime(new FileTime(131217664498438450L + i), buffer); // LastAccessTime (8 bytes)
+            MsDataTypes.putFileTime(new FileTime(131217664498438451L + i), buffer); // LastWriteTime (8 bytes)
+            MsDataTypes.putFileTime(new FileTime(131217664498443062L + i), buffer); // ChangeTime (8 bytes)
+            buffer.putUInt64(0x1_0000_0000L + i); // EndOfFile (8 bytes)
+            buffer.putUInt64(4096L * i); // AllocationSize (8 bytes)
+            buffer.putUInt32(i == 2 ? 0x10 : 0x80000020L); // FileAttributes (4 bytes)
+            buffer.putUInt32(fileName.length); // FileNameLength (4 bytes)
+            buffer.putUInt32(7); // EaSize (4 bytes)
+            buffer.putByte((byte) shortName.length); // ShortNameLength (1 byte)
+            buffer.putReserved1(); // Reserved1 (1 byte)
+            buffer.putRawBytes(Arrays.copyOf(shortName, 24)); // ShortName (24 bytes)
+            buffer.putReserved2(); // Reserved2 (2 bytes)
+            buffer.putLong(-1L - i); // FileId (8 bytes)
+            buffer.putRawBytes(fileName); // FileName (variable)
+            if (i < fileNames.length - 1) {
+                buffer.putReserved(start + length - buffer.wpos());
+            }
+        }
+        return buffer.getCompactData();
+    }
+}
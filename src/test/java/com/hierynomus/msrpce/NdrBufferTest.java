@@ -0,0 +1,60 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.msrpce;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class NdrBufferTest {
+    @Test
+    public void shouldWriteUniqueConformantVaryingString() {
+        NdrBuffer buffer = new NdrBuffer();
+        buffer.putUniqueString("ab");
+
+        assertEquals("00 00 02 00 03 00 00 00 00 00 00 00 03 00 00 00 61 00 62 00 00 00", buffer.printHex());
+    }
+
+    @Test
+    public void shouldAlignRelativeToStartOfBuffer() throws Exception {
+        NdrBuffer buffer = new NdrBuffer();
+        buffer.putConformantVaryingString("a");
+        buffer.align(4);
+        buffer.putUInt32(42);
+
+        assertEquals(20, buffer.available());
+        assertEquals("a", buffer.readConformantVaryingString());
+        buffer.alignRead(4);
+        assertEquals(42, buffer.readUInt32());
+    }
+
+    @Test
+    public void shouldHandOutIncreasingReferentIds() throws Exception {
+        NdrBuffer buffer = new NdrBuffer();
+        buffer.putReferent(true);
+        buffer.putReferent(false);
+        buffer.putReferent(true);
+
+        assertEquals(0x00020000, buffer.readUInt32());
+        assertEquals(0, buffer.readUInt32());
+        assertEquals(0x00020004, buffer.readUInt32());
+        buffer.rpos(0);
+        assertTrue(buffer.readReferent());
+        assertFalse(buffer.readReferent());
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.msrpce.messages;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.hierynomus.msrpce.RpcException;
+import com.hierynomus.msrpce.RpcPacketType;
+import com.hierynomus.protocol.commons.ByteArrayUtils;
+import com.hierynomus.smbj.rpc.srvsvc.ServerService;
+
+public class RpcMessagesTest {
+    @Test
+    public void shouldWriteBindRequest() {
+        byte[] pdu = new RpcBindRequest(1, 4280, 4280, 0, ServerService.SRVSVC).toBytes();
+
+        assertEquals("05 00 0b 03 10 00 00 00 48 00 00 00 01 00 00 00 " // Header, FragLength 72, CallId 1
+            + "b8 10 b8 10 00 00 00 00 " // MaxXmitFrag, MaxRecvFrag, AssocGroupId
+            + "01 00 00 00 00 00 01 00 " // NumContextElements, ContextId 0, NumTransferSyntaxes
+            + "c8 4f 32 4b 70 16 d3 01 12 78 5a 47 bf 6e e1 88 03 00 00 00 " // srvsvc v3.0
+            + "04 5d 88 8a eb 1c c9 11 9f e8 08 00 2b 10 48 60 02 00 00 00", // NDR v2.0
+            ByteArrayUtils.printHex(pdu));
+    }
+
+    @Test
+    public void shouldReadBindAck() throws Exception {
+        RpcBindAck ack = RpcBindAck.read(ByteArrayUtils.parseHex("05000c03100000004400000001000000"
+            + "b8100004" + "53f00000" // MaxXmitFrag 4280, MaxRecvFrag 1024, AssocGroupId
+            + "0d005c504950455c73727673766300" // SecondaryAddress "\PIPE\srvsvc"
+            + "00" // Padding
+            + "01000000" // NumResults
+            + "00000000" // Result acceptance, Reason
+            + "045d888aeb1cc9119fe808002b10486002000000"));
+
+        assertEquals(4280, ack.getMaxXmitFrag());
+        assertEquals(1024, ack.getMaxRecvFrag());
+        assertEquals(0xf053, ack.getAssocGroupId());
+    }
+
+    @Test
+    public void shouldRejectBindNak() {
+        byte[] pdu = ByteArrayUtils.parseHex("05000d03100000001500000001000000" + "0400" + "010500");
+
+        RpcException e = assertThrows(RpcException.class, () -> RpcBindAck.read(pdu));
+        assertEquals(4, e.getStatus()); // protocol_version_not_supported
+    }
+
+    @Test
+    public void shouldRejectBindAckWithRejectedContext() {
+        byte[] pdu = ByteArrayUtils.parseHex("05000c03100000004400000001000000"
+            + "b8100004" + "53f00000"
+            + "0d005c504950455c73727673766300" + "00"
+            + "01000000"
+            + "02000100" // Result provider_rejection, Reason abstract_syntax_not_supported
+            + "0000000000000000000000000000000000000000");
+
+        RpcException e = assertThrows(RpcException.class, () -> RpcBindAck.read(pdu));
+        assertEquals(1, e.getStatus());
+    }
+
+    @Test
+    public void shouldWriteRequestFragment() {
+        byte[] stub = {0x11, 0x22, 0x33, 0x44, 0x55, 0x66};
+
+        byte[] pdu = new RpcRequest(7, RpcHeader.PFC_LAST_FRAG, 0, 15, 1006).toBytes(stub, 2, 3);
+
+        assertEquals("05 00 00 02 10 00 00 00 1b 00 00 00 07 00 00 00 " // Header, last fragment, FragLength 27, CallId 7
+            + "ee 03 00 00 00 00 0f 00 " // AllocHint 1006, ContextId 0, Opnum 15
+            + "33 44 55", ByteArrayUtils.printHex(pdu));
+    }
+
+    @Test
+    public void shouldReadResponseFragments() throws Exception {
+        RpcResponse first = RpcResponse.read(ByteArrayUtils.parseHex("05000201100000001c00000007000000" + "06000000" + "0000" + "0000" + "aabbccdd"));
+        RpcResponse last = RpcResponse.read(ByteArrayUtils.parseHex("05000202100000001a00000007000000" + "06000000" + "0000" + "0000" + "eeff"));
+
+        assertEquals(RpcPacketType.RESPONSE, first.getHeader().getPacketType());
+        assertEquals(7, first.getHeader().getCallId());
+        assertEquals(6, first.getAllocHint());
+        assertFalse(first.getHeader().isLastFragment());
+        assertArrayEquals(ByteArrayUtils.parseHex("aabbccdd"), first.getStub());
+        assertTrue(last.getHeader().isLastFragment());
+        assertArrayEquals(ByteArrayUtils.parseHex("eeff"), last.getStub());
+    }
+
+    @Test
+    public void shouldRejectFault() {
+        byte[] pdu = ByteArrayUtils.parseHex("05000303100000002000000007000000" + "20000000" + "0000" + "0000" + "0300011c" + "00000000");
+
+        RpcException e = assertThrows(RpcException.class, () -> RpcResponse.read(pdu));
+        assertEquals(0x1c010003L, e.getStatus()); // nca_s_op_rng_error
+    }
+}
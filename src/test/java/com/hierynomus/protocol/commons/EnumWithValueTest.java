@@ -0,0 +1,99 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.protocol.commons;
+
+import com.hierynomus.msdtyp.AccessMask;
+import com.hierynomus.msdtyp.ace.AceType;
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.msfscc.FileAttributes;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EnumWithValueTest {
+
+    @Test
+    public void shouldLookUpEverySparseValue() {
+        for (NtStatus status : NtStatus.values()) {
+            assertSame(firstWithValue(status.getValue(), NtStatus.values()), NtStatus.valueOf(status.getValue()));
+        }
+        assertSame(NtStatus.STATUS_OTHER, NtStatus.valueOf(0x12345678L));
+    }
+
+    @Test
+    public void shouldLookUpEveryDenseValue() {
+        for (AceType type : AceType.values()) {
+            assertSame(type, EnumWithValue.EnumUtils.valueOf(type.getValue(), AceType.class, null));
+        }
+        assertSame(null, EnumWithValue.EnumUtils.valueOf(-1, AceType.class, null));
+        assertSame(null, EnumWithValue.EnumUtils.valueOf(0x1000, AceType.class, null));
+    }
+
+    @Test
+    public void shouldDecodeFlagsLikeALinearScan() {
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            long flags = random.nextInt(8) == 0 ? 0 : random.nextLong() & 0xFFFFFFFFL;
+            // Repeat, so that the second decode is served from the cache
+            for (int j = 0; j < 2; j++) {
+                assertEquals(linearDecode(flags, AccessMask.class), EnumWithValue.EnumUtils.toEnumSet(flags, AccessMask.class));
+                assertEquals(linearDecode(flags, FileAttributes.class), EnumWithValue.EnumUtils.toEnumSet(flags, FileAttributes.class));
+            }
+        }
+    }
+
+    @Test
+    public void shouldReturnIndependentSets() {
+        long flags = FileAttributes.FILE_ATTRIBUTE_DIRECTORY.getValue() | FileAttributes.FILE_ATTRIBUTE_HIDDEN.getValue();
+        EnumSet<FileAttributes> first = EnumWithValue.EnumUtils.toEnumSet(flags, FileAttributes.class);
+        first.clear();
+        EnumSet<FileAttributes> second = EnumWithValue.EnumUtils.toEnumSet(flags, FileAttributes.class);
+        assertEquals(EnumSet.of(FileAttributes.FILE_ATTRIBUTE_DIRECTORY, FileAttributes.FILE_ATTRIBUTE_HIDDEN), second);
+        assertFalse(first.equals(second));
+    }
+
+    @Test
+    public void shouldRejectEnumsWithoutValue() {
+        assertThrows(IllegalArgumentException.class, () -> EnumWithValue.EnumUtils.toEnumSet(1, java.util.concurrent.TimeUnit.class));
+        assertTrue(EnumWithValue.EnumUtils.toEnumSet(0, FileAttributes.class).isEmpty());
+    }
+
+    private static <E extends EnumWithValue<?>> E firstWithValue(long value, E[] constants) {
+        for (E constant : constants) {
+            if (constant.getValue() == value) {
+                return constant;
+            }
+        }
+        return null;
+    }
+
+    private static <E extends Enum<E>> EnumSet<E> linearDecode(long flags, Class<E> clazz) {
+        EnumSet<E> set = EnumSet.noneOf(clazz);
+        for (E constant : clazz.getEnumConstants()) {
+            if (EnumWithValue.EnumUtils.isSet(flags, (EnumWithValue<?>) constant)) {
+                set.add(constant);
+            }
+        }
+        return set;
+    }
+}
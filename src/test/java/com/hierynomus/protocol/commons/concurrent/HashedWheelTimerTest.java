@@ -0,0 +1,100 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.protocol.commons.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HashedWheelTimerTest {
+    @Test
+    public void shouldExpireInDeadlineOrderAcrossRotations() throws Exception {
+        // 8 buckets of 10 ms, so the last timeout needs multiple rotations
+        HashedWheelTimer timer = new HashedWheelTimer(new DaemonThreadFactory(), 10, TimeUnit.MILLISECONDS, 8);
+        try {
+            final List<Long> expired = new CopyOnWriteArrayList<>();
+            final CountDownLatch done = new CountDownLatch(3);
+            final long start = System.nanoTime();
+            for (final long delay : new long[]{50, 250, 20}) {
+                timer.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= delay);
+                        expired.add(delay);
+                        done.countDown();
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(Arrays.asList(20L, 50L, 250L), expired);
+        } finally {
+            timer.close();
+        }
+    }
+
+    @Test
+    public void shouldNotRunCancelledTimeouts() throws Exception {
+        HashedWheelTimer timer = new HashedWheelTimer(new DaemonThreadFactory(), 10, TimeUnit.MILLISECONDS, 8);
+        try {
+            final CountDownLatch cancelledRan = new CountDownLatch(1);
+            final CountDownLatch otherRan = new CountDownLatch(1);
+            HashedWheelTimer.Timeout cancelled = timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    cancelledRan.countDown();
+                }
+            }, 30, TimeUnit.MILLISECONDS);
+            HashedWheelTimer.Timeout other = timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    otherRan.countDown();
+                }
+            }, 60, TimeUnit.MILLISECONDS);
+
+            assertTrue(cancelled.cancel());
+            assertFalse(cancelled.cancel());
+            assertTrue(otherRan.await(5, TimeUnit.SECONDS));
+            assertEquals(1, cancelledRan.getCount());
+            assertTrue(cancelled.isCancelled());
+            assertTrue(other.isExpired());
+            assertFalse(other.cancel());
+        } finally {
+            timer.close();
+        }
+    }
+
+    @Test
+    public void shouldRejectTimeoutsWhenClosed() {
+        HashedWheelTimer timer = new HashedWheelTimer(new DaemonThreadFactory());
+        timer.close();
+
+        assertThrows(IllegalStateException.class, () -> timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, 1, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.protocol.commons.concurrent;
+
+import com.hierynomus.smbj.common.SMBRuntimeException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PromiseTest {
+    @Test
+    public void shouldCompleteCompletableFutureWhenDelivered() {
+        Promise<String, SMBRuntimeException> promise = new Promise<>("test", SMBRuntimeException.Wrapper);
+        CompletableFuture<String> f = promise.future().toCompletableFuture();
+        assertFalse(f.isDone());
+
+        promise.deliver("done");
+
+        assertEquals("done", f.join());
+    }
+
+    @Test
+    public void shouldCompleteCompletableFutureWhenAlreadyDelivered() {
+        Promise<String, SMBRuntimeException> promise = new Promise<>("test", SMBRuntimeException.Wrapper);
+        promise.deliver("done");
+
+        assertEquals("done", promise.future().toCompletableFuture().join());
+    }
+
+    @Test
+    public void shouldCompleteCompletableFutureExceptionallyOnError() throws InterruptedException {
+        Promise<String, SMBRuntimeException> promise = new Promise<>("test", SMBRuntimeException.Wrapper);
+        CompletableFuture<String> f = promise.future().toCompletableFuture();
+
+        promise.deliverError(new IllegalStateException("boom"));
+
+        try {
+            f.get();
+            fail("Expected the future to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof SMBRuntimeException);
+        }
+    }
+
+    @Test
+    public void shouldWakeAllWaiters() throws Exception {
+        final Promise<String, SMBRuntimeException> promise = new Promise<>("test", SMBRuntimeException.Wrapper);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> waiters = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                waiters.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return promise.retrieve(5, TimeUnit.SECONDS);
+                    }
+                }));
+            }
+
+            promise.deliver("done");
+
+            for (Future<String> waiter : waiters) {
+                assertEquals("done", waiter.get(5, TimeUnit.SECONDS));
+            }
+            assertFalse(promise.hasWaiters());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldTimeoutWhenNotDelivered() {
+        Promise<String, SMBRuntimeException> promise = new Promise<>("test", SMBRuntimeException.Wrapper);
+
+        assertNull(promise.tryRetrieve(10, TimeUnit.MILLISECONDS));
+        assertThrows(SMBRuntimeException.class, () -> promise.retrieve(10, TimeUnit.MILLISECONDS));
+        assertFalse(promise.isFulfilled());
+    }
+
+    @Test
+    public void shouldKeepFirstOutcome() {
+        Promise<String, SMBRuntimeException> promise = new Promise<>("test", SMBRuntimeException.Wrapper);
+        final List<String> seen = new ArrayList<>();
+        promise.whenComplete((value, error) -> seen.add(value));
+
+        promise.deliver("first");
+        promise.deliver("second");
+        promise.deliverError(new IllegalStateException());
+
+        assertEquals("first", promise.retrieve());
+        assertTrue(promise.isDelivered());
+        assertEquals(Arrays.asList("first"), seen);
+    }
+
+    @Test
+    public void shouldTransformAndSequenceWithoutBlocking() {
+        Promise<String, SMBRuntimeException> p1 = new Promise<>("p1", SMBRuntimeException.Wrapper);
+        Promise<String, SMBRuntimeException> p2 = new Promise<>("p2", SMBRuntimeException.Wrapper);
+        AFuture<Integer> length = p1.future().map(new AFuture.Function<String, Integer>() {
+            @Override
+            public Integer apply(String s) {
+                return s.length();
+            }
+        });
+        CompletableFuture<List<Integer>> all = Futures.toCompletableFuture(Futures.sequence(Arrays.asList(length, p2.future().map(new AFuture.Function<String, Integer>() {
+            @Override
+            public Integer apply(String s) {
+                return s.length();
+            }
+        }))));
+
+        p2.deliver("four");
+        assertFalse(all.isDone());
+        p1.deliver("three");
+
+        assertEquals(Arrays.asList(5, 4), all.join());
+    }
+}
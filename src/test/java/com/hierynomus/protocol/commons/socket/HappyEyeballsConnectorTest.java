@@ -0,0 +1,134 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.protocol.commons.socket;
+
+import com.hierynomus.protocol.commons.concurrent.DaemonThreadFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HappyEyeballsConnectorTest {
+    private static final InetSocketAddress BLACKHOLE = new InetSocketAddress(InetAddress.getLoopbackAddress(), 1);
+    private static final InetSocketAddress REFUSING = new InetSocketAddress(InetAddress.getLoopbackAddress(), 2);
+    private static final InetSocketAddress LISTENING = new InetSocketAddress(InetAddress.getLoopbackAddress(), 3);
+
+    @Test
+    public void shouldAlternateAddressFamilies() throws Exception {
+        InetAddress v6a = InetAddress.getByName("2001:db8::1");
+        InetAddress v6b = InetAddress.getByName("2001:db8::2");
+        InetAddress v4a = InetAddress.getByName("192.0.2.1");
+        InetAddress v4b = InetAddress.getByName("192.0.2.2");
+        InetAddress v4c = InetAddress.getByName("192.0.2.3");
+
+        assertEquals(Arrays.asList(v6a, v4a, v6b, v4b, v4c), HappyEyeballsConnector.interleave(new InetAddress[]{v6a, v6b, v4a, v4b, v4c}));
+        assertEquals(Arrays.asList(v4a, v6a, v4b, v6b), HappyEyeballsConnector.interleave(new InetAddress[]{v4a, v4b, v6a, v6b}));
+    }
+
+    @Test
+    public void shouldStartNextAttemptAfterDelay() throws Exception {
+        FakeNetwork network = new FakeNetwork();
+        HappyEyeballsConnector connector = new HappyEyeballsConnector(50, new DaemonThreadFactory());
+
+        long start = System.nanoTime();
+        FakeSocket socket = connector.connect(Arrays.asList(BLACKHOLE, LISTENING), network);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertSame(LISTENING, socket.address);
+        assertTrue(elapsedMillis >= 50);
+        assertTrue(elapsedMillis < 5000);
+        // The hanging attempt is aborted once the other one won
+        assertTrue(network.aborted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void shouldStartNextAttemptImmediatelyOnFailure() throws Exception {
+        FakeNetwork network = new FakeNetwork();
+        HappyEyeballsConnector connector = new HappyEyeballsConnector(TimeUnit.MINUTES.toMillis(1), new DaemonThreadFactory());
+
+        FakeSocket socket = connector.connect(Arrays.asList(REFUSING, LISTENING), network);
+
+        assertSame(LISTENING, socket.address);
+    }
+
+    @Test
+    public void shouldReportAllFailures() {
+        FakeNetwork network = new FakeNetwork();
+        HappyEyeballsConnector connector = new HappyEyeballsConnector(10, new DaemonThreadFactory());
+
+        List<InetSocketAddress> addresses = Arrays.asList(REFUSING, REFUSING, REFUSING);
+        ConnectException e = assertThrows(ConnectException.class, () -> connector.connect(addresses, network));
+        assertEquals(2, e.getSuppressed().length);
+        assertEquals(3, network.opened.size());
+    }
+
+    private static class FakeSocket implements Closeable {
+        private final CountDownLatch closed = new CountDownLatch(1);
+        private InetSocketAddress address;
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+    }
+
+    /**
+     * Connections to {@link #BLACKHOLE} hang until the socket is closed, {@link #REFUSING} refuses connections
+     * and {@link #LISTENING} accepts them.
+     */
+    private static class FakeNetwork implements HappyEyeballsConnector.Attempt<FakeSocket> {
+        private final Set<FakeSocket> opened = ConcurrentHashMap.newKeySet();
+        private final CountDownLatch aborted = new CountDownLatch(1);
+
+        @Override
+        public FakeSocket open() {
+            FakeSocket socket = new FakeSocket();
+            opened.add(socket);
+            return socket;
+        }
+
+        @Override
+        public void connect(FakeSocket socket, InetSocketAddress address) throws IOException {
+            if (address == BLACKHOLE) {
+                try {
+                    socket.closed.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                aborted.countDown();
+                throw new SocketException("Socket closed");
+            } else if (address == REFUSING) {
+                throw new ConnectException("Connection refused");
+            }
+            socket.address = address;
+        }
+    }
+}
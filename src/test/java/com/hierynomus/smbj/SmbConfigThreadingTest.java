@@ -0,0 +1,118 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.hierynomus.smbj.auth.AuthenticationContext;
+import com.hierynomus.smbj.connection.Connection;
+import com.hierynomus.smbj.share.DiskShare;
+import com.hierynomus.smbj.testing.InMemoryFileTree;
+import com.hierynomus.smbj.testing.LoopbackSmbServer;
+import com.hierynomus.smbj.testing.StubAuthenticator;
+
+public class SmbConfigThreadingTest {
+    private static final AuthenticationContext USER = new AuthenticationContext("user", "password".toCharArray(), null);
+
+    @Test
+    public void shouldStartPacketReaderFromConfiguredThreadFactory() throws Exception {
+        final List<Thread> created = new CopyOnWriteArrayList<>();
+        ThreadFactory factory = r -> {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            created.add(t);
+            return t;
+        };
+        SmbConfig config = SmbConfig.builder()
+            .withAuthenticators(new StubAuthenticator.Factory())
+            .withThreadFactory(factory)
+            .build();
+
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withShare("share", new InMemoryFileTree()).build().start();
+             SMBClient client = new SMBClient(config);
+             Connection connection = client.connect(server.getHostname(), server.getPort())) {
+            boolean reader = false;
+            for (Thread t : created) {
+                reader |= t.getName().startsWith("Packet Reader for ") && t.isAlive();
+            }
+            assertTrue(reader);
+        }
+    }
+
+    @Test
+    public void shouldRunBulkOperationsOnCallbackExecutor() throws Exception {
+        final AtomicInteger executed = new AtomicInteger();
+        ExecutorService pool = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "test-callback");
+            t.setDaemon(true);
+            return t;
+        });
+        SmbConfig config = SmbConfig.builder()
+            .withAuthenticators(new StubAuthenticator.Factory())
+            .withCallbackExecutor(command -> {
+                executed.incrementAndGet();
+                pool.execute(command);
+            })
+            .build();
+        InMemoryFileTree tree = new InMemoryFileTree();
+        tree.write("file.txt", new byte[10]);
+
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withShare("share", tree).build().start();
+             SMBClient client = new SMBClient(config);
+             Connection connection = client.connect(server.getHostname(), server.getPort())) {
+            DiskShare share = (DiskShare) connection.authenticate(USER).connectShare("share");
+
+            final List<String> threads = new CopyOnWriteArrayList<>();
+            Iterable<String> paths = () -> new Iterator<String>() {
+                private boolean next = true;
+
+                @Override
+                public boolean hasNext() {
+                    return next;
+                }
+
+                @Override
+                public String next() {
+                    threads.add(Thread.currentThread().getName());
+                    next = false;
+                    return "file.txt";
+                }
+            };
+
+            share.getFileStatsAsync(paths, stat -> {
+            }).get(10, TimeUnit.SECONDS);
+
+            assertEquals(Collections.singletonList("test-callback"), threads);
+            assertTrue(executed.get() > 0);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+}
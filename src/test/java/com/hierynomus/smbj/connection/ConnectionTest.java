@@ -18,9 +18,14 @@ package com.hierynomus.smbj.connection;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static com.hierynomus.smbj.testing.Utils.*;
 
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.jupiter.api.Test;
@@ -105,4 +110,37 @@ public class ConnectionTest {
         assertEquals(two, client.getServerList().lookup("foo").getServerGUID());
         assertEquals(two, conn.getConnectionContext().getServer().getServerGUID());
     }
+
+    @Test
+    public void shouldConnectToServersInParallel() throws Exception {
+        // Each NEGOTIATE waits until the other connection has sent its NEGOTIATE too, so serial connects fail
+        final CountDownLatch bothConnecting = new CountDownLatch(2);
+        SmbConfig config = SmbConfig.builder(config((SMB2Packet req) -> {
+            if (req.getPacket() instanceof SMB2NegotiateRequest) {
+                bothConnecting.countDown();
+                try {
+                    if (!bothConnecting.await(5, TimeUnit.SECONDS)) {
+                        throw new IllegalStateException("Connects to foo and bar did not overlap");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+            }
+            return null;
+        })).withSessionSetupParallelism(2).build();
+        SMBClient client = new SMBClient(config);
+
+        Future<Connection> foo = client.connectAsync("foo");
+        Future<Connection> bar = client.connectAsync("bar");
+        Future<Connection> foo2 = client.connectAsync("foo");
+
+        assertTrue(foo.get().isConnected());
+        assertTrue(bar.get().isConnected());
+        assertSame(foo.get(), foo2.get());
+        assertNotNull(client.getServerList().lookup("foo"));
+        assertNotNull(client.getServerList().lookup("bar"));
+
+        client.close();
+    }
 }
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.connection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import com.hierynomus.mssmb2.SMB2MessageCommandCode;
+import com.hierynomus.mssmb2.SMB2Packet;
+import com.hierynomus.mssmb2.messages.SMB2Echo;
+import com.hierynomus.protocol.commons.concurrent.Futures;
+import com.hierynomus.smbj.SMBClient;
+import com.hierynomus.smbj.SmbConfig;
+import com.hierynomus.smbj.testing.InMemoryFileTree;
+import com.hierynomus.smbj.testing.LoopbackSmbServer;
+import com.hierynomus.smbj.testing.StubAuthenticator;
+
+public class RequestExpirationTest {
+
+    @Test
+    public void shouldExpireAndCancelUnansweredRequest() throws Exception {
+        SmbConfig config = SmbConfig.builder()
+            .withAuthenticators(new StubAuthenticator.Factory())
+            .withRequestTimeout(200, TimeUnit.MILLISECONDS)
+            .withEchoInterval(0, TimeUnit.SECONDS)
+            .build();
+
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withShare("share", new InMemoryFileTree()).build().start();
+             SMBClient client = new SMBClient(config);
+             Connection connection = client.connect(server.getHostname(), server.getPort())) {
+            server.setLatency(1, TimeUnit.SECONDS);
+            long start = System.nanoTime();
+            Future<SMB2Packet> echo = connection.send(new SMB2Echo(connection.getNegotiatedProtocol().getDialect()));
+
+            final AtomicReference<Thread> completedOn = new AtomicReference<>();
+            CompletableFuture<SMB2Packet> observed = Futures.toCompletableFuture(echo).whenComplete((r, t) -> completedOn.set(Thread.currentThread()));
+
+            // Nobody waits with a timeout, the timer fails the request on its own
+            ExecutionException e = assertThrows(ExecutionException.class, observed::get);
+            assertTrue(hasCause(e, TimeoutException.class));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+            // ... but the failure is delivered off the shared timer thread
+            assertNotNull(completedOn.get());
+            assertTrue(completedOn.get() != timerThread(client));
+            waitFor(server, SMB2MessageCommandCode.SMB2_CANCEL, 1);
+
+            // The request stays outstanding until the late response has granted its credits
+            assertEquals(1, connection.outstandingRequests.size());
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (connection.outstandingRequests.size() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, connection.outstandingRequests.size());
+
+            server.setLatency(0, TimeUnit.SECONDS);
+            assertNotNull(connection.send(new SMB2Echo(connection.getNegotiatedProtocol().getDialect())).get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void shouldSendEchoOnIdleConnection() throws Exception {
+        SmbConfig config = SmbConfig.builder()
+            .withAuthenticators(new StubAuthenticator.Factory())
+            .withEchoInterval(100, TimeUnit.MILLISECONDS)
+            .build();
+
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().build().start();
+             SMBClient client = new SMBClient(config);
+             Connection connection = client.connect(server.getHostname(), server.getPort())) {
+            waitFor(server, SMB2MessageCommandCode.SMB2_ECHO, 2);
+            assertTrue(connection.isConnected());
+        }
+    }
+
+    @Test
+    public void shouldCloseConnectionWhenEchoIsNotAnswered() throws Exception {
+        SmbConfig config = SmbConfig.builder()
+            .withAuthenticators(new StubAuthenticator.Factory())
+            .withEchoInterval(100, TimeUnit.MILLISECONDS)
+            .withRequestTimeout(200, TimeUnit.MILLISECONDS)
+            .build();
+
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().build().start();
+             SMBClient client = new SMBClient(config)) {
+            Connection connection = client.connect(server.getHostname(), server.getPort());
+            // A second user of the connection does not keep a dead connection open
+            assertTrue(connection == client.connect(server.getHostname(), server.getPort()));
+            server.setLatency(1, TimeUnit.MINUTES);
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (connection.isConnected() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(!connection.isConnected());
+        }
+    }
+
+    private static Thread timerThread(SMBClient client) throws Exception {
+        CompletableFuture<Thread> thread = new CompletableFuture<>();
+        client.getTimer().schedule(() -> thread.complete(Thread.currentThread()), 1, TimeUnit.MILLISECONDS);
+        return thread.get(5, TimeUnit.SECONDS);
+    }
+
+    private static boolean hasCause(Throwable t, Class<? extends Throwable> type) {
+        for (Throwable c = t; c != null; c = c.getCause()) {
+            if (type.isInstance(c)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void waitFor(LoopbackSmbServer server, SMB2MessageCommandCode command, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.getReceivedCount(command) < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(server.getReceivedCount(command) >= count);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.event;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SMBEventBusTest {
+    @Test
+    public void shouldDeliverEventsOfRegisteredTypeToTypedListener() {
+        SMBEventBus bus = new SMBEventBus();
+        final List<SMBEvent> received = new ArrayList<>();
+        SMBEventListener<SessionEvent> listener = received::add;
+        bus.addListener(SessionEvent.class, listener);
+
+        bus.publish(new SessionLoggedOff(1L));
+        bus.publish(new ConnectionClosed("foo", 445));
+        bus.publish(new TreeDisconnected(1L, 2L));
+
+        assertEquals(2, received.size());
+        assertTrue(received.get(0) instanceof SessionLoggedOff);
+        assertTrue(received.get(1) instanceof TreeDisconnected);
+
+        assertTrue(bus.removeListener(listener));
+        bus.publish(new SessionLoggedOff(1L));
+        assertEquals(2, received.size());
+    }
+
+    @Test
+    public void shouldNotBlockPublisherOnSlowAsyncListener() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            SMBEventBus bus = new SMBEventBus(executor, 2);
+            final CountDownLatch started = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            final CountDownLatch handled = new CountDownLatch(3);
+            bus.addAsyncListener(ConnectionClosed.class, event -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                handled.countDown();
+            });
+
+            bus.publish(new ConnectionClosed("foo", 0));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            for (int i = 1; i < 10; i++) {
+                bus.publish(new ConnectionClosed("foo", i));
+            }
+            release.countDown();
+
+            // One event is being handled while the queue of two fills up, the remaining events are dropped
+            assertTrue(handled.await(5, TimeUnit.SECONDS));
+            assertEquals(7, bus.getDroppedEventCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.hierynomus.mssmb2.SMB2MessageCommandCode;
+import com.hierynomus.smbj.SMBClient;
+import com.hierynomus.smbj.SmbConfig;
+import com.hierynomus.smbj.connection.Connection;
+import com.hierynomus.smbj.testing.PacketProcessor.DefaultPacketProcessor;
+import com.hierynomus.smbj.testing.PacketProcessor.NoOpPacketProcessor;
+import com.hierynomus.smbj.testing.StubAuthenticator;
+import com.hierynomus.smbj.testing.StubTransportLayerFactory;
+
+public class InMemorySmbMetricsTest {
+
+    @Test
+    public void shouldReportPercentilesWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertTrue(Math.abs(histogram.getMean(TimeUnit.MICROSECONDS) - 500.5) < 0.001);
+        assertEquals(1000, histogram.getMax(TimeUnit.MICROSECONDS));
+        assertWithin(500, histogram.getValueAtPercentile(50, TimeUnit.MICROSECONDS));
+        assertWithin(990, histogram.getValueAtPercentile(99, TimeUnit.MICROSECONDS));
+        assertEquals(1000, histogram.getValueAtPercentile(100, TimeUnit.MICROSECONDS));
+    }
+
+    @Test
+    public void shouldCountSmallValuesExactly() {
+        for (long v = 0; v < 200; v++) {
+            int index = LatencyHistogram.index(v);
+            assertTrue(LatencyHistogram.highestValue(index) >= v);
+            assertTrue(index == 0 || LatencyHistogram.highestValue(index - 1) < v);
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValue(LatencyHistogram.index(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void shouldRecordRequestLatenciesAndConnectionGauges() throws Exception {
+        InMemorySmbMetrics metrics = new InMemorySmbMetrics();
+        SmbConfig config = SmbConfig.builder()
+            .withTransportLayerFactory(new StubTransportLayerFactory<>(new DefaultPacketProcessor().wrap(new NoOpPacketProcessor())))
+            .withAuthenticators(new StubAuthenticator.Factory())
+            .withMetrics(metrics)
+            .build();
+
+        Connection connection = new SMBClient(config).connect("foo");
+
+        assertEquals(1, metrics.getLatency(SMB2MessageCommandCode.SMB2_NEGOTIATE).getCount());
+        ConnectionGauges gauges = metrics.getServerMetrics("foo").getGauges();
+        assertNotNull(gauges);
+        assertEquals(0, gauges.getOutstandingRequests());
+        assertEquals(0, gauges.getCreditWaiters());
+
+        connection.close();
+        assertNull(metrics.getServerMetrics("foo").getGauges());
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected / 32);
+    }
+}
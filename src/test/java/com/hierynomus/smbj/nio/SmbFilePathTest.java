@@ -0,0 +1,73 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.nio;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SmbFilePathTest {
+    private final SmbFileSystem fileSystem = new SmbFileSystem(new SmbFileSystemProvider(), "server:445", "server", 445, null, 0, 1);
+
+    @Test
+    public void shouldSplitShareAndSharePath() {
+        SmbFilePath path = fileSystem.getPath("/share", "dir", "file.txt");
+
+        assertEquals("share", path.getShareName());
+        assertEquals("dir\\file.txt", path.getSharePath());
+        assertEquals("/share/dir/file.txt", path.toString());
+        assertEquals("", fileSystem.getPath("/share").getSharePath());
+        assertNull(fileSystem.getPath("/").getShareName());
+    }
+
+    @Test
+    public void shouldNavigatePaths() {
+        SmbFilePath path = fileSystem.getPath("/share/a/b/c");
+
+        assertEquals("/share/a/b", path.getParent().toString());
+        assertEquals("c", path.getFileName().toString());
+        assertEquals(4, path.getNameCount());
+        assertEquals("a/b", path.subpath(1, 3).toString());
+        assertTrue(path.startsWith("/share/a"));
+        assertTrue(path.endsWith("b/c"));
+        assertEquals("/share/a/b/c/d", path.resolve("d").toString());
+        assertEquals("/other", path.resolve("/other").toString());
+        assertEquals("/share/a/b/x", path.resolveSibling("x").toString());
+        assertEquals("/share/a/c", fileSystem.getPath("/share/a/./b/../c").normalize().toString());
+        assertEquals("../../x/y", path.relativize(fileSystem.getPath("/share/a/x/y")).toString());
+    }
+
+    @Test
+    public void shouldBuildUriWithoutDefaultPort() {
+        Path path = fileSystem.getPath("/share/dir/my file");
+
+        assertEquals(URI.create("smb://server/share/dir/my%20file"), path.toUri());
+    }
+
+    @Test
+    public void shouldMatchGlobs() {
+        PathMatcher matcher = fileSystem.getPathMatcher("glob:/share/**/*.{txt,log}");
+
+        assertTrue(matcher.matches(fileSystem.getPath("/share/a/b/file.txt")));
+        assertTrue(matcher.matches(fileSystem.getPath("/share/a/file.log")));
+        assertFalse(matcher.matches(fileSystem.getPath("/share/a/file.csv")));
+        assertFalse(fileSystem.getPathMatcher("glob:*.txt").matches(fileSystem.getPath("dir/file.txt")));
+    }
+}
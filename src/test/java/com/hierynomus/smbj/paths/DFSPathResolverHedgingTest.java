@@ -0,0 +1,152 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.paths;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.hierynomus.msdfsc.DFSPath;
+import com.hierynomus.msdfsc.ReferralCache;
+import com.hierynomus.msdfsc.messages.DFSReferral;
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.mssmb2.SMB2MessageCommandCode;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.protocol.commons.concurrent.DaemonThreadFactory;
+import com.hierynomus.smbj.common.SmbPath;
+
+public class DFSPathResolverHedgingTest {
+    private static final SmbPath LINK_PATH = SmbPath.parse("\\\\domain\\dfs\\docs\\report.pdf");
+
+    private final DFSCache cache = new DFSCache(0, null, 0.95, 2, new DaemonThreadFactory());
+    private final DFSPathResolver resolver = new DFSPathResolver(PathResolver.LOCAL, 1000, cache);
+
+    @Test
+    public void shouldUseFirstAnswerWhenPrimaryIsSlow() throws Exception {
+        try {
+            addLink(cache, "\\slow\\docs", "\\fast\\docs");
+            RecordingAction action = new RecordingAction(TimeUnit.SECONDS.toMillis(1));
+
+            long start = System.nanoTime();
+            String result = resolver.resolve(null, LINK_PATH, action);
+
+            assertEquals("\\\\fast\\docs\\report.pdf", result);
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(900));
+            assertEquals("\\\\slow\\docs\\report.pdf", action.discarded.poll(5, TimeUnit.SECONDS));
+            assertTrue(cache.getTargetHealth().getLatencyNanos(new DFSPath("\\slow\\docs")) >= TimeUnit.SECONDS.toNanos(1));
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void shouldFailOverWhenPrimaryFails() throws Exception {
+        try {
+            addLink(cache, "\\broken\\docs", "\\slow\\docs", "\\fast\\docs");
+            RecordingAction action = new RecordingAction(10);
+
+            assertEquals("\\\\slow\\docs\\report.pdf", resolver.resolve(null, LINK_PATH, action));
+            assertEquals(0, action.discarded.size());
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void shouldNotHedgeActionsWithSideEffects() throws Exception {
+        try {
+            addLink(cache, "\\slow\\docs", "\\fast\\docs");
+            final RecordingAction hedgeable = new RecordingAction(200);
+            PathResolver.ResolveAction<String> action = new PathResolver.ResolveAction<String>() {
+                @Override
+                public String apply(SmbPath target) {
+                    return hedgeable.apply(target);
+                }
+            };
+
+            assertEquals("\\\\slow\\docs\\report.pdf", resolver.resolve(null, LINK_PATH, action));
+            assertEquals(Arrays.asList("\\\\slow\\docs\\report.pdf"), hedgeable.applied);
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void shouldNotHedgeWhenAllHedgeThreadsAreBusy() throws Exception {
+        DFSCache single = new DFSCache(0, null, 0.95, 1, new DaemonThreadFactory());
+        try {
+            addLink(single, "\\slow\\docs", "\\fast\\docs");
+            RecordingAction action = new RecordingAction(500);
+
+            String result = new DFSPathResolver(PathResolver.LOCAL, 1000, single).resolve(null, LINK_PATH, action);
+
+            assertEquals("\\\\slow\\docs\\report.pdf", result);
+            assertEquals(Arrays.asList("\\\\slow\\docs\\report.pdf"), action.applied);
+            assertEquals(0, action.discarded.size());
+        } finally {
+            single.close();
+        }
+    }
+
+    private static void addLink(DFSCache cache, String... targets) {
+        List<ReferralCache.TargetSetEntry> targetList = new ArrayList<>();
+        for (String target : targets) {
+            targetList.add(new ReferralCache.TargetSetEntry(target, false));
+        }
+        long expires = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(5);
+        cache.getReferralCache().put(new ReferralCache.ReferralCacheEntry("\\domain\\dfs\\docs", DFSReferral.ServerType.LINK, false, 300, expires, false, 0, targetList));
+    }
+
+    private static class RecordingAction implements PathResolver.HedgeableResolveAction<String> {
+        private final long slowMillis;
+        private final List<String> applied = new CopyOnWriteArrayList<>();
+        private final BlockingQueue<String> discarded = new LinkedBlockingQueue<>();
+
+        RecordingAction(long slowMillis) {
+            this.slowMillis = slowMillis;
+        }
+
+        @Override
+        public String apply(SmbPath target) {
+            applied.add(target.toUncPath());
+            if ("broken".equals(target.getHostname())) {
+                throw new SMBApiException(NtStatus.STATUS_BAD_NETWORK_NAME.getValue(), SMB2MessageCommandCode.SMB2_CREATE, null);
+            }
+            if ("slow".equals(target.getHostname())) {
+                try {
+                    Thread.sleep(slowMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return target.toUncPath();
+        }
+
+        @Override
+        public void discard(String result) {
+            discarded.add(result);
+        }
+    }
+}
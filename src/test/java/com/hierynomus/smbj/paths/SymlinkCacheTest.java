@@ -0,0 +1,102 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.paths;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.mssmb2.SMB2MessageCommandCode;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.smbj.common.SmbPath;
+
+public class SymlinkCacheTest {
+
+    @Test
+    public void shouldRewriteThroughLongestCachedLink() {
+        SymlinkCache cache = new SymlinkCache(1, TimeUnit.MINUTES, 16);
+        cache.put(path("tools"), "tools", "opt\\tools");
+        cache.put(path("tools\\gcc"), "tools\\gcc", "compilers\\gcc-12");
+
+        assertEquals("compilers\\gcc-12\\bin\\cc", cache.lookup(path("TOOLS\\Gcc\\bin\\cc")).getTarget().getPath());
+        assertEquals("opt\\tools\\make", cache.lookup(path("tools\\make")).getTarget().getPath());
+        assertNull(cache.lookup(path("toolshed\\make")));
+        assertNull(cache.lookup(new SmbPath("otherhost", "share", "tools\\make")));
+    }
+
+    @Test
+    public void shouldFollowChainedLinks() {
+        SymlinkCache cache = new SymlinkCache(1, TimeUnit.MINUTES, 16);
+        cache.put(path("current"), "current", "releases\\latest");
+        cache.put(path("releases\\latest"), "releases\\latest", "releases\\v2");
+
+        assertEquals("releases\\v2\\lib", cache.lookup(path("current\\lib")).getTarget().getPath());
+
+        cache.put(path("loop"), "loop", "loop\\again");
+        assertNull(cache.lookup(path("loop\\file")));
+    }
+
+    @Test
+    public void shouldExpireAndEvictEntries() throws InterruptedException {
+        SymlinkCache expiring = new SymlinkCache(10, TimeUnit.MILLISECONDS, 16);
+        expiring.put(path("link"), "link", "target");
+        Thread.sleep(50);
+        assertNull(expiring.lookup(path("link\\file")));
+        assertEquals(0, expiring.size());
+
+        SymlinkCache bounded = new SymlinkCache(1, TimeUnit.MINUTES, 2);
+        bounded.put(path("a"), "a", "x");
+        bounded.put(path("b"), "b", "y");
+        bounded.lookup(path("a\\file"));
+        bounded.put(path("c"), "c", "z");
+        assertEquals(2, bounded.size());
+        assertNull(bounded.lookup(path("b\\file")));
+        assertEquals("x\\file", bounded.lookup(path("a\\file")).getTarget().getPath());
+    }
+
+    @Test
+    public void shouldResolveThroughCacheAndForgetLinkWhenTargetIsGone() throws PathResolveException {
+        SymlinkCache cache = new SymlinkCache(1, TimeUnit.MINUTES, 16);
+        SymlinkPathResolver resolver = new SymlinkPathResolver(PathResolver.LOCAL, cache);
+        cache.put(path("toolchain"), "toolchain", "toolchains\\v1");
+        final List<String> opened = new ArrayList<>();
+        PathResolver.ResolveAction<String> open = new PathResolver.ResolveAction<String>() {
+            @Override
+            public String apply(SmbPath target) {
+                opened.add(target.getPath());
+                if (target.getPath().startsWith("toolchains\\v1")) {
+                    throw new SMBApiException(NtStatus.STATUS_OBJECT_PATH_NOT_FOUND.getValue(), SMB2MessageCommandCode.SMB2_CREATE, "Removed", null);
+                }
+                return target.getPath();
+            }
+        };
+
+        assertEquals("toolchain\\bin\\cc", resolver.resolve(null, path("toolchain\\bin\\cc"), open));
+        assertEquals(2, opened.size());
+        assertEquals("toolchains\\v1\\bin\\cc", opened.get(0));
+        assertNull(cache.lookup(path("toolchain\\bin\\cc")));
+    }
+
+    private static SmbPath path(String path) {
+        return new SmbPath("host", "share", path);
+    }
+}
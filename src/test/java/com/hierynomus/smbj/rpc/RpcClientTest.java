@@ -0,0 +1,118 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.rpc;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import com.hierynomus.msrpce.NdrBuffer;
+import com.hierynomus.msrpce.RpcException;
+import com.hierynomus.msrpce.SyntaxId;
+import com.hierynomus.mssmb2.SMB2MessageCommandCode;
+import com.hierynomus.smbj.SMBClient;
+import com.hierynomus.smbj.SmbConfig;
+import com.hierynomus.smbj.auth.AuthenticationContext;
+import com.hierynomus.smbj.connection.Connection;
+import com.hierynomus.smbj.share.PipeShare;
+import com.hierynomus.smbj.testing.LoopbackSmbServer;
+import com.hierynomus.smbj.testing.RpcPipeHandler;
+import com.hierynomus.smbj.testing.StubAuthenticator;
+
+public class RpcClientTest {
+    private static final AuthenticationContext USER = new AuthenticationContext("user", "password".toCharArray(), null);
+    private static final SmbConfig CONFIG = SmbConfig.builder().withAuthenticators(new StubAuthenticator.Factory()).build();
+    private static final SyntaxId INTERFACE = new SyntaxId(UUID.fromString("12345678-1234-abcd-ef00-0123456789ab"), 1, 0);
+
+    @Test
+    public void shouldFragmentRequestAndReassembleResponse() throws Exception {
+        RpcPipeHandler handler = new RpcPipeHandler(1024, 700, (opnum, stub) -> stub);
+        byte[] stub = new byte[2500];
+        for (int i = 0; i < stub.length; i++) {
+            stub[i] = (byte) i;
+        }
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withPipe("rpc", 1, () -> handler).build().start();
+             SMBClient client = new SMBClient(CONFIG);
+             Connection connection = client.connect(server.getHostname(), server.getPort());
+             RpcClient rpc = new RpcClient((PipeShare) connection.authenticate(USER).connectShare("IPC$"), "rpc", INTERFACE, 1)) {
+            assertArrayEquals(stub, rpc.call(3, stub));
+
+            List<byte[]> received = handler.getReceived();
+            assertEquals(4, received.size());
+            assertEquals(0x0b, received.get(0)[2]); // BIND
+            // The negotiated fragment size of 1024 leaves 1000 bytes of stub data per fragment
+            int[] flags = {0x01, 0x00, 0x02};
+            int[] lengths = {1024, 1024, 524};
+            long callId = -1;
+            for (int i = 0; i < 3; i++) {
+                NdrBuffer pdu = new NdrBuffer(received.get(i + 1));
+                pdu.skip(2);
+                assertEquals(0x00, pdu.readByte()); // REQUEST
+                assertEquals(flags[i], pdu.readByte());
+                pdu.skip(4);
+                assertEquals(lengths[i], pdu.readUInt16()); // FragLength
+                pdu.skip(2);
+                long id = pdu.readUInt32();
+                if (i == 0) {
+                    callId = id;
+                }
+                assertEquals(callId, id);
+                assertEquals(2500, pdu.readUInt32()); // AllocHint
+                pdu.skip(2);
+                assertEquals(3, pdu.readUInt16()); // Opnum
+            }
+            // The first two fragments are plain writes, the last one is a transceive
+            assertEquals(2, server.getReceivedCount(SMB2MessageCommandCode.SMB2_WRITE));
+            // The response came in 4 fragments: the first with the transceive, the others with reads
+            assertEquals(3, server.getReceivedCount(SMB2MessageCommandCode.SMB2_READ));
+        }
+    }
+
+    @Test
+    public void shouldFailCallOnFaultAndKeepThePipe() throws Exception {
+        RpcPipeHandler handler = new RpcPipeHandler(4280, 4280, (opnum, stub) -> opnum == 1 ? stub : null);
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withPipe("rpc", 1, () -> handler).build().start();
+             SMBClient client = new SMBClient(CONFIG);
+             Connection connection = client.connect(server.getHostname(), server.getPort());
+             RpcClient rpc = new RpcClient((PipeShare) connection.authenticate(USER).connectShare("IPC$"), "rpc", INTERFACE, 1)) {
+            RpcException e = assertThrows(RpcException.class, () -> rpc.call(99, new byte[]{1}));
+            assertEquals(RpcPipeHandler.NCA_S_OP_RNG_ERROR, e.getStatus());
+
+            assertArrayEquals(new byte[]{2}, rpc.call(1, new byte[]{2}));
+            assertEquals(1, server.getReceivedCount(SMB2MessageCommandCode.SMB2_CREATE));
+            assertEquals(0, server.getReceivedCount(SMB2MessageCommandCode.SMB2_CLOSE));
+        }
+    }
+
+    @Test
+    public void shouldFailCallWhenBindIsRejected() throws Exception {
+        RpcPipeHandler handler = new RpcPipeHandler(4280, 4280, (opnum, stub) -> stub).rejectBind(2);
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withPipe("rpc", 1, () -> handler).build().start();
+             SMBClient client = new SMBClient(CONFIG);
+             Connection connection = client.connect(server.getHostname(), server.getPort());
+             RpcClient rpc = new RpcClient((PipeShare) connection.authenticate(USER).connectShare("IPC$"), "rpc", INTERFACE, 1)) {
+            RpcException e = assertThrows(RpcException.class, () -> rpc.call(1, new byte[]{1}));
+            assertEquals(2, e.getStatus()); // local_limit_exceeded
+
+            assertEquals(1, handler.getReceived().size());
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.rpc.srvsvc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.hierynomus.msrpce.NdrBuffer;
+import com.hierynomus.msrpce.RpcException;
+import com.hierynomus.protocol.commons.ByteArrayUtils;
+import com.hierynomus.smbj.SMBClient;
+import com.hierynomus.smbj.SmbConfig;
+import com.hierynomus.smbj.auth.AuthenticationContext;
+import com.hierynomus.smbj.connection.Connection;
+import com.hierynomus.smbj.share.PipeShare;
+import com.hierynomus.smbj.testing.LoopbackSmbServer;
+import com.hierynomus.smbj.testing.RpcPipeHandler;
+import com.hierynomus.smbj.testing.StubAuthenticator;
+
+public class ServerServiceTest {
+    private static final AuthenticationContext USER = new AuthenticationContext("user", "password".toCharArray(), null);
+    private static final SmbConfig CONFIG = SmbConfig.builder().withAuthenticators(new StubAuthenticator.Factory()).build();
+
+    // NetrShareEnum output at level 1 with the shares "data" (disk, no remark) and "IPC$" (special IPC, "Remote IPC")
+    private static final byte[] SHARE_ENUM_RESPONSE = ByteArrayUtils.parseHex(
+        "01000000" + "01000000" + "00000200" // Level, union discriminant, Level1 referent
+            + "02000000" + "04000200" + "02000000" // EntriesRead, Buffer referent, conformant count
+            + "08000200" + "00000000" + "0c000200" // [0] NetName referent, Type STYPE_DISKTREE, Remark referent
+            + "10000200" + "03000080" + "14000200" // [1] NetName referent, Type STYPE_IPC | STYPE_SPECIAL, Remark referent
+            + "05000000" + "00000000" + "05000000" + "640061007400610000000000" // "data", padding
+            + "01000000" + "00000000" + "01000000" + "00000000" // "", padding
+            + "05000000" + "00000000" + "05000000" + "490050004300240000000000" // "IPC$", padding
+            + "0b000000" + "00000000" + "0b000000" + "520065006d006f00740065002000490050004300" + "00000000" // "Remote IPC", padding
+            + "02000000" // TotalEntries
+            + "18000200" + "00000000" // ResumeHandle
+            + "00000000"); // ERROR_SUCCESS
+
+    // NetrServerGetInfo output at level 101 for "FS1", Windows NT 10.0, workstation | server | NT server, no comment
+    private static final byte[] SERVER_INFO_RESPONSE = ByteArrayUtils.parseHex(
+        "65000000" + "00000200" // union discriminant, ServerInfo101 referent
+            + "f4010000" + "04000200" // PlatformId PLATFORM_ID_NT, Name referent
+            + "0a000000" + "00000000" // VersionMajor, VersionMinor
+            + "03108400" + "08000200" // Type, Comment referent
+            + "04000000" + "00000000" + "04000000" + "4600530031000000" // "FS1"
+            + "01000000" + "00000000" + "01000000" + "00000000" // "", padding
+            + "00000000"); // ERROR_SUCCESS
+
+    // NetrServerGetInfo output failing with ERROR_ACCESS_DENIED
+    private static final byte[] ACCESS_DENIED_RESPONSE = ByteArrayUtils.parseHex("65000000" + "00000000" + "05000000");
+
+    @Test
+    public void shouldDecodeShareEnum() throws Exception {
+        RpcPipeHandler handler = new RpcPipeHandler(4280, 4280, (opnum, stub) -> opnum == 15 ? SHARE_ENUM_RESPONSE : null);
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withPipe("srvsvc", 1, () -> handler).build().start();
+             SMBClient client = new SMBClient(CONFIG);
+             Connection connection = client.connect(server.getHostname(), server.getPort());
+             ServerService srvsvc = new ServerService((PipeShare) connection.authenticate(USER).connectShare("IPC$"))) {
+            List<NetShareInfo> shares = srvsvc.netShareEnumAll();
+
+            assertEquals(2, shares.size());
+            assertEquals("data", shares.get(0).getNetName());
+            assertEquals("", shares.get(0).getRemark());
+            assertTrue(shares.get(0).isDiskTree());
+            assertFalse(shares.get(0).isSpecial());
+            assertEquals("IPC$", shares.get(1).getNetName());
+            assertEquals("Remote IPC", shares.get(1).getRemark());
+            assertEquals(NetShareInfo.STYPE_IPC | NetShareInfo.STYPE_SPECIAL, shares.get(1).getType());
+            assertFalse(shares.get(1).isDiskTree());
+            assertTrue(shares.get(1).isSpecial());
+
+            // The request asks for level 1 from the start, with the server name as the first parameter
+            NdrBuffer request = new NdrBuffer(stubOf(handler.getReceived().get(1)));
+            assertTrue(request.readReferent());
+            assertEquals("\\\\" + server.getHostname(), request.readConformantVaryingString());
+            request.alignRead(4);
+            assertEquals(1, request.readUInt32()); // Level
+        }
+    }
+
+    @Test
+    public void shouldDecodeServerInfo() throws Exception {
+        RpcPipeHandler handler = new RpcPipeHandler(4280, 4280, (opnum, stub) -> opnum == 21 ? SERVER_INFO_RESPONSE : null);
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withPipe("srvsvc", 1, () -> handler).build().start();
+             SMBClient client = new SMBClient(CONFIG);
+             Connection connection = client.connect(server.getHostname(), server.getPort());
+             ServerService srvsvc = new ServerService((PipeShare) connection.authenticate(USER).connectShare("IPC$"))) {
+            NetServerInfo info = srvsvc.netServerGetInfo();
+
+            assertEquals(500, info.getPlatformId());
+            assertEquals("FS1", info.getName());
+            assertEquals(10, info.getVersionMajor());
+            assertEquals(0, info.getVersionMinor());
+            assertEquals(0x00841003, info.getType());
+            assertEquals("", info.getComment());
+        }
+    }
+
+    @Test
+    public void shouldFailOnErrorStatus() throws Exception {
+        RpcPipeHandler handler = new RpcPipeHandler(4280, 4280, (opnum, stub) -> ACCESS_DENIED_RESPONSE);
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withPipe("srvsvc", 1, () -> handler).build().start();
+             SMBClient client = new SMBClient(CONFIG);
+             Connection connection = client.connect(server.getHostname(), server.getPort());
+             ServerService srvsvc = new ServerService((PipeShare) connection.authenticate(USER).connectShare("IPC$"))) {
+            RpcException e = assertThrows(RpcException.class, srvsvc::netServerGetInfo);
+            assertEquals(5, e.getStatus());
+        }
+    }
+
+    private static byte[] stubOf(byte[] request) {
+        byte[] stub = new byte[request.length - 24];
+        System.arraycopy(request, 24, stub, 0, stub.length);
+        return stub;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.share;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.smbj.SMBClient;
+import com.hierynomus.smbj.SmbConfig;
+import com.hierynomus.smbj.auth.AuthenticationContext;
+import com.hierynomus.smbj.common.SMBRuntimeException;
+import com.hierynomus.smbj.connection.Connection;
+import com.hierynomus.smbj.testing.InMemoryFileTree;
+import com.hierynomus.smbj.testing.LoopbackSmbServer;
+import com.hierynomus.smbj.testing.StubAuthenticator;
+
+public class BulkDeleteTest {
+    private static final AuthenticationContext USER = new AuthenticationContext("user", "password".toCharArray(), null);
+    private static final SmbConfig CONFIG = SmbConfig.builder()
+        .withAuthenticators(new StubAuthenticator.Factory())
+        .withBulkConcurrency(8)
+        .build();
+
+    @Test
+    public void shouldDeleteTreeInParallel() throws Exception {
+        InMemoryFileTree tree = new InMemoryFileTree();
+        int files = populate(tree, "root", 3);
+        tree.write("keep.txt", new byte[1]);
+
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withShare("share", tree).build().start();
+             SMBClient client = new SMBClient(CONFIG);
+             Connection connection = client.connect(server.getHostname(), server.getPort())) {
+            DiskShare share = (DiskShare) connection.authenticate(USER).connectShare("share");
+            RecordingListener listener = new RecordingListener();
+
+            share.deleteTreeAsync("root/", false, listener).get(30, TimeUnit.SECONDS);
+
+            assertFalse(tree.exists("root"));
+            assertTrue(tree.exists("keep.txt"));
+            assertEquals(files, listener.succeeded.size());
+            assertTrue(listener.failed.isEmpty());
+            assertFalse(listener.onPacketReader);
+            // Directories are only removed after their contents
+            assertEquals("root", listener.succeeded.get(listener.succeeded.size() - 1));
+            assertTrue(listener.succeeded.indexOf("root\\d0") > listener.succeeded.indexOf("root\\d0\\d1\\f0.txt"));
+        }
+    }
+
+    @Test
+    public void shouldLeaveDirectoriesWithReadOnlyEntriesUnlessCleared() throws Exception {
+        InMemoryFileTree tree = new InMemoryFileTree();
+        populate(tree, "root", 2);
+        tree.setReadOnly("root/d1/f1.txt", true);
+
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withShare("share", tree).build().start();
+             SMBClient client = new SMBClient(CONFIG);
+             Connection connection = client.connect(server.getHostname(), server.getPort())) {
+            DiskShare share = (DiskShare) connection.authenticate(USER).connectShare("share");
+            RecordingListener listener = new RecordingListener();
+
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> share.deleteTreeAsync("root", false, listener).get(30, TimeUnit.SECONDS));
+            assertEquals(NtStatus.STATUS_CANNOT_DELETE, ((SMBApiException) failure.getCause()).getStatus());
+            assertEquals(1, listener.failed.size());
+            assertTrue(tree.exists("root/d1/f1.txt"));
+            assertFalse(tree.exists("root/d0"));
+            assertFalse(tree.exists("root/d1/f0.txt"));
+
+            SMBApiException rmdir = assertThrows(SMBApiException.class, () -> share.rmdir("root", true));
+            assertEquals(NtStatus.STATUS_CANNOT_DELETE, rmdir.getStatus());
+
+            share.deleteTreeAsync("root", true, BulkOperationListener.NOOP).get(30, TimeUnit.SECONDS);
+            assertFalse(tree.exists("root"));
+        }
+    }
+
+    @Test
+    public void shouldRenameAndMoveInBulk() throws Exception {
+        InMemoryFileTree tree = new InMemoryFileTree();
+        tree.mkdirs("archive");
+        Map<String, String> renames = new LinkedHashMap<>();
+        for (int i = 0; i < 40; i++) {
+            tree.write("inbox/" + i + ".msg", new byte[]{(byte) i});
+            renames.put("inbox/" + i + ".msg", "archive/" + i + ".msg");
+        }
+        tree.write("archive/taken.msg", new byte[0]);
+        tree.write("inbox/taken.msg", new byte[0]);
+        renames.put("inbox/taken.msg", "archive/taken.msg");
+        renames.put("inbox/missing.msg", "archive/missing.msg");
+
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withShare("share", tree).build().start();
+             SMBClient client = new SMBClient(CONFIG);
+             Connection connection = client.connect(server.getHostname(), server.getPort())) {
+            DiskShare share = (DiskShare) connection.authenticate(USER).connectShare("share");
+            RecordingListener listener = new RecordingListener();
+
+            assertThrows(ExecutionException.class, () -> share.renameAllAsync(renames, false, listener).get(30, TimeUnit.SECONDS));
+
+            assertEquals(40, listener.succeeded.size());
+            assertEquals(2, listener.failed.size());
+            assertFalse(listener.onPacketReader);
+            for (int i = 0; i < 40; i++) {
+                assertNull(tree.read("inbox/" + i + ".msg"));
+                assertEquals(i, tree.read("archive/" + i + ".msg")[0]);
+            }
+            assertTrue(tree.exists("inbox/taken.msg"));
+
+            share.renameAll(Collections.singletonMap("inbox/taken.msg", "archive/taken.msg"), true);
+            assertFalse(tree.exists("inbox/taken.msg"));
+        }
+    }
+
+    /**
+     * Creates a tree of the given depth with two files and two directories at every level.
+     *
+     * @return the number of files and directories, including the root
+     */
+    private static int populate(InMemoryFileTree tree, String path, int depth) {
+        tree.mkdirs(path);
+        int count = 1;
+        for (int i = 0; i < 2; i++) {
+            tree.write(path + "/f" + i + ".txt", new byte[i]);
+            count++;
+            if (depth > 1) {
+                count += populate(tree, path + "/d" + i, depth - 1);
+            }
+        }
+        return count;
+    }
+
+    private static class RecordingListener implements BulkOperationListener {
+        private final List<String> succeeded = new ArrayList<>();
+        private final List<String> failed = new ArrayList<>();
+        private volatile boolean onPacketReader;
+
+        @Override
+        public void succeeded(String path) {
+            succeeded.add(path);
+            checkThread();
+        }
+
+        @Override
+        public void failed(String path, SMBRuntimeException failure) {
+            failed.add(path);
+            checkThread();
+        }
+
+        private void checkThread() {
+            if (Thread.currentThread().getName().startsWith("Packet Reader")) {
+                onPacketReader = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.share;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.mssmb2.SMB2MessageCommandCode;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.smbj.SMBClient;
+import com.hierynomus.smbj.SmbConfig;
+import com.hierynomus.smbj.auth.AuthenticationContext;
+import com.hierynomus.smbj.connection.Connection;
+import com.hierynomus.smbj.testing.InMemoryFileTree;
+import com.hierynomus.smbj.testing.LoopbackSmbServer;
+import com.hierynomus.smbj.testing.StubAuthenticator;
+
+public class BulkStatTest {
+    private static final AuthenticationContext USER = new AuthenticationContext("user", "password".toCharArray(), null);
+
+    @Test
+    public void shouldStatPathsByOpeningAndByListing() throws Exception {
+        InMemoryFileTree tree = new InMemoryFileTree();
+        tree.mkdirs("many");
+        tree.mkdirs("few/sub");
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            tree.write("many/file-" + i + ".txt", new byte[i]);
+            paths.add("many/file-" + i + ".txt");
+        }
+        for (int i = 0; i < 3; i++) {
+            tree.write("few/file-" + i + ".txt", new byte[100 + i]);
+            paths.add("few\\file-" + i + ".txt");
+        }
+        paths.add("few/sub");
+        paths.add("many/missing.txt");
+        paths.add("few/missing.txt");
+        paths.add("nowhere/missing.txt");
+        paths.add("");
+
+        SmbConfig config = SmbConfig.builder()
+            .withAuthenticators(new StubAuthenticator.Factory())
+            .withBulkConcurrency(8)
+            .withBulkStatListingThreshold(10)
+            .build();
+
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withShare("share", tree).build().start();
+             SMBClient client = new SMBClient(config);
+             Connection connection = client.connect(server.getHostname(), server.getPort())) {
+            DiskShare share = (DiskShare) connection.authenticate(USER).connectShare("share");
+            int createsBefore = server.getReceivedCount(SMB2MessageCommandCode.SMB2_CREATE);
+
+            Map<String, FileStat> stats = new HashMap<>();
+            for (FileStat stat : share.getFileStats(paths)) {
+                assertEquals(null, stats.put(stat.getPath(), stat));
+            }
+
+            assertEquals(paths.size(), stats.size());
+            for (int i = 0; i < 50; i++) {
+                FileStat stat = stats.get("many/file-" + i + ".txt");
+                assertTrue(stat.isSuccess());
+                assertEquals(i, stat.getEndOfFile());
+                assertFalse(stat.isDirectory());
+            }
+            for (int i = 0; i < 3; i++) {
+                assertEquals(100 + i, stats.get("few\\file-" + i + ".txt").getEndOfFile());
+            }
+            assertTrue(stats.get("few/sub").isDirectory());
+            assertTrue(stats.get("").isDirectory());
+            assertEquals(NtStatus.STATUS_OBJECT_NAME_NOT_FOUND, status(stats.get("many/missing.txt")));
+            assertEquals(NtStatus.STATUS_OBJECT_NAME_NOT_FOUND, status(stats.get("few/missing.txt")));
+            assertEquals(NtStatus.STATUS_OBJECT_PATH_NOT_FOUND, status(stats.get("nowhere/missing.txt")));
+
+            // "many" is listed with a single open, the 7 other paths are opened one by one
+            assertEquals(8, server.getReceivedCount(SMB2MessageCommandCode.SMB2_CREATE) - createsBefore);
+            assertTrue(server.getReceivedCount(SMB2MessageCommandCode.SMB2_QUERY_DIRECTORY) > 0);
+        }
+    }
+
+    @Test
+    public void shouldStreamResultsForManyPathsWithoutListing() throws Exception {
+        InMemoryFileTree tree = new InMemoryFileTree();
+        tree.mkdirs("dir");
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            tree.write("dir/" + i, new byte[i % 7]);
+            paths.add("dir/" + i);
+        }
+        SmbConfig config = SmbConfig.builder()
+            .withAuthenticators(new StubAuthenticator.Factory())
+            .withBulkConcurrency(16)
+            .withBulkStatListingThreshold(0)
+            .build();
+
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withShare("share", tree).build().start();
+             SMBClient client = new SMBClient(config);
+             Connection connection = client.connect(server.getHostname(), server.getPort())) {
+            DiskShare share = (DiskShare) connection.authenticate(USER).connectShare("share");
+            final AtomicInteger succeeded = new AtomicInteger();
+            share.getFileStatsAsync(paths, stat -> {
+                if (stat.isSuccess() && stat.getEndOfFile() == Integer.parseInt(stat.getPath().substring(4)) % 7) {
+                    succeeded.incrementAndGet();
+                }
+            }).get(30, TimeUnit.SECONDS);
+
+            assertEquals(paths.size(), succeeded.get());
+            assertEquals(0, server.getReceivedCount(SMB2MessageCommandCode.SMB2_QUERY_DIRECTORY));
+        }
+    }
+
+    @Test
+    public void shouldPullPathsWhileRequestsFinish() throws Exception {
+        InMemoryFileTree tree = new InMemoryFileTree();
+        final List<String> paths = new ArrayList<>();
+        for (int i = 0; i < 1100; i++) {
+            tree.write("dir/" + i, new byte[0]);
+            paths.add("dir/" + i);
+        }
+        // Only two callback threads: one pulls the paths, the other must not get stuck on the operation meanwhile
+        ExecutorService callbacks = Executors.newFixedThreadPool(2);
+        SmbConfig config = SmbConfig.builder()
+            .withAuthenticators(new StubAuthenticator.Factory())
+            .withCallbackExecutor(callbacks)
+            .withBulkConcurrency(8)
+            .withBulkStatListingThreshold(0)
+            .build();
+
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withShare("share", tree).build().start();
+             SMBClient client = new SMBClient(config);
+             Connection connection = client.connect(server.getHostname(), server.getPort())) {
+            DiskShare share = (DiskShare) connection.authenticate(USER).connectShare("share");
+            final int closesBefore = server.getReceivedCount(SMB2MessageCommandCode.SMB2_CLOSE);
+            final CountDownLatch firstBatch = new CountDownLatch(1024);
+            final AtomicBoolean answered = new AtomicBoolean();
+            // A slow source of paths: the second batch is only produced once the first batch has been answered and closed
+            // and the connection still answers other requests, so finishing requests must not wait for the paths
+            Iterable<String> slowPaths = () -> new Iterator<String>() {
+                private int next;
+
+                @Override
+                public boolean hasNext() {
+                    return next < paths.size();
+                }
+
+                @Override
+                public String next() {
+                    if (next == 1024) {
+                        try {
+                            boolean closed = firstBatch.await(10, TimeUnit.SECONDS);
+                            while (closed && server.getReceivedCount(SMB2MessageCommandCode.SMB2_CLOSE) < closesBefore + 1024) {
+                                Thread.sleep(10);
+                            }
+                            answered.set(closed && share.openAttributesAsync("dir").get(5, TimeUnit.SECONDS) != null);
+                        } catch (Exception e) {
+                            answered.set(false);
+                        }
+                    }
+                    return paths.get(next++);
+                }
+            };
+            final AtomicInteger succeeded = new AtomicInteger();
+            share.getFileStatsAsync(slowPaths, stat -> {
+                if (stat.isSuccess()) {
+                    succeeded.incrementAndGet();
+                }
+                firstBatch.countDown();
+            }).get(30, TimeUnit.SECONDS);
+
+            assertTrue(answered.get());
+            assertEquals(paths.size(), succeeded.get());
+        } finally {
+            callbacks.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldCallConsumerOnCallbackExecutorOneAtATime() throws Exception {
+        InMemoryFileTree tree = new InMemoryFileTree();
+        tree.mkdirs("listed");
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            tree.write("listed/" + i, new byte[0]);
+            tree.write("opened-" + i, new byte[0]);
+            paths.add("listed/" + i);
+            paths.add("opened-" + i);
+        }
+        ExecutorService callbacks = Executors.newFixedThreadPool(4, r -> new Thread(r, "test-callback"));
+        SmbConfig config = SmbConfig.builder()
+            .withAuthenticators(new StubAuthenticator.Factory())
+            .withCallbackExecutor(callbacks)
+            .withBulkConcurrency(16)
+            .withBulkStatListingThreshold(100)
+            .build();
+
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withShare("share", tree).build().start();
+             SMBClient client = new SMBClient(config);
+             Connection connection = client.connect(server.getHostname(), server.getPort())) {
+            DiskShare share = (DiskShare) connection.authenticate(USER).connectShare("share");
+            final AtomicInteger delivered = new AtomicInteger();
+            final AtomicInteger concurrent = new AtomicInteger();
+            final AtomicBoolean onCallbackExecutor = new AtomicBoolean(true);
+            final AtomicBoolean overlapped = new AtomicBoolean();
+            share.getFileStatsAsync(paths, stat -> {
+                if (concurrent.incrementAndGet() > 1) {
+                    overlapped.set(true);
+                }
+                if (!Thread.currentThread().getName().equals("test-callback")) {
+                    onCallbackExecutor.set(false);
+                }
+                delivered.incrementAndGet();
+                concurrent.decrementAndGet();
+            }).get(30, TimeUnit.SECONDS);
+
+            // Every result has been delivered by the time the operation completes
+            assertEquals(paths.size(), delivered.get());
+            assertTrue(onCallbackExecutor.get());
+            assertFalse(overlapped.get());
+        } finally {
+            callbacks.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldSplitParentAndName() {
+        assertEquals(Arrays.asList("a\\b", "c"), Arrays.asList(BulkStat.splitParent("a/b\\c")));
+        assertEquals(Arrays.asList("", "c"), Arrays.asList(BulkStat.splitParent("\\c\\")));
+        assertEquals(Arrays.asList("", ""), Arrays.asList(BulkStat.splitParent("")));
+    }
+
+    private static NtStatus status(FileStat stat) {
+        assertFalse(stat.isSuccess());
+        return ((SMBApiException) stat.getFailure()).getStatus();
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.share;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.EnumSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.hierynomus.msdtyp.AccessMask;
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.mssmb2.SMB2CreateDisposition;
+import com.hierynomus.mssmb2.SMB2MessageCommandCode;
+import com.hierynomus.mssmb2.SMB2ShareAccess;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.smbj.SMBClient;
+import com.hierynomus.smbj.SmbConfig;
+import com.hierynomus.smbj.auth.AuthenticationContext;
+import com.hierynomus.smbj.connection.Connection;
+import com.hierynomus.smbj.testing.InMemoryFileTree;
+import com.hierynomus.smbj.testing.LoopbackSmbServer;
+import com.hierynomus.smbj.testing.StubAuthenticator;
+
+public class ByteRangeLockTest {
+    private static final AuthenticationContext USER = new AuthenticationContext("user", "password".toCharArray(), null);
+    private static final SmbConfig CONFIG = SmbConfig.builder()
+        .withAuthenticators(new StubAuthenticator.Factory())
+        .build();
+
+    @Test
+    public void shouldWaitForConflictingLockWithoutBlocking() throws Exception {
+        try (LoopbackSmbServer server = server();
+             SMBClient client = new SMBClient(CONFIG);
+             Connection connection = client.connect(server.getHostname(), server.getPort())) {
+            DiskShare share = (DiskShare) connection.authenticate(USER).connectShare("share");
+            File holder = open(share);
+            File waiter = open(share);
+
+            holder.requestLock().exclusiveLock(0, 100).send();
+            CompletableFuture<Void> lock = waiter.requestLock().exclusiveLock(50, 10).sendAsync();
+            awaitWaiting(server, 1);
+            assertFalse(lock.isDone());
+
+            holder.requestLock().unlock(0, 100).send();
+            lock.get(10, TimeUnit.SECONDS);
+
+            SMBApiException refused = assertThrows(SMBApiException.class, () -> holder.requestLock().sharedLock(55, 1, true).send());
+            assertEquals(NtStatus.STATUS_LOCK_NOT_GRANTED, refused.getStatus());
+        }
+    }
+
+    @Test
+    public void shouldCancelWaitingLockAndUnlockGrantedRanges() throws Exception {
+        try (LoopbackSmbServer server = server();
+             SMBClient client = new SMBClient(CONFIG);
+             Connection connection = client.connect(server.getHostname(), server.getPort())) {
+            DiskShare share = (DiskShare) connection.authenticate(USER).connectShare("share");
+            File holder = open(share);
+            File waiter = open(share);
+
+            holder.requestLock().exclusiveLock(1000, 10).send();
+            CompletableFuture<Void> lock = waiter.requestLock()
+                .exclusiveLock(0, 10, true)
+                .exclusiveLock(1000, 10)
+                .sendAsync();
+            awaitWaiting(server, 1);
+
+            assertTrue(lock.cancel(true));
+            awaitWaiting(server, 0);
+            // The range that was granted before the cancel is unlocked again
+            long deadline = System.currentTimeMillis() + 10000;
+            while (true) {
+                try {
+                    holder.requestLock().exclusiveLock(0, 10, true).send();
+                    break;
+                } catch (SMBApiException e) {
+                    assertTrue(System.currentTimeMillis() < deadline);
+                    Thread.sleep(10);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldBatchLockElementsIntoFewRequests() throws Exception {
+        try (LoopbackSmbServer server = server();
+             SMBClient client = new SMBClient(CONFIG);
+             Connection connection = client.connect(server.getHostname(), server.getPort())) {
+            DiskShare share = (DiskShare) connection.authenticate(USER).connectShare("share");
+            File holder = open(share);
+            File other = open(share);
+            int ranges = LockOperation.MAX_ELEMENTS_PER_REQUEST + 10;
+
+            Open<?>.LockBuilder locks = holder.requestLock();
+            Open<?>.LockBuilder unlocks = holder.requestLock();
+            for (int i = 0; i < ranges; i++) {
+                locks.exclusiveLock(i * 10L, 5, true);
+                unlocks.unlock(i * 10L, 5);
+            }
+            int before = server.getReceivedCount(SMB2MessageCommandCode.SMB2_LOCK);
+            locks.sendAsync().get(10, TimeUnit.SECONDS);
+            assertEquals(before + 2, server.getReceivedCount(SMB2MessageCommandCode.SMB2_LOCK));
+
+            assertThrows(SMBApiException.class, () -> other.requestLock().sharedLock(ranges * 10L - 8, 1, true).send());
+            other.requestLock().sharedLock(ranges * 10L - 5, 5, true).send();
+
+            unlocks.sendAsync().get(10, TimeUnit.SECONDS);
+            other.requestLock().exclusiveLock(0, 10, true).send();
+        }
+    }
+
+    @Test
+    public void shouldNotQueueRequestsBehindManyWaitingLocks() throws Exception {
+        try (LoopbackSmbServer server = server();
+             SMBClient client = new SMBClient(CONFIG);
+             Connection connection = client.connect(server.getHostname(), server.getPort())) {
+            DiskShare share = (DiskShare) connection.authenticate(USER).connectShare("share");
+            File holder = open(share);
+            File waiter = open(share);
+            int ranges = 100;
+
+            holder.requestLock().exclusiveLock(0, ranges * 10L).send();
+            Open<?>.LockBuilder locks = waiter.requestLock();
+            for (int i = 0; i < ranges; i++) {
+                locks.exclusiveLock(i * 10L, 5);
+            }
+            CompletableFuture<Void> waiting = locks.sendAsync();
+            awaitWaiting(server, ranges);
+
+            // More locks wait than there are operation buckets, yet other requests on the same open still go out
+            waiter.requestLock().exclusiveLock(5000, 10, true).sendAsync().get(10, TimeUnit.SECONDS);
+            waiter.requestLock().unlock(5000, 10).sendAsync().get(10, TimeUnit.SECONDS);
+            assertFalse(waiting.isDone());
+
+            holder.requestLock().unlock(0, ranges * 10L).send();
+            waiting.get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void shouldReplayUnansweredLockWithSameSequence() throws Exception {
+        SmbConfig config = SmbConfig.builder()
+            .withAuthenticators(new StubAuthenticator.Factory())
+            .withRequestTimeout(200, TimeUnit.MILLISECONDS)
+            .build();
+        try (LoopbackSmbServer server = server();
+             SMBClient client = new SMBClient(config);
+             Connection connection = client.connect(server.getHostname(), server.getPort())) {
+            DiskShare share = (DiskShare) connection.authenticate(USER).connectShare("share");
+            File file = open(share);
+            server.dropResponses(SMB2MessageCommandCode.SMB2_LOCK, 1);
+
+            // Without the same lock sequence the replay would conflict with the lock that the first request took
+            file.requestLock().exclusiveLock(0, 10, true).sendAsync().get(10, TimeUnit.SECONDS);
+
+            assertEquals(2, server.getReceivedCount(SMB2MessageCommandCode.SMB2_LOCK));
+            file.requestLock().unlock(0, 10).send();
+        }
+    }
+
+    private static LoopbackSmbServer server() throws Exception {
+        InMemoryFileTree tree = new InMemoryFileTree();
+        tree.write("ledger.dat", new byte[1024]);
+        return LoopbackSmbServer.builder().withShare("share", tree).build().start();
+    }
+
+    private static File open(DiskShare share) {
+        return share.openFile("ledger.dat", EnumSet.of(AccessMask.GENERIC_READ, AccessMask.GENERIC_WRITE), null,
+            SMB2ShareAccess.ALL, SMB2CreateDisposition.FILE_OPEN, null);
+    }
+
+    private static void awaitWaiting(LoopbackSmbServer server, int waiting) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (server.getWaitingLockRequests() != waiting) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.share;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import org.junit.jupiter.api.Test;
+
+import com.hierynomus.msdtyp.AccessMask;
+import com.hierynomus.mssmb2.SMB2CreateDisposition;
+import com.hierynomus.mssmb2.SMB2MessageCommandCode;
+import com.hierynomus.mssmb2.SMB2ShareAccess;
+import com.hierynomus.smbj.SMBClient;
+import com.hierynomus.smbj.SmbConfig;
+import com.hierynomus.smbj.auth.AuthenticationContext;
+import com.hierynomus.smbj.connection.Connection;
+import com.hierynomus.smbj.testing.InMemoryFileTree;
+import com.hierynomus.smbj.testing.LoopbackSmbServer;
+import com.hierynomus.smbj.testing.StubAuthenticator;
+
+public class FileByteChannelTest {
+    private static final AuthenticationContext USER = new AuthenticationContext("user", "password".toCharArray(), null);
+    private static final SmbConfig CONFIG = SmbConfig.builder()
+        .withAuthenticators(new StubAuthenticator.Factory())
+        .withReadBufferSize(1024)
+        .withWriteBufferSize(4096)
+        .build();
+
+    @Test
+    public void shouldCoalesceSmallWritesIntoOneRequest() throws Exception {
+        InMemoryFileTree tree = new InMemoryFileTree().write("data.bin", new byte[0]);
+
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withShare("share", tree).build().start();
+             SMBClient client = new SMBClient(CONFIG);
+             Connection connection = client.connect(server.getHostname(), server.getPort())) {
+            DiskShare share = (DiskShare) connection.authenticate(USER).connectShare("share");
+
+            try (File file = open(share); SeekableByteChannel channel = file.openChannel()) {
+                for (int i = 0; i < 100; i++) {
+                    channel.write(ByteBuffer.wrap(pattern(i * 10, 10)));
+                }
+                assertEquals(0, server.getReceivedCount(SMB2MessageCommandCode.SMB2_WRITE));
+                assertEquals(1000, channel.size());
+            }
+
+            assertEquals(1, server.getReceivedCount(SMB2MessageCommandCode.SMB2_WRITE));
+            assertArrayEquals(pattern(0, 1000), tree.read("data.bin"));
+        }
+    }
+
+    @Test
+    public void shouldFlushFullBuffersOnAlignedBoundaries() throws Exception {
+        InMemoryFileTree tree = new InMemoryFileTree().write("data.bin", new byte[0]);
+
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withShare("share", tree).build().start();
+             SMBClient client = new SMBClient(CONFIG);
+             Connection connection = client.connect(server.getHostname(), server.getPort())) {
+            DiskShare share = (DiskShare) connection.authenticate(USER).connectShare("share");
+
+            try (File file = open(share); SeekableByteChannel channel = file.openChannel()) {
+                channel.position(1000);
+                channel.write(ByteBuffer.wrap(pattern(1000, 10000)));
+                // [1000, 4096) and [4096, 8192) are sent, [8192, 11000) stays buffered
+                assertEquals(2, server.getReceivedCount(SMB2MessageCommandCode.SMB2_WRITE));
+            }
+
+            assertEquals(3, server.getReceivedCount(SMB2MessageCommandCode.SMB2_WRITE));
+            byte[] expected = pattern(0, 11000);
+            Arrays.fill(expected, 0, 1000, (byte) 0);
+            assertArrayEquals(expected, tree.read("data.bin"));
+        }
+    }
+
+    @Test
+    public void shouldReadBufferedAndCachedDataAfterWrite() throws Exception {
+        InMemoryFileTree tree = new InMemoryFileTree().write("data.bin", pattern(0, 3000));
+
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withShare("share", tree).build().start();
+             SMBClient client = new SMBClient(CONFIG);
+             Connection connection = client.connect(server.getHostname(), server.getPort())) {
+            DiskShare share = (DiskShare) connection.authenticate(USER).connectShare("share");
+
+            try (File file = open(share); SeekableByteChannel channel = file.openChannel()) {
+                assertArrayEquals(pattern(0, 3000), readFully(channel));
+
+                byte[] update = new byte[500];
+                Arrays.fill(update, (byte) 0x7f);
+                channel.position(800);
+                channel.write(ByteBuffer.wrap(update));
+
+                channel.position(0);
+                byte[] expected = pattern(0, 3000);
+                System.arraycopy(update, 0, expected, 800, update.length);
+                assertArrayEquals(expected, readFully(channel));
+            }
+        }
+    }
+
+    @Test
+    public void shouldNotReportOldEndOfFileAfterWriteExtendsFile() throws Exception {
+        InMemoryFileTree tree = new InMemoryFileTree().write("data.bin", pattern(0, 100));
+
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withShare("share", tree).build().start();
+             SMBClient client = new SMBClient(CONFIG);
+             Connection connection = client.connect(server.getHostname(), server.getPort())) {
+            DiskShare share = (DiskShare) connection.authenticate(USER).connectShare("share");
+
+            try (File file = open(share); SeekableByteChannel channel = file.openChannel()) {
+                assertArrayEquals(pattern(0, 100), readFully(channel));
+
+                channel.position(70000);
+                channel.write(ByteBuffer.wrap(new byte[]{42}));
+
+                channel.position(0);
+                byte[] contents = readFully(channel);
+                assertEquals(70001, contents.length);
+                assertArrayEquals(pattern(0, 100), Arrays.copyOf(contents, 100));
+                assertEquals(42, contents[70000]);
+            }
+        }
+    }
+
+    @Test
+    public void shouldTruncateBufferedAndCachedData() throws Exception {
+        InMemoryFileTree tree = new InMemoryFileTree().write("data.bin", pattern(0, 3000));
+
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withShare("share", tree).build().start();
+             SMBClient client = new SMBClient(CONFIG);
+             Connection connection = client.connect(server.getHostname(), server.getPort())) {
+            DiskShare share = (DiskShare) connection.authenticate(USER).connectShare("share");
+
+            try (File file = open(share); SeekableByteChannel channel = file.openChannel()) {
+                assertArrayEquals(pattern(0, 3000), readFully(channel));
+                channel.write(ByteBuffer.wrap(pattern(3000, 1000)));
+
+                channel.truncate(1500);
+                assertEquals(1500, channel.size());
+                assertEquals(1500, channel.position());
+
+                channel.position(0);
+                assertArrayEquals(pattern(0, 1500), readFully(channel));
+            }
+
+            assertArrayEquals(pattern(0, 1500), tree.read("data.bin"));
+        }
+    }
+
+    private static File open(DiskShare share) {
+        return share.openFile("data.bin", EnumSet.of(AccessMask.GENERIC_READ, AccessMask.GENERIC_WRITE), null,
+            SMB2ShareAccess.ALL, SMB2CreateDisposition.FILE_OPEN, null);
+    }
+
+    private static byte[] readFully(SeekableByteChannel channel) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(1500);
+        while (channel.read(buffer) >= 0) {
+            out.write(buffer.array(), 0, buffer.position());
+            buffer.clear();
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] pattern(int offset, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) ((offset + i) % 251);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.share;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.hierynomus.msdtyp.AccessMask;
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.mssmb2.SMB2CreateDisposition;
+import com.hierynomus.mssmb2.SMB2MessageCommandCode;
+import com.hierynomus.mssmb2.SMB2ShareAccess;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.protocol.commons.concurrent.Futures;
+import com.hierynomus.smbj.SMBClient;
+import com.hierynomus.smbj.SmbConfig;
+import com.hierynomus.smbj.auth.AuthenticationContext;
+import com.hierynomus.smbj.connection.Connection;
+import com.hierynomus.smbj.testing.LoopbackSmbServer;
+import com.hierynomus.smbj.testing.PipeHandler;
+import com.hierynomus.smbj.testing.StubAuthenticator;
+
+public class NamedPipePoolTest {
+    private static final AuthenticationContext USER = new AuthenticationContext("user", "password".toCharArray(), null);
+    private static final SmbConfig CONFIG = SmbConfig.builder().withAuthenticators(new StubAuthenticator.Factory()).build();
+    private static final PipeHandler ECHO = Collections::singletonList;
+
+    @Test
+    public void shouldWriteAndReadMessagesWithoutBlocking() throws Exception {
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withPipe("echo", 1, () -> ECHO).build().start();
+             SMBClient client = new SMBClient(CONFIG);
+             Connection connection = client.connect(server.getHostname(), server.getPort())) {
+            PipeShare share = (PipeShare) connection.authenticate(USER).connectShare("IPC$");
+            try (NamedPipe pipe = open(share, "echo"); PipeChannel channel = pipe.openChannel(2)) {
+                CompletableFuture<byte[]> first = channel.readMessageAsync();
+                CompletableFuture<byte[]> second = channel.readMessageAsync();
+                assertFalse(first.isDone());
+
+                assertEquals(5, (int) channel.writeAsync("hello".getBytes()).get(5, TimeUnit.SECONDS));
+                assertEquals(5, (int) channel.writeAsync("world".getBytes()).get(5, TimeUnit.SECONDS));
+
+                assertArrayEquals("hello".getBytes(), first.get(5, TimeUnit.SECONDS));
+                assertArrayEquals("world".getBytes(), second.get(5, TimeUnit.SECONDS));
+            }
+        }
+    }
+
+    @Test
+    public void shouldRequireAFiniteWaitTimeout() throws Exception {
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withPipe("echo", 1, () -> ECHO).build().start();
+             SMBClient client = new SMBClient(CONFIG);
+             Connection connection = client.connect(server.getHostname(), server.getPort())) {
+            PipeShare share = (PipeShare) connection.authenticate(USER).connectShare("IPC$");
+            assertThrows(IllegalArgumentException.class, () -> new NamedPipePool(share, "echo", 1, 0));
+        }
+    }
+
+    @Test
+    public void shouldWaitForTheServerToFreeAnInstance() throws Exception {
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withPipe("echo", 1, () -> ECHO).build().start();
+             SMBClient client = new SMBClient(CONFIG);
+             Connection connection = client.connect(server.getHostname(), server.getPort())) {
+            PipeShare share = (PipeShare) connection.authenticate(USER).connectShare("IPC$");
+            try (NamedPipePool pool = new NamedPipePool(share, "echo", 2, 5000)) {
+                NamedPipe first = pool.acquireAsync().get(5, TimeUnit.SECONDS);
+                CompletableFuture<NamedPipe> second = pool.acquireAsync();
+                waitForCount(server, SMB2MessageCommandCode.SMB2_IOCTL, 1);
+                assertFalse(second.isDone());
+
+                pool.invalidate(first);
+
+                NamedPipe pipe = second.get(5, TimeUnit.SECONDS);
+                assertArrayEquals("ping".getBytes(), pipe.transactAsync("ping".getBytes()).get(5, TimeUnit.SECONDS));
+            }
+        }
+    }
+
+    @Test
+    public void shouldFailWhenNoInstanceIsFreedWithinTheWaitTimeout() throws Exception {
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withPipe("echo", 1, () -> ECHO).build().start();
+             SMBClient client = new SMBClient(CONFIG);
+             Connection connection = client.connect(server.getHostname(), server.getPort())) {
+            PipeShare share = (PipeShare) connection.authenticate(USER).connectShare("IPC$");
+            try (NamedPipePool pool = new NamedPipePool(share, "echo", 2, 200)) {
+                pool.acquireAsync().get(5, TimeUnit.SECONDS);
+
+                ExecutionException e = assertThrows(ExecutionException.class, () -> pool.acquireAsync().get(5, TimeUnit.SECONDS));
+                assertEquals(NtStatus.STATUS_PIPE_NOT_AVAILABLE, ((SMBApiException) e.getCause()).getStatus());
+            }
+        }
+    }
+
+    @Test
+    public void shouldOnlyDiscardTheInstanceWhenTheFailureLeftItBroken() throws Exception {
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withPipe("echo", 2, () -> ECHO).build().start();
+             SMBClient client = new SMBClient(CONFIG);
+             Connection connection = client.connect(server.getHostname(), server.getPort())) {
+            PipeShare share = (PipeShare) connection.authenticate(USER).connectShare("IPC$");
+            try (NamedPipePool pool = new NamedPipePool(share, "echo", 1, 1000)) {
+                NamedPipe[] used = new NamedPipe[3];
+                assertThrows(ExecutionException.class, () -> pool.<Void>withPipe(pipe -> {
+                    used[0] = pipe;
+                    return Futures.failed(new IllegalStateException("fault"));
+                }, t -> t instanceof IllegalStateException).get(5, TimeUnit.SECONDS));
+                assertThrows(ExecutionException.class, () -> pool.<Void>withPipe(pipe -> {
+                    used[1] = pipe;
+                    return Futures.failed(new SMBApiException(NtStatus.STATUS_FILE_CLOSED.getValue(), SMB2MessageCommandCode.SMB2_READ, "broken", null));
+                }, t -> t instanceof IllegalStateException).get(5, TimeUnit.SECONDS));
+                pool.withPipe(pipe -> {
+                    used[2] = pipe;
+                    return pipe.transactAsync("ping".getBytes());
+                }).get(5, TimeUnit.SECONDS);
+
+                assertSame(used[0], used[1]);
+                assertNotSame(used[1], used[2]);
+                assertEquals(2, server.getReceivedCount(SMB2MessageCommandCode.SMB2_CREATE));
+            }
+        }
+    }
+
+    @Test
+    public void shouldHandOutAnInstanceOnceItsInitializerCompletes() throws Exception {
+        AtomicInteger initialized = new AtomicInteger();
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withPipe("echo", 1, () -> ECHO).build().start();
+             SMBClient client = new SMBClient(CONFIG);
+             Connection connection = client.connect(server.getHostname(), server.getPort())) {
+            PipeShare share = (PipeShare) connection.authenticate(USER).connectShare("IPC$");
+            try (NamedPipePool pool = new NamedPipePool(share, "echo", 1, 1000, pipe -> pipe.transactAsync("bind".getBytes()).thenAccept(r -> {
+                assertArrayEquals("bind".getBytes(), r);
+                initialized.incrementAndGet();
+            }))) {
+                for (int i = 0; i < 3; i++) {
+                    byte[] reply = pool.transactAsync(("call-" + i).getBytes()).get(5, TimeUnit.SECONDS);
+                    assertEquals(1, initialized.get());
+                    assertArrayEquals(("call-" + i).getBytes(), reply);
+                }
+            }
+        }
+    }
+
+    private static NamedPipe open(PipeShare share, String name) {
+        return share.open(name, null, EnumSet.of(AccessMask.GENERIC_READ, AccessMask.GENERIC_WRITE), null, EnumSet.of(SMB2ShareAccess.FILE_SHARE_READ, SMB2ShareAccess.FILE_SHARE_WRITE), SMB2CreateDisposition.FILE_OPEN, null);
+    }
+
+    private static void waitForCount(LoopbackSmbServer server, SMB2MessageCommandCode command, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.getReceivedCount(command) < count) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
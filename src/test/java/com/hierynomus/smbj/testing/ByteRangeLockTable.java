@@ -0,0 +1,227 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.testing;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.smbj.testing.InMemoryFileTree.Node;
+
+/**
+ * The byte range locks that the opens of all connections to a {@link LoopbackSmbServer} hold, and the LOCK requests
+ * that wait for a conflicting lock to be released.
+ */
+class ByteRangeLockTable {
+    private final Map<Node, List<Range>> locks = new IdentityHashMap<>();
+    private final List<Waiter> waiters = new ArrayList<>();
+
+    /**
+     * Lock all ranges, or none of them if one conflicts with a lock that is held.
+     */
+    synchronized boolean lock(Object owner, Node node, List<Range> ranges) {
+        List<Range> held = locks.get(node);
+        for (int i = 0; i < ranges.size(); i++) {
+            Range range = ranges.get(i);
+            if (held != null && conflicts(range, held) || conflicts(range, ranges.subList(0, i))) {
+                return false;
+            }
+        }
+        if (held == null) {
+            held = new ArrayList<>();
+            locks.put(node, held);
+        }
+        for (Range range : ranges) {
+            held.add(range.ownedBy(owner));
+        }
+        return true;
+    }
+
+    /**
+     * Lock the range, or queue the waiter until it can be locked. The pending callback runs before the waiter can be
+     * granted, so that the interim response is sent before the final one.
+     */
+    synchronized boolean lockOrWait(Waiter waiter, Runnable pending) {
+        if (lock(waiter.owner, waiter.node, waiter.ranges)) {
+            return true;
+        }
+        waiters.add(waiter);
+        pending.run();
+        return false;
+    }
+
+    /**
+     * Unlock all ranges, or none of them if one of them was not locked by the owner.
+     */
+    boolean unlock(Object owner, Node node, List<Range> ranges) {
+        List<Waiter> granted;
+        synchronized (this) {
+            List<Range> held = locks.get(node);
+            List<Range> remaining = held == null ? new ArrayList<Range>() : new ArrayList<>(held);
+            for (Range range : ranges) {
+                if (!remove(remaining, range.ownedBy(owner))) {
+                    return false;
+                }
+            }
+            locks.put(node, remaining);
+            granted = grantWaiters();
+        }
+        complete(granted, NtStatus.STATUS_SUCCESS);
+        return true;
+    }
+
+    /**
+     * Release the locks of a closed open, and fail the requests of it that are waiting.
+     */
+    void close(Object owner) {
+        List<Waiter> closed = new ArrayList<>();
+        List<Waiter> granted;
+        synchronized (this) {
+            for (List<Range> held : locks.values()) {
+                held.removeIf(r -> r.owner == owner);
+            }
+            for (Iterator<Waiter> it = waiters.iterator(); it.hasNext(); ) {
+                Waiter waiter = it.next();
+                if (waiter.owner == owner) {
+                    it.remove();
+                    closed.add(waiter);
+                }
+            }
+            granted = grantWaiters();
+        }
+        complete(closed, NtStatus.STATUS_FILE_CLOSED);
+        complete(granted, NtStatus.STATUS_SUCCESS);
+    }
+
+    /**
+     * [MS-SMB2] 3.3.5.16 Receiving an SMB2 CANCEL Request
+     *
+     * @return whether a waiting request of the connection was found and cancelled
+     */
+    boolean cancel(Object connection, long messageId, long asyncId) {
+        Waiter cancelled = null;
+        synchronized (this) {
+            for (Iterator<Waiter> it = waiters.iterator(); it.hasNext(); ) {
+                Waiter waiter = it.next();
+                if (waiter.connection == connection && (asyncId != 0 ? waiter.asyncId == asyncId : waiter.messageId == messageId)) {
+                    it.remove();
+                    cancelled = waiter;
+                    break;
+                }
+            }
+        }
+        if (cancelled == null) {
+            return false;
+        }
+        cancelled.completion.completed(NtStatus.STATUS_CANCELLED);
+        return true;
+    }
+
+    synchronized int getWaiting() {
+        return waiters.size();
+    }
+
+    private List<Waiter> grantWaiters() {
+        List<Waiter> granted = new ArrayList<>();
+        for (Iterator<Waiter> it = waiters.iterator(); it.hasNext(); ) {
+            Waiter waiter = it.next();
+            if (lock(waiter.owner, waiter.node, waiter.ranges)) {
+                it.remove();
+                granted.add(waiter);
+            }
+        }
+        return granted;
+    }
+
+    private static void complete(List<Waiter> waiters, NtStatus status) {
+        for (Waiter waiter : waiters) {
+            waiter.completion.completed(status);
+        }
+    }
+
+    private static boolean conflicts(Range range, List<Range> held) {
+        for (Range other : held) {
+            if (range.overlaps(other) && (range.exclusive || other.exclusive)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean remove(List<Range> held, Range range) {
+        for (Iterator<Range> it = held.iterator(); it.hasNext(); ) {
+            Range other = it.next();
+            if (other.owner == range.owner && other.offset == range.offset && other.length == range.length) {
+                it.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static final class Range {
+        final Object owner;
+        final long offset;
+        final long length;
+        final boolean exclusive;
+
+        Range(Object owner, long offset, long length, boolean exclusive) {
+            this.owner = owner;
+            this.offset = offset;
+            this.length = length;
+            this.exclusive = exclusive;
+        }
+
+        Range ownedBy(Object owner) {
+            return new Range(owner, offset, length, exclusive);
+        }
+
+        boolean overlaps(Range other) {
+            // Offsets and lengths are unsigned, a zero length range never overlaps
+            return length != 0 && other.length != 0
+                    && Long.compareUnsigned(offset, other.offset + other.length) < 0
+                    && Long.compareUnsigned(other.offset, offset + length) < 0;
+        }
+    }
+
+    interface Completion {
+        void completed(NtStatus status);
+    }
+
+    static final class Waiter {
+        final Object connection;
+        final long messageId;
+        final long asyncId;
+        final Object owner;
+        final Node node;
+        final List<Range> ranges;
+        final Completion completion;
+
+        Waiter(Object connection, long messageId, long asyncId, Object owner, Node node, List<Range> ranges,
+                Completion completion) {
+            this.connection = connection;
+            this.messageId = messageId;
+            this.asyncId = asyncId;
+            this.owner = owner;
+            this.node = node;
+            this.ranges = ranges;
+            this.completion = completion;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.testing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.hierynomus.msdtyp.MsDataTypes;
+import com.hierynomus.protocol.commons.buffer.Buffer;
+
+/**
+ * In-memory directory tree served as a disk share by the {@link LoopbackSmbServer}.
+ * <p>
+ * Paths use either {@code \} or {@code /} as separator and are matched case-insensitively, like on a Windows share.
+ * All access is synchronized on the tree instance.
+ */
+public class InMemoryFileTree {
+    private static final AtomicLong FILE_INDEX = new AtomicLong();
+
+    private final Node root = new Node(null, "", true);
+
+    /**
+     * Create the directory and any missing parent directories.
+     */
+    public synchronized InMemoryFileTree mkdirs(String path) {
+        Node node = root;
+        for (String element : split(path)) {
+            Node child = node.children.get(element);
+            if (child == null) {
+                child = node.add(element, true);
+            } else if (!child.directory) {
+                throw new IllegalArgumentException(path + " is not a directory");
+            }
+            node = child;
+        }
+        return this;
+    }
+
+    /**
+     * Create or replace the file at the path with the given contents, creating parent directories as needed.
+     */
+    public synchronized InMemoryFileTree write(String path, byte[] contents) {
+        List<String> elements = split(path);
+        if (elements.isEmpty()) {
+            throw new IllegalArgumentException("Cannot write to the root of the tree");
+        }
+        mkdirs(String.join("\\", elements.subList(0, elements.size() - 1)));
+        Node parent = lookup(elements.subList(0, elements.size() - 1));
+        String name = elements.get(elements.size() - 1);
+        Node file = parent.children.get(name);
+        if (file == null) {
+            file = parent.add(name, false);
+        } else if (file.directory) {
+            throw new IllegalArgumentException(path + " is a directory");
+        }
+        file.truncate(0);
+        file.write(0, contents, 0, contents.length);
+        return this;
+    }
+
+    /**
+     * @return the contents of the file, or {@code null} if there is no file at the path.
+     */
+    public synchronized byte[] read(String path) {
+        Node node = lookup(path);
+        if (node == null || node.directory) {
+            return null;
+        }
+        return Arrays.copyOf(node.data, node.size);
+    }
+
+    public synchronized boolean exists(String path) {
+        return lookup(path) != null;
+    }
+
+    /**
+     * Set or clear the read-only attribute, a read-only file or directory cannot be deleted.
+     */
+    public synchronized InMemoryFileTree setReadOnly(String path, boolean readOnly) {
+        Node node = lookup(path);
+        if (node == null) {
+            throw new IllegalArgumentException(path + " does not exist");
+        }
+        node.readOnly = readOnly;
+        return this;
+    }
+
+    Node root() {
+        return root;
+    }
+
+    Node lookup(String path) {
+        return lookup(split(path));
+    }
+
+    private Node lookup(List<String> elements) {
+        Node node = root;
+        for (String element : elements) {
+            if (!node.directory) {
+                return null;
+            }
+            node = node.children.get(element);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    static List<String> split(String path) {
+        List<String> elements = new ArrayList<>();
+        for (String element : path.replace('/', '\\').split("\\\\")) {
+            if (!element.isEmpty()) {
+                elements.add(element);
+            }
+        }
+        return elements;
+    }
+
+    static class Node {
+        Node parent;
+        String name;
+        final boolean directory;
+        final long fileIndex = FILE_INDEX.incrementAndGet();
+        final Map<String, Node> children = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        byte[] data = new byte[0];
+        int size;
+        long creationTime;
+        long lastAccessTime;
+        long lastWriteTime;
+        long changeTime;
+        boolean readOnly;
+
+        Node(Node parent, String name, boolean directory) {
+            this.parent = parent;
+            this.name = name;
+            this.directory = directory;
+            long now = MsDataTypes.nowAsFileTime();
+            this.creationTime = now;
+            this.lastAccessTime = now;
+            this.lastWriteTime = now;
+            this.changeTime = now;
+        }
+
+        Node add(String name, boolean directory) {
+            Node child = new Node(this, name, directory);
+            children.put(name, child);
+            touch();
+            return child;
+        }
+
+        void remove() {
+            parent.children.remove(name);
+            parent.touch();
+        }
+
+        void moveTo(Node newParent, String newName) {
+            remove();
+            parent = newParent;
+            name = newName;
+            newParent.children.put(newName, this);
+            newParent.touch();
+        }
+
+        /**
+         * Copy up to length bytes starting at offset into the target buffer.
+         *
+         * @return the number of bytes copied
+         */
+        int read(long offset, int length, Buffer<?> target) {
+            if (offset >= size) {
+                return 0;
+            }
+            int read = (int) Math.min(length, size - offset);
+            target.putRawBytes(data, (int) offset, read);
+            lastAccessTime = MsDataTypes.nowAsFileTime();
+            return read;
+        }
+
+        void write(long offset, byte[] buffer, int bufferOffset, int length) {
+            long end = offset + length;
+            if (end > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("In-memory files are limited to 2GB");
+            }
+            if (end > data.length) {
+                data = Arrays.copyOf(data, (int) Math.max(end, Math.min(2L * data.length, Integer.MAX_VALUE - 8)));
+            }
+            System.arraycopy(buffer, bufferOffset, data, (int) offset, length);
+            size = (int) Math.max(size, end);
+            touch();
+        }
+
+        void truncate(long newSize) {
+            if (newSize > data.length) {
+                data = Arrays.copyOf(data, (int) newSize);
+            } else if (newSize < size) {
+                Arrays.fill(data, (int) newSize, size, (byte) 0);
+            }
+            size = (int) newSize;
+            touch();
+        }
+
+        long allocationSize() {
+            return (size + 4095L) & ~4095L;
+        }
+
+        private void touch() {
+            long now = MsDataTypes.nowAsFileTime();
+            lastWriteTime = now;
+            changeTime = now;
+        }
+    }
+}
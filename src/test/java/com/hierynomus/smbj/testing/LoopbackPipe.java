@@ -0,0 +1,77 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.testing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A named pipe on the IPC$ share of a {@link LoopbackSmbServer}, which allows a limited number of instances to be open
+ * at the same time. A FSCTL_PIPE_WAIT for a pipe without a free instance is answered once an instance is closed.
+ */
+class LoopbackPipe {
+    private final int maxInstances;
+    private final Supplier<PipeHandler> handlers;
+    private final List<Runnable> waiters = new ArrayList<>();
+    private int instances;
+
+    LoopbackPipe(int maxInstances, Supplier<PipeHandler> handlers) {
+        this.maxInstances = maxInstances;
+        this.handlers = handlers;
+    }
+
+    /**
+     * @return the handler of a new instance, or {@code null} if all instances are in use
+     */
+    synchronized PipeHandler open() {
+        if (instances >= maxInstances) {
+            return null;
+        }
+        instances++;
+        return handlers.get();
+    }
+
+    void close() {
+        List<Runnable> available;
+        synchronized (this) {
+            instances--;
+            available = new ArrayList<>(waiters);
+            waiters.clear();
+        }
+        for (Runnable waiter : available) {
+            waiter.run();
+        }
+    }
+
+    /**
+     * @return {@code true} if an instance is free now, otherwise {@code waiter} is run once an instance is closed
+     */
+    synchronized boolean waitForInstance(Runnable waiter) {
+        if (instances < maxInstances) {
+            return true;
+        }
+        waiters.add(waiter);
+        return false;
+    }
+
+    /**
+     * @return whether the waiter was still waiting
+     */
+    synchronized boolean cancelWait(Runnable waiter) {
+        return waiters.remove(waiter);
+    }
+}
@@ -0,0 +1,1424 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.testing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketException;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hierynomus.msdtyp.MsDataTypes;
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.mssmb2.SMB2Dialect;
+import com.hierynomus.mssmb2.SMB2MessageCommandCode;
+import com.hierynomus.mssmb2.SMB2PacketHeader;
+import com.hierynomus.mssmb2.SMB3HashAlgorithm;
+import com.hierynomus.mssmb2.messages.negotiate.SMB2PreauthIntegrityCapabilities;
+import com.hierynomus.protocol.commons.Charsets;
+import com.hierynomus.protocol.commons.buffer.Buffer;
+import com.hierynomus.smb.SMBBuffer;
+import com.hierynomus.smbj.testing.InMemoryFileTree.Node;
+
+/**
+ * Serves a single client connection of the {@link LoopbackSmbServer}. Requests are read and handled on the connection
+ * thread, responses are written inline or, when a latency is configured, from the server's scheduler.
+ */
+class LoopbackSmbConnection implements Runnable, Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(LoopbackSmbConnection.class);
+
+    private static final byte[] SMB2_PROTOCOL_ID = {(byte) 0xFE, 'S', 'M', 'B'};
+    private static final byte[] SMB1_PROTOCOL_ID = {(byte) 0xFF, 'S', 'M', 'B'};
+    private static final int HEADER_SIZE = SMB2PacketHeader.STRUCTURE_SIZE;
+    private static final long SMB2_FLAGS_SERVER_TO_REDIR = 0x00000001L;
+    private static final long SMB2_FLAGS_ASYNC_COMMAND = 0x00000002L;
+    private static final long MAXIMAL_ACCESS = 0x001F01FFL;
+    private static final long FILE_ATTRIBUTE_READONLY = 0x01L;
+    private static final long FILE_ATTRIBUTE_DIRECTORY = 0x10L;
+    private static final long FILE_ATTRIBUTE_ARCHIVE = 0x20L;
+
+    // CreateDisposition
+    private static final int FILE_SUPERSEDE = 0;
+    private static final int FILE_OPEN = 1;
+    private static final int FILE_CREATE = 2;
+    private static final int FILE_OPEN_IF = 3;
+    private static final int FILE_OVERWRITE = 4;
+    private static final int FILE_OVERWRITE_IF = 5;
+
+    // CreateOptions
+    private static final long FILE_DIRECTORY_FILE = 0x00000001L;
+    private static final long FILE_NON_DIRECTORY_FILE = 0x00000040L;
+    private static final long FILE_DELETE_ON_CLOSE = 0x00001000L;
+
+    // CreateAction
+    private static final int FILE_SUPERSEDED = 0;
+    private static final int FILE_OPENED = 1;
+    private static final int FILE_CREATED = 2;
+    private static final int FILE_OVERWRITTEN = 3;
+
+    // QUERY_DIRECTORY Flags
+    private static final int SMB2_RESTART_SCANS = 0x01;
+    private static final int SMB2_RETURN_SINGLE_ENTRY = 0x02;
+    private static final int SMB2_REOPEN = 0x10;
+
+    // FileInformationClass
+    private static final int FILE_DIRECTORY_INFORMATION = 0x01;
+    private static final int FILE_FULL_DIRECTORY_INFORMATION = 0x02;
+    private static final int FILE_BOTH_DIRECTORY_INFORMATION = 0x03;
+    private static final int FILE_BASIC_INFORMATION = 0x04;
+    private static final int FILE_STANDARD_INFORMATION = 0x05;
+    private static final int FILE_NAMES_INFORMATION = 0x0C;
+    private static final int FILE_RENAME_INFORMATION = 0x0A;
+    private static final int FILE_DISPOSITION_INFORMATION = 0x0D;
+    private static final int FILE_ALL_INFORMATION = 0x12;
+    private static final int FILE_END_OF_FILE_INFORMATION = 0x14;
+    private static final int FILE_ID_BOTH_DIRECTORY_INFORMATION = 0x25;
+    private static final int FILE_ID_FULL_DIRECTORY_INFORMATION = 0x26;
+
+    private static final int SMB2_0_INFO_FILE = 0x01;
+
+    // LOCK Flags
+    private static final long SMB2_LOCKFLAG_EXCLUSIVE_LOCK = 0x02L;
+    private static final long SMB2_LOCKFLAG_UNLOCK = 0x04L;
+    private static final long SMB2_LOCKFLAG_FAIL_IMMEDIATELY = 0x10L;
+
+    // IOCTL CtlCodes
+    private static final long FSCTL_PIPE_WAIT = 0x00110018L;
+    private static final long FSCTL_PIPE_TRANSCEIVE = 0x0011C017L;
+    private static final long FSCTL_SRV_REQUEST_RESUME_KEY = 0x00140078L;
+    private static final long FSCTL_SRV_COPYCHUNK_WRITE = 0x001480F2L;
+
+    private final LoopbackSmbServer server;
+    private final Socket socket;
+    private final DataInputStream in;
+    private final OutputStream out;
+    private final AtomicLong ids = new AtomicLong();
+    private final Map<Long, InMemoryFileTree> trees = new ConcurrentHashMap<>();
+    private final Map<Long, Open> opens = new ConcurrentHashMap<>();
+    private final Set<Long> pipeTrees = ConcurrentHashMap.newKeySet();
+    private final Map<Long, PipeOpen> pipeOpens = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+
+    LoopbackSmbConnection(LoopbackSmbServer server, Socket socket) throws IOException {
+        this.server = server;
+        this.socket = socket;
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 9000));
+        this.out = new BufferedOutputStream(socket.getOutputStream(), 9000);
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!socket.isClosed()) {
+                int length = in.readInt() & 0xffffff; // Direct TCP transport header
+                byte[] packet = new byte[length];
+                in.readFully(packet);
+                handle(packet);
+            }
+        } catch (EOFException | SocketException e) {
+            logger.debug("Connection from {} closed", socket.getRemoteSocketAddress());
+        } catch (IOException | Buffer.BufferException | RuntimeException e) {
+            logger.warn("Closing connection from {} after failure", socket.getRemoteSocketAddress(), e);
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close socket", e);
+        }
+        for (Open open : opens.values()) {
+            server.getLocks().close(open);
+        }
+        for (Long fileId : pipeOpens.keySet()) {
+            closePipe(fileId);
+        }
+        server.closed(this);
+    }
+
+    private void handle(byte[] packet) throws Buffer.BufferException {
+        if (startsWith(packet, SMB1_PROTOCOL_ID)) {
+            // Multi-protocol negotiate, answer with the SMB 2.??? wildcard dialect so that the client continues with SMB2.
+            send(negotiateResponse(Request.multiProtocolNegotiate(), SMB2Dialect.SMB_2XX));
+            return;
+        }
+        if (!startsWith(packet, SMB2_PROTOCOL_ID)) {
+            throw new IllegalStateException("Not an SMB2 packet");
+        }
+        Request request = new Request(packet);
+        SMB2MessageCommandCode command = request.command < 0x13 ? SMB2MessageCommandCode.lookup(request.command) : null;
+        if (command != null) {
+            server.received(command);
+        }
+        if (command == SMB2MessageCommandCode.SMB2_CANCEL) {
+            // No response is sent for the CANCEL itself, only for the request that it cancels
+            server.getLocks().cancel(this, request.messageId, request.asyncId);
+            return;
+        }
+        SMBBuffer response;
+        try {
+            response = dispatch(command, request);
+        } catch (StatusException e) {
+            response = error(request, e.status);
+        }
+        if (response != null && !server.dropResponse(command)) {
+            send(response);
+        }
+    }
+
+    private SMBBuffer dispatch(SMB2MessageCommandCode command, Request request) throws Buffer.BufferException {
+        if (command == null) {
+            throw new StatusException(NtStatus.STATUS_NOT_SUPPORTED);
+        }
+        switch (command) {
+            case SMB2_NEGOTIATE:
+                return negotiate(request);
+            case SMB2_SESSION_SETUP:
+                return sessionSetup(request);
+            case SMB2_TREE_CONNECT:
+                return treeConnect(request);
+            case SMB2_TREE_DISCONNECT:
+                trees.remove(request.treeId);
+                pipeTrees.remove(request.treeId);
+                return empty(request);
+            case SMB2_CREATE:
+                return create(request);
+            case SMB2_CLOSE:
+                return close(request);
+            case SMB2_FLUSH:
+                request.buffer.skip(8); // StructureSize, Reserved1, Reserved2 (8 bytes)
+                readOpen(request);
+                return empty(request);
+            case SMB2_READ:
+                return read(request);
+            case SMB2_WRITE:
+                return write(request);
+            case SMB2_QUERY_DIRECTORY:
+                return queryDirectory(request);
+            case SMB2_QUERY_INFO:
+                return queryInfo(request);
+            case SMB2_SET_INFO:
+                return setInfo(request);
+            case SMB2_LOCK:
+                return lock(request);
+            case SMB2_IOCTL:
+                return ioctl(request);
+            case SMB2_LOGOFF:
+            case SMB2_ECHO:
+                return empty(request);
+            default:
+                throw new StatusException(NtStatus.STATUS_NOT_SUPPORTED);
+        }
+    }
+
+    private SMBBuffer negotiate(Request request) throws Buffer.BufferException {
+        SMBBuffer buffer = request.buffer;
+        buffer.skip(2); // StructureSize (2 bytes)
+        int dialectCount = buffer.readUInt16(); // DialectCount (2 bytes)
+        buffer.skip(2 + 2 + 4 + 16 + 8); // SecurityMode, Reserved, Capabilities, ClientGuid, NegotiateContext/ClientStartTime
+        SMB2Dialect chosen = null;
+        for (int i = 0; i < dialectCount; i++) {
+            SMB2Dialect dialect = SMB2Dialect.lookup(buffer.readUInt16());
+            if (server.getDialects().contains(dialect) && (chosen == null || dialect.getValue() > chosen.getValue())) {
+                chosen = dialect;
+            }
+        }
+        if (chosen == null) {
+            throw new StatusException(NtStatus.STATUS_NOT_SUPPORTED);
+        }
+        return negotiateResponse(request, chosen);
+    }
+
+    private SMBBuffer negotiateResponse(Request request, SMB2Dialect dialect) {
+        boolean smb311 = dialect == SMB2Dialect.SMB_3_1_1;
+        boolean largeMtu = dialect != SMB2Dialect.SMB_2_0_2 && dialect != SMB2Dialect.SMB_2XX;
+        int maxTransactSize = largeMtu ? server.getMaxTransactSize() : 65536;
+        int negotiateContextOffset = HEADER_SIZE + 64;
+        SMBBuffer response = header(request, NtStatus.STATUS_SUCCESS, request.sessionId, request.treeId);
+        response.putUInt16(65); // StructureSize (2 bytes)
+        response.putUInt16(0x01); // SecurityMode (2 bytes), signing enabled
+        response.putUInt16(dialect.getValue()); // DialectRevision (2 bytes)
+        response.putUInt16(smb311 ? 1 : 0); // NegotiateContextCount/Reserved (2 bytes)
+        MsDataTypes.putGuid(server.getServerGuid(), response); // ServerGuid (16 bytes)
+        response.putUInt32(largeMtu ? 0x04 : 0); // Capabilities (4 bytes), SMB2_GLOBAL_CAP_LARGE_MTU
+        response.putUInt32(maxTransactSize); // MaxTransactSize (4 bytes)
+        response.putUInt32(maxTransactSize); // MaxReadSize (4 bytes)
+        response.putUInt32(maxTransactSize); // MaxWriteSize (4 bytes)
+        response.putUInt64(MsDataTypes.nowAsFileTime()); // SystemTime (8 bytes)
+        response.putUInt64(0); // ServerStartTime (8 bytes)
+        response.putUInt16(HEADER_SIZE + 64); // SecurityBufferOffset (2 bytes)
+        response.putUInt16(0); // SecurityBufferLength (2 bytes)
+        response.putUInt32(smb311 ? negotiateContextOffset : 0); // NegotiateContextOffset/Reserved2 (4 bytes)
+        if (smb311) {
+            byte[] salt = new byte[SMB2PreauthIntegrityCapabilities.DEFAULT_SALT_LENGTH];
+            random.nextBytes(salt);
+            new SMB2PreauthIntegrityCapabilities(Collections.singletonList(SMB3HashAlgorithm.SHA_512), salt).write(response);
+        }
+        return response;
+    }
+
+    private SMBBuffer sessionSetup(Request request) {
+        long sessionId = request.sessionId != 0 ? request.sessionId : ids.incrementAndGet();
+        SMBBuffer response = header(request, NtStatus.STATUS_SUCCESS, sessionId, request.treeId);
+        response.putUInt16(9); // StructureSize (2 bytes)
+        response.putUInt16(0); // SessionFlags (2 bytes)
+        response.putUInt16(HEADER_SIZE + 8); // SecurityBufferOffset (2 bytes)
+        response.putUInt16(0); // SecurityBufferLength (2 bytes)
+        return response;
+    }
+
+    private SMBBuffer treeConnect(Request request) throws Buffer.BufferException {
+        SMBBuffer buffer = request.buffer;
+        buffer.skip(4); // StructureSize, Flags/Reserved (4 bytes)
+        int pathOffset = buffer.readUInt16(); // PathOffset (2 bytes)
+        int pathLength = buffer.readUInt16(); // PathLength (2 bytes)
+        buffer.rpos(pathOffset);
+        String path = buffer.readString(Charsets.UTF_16LE, pathLength / 2);
+        String shareName = path.substring(path.lastIndexOf('\\') + 1);
+        InMemoryFileTree tree = null;
+        for (Map.Entry<String, InMemoryFileTree> share : server.getShares().entrySet()) {
+            if (share.getKey().equalsIgnoreCase(shareName)) {
+                tree = share.getValue();
+            }
+        }
+        boolean ipc = tree == null && "IPC$".equalsIgnoreCase(shareName);
+        if (tree == null && !ipc) {
+            throw new StatusException(NtStatus.STATUS_BAD_NETWORK_NAME);
+        }
+        long treeId = ids.incrementAndGet();
+        if (ipc) {
+            pipeTrees.add(treeId);
+        } else {
+            trees.put(treeId, tree);
+        }
+        SMBBuffer response = header(request, NtStatus.STATUS_SUCCESS, request.sessionId, treeId);
+        response.putUInt16(16); // StructureSize (2 bytes)
+        response.putByte((byte) (ipc ? 0x02 : 0x01)); // ShareType (1 byte), pipe or disk
+        response.putReserved1(); // Reserved (1 byte)
+        response.putUInt32(0); // ShareFlags (4 bytes)
+        response.putUInt32(0); // Capabilities (4 bytes)
+        response.putUInt32(MAXIMAL_ACCESS); // MaximalAccess (4 bytes)
+        return response;
+    }
+
+    private SMBBuffer create(Request request) throws Buffer.BufferException {
+        SMBBuffer buffer = request.buffer;
+        buffer.skip(2 + 1 + 1 + 4 + 8 + 8); // StructureSize, SecurityFlags, RequestedOplockLevel, ImpersonationLevel, SmbCreateFlags, Reserved
+        buffer.skip(4 + 4 + 4); // DesiredAccess, FileAttributes, ShareAccess
+        int disposition = (int) buffer.readUInt32(); // CreateDisposition (4 bytes)
+        long options = buffer.readUInt32(); // CreateOptions (4 bytes)
+        int nameOffset = buffer.readUInt16(); // NameOffset (2 bytes)
+        int nameLength = buffer.readUInt16(); // NameLength (2 bytes)
+        String name = "";
+        if (nameLength > 0) {
+            buffer.rpos(nameOffset);
+            name = buffer.readString(Charsets.UTF_16LE, nameLength / 2);
+        }
+        if (pipeTrees.contains(request.treeId)) {
+            return createPipe(request, name);
+        }
+        boolean directoryFile = (options & FILE_DIRECTORY_FILE) != 0;
+        boolean nonDirectoryFile = (options & FILE_NON_DIRECTORY_FILE) != 0;
+
+        InMemoryFileTree tree = tree(request);
+        Node node;
+        int action;
+        synchronized (tree) {
+            List<String> elements = InMemoryFileTree.split(name);
+            Node parent = elements.isEmpty() ? null : tree.lookup(String.join("\\", elements.subList(0, elements.size() - 1)));
+            if (!elements.isEmpty() && (parent == null || !parent.directory)) {
+                throw new StatusException(NtStatus.STATUS_OBJECT_PATH_NOT_FOUND);
+            }
+            String fileName = elements.isEmpty() ? null : elements.get(elements.size() - 1);
+            node = elements.isEmpty() ? tree.root() : parent.children.get(fileName);
+            if (node != null) {
+                if (directoryFile && !node.directory) {
+                    throw new StatusException(NtStatus.STATUS_NOT_A_DIRECTORY);
+                }
+                if (nonDirectoryFile && node.directory) {
+                    throw new StatusException(NtStatus.STATUS_FILE_IS_A_DIRECTORY);
+                }
+                if ((options & FILE_DELETE_ON_CLOSE) != 0 && node.readOnly) {
+                    throw new StatusException(NtStatus.STATUS_CANNOT_DELETE);
+                }
+            }
+            switch (disposition) {
+                case FILE_OPEN:
+                    action = FILE_OPENED;
+                    break;
+                case FILE_CREATE:
+                    if (node != null) {
+                        throw new StatusException(NtStatus.STATUS_OBJECT_NAME_COLLISION);
+                    }
+                    action = FILE_CREATED;
+                    break;
+                case FILE_OPEN_IF:
+                    action = node == null ? FILE_CREATED : FILE_OPENED;
+                    break;
+                case FILE_SUPERSEDE:
+                    action = node == null ? FILE_CREATED : FILE_SUPERSEDED;
+                    break;
+                case FILE_OVERWRITE:
+                    action = FILE_OVERWRITTEN;
+                    break;
+                case FILE_OVERWRITE_IF:
+                    action = node == null ? FILE_CREATED : FILE_OVERWRITTEN;
+                    break;
+                default:
+                    throw new StatusException(NtStatus.STATUS_INVALID_PARAMETER);
+            }
+            if (node == null) {
+                if (action != FILE_CREATED) {
+                    throw new StatusException(NtStatus.STATUS_OBJECT_NAME_NOT_FOUND);
+                }
+                node = parent.add(fileName, directoryFile);
+            } else if (action == FILE_SUPERSEDED || action == FILE_OVERWRITTEN) {
+                if (node.directory) {
+                    throw new StatusException(NtStatus.STATUS_FILE_IS_A_DIRECTORY);
+                }
+                node.truncate(0);
+            }
+        }
+        long fileId = ids.incrementAndGet();
+        opens.put(fileId, new Open(tree, node, (options & FILE_DELETE_ON_CLOSE) != 0));
+
+        SMBBuffer response = header(request, NtStatus.STATUS_SUCCESS);
+        response.putUInt16(89); // StructureSize (2 bytes)
+        response.putByte((byte) 0); // OplockLevel (1 byte)
+        response.putByte((byte) 0); // Flags (1 byte)
+        response.putUInt32(action); // CreateAction (4 bytes)
+        synchronized (tree) {
+            putTimesAndSizes(response, node); // CreationTime, LastAccessTime, LastWriteTime, ChangeTime, AllocationSize, EndOfFile (48 bytes)
+            response.putUInt32(attributes(node)); // FileAttributes (4 bytes)
+        }
+        response.putReserved4(); // Reserved2 (4 bytes)
+        response.putLong(fileId); // FileId.Persistent (8 bytes)
+        response.putLong(fileId); // FileId.Volatile (8 bytes)
+        response.putUInt32(0); // CreateContextsOffset (4 bytes)
+        response.putUInt32(0); // CreateContextsLength (4 bytes)
+        return response;
+    }
+
+    private SMBBuffer close(Request request) throws Buffer.BufferException {
+        SMBBuffer buffer = request.buffer;
+        buffer.skip(2); // StructureSize (2 bytes)
+        int flags = buffer.readUInt16(); // Flags (2 bytes)
+        buffer.skip(4); // Reserved (4 bytes)
+        long fileId = readFileId(request);
+        if (pipeOpens.containsKey(fileId)) {
+            closePipe(fileId);
+            SMBBuffer response = header(request, NtStatus.STATUS_SUCCESS);
+            response.putUInt16(60); // StructureSize (2 bytes)
+            response.putUInt16(0); // Flags (2 bytes)
+            response.putReserved4(); // Reserved (4 bytes)
+            response.putReserved(52); // CreationTime, LastAccessTime, LastWriteTime, ChangeTime, AllocationSize, EndOfFile, FileAttributes
+            return response;
+        }
+        Open open = open(fileId);
+        opens.remove(open.fileId);
+        server.getLocks().close(open);
+
+        SMBBuffer response = header(request, NtStatus.STATUS_SUCCESS);
+        response.putUInt16(60); // StructureSize (2 bytes)
+        response.putUInt16(flags & 0x01); // Flags (2 bytes)
+        response.putReserved4(); // Reserved (4 bytes)
+        synchronized (open.tree) {
+            if (open.deleteOnClose && open.node.parent != null && open.node.parent.children.get(open.node.name) == open.node) {
+                open.node.remove();
+            }
+            if ((flags & 0x01) != 0) {
+                putTimesAndSizes(response, open.node); // CreationTime, LastAccessTime, LastWriteTime, ChangeTime, AllocationSize, EndOfFile (48 bytes)
+                response.putUInt32(attributes(open.node)); // FileAttributes (4 bytes)
+            } else {
+                response.putReserved(52);
+            }
+        }
+        return response;
+    }
+
+    private SMBBuffer read(Request request) throws Buffer.BufferException {
+        SMBBuffer buffer = request.buffer;
+        buffer.skip(4); // StructureSize, Padding, Flags (4 bytes)
+        int length = buffer.readUInt32AsInt(); // Length (4 bytes)
+        long offset = buffer.readUInt64(); // Offset (8 bytes)
+        long fileId = readFileId(request);
+        PipeOpen pipe = pipeOpens.get(fileId);
+        if (pipe != null) {
+            servePipe(pipe, new PendingRead(request, length, fileId, false));
+            return null;
+        }
+        Open open = open(fileId);
+        if (open.node.directory) {
+            throw new StatusException(NtStatus.STATUS_INVALID_PARAMETER);
+        }
+        SMBBuffer response = header(request, NtStatus.STATUS_SUCCESS);
+        response.putUInt16(17); // StructureSize (2 bytes)
+        response.putByte((byte) (HEADER_SIZE + 16)); // DataOffset (1 byte)
+        response.putReserved1(); // Reserved (1 byte)
+        int dataLengthPosition = response.wpos();
+        response.putUInt32(0); // DataLength (4 bytes), filled in below
+        response.putUInt32(0); // DataRemaining (4 bytes)
+        response.putReserved4(); // Reserved2 (4 bytes)
+        int read;
+        synchronized (open.tree) {
+            read = open.node.read(offset, length, response);
+        }
+        if (read == 0) {
+            throw new StatusException(NtStatus.STATUS_END_OF_FILE);
+        }
+        putUInt32At(response, dataLengthPosition, read);
+        return response;
+    }
+
+    private SMBBuffer write(Request request) throws Buffer.BufferException {
+        SMBBuffer buffer = request.buffer;
+        buffer.skip(2); // StructureSize (2 bytes)
+        int dataOffset = buffer.readUInt16(); // DataOffset (2 bytes)
+        int length = buffer.readUInt32AsInt(); // Length (4 bytes)
+        long offset = buffer.readUInt64(); // Offset (8 bytes)
+        long fileId = readFileId(request);
+        if (dataOffset + length > request.packet.length) {
+            throw new StatusException(NtStatus.STATUS_INVALID_PARAMETER);
+        }
+        PipeOpen pipe = pipeOpens.get(fileId);
+        if (pipe != null) {
+            writePipe(pipe, Arrays.copyOfRange(request.packet, dataOffset, dataOffset + length));
+            servePipe(pipe, null);
+        } else {
+            Open open = open(fileId);
+            if (open.node.directory) {
+                throw new StatusException(NtStatus.STATUS_INVALID_PARAMETER);
+            }
+            synchronized (open.tree) {
+                open.node.write(offset, request.packet, dataOffset, length);
+            }
+        }
+        SMBBuffer response = header(request, NtStatus.STATUS_SUCCESS);
+        response.putUInt16(17); // StructureSize (2 bytes)
+        response.putReserved2(); // Reserved (2 bytes)
+        response.putUInt32(length); // Count (4 bytes)
+        response.putUInt32(0); // Remaining (4 bytes)
+        response.putUInt16(0); // WriteChannelInfoOffset (2 bytes)
+        response.putUInt16(0); // WriteChannelInfoLength (2 bytes)
+        return response;
+    }
+
+    private SMBBuffer queryDirectory(Request request) throws Buffer.BufferException {
+        SMBBuffer buffer = request.buffer;
+        buffer.skip(2); // StructureSize (2 bytes)
+        int informationClass = buffer.readByte() & 0xFF; // FileInformationClass (1 byte)
+        int flags = buffer.readByte() & 0xFF; // Flags (1 byte)
+        buffer.skip(4); // FileIndex (4 bytes)
+        Open open = readOpen(request);
+        int nameOffset = buffer.readUInt16(); // FileNameOffset (2 bytes)
+        int nameLength = buffer.readUInt16(); // FileNameLength (2 bytes)
+        int outputBufferLength = buffer.readUInt32AsInt(); // OutputBufferLength (4 bytes)
+        String searchPattern = "*";
+        if (nameLength > 0) {
+            buffer.rpos(nameOffset);
+            searchPattern = buffer.readString(Charsets.UTF_16LE, nameLength / 2);
+        }
+        if (!open.node.directory) {
+            throw new StatusException(NtStatus.STATUS_INVALID_PARAMETER);
+        }
+        if (!isDirectoryInformationClass(informationClass)) {
+            throw new StatusException(NtStatus.STATUS_INVALID_INFO_CLASS);
+        }
+
+        SMBBuffer entries = new SMBBuffer();
+        synchronized (open.tree) {
+            if (open.listing == null || (flags & (SMB2_RESTART_SCANS | SMB2_REOPEN)) != 0) {
+                open.listing = list(open.node, searchPattern);
+                open.cursor = 0;
+                if (open.listing.isEmpty()) {
+                    throw new StatusException(NtStatus.STATUS_NO_SUCH_FILE);
+                }
+            }
+            int previousEntry = -1;
+            while (open.cursor < open.listing.size()) {
+                Listed entry = open.listing.get(open.cursor);
+                int start = align8(entries.wpos());
+                if (previousEntry >= 0 && start + entrySize(informationClass, entry) > outputBufferLength) {
+                    break;
+                }
+                entries.putReserved(start - entries.wpos()); // Padding to 8-byte alignment
+                if (previousEntry >= 0) {
+                    putUInt32At(entries, previousEntry, start - previousEntry); // NextEntryOffset of the previous entry
+                }
+                putDirectoryEntry(entries, informationClass, entry);
+                previousEntry = start;
+                open.cursor++;
+                if ((flags & SMB2_RETURN_SINGLE_ENTRY) != 0) {
+                    break;
+                }
+            }
+        }
+        if (entries.wpos() == 0) {
+            throw new StatusException(NtStatus.STATUS_NO_MORE_FILES);
+        }
+        SMBBuffer response = header(request, NtStatus.STATUS_SUCCESS);
+        response.putUInt16(9); // StructureSize (2 bytes)
+        response.putUInt16(HEADER_SIZE + 8); // OutputBufferOffset (2 bytes)
+        response.putUInt32(entries.wpos()); // OutputBufferLength (4 bytes)
+        response.putBuffer(entries); // Buffer (variable)
+        return response;
+    }
+
+    private SMBBuffer queryInfo(Request request) throws Buffer.BufferException {
+        SMBBuffer buffer = request.buffer;
+        buffer.skip(2); // StructureSize (2 bytes)
+        int infoType = buffer.readByte() & 0xFF; // InfoType (1 byte)
+        int informationClass = buffer.readByte() & 0xFF; // FileInfoClass (1 byte)
+        buffer.skip(4 + 2 + 2 + 4 + 4 + 4); // OutputBufferLength, InputBufferOffset, Reserved, InputBufferLength, AdditionalInformation, Flags
+        Open open = readOpen(request);
+        if (infoType != SMB2_0_INFO_FILE) {
+            throw new StatusException(NtStatus.STATUS_NOT_SUPPORTED);
+        }
+        SMBBuffer info = new SMBBuffer();
+        synchronized (open.tree) {
+            Node node = open.node;
+            switch (informationClass) {
+                case FILE_BASIC_INFORMATION:
+                    putBasicInformation(info, node);
+                    break;
+                case FILE_STANDARD_INFORMATION:
+                    putStandardInformation(info, node, open);
+                    break;
+                case FILE_ALL_INFORMATION:
+                    putBasicInformation(info, node);
+                    putStandardInformation(info, node, open);
+                    info.putLong(node.fileIndex); // FileInternalInformation.IndexNumber (8 bytes)
+                    info.putUInt32(0); // FileEaInformation.EaSize (4 bytes)
+                    info.putUInt32(MAXIMAL_ACCESS); // FileAccessInformation.AccessFlags (4 bytes)
+                    info.putUInt64(0); // FilePositionInformation.CurrentByteOffset (8 bytes)
+                    info.putUInt32(0); // FileModeInformation.Mode (4 bytes)
+                    info.putUInt32(0); // FileAlignmentInformation.AlignmentRequirement (4 bytes)
+                    byte[] name = path(node).getBytes(Charsets.UTF_16LE);
+                    info.putUInt32(name.length); // FileNameInformation.FileNameLength (4 bytes)
+                    info.putRawBytes(name); // FileNameInformation.FileName (variable)
+                    break;
+                default:
+                    throw new StatusException(NtStatus.STATUS_INVALID_INFO_CLASS);
+            }
+        }
+        SMBBuffer response = header(request, NtStatus.STATUS_SUCCESS);
+        response.putUInt16(9); // StructureSize (2 bytes)
+        response.putUInt16(HEADER_SIZE + 8); // OutputBufferOffset (2 bytes)
+        response.putUInt32(info.wpos()); // OutputBufferLength (4 bytes)
+        response.putBuffer(info); // Buffer (variable)
+        return response;
+    }
+
+    private SMBBuffer setInfo(Request request) throws Buffer.BufferException {
+        SMBBuffer buffer = request.buffer;
+        buffer.skip(2); // StructureSize (2 bytes)
+        int infoType = buffer.readByte() & 0xFF; // InfoType (1 byte)
+        int informationClass = buffer.readByte() & 0xFF; // FileInfoClass (1 byte)
+        buffer.skip(4); // BufferLength (4 bytes)
+        int bufferOffset = buffer.readUInt16(); // BufferOffset (2 bytes)
+        buffer.skip(2 + 4); // Reserved, AdditionalInformation
+        Open open = readOpen(request);
+        if (infoType != SMB2_0_INFO_FILE) {
+            throw new StatusException(NtStatus.STATUS_NOT_SUPPORTED);
+        }
+        buffer.rpos(bufferOffset);
+        synchronized (open.tree) {
+            switch (informationClass) {
+                case FILE_DISPOSITION_INFORMATION:
+                    boolean deletePending = buffer.readBoolean();
+                    if (deletePending && open.node.parent == null) {
+                        throw new StatusException(NtStatus.STATUS_ACCESS_DENIED);
+                    }
+                    if (deletePending && !open.node.children.isEmpty()) {
+                        throw new StatusException(NtStatus.STATUS_DIRECTORY_NOT_EMPTY);
+                    }
+                    if (deletePending && open.node.readOnly) {
+                        throw new StatusException(NtStatus.STATUS_CANNOT_DELETE);
+                    }
+                    open.deleteOnClose = deletePending;
+                    break;
+                case FILE_BASIC_INFORMATION:
+                    buffer.skip(32); // CreationTime, LastAccessTime, LastWriteTime, ChangeTime (32 bytes)
+                    long fileAttributes = buffer.readUInt32(); // FileAttributes (4 bytes)
+                    if (fileAttributes != 0) {
+                        open.node.readOnly = (fileAttributes & FILE_ATTRIBUTE_READONLY) != 0;
+                    }
+                    break;
+                case FILE_RENAME_INFORMATION:
+                    rename(open, buffer);
+                    break;
+                case FILE_END_OF_FILE_INFORMATION:
+                    if (open.node.directory) {
+                        throw new StatusException(NtStatus.STATUS_INVALID_PARAMETER);
+                    }
+                    open.node.truncate(buffer.readUInt64());
+                    break;
+                default:
+                    throw new StatusException(NtStatus.STATUS_INVALID_INFO_CLASS);
+            }
+        }
+        SMBBuffer response = header(request, NtStatus.STATUS_SUCCESS);
+        response.putUInt16(2); // StructureSize (2 bytes)
+        return response;
+    }
+
+    /**
+     * [MS-SMB2] 3.3.5.14 Receiving an SMB2 LOCK Request
+     * <p>
+     * A lock that conflicts and may wait is answered with an interim STATUS_PENDING response, and completed when the
+     * conflicting lock is released or the request is cancelled. A request with a LockSequenceIndex whose
+     * LockSequenceNumber equals the one of the last request processed for that index is a replay, and succeeds without
+     * being processed again.
+     *
+     * @return the response, or null when the request waits
+     */
+    private SMBBuffer lock(Request request) throws Buffer.BufferException {
+        SMBBuffer buffer = request.buffer;
+        buffer.skip(2); // StructureSize (2 bytes)
+        int lockCount = buffer.readUInt16(); // LockCount (2 bytes)
+        long lockSequence = buffer.readUInt32(); // LockSequenceNumber (4 bits), LockSequenceIndex (28 bits)
+        Open open = readOpen(request);
+        List<ByteRangeLockTable.Range> ranges = new ArrayList<>(lockCount);
+        boolean unlock = false;
+        boolean failImmediately = true;
+        for (int i = 0; i < lockCount; i++) {
+            long offset = buffer.readLong(); // Offset (8 bytes)
+            long length = buffer.readLong(); // Length (8 bytes)
+            long flags = buffer.readUInt32(); // Flags (4 bytes)
+            buffer.skip(4); // Reserved (4 bytes)
+            boolean isUnlock = (flags & SMB2_LOCKFLAG_UNLOCK) != 0;
+            if (i == 0) {
+                unlock = isUnlock;
+            } else if (unlock != isUnlock) {
+                throw new StatusException(NtStatus.STATUS_INVALID_PARAMETER);
+            }
+            failImmediately &= (flags & SMB2_LOCKFLAG_FAIL_IMMEDIATELY) != 0;
+            ranges.add(new ByteRangeLockTable.Range(open, offset, length, (flags & SMB2_LOCKFLAG_EXCLUSIVE_LOCK) != 0));
+        }
+        if (lockCount == 0 || !unlock && lockCount > 1 && !failImmediately) {
+            throw new StatusException(NtStatus.STATUS_INVALID_PARAMETER);
+        }
+
+        final int index = (int) (lockSequence >>> 4);
+        final int number = (int) (lockSequence & 0xF);
+        if (index > 0 && index < open.lockSequences.length()) {
+            if (open.lockSequences.get(index) == number) {
+                return empty(request);
+            }
+            open.lockSequences.set(index, -1);
+        }
+
+        ByteRangeLockTable locks = server.getLocks();
+        if (unlock) {
+            if (!locks.unlock(open, open.node, ranges)) {
+                throw new StatusException(NtStatus.STATUS_RANGE_NOT_LOCKED);
+            }
+        } else if (failImmediately) {
+            if (!locks.lock(open, open.node, ranges)) {
+                throw new StatusException(NtStatus.STATUS_LOCK_NOT_GRANTED);
+            }
+        } else {
+            long asyncId = ids.incrementAndGet();
+            ByteRangeLockTable.Waiter waiter = new ByteRangeLockTable.Waiter(this, request.messageId, asyncId, open,
+                    open.node, ranges, status -> {
+                        if (status == NtStatus.STATUS_SUCCESS) {
+                            lockSequenced(open, index, number);
+                            send(empty(asyncHeader(request, status, asyncId, 0)));
+                        } else {
+                            send(error(asyncHeader(request, status, asyncId, 0)));
+                        }
+                    });
+            int credits = Math.max(1, request.creditRequest);
+            if (!locks.lockOrWait(waiter, () -> send(error(asyncHeader(request, NtStatus.STATUS_PENDING, asyncId, credits))))) {
+                return null;
+            }
+        }
+        lockSequenced(open, index, number);
+        return empty(request);
+    }
+
+    private static void lockSequenced(Open open, int index, int number) {
+        if (index > 0 && index < open.lockSequences.length()) {
+            open.lockSequences.set(index, number);
+        }
+    }
+
+    private SMBBuffer createPipe(Request request, String name) {
+        LoopbackPipe pipe = server.getPipe(name);
+        if (pipe == null) {
+            throw new StatusException(NtStatus.STATUS_OBJECT_NAME_NOT_FOUND);
+        }
+        PipeHandler handler = pipe.open();
+        if (handler == null) {
+            throw new StatusException(NtStatus.STATUS_PIPE_NOT_AVAILABLE);
+        }
+        long fileId = ids.incrementAndGet();
+        pipeOpens.put(fileId, new PipeOpen(pipe, handler));
+
+        SMBBuffer response = header(request, NtStatus.STATUS_SUCCESS);
+        response.putUInt16(89); // StructureSize (2 bytes)
+        response.putByte((byte) 0); // OplockLevel (1 byte)
+        response.putByte((byte) 0); // Flags (1 byte)
+        response.putUInt32(FILE_OPENED); // CreateAction (4 bytes)
+        response.putReserved(48); // CreationTime, LastAccessTime, LastWriteTime, ChangeTime, AllocationSize, EndOfFile (48 bytes)
+        response.putUInt32(0x80); // FileAttributes (4 bytes), FILE_ATTRIBUTE_NORMAL
+        response.putReserved4(); // Reserved2 (4 bytes)
+        response.putLong(fileId); // FileId.Persistent (8 bytes)
+        response.putLong(fileId); // FileId.Volatile (8 bytes)
+        response.putUInt32(0); // CreateContextsOffset (4 bytes)
+        response.putUInt32(0); // CreateContextsLength (4 bytes)
+        return response;
+    }
+
+    private void closePipe(long fileId) {
+        PipeOpen pipe = pipeOpens.remove(fileId);
+        if (pipe == null) {
+            return;
+        }
+        List<PendingRead> reads;
+        synchronized (pipe) {
+            reads = new ArrayList<>(pipe.reads);
+            pipe.reads.clear();
+        }
+        for (PendingRead read : reads) {
+            send(error(read.request, NtStatus.STATUS_FILE_CLOSED));
+        }
+        pipe.pipe.close();
+    }
+
+    private SMBBuffer ioctl(Request request) throws Buffer.BufferException {
+        SMBBuffer buffer = request.buffer;
+        buffer.skip(4); // StructureSize, Reserved (4 bytes)
+        long ctlCode = buffer.readUInt32(); // CtlCode (4 bytes)
+        long fileId = readFileId(request);
+        int inputOffset = buffer.readUInt32AsInt(); // InputOffset (4 bytes)
+        int inputCount = buffer.readUInt32AsInt(); // InputCount (4 bytes)
+        buffer.skip(4 + 4 + 4); // MaxInputResponse, OutputOffset, OutputCount
+        int maxOutput = buffer.readUInt32AsInt(); // MaxOutputResponse (4 bytes)
+        byte[] input = Arrays.copyOfRange(request.packet, inputOffset, inputOffset + inputCount);
+        if (ctlCode == FSCTL_PIPE_WAIT) {
+            return waitForPipe(request, fileId, new SMBBuffer(input));
+        } else if (ctlCode == FSCTL_SRV_REQUEST_RESUME_KEY) {
+            open(fileId);
+            SMBBuffer output = new SMBBuffer();
+            output.putLong(fileId); // ResumeKey (24 bytes), the file id of the source
+            output.putReserved(16);
+            output.putUInt32(0); // ContextLength (4 bytes)
+            return ioctlResponse(request, NtStatus.STATUS_SUCCESS, ctlCode, fileId, output.getCompactData());
+        } else if (ctlCode == FSCTL_SRV_COPYCHUNK_WRITE) {
+            return copyChunk(request, fileId, new SMBBuffer(input));
+        }
+        PipeOpen pipe = pipeOpens.get(fileId);
+        if (ctlCode != FSCTL_PIPE_TRANSCEIVE || pipe == null) {
+            throw new StatusException(NtStatus.STATUS_NOT_SUPPORTED);
+        }
+        writePipe(pipe, input);
+        servePipe(pipe, new PendingRead(request, maxOutput, fileId, true));
+        return null;
+    }
+
+    /**
+     * [MS-FSCC] 2.3.29 FSCTL_PIPE_WAIT Request, answered once an instance of the pipe is free or the timeout expires.
+     */
+    private SMBBuffer waitForPipe(Request request, long fileId, SMBBuffer input) throws Buffer.BufferException {
+        long timeout = input.readUInt64(); // Timeout (8 bytes), in units of 100 milliseconds
+        int nameLength = input.readUInt32AsInt(); // NameLength (4 bytes)
+        boolean timeoutSpecified = input.readBoolean(); // TimeoutSpecified (1 byte)
+        input.skip(1); // Padding (1 byte)
+        LoopbackPipe pipe = server.getPipe(input.readString(Charsets.UTF_16LE, nameLength / 2));
+        if (pipe == null) {
+            throw new StatusException(NtStatus.STATUS_OBJECT_NAME_NOT_FOUND);
+        }
+        AtomicBoolean answered = new AtomicBoolean();
+        Runnable available = () -> {
+            if (answered.compareAndSet(false, true)) {
+                send(ioctlResponse(request, NtStatus.STATUS_SUCCESS, FSCTL_PIPE_WAIT, fileId, new byte[0]));
+            }
+        };
+        if (pipe.waitForInstance(available)) {
+            return ioctlResponse(request, NtStatus.STATUS_SUCCESS, FSCTL_PIPE_WAIT, fileId, new byte[0]);
+        }
+        if (timeoutSpecified) {
+            server.getScheduler().schedule(() -> {
+                if (pipe.cancelWait(available) && answered.compareAndSet(false, true)) {
+                    send(error(request, NtStatus.STATUS_IO_TIMEOUT));
+                }
+            }, timeout * 100, TimeUnit.MILLISECONDS);
+        }
+        return null;
+    }
+
+    /**
+     * [MS-SMB2] 2.2.31.1 SRV_COPYCHUNK_COPY, copying all chunks from the source identified by the resume key.
+     */
+    private SMBBuffer copyChunk(Request request, long fileId, SMBBuffer input) throws Buffer.BufferException {
+        Open source = open(input.readLong()); // ResumeKey (24 bytes)
+        input.skip(16);
+        int chunkCount = input.readUInt32AsInt(); // ChunkCount (4 bytes)
+        input.skip(4); // Reserved (4 bytes)
+        Open target = open(fileId);
+        long totalBytesWritten = 0;
+        synchronized (target.tree) {
+            for (int i = 0; i < chunkCount; i++) {
+                long sourceOffset = input.readLong(); // SourceOffset (8 bytes)
+                long targetOffset = input.readLong(); // TargetOffset (8 bytes)
+                int length = input.readUInt32AsInt(); // Length (4 bytes)
+                input.skip(4); // Reserved (4 bytes)
+                SMBBuffer data = new SMBBuffer();
+                source.node.read(sourceOffset, length, data);
+                byte[] bytes = data.getCompactData();
+                target.node.write(targetOffset, bytes, 0, bytes.length);
+                totalBytesWritten += bytes.length;
+            }
+        }
+        SMBBuffer output = new SMBBuffer();
+        output.putUInt32(chunkCount); // ChunksWritten (4 bytes)
+        output.putUInt32(0); // ChunkBytesWritten (4 bytes)
+        output.putUInt32(totalBytesWritten); // TotalBytesWritten (4 bytes)
+        return ioctlResponse(request, NtStatus.STATUS_SUCCESS, FSCTL_SRV_COPYCHUNK_WRITE, fileId, output.getCompactData());
+    }
+
+    private static void writePipe(PipeOpen pipe, byte[] message) {
+        List<byte[]> replies = pipe.handler.handle(message);
+        synchronized (pipe) {
+            pipe.output.addAll(replies);
+        }
+    }
+
+    /**
+     * Queues the read, if any, and answers the queued reads for which a reply is available, in order. A reply that
+     * does not fit in a read is returned in parts, with STATUS_BUFFER_OVERFLOW for all but the last part.
+     */
+    private void servePipe(PipeOpen pipe, PendingRead read) {
+        List<SMBBuffer> responses = new ArrayList<>();
+        synchronized (pipe) {
+            if (read != null) {
+                pipe.reads.addLast(read);
+            }
+            while (!pipe.reads.isEmpty() && !pipe.output.isEmpty()) {
+                PendingRead next = pipe.reads.pollFirst();
+                byte[] message = pipe.output.pollFirst();
+                NtStatus status = NtStatus.STATUS_SUCCESS;
+                if (message.length > next.maxLength) {
+                    pipe.output.addFirst(Arrays.copyOfRange(message, next.maxLength, message.length));
+                    message = Arrays.copyOf(message, next.maxLength);
+                    status = NtStatus.STATUS_BUFFER_OVERFLOW;
+                }
+                if (next.transceive) {
+                    responses.add(ioctlResponse(next.request, status, FSCTL_PIPE_TRANSCEIVE, next.fileId, message));
+                } else {
+                    responses.add(readResponse(next.request, status, message));
+                }
+            }
+        }
+        for (SMBBuffer response : responses) {
+            send(response);
+        }
+    }
+
+    private SMBBuffer readResponse(Request request, NtStatus status, byte[] data) {
+        SMBBuffer response = header(request, status);
+        response.putUInt16(17); // StructureSize (2 bytes)
+        response.putByte((byte) (HEADER_SIZE + 16)); // DataOffset (1 byte)
+        response.putReserved1(); // Reserved (1 byte)
+        response.putUInt32(data.length); // DataLength (4 bytes)
+        response.putUInt32(0); // DataRemaining (4 bytes)
+        response.putReserved4(); // Reserved2 (4 bytes)
+        response.putRawBytes(data);
+        return response;
+    }
+
+    /**
+     * [MS-SMB2] 2.2.32 SMB2 IOCTL Response
+     */
+    private SMBBuffer ioctlResponse(Request request, NtStatus status, long ctlCode, long fileId, byte[] output) {
+        SMBBuffer response = header(request, status);
+        response.putUInt16(49); // StructureSize (2 bytes)
+        response.putReserved2(); // Reserved (2 bytes)
+        response.putUInt32(ctlCode); // CtlCode (4 bytes)
+        response.putLong(fileId); // FileId.Persistent (8 bytes)
+        response.putLong(fileId); // FileId.Volatile (8 bytes)
+        response.putUInt32(HEADER_SIZE + 48); // InputOffset (4 bytes)
+        response.putUInt32(0); // InputCount (4 bytes)
+        response.putUInt32(HEADER_SIZE + 48); // OutputOffset (4 bytes)
+        response.putUInt32(output.length); // OutputCount (4 bytes)
+        response.putUInt32(0); // Flags (4 bytes)
+        response.putReserved4(); // Reserved2 (4 bytes)
+        response.putRawBytes(output);
+        return response;
+    }
+
+    private SMBBuffer empty(Request request) {
+        return empty(header(request, NtStatus.STATUS_SUCCESS));
+    }
+
+    private static SMBBuffer empty(SMBBuffer response) {
+        response.putUInt16(4); // StructureSize (2 bytes)
+        response.putReserved2(); // Reserved (2 bytes)
+        return response;
+    }
+
+    private SMBBuffer error(Request request, NtStatus status) {
+        return error(header(request, status));
+    }
+
+    /**
+     * [MS-SMB2] 2.2.2 SMB2 ERROR Response
+     */
+    private static SMBBuffer error(SMBBuffer response) {
+        response.putUInt16(9); // StructureSize (2 bytes)
+        response.putByte((byte) 0); // ErrorContextCount (1 byte)
+        response.putReserved1(); // Reserved (1 byte)
+        response.putUInt32(0); // ByteCount (4 bytes)
+        response.putByte((byte) 0); // ErrorData (1 byte)
+        return response;
+    }
+
+    private SMBBuffer header(Request request, NtStatus status) {
+        return header(request, status, request.sessionId, request.treeId);
+    }
+
+    private SMBBuffer header(Request request, NtStatus status, long sessionId, long treeId) {
+        SMBBuffer response = new SMBBuffer();
+        response.putRawBytes(SMB2_PROTOCOL_ID); // ProtocolId (4 bytes)
+        response.putUInt16(HEADER_SIZE); // StructureSize (2 bytes)
+        response.putUInt16(request.creditCharge); // CreditCharge (2 bytes)
+        response.putUInt32(status.getValue()); // Status (4 bytes)
+        response.putUInt16(request.command); // Command (2 bytes)
+        response.putUInt16(Math.max(1, request.creditRequest)); // CreditResponse (2 bytes), grant what was asked
+        response.putUInt32(SMB2_FLAGS_SERVER_TO_REDIR); // Flags (4 bytes)
+        response.putUInt32(0); // NextCommand (4 bytes)
+        response.putLong(request.messageId); // MessageId (8 bytes)
+        response.putReserved4(); // Reserved (4 bytes)
+        response.putUInt32(treeId); // TreeId (4 bytes)
+        response.putLong(sessionId); // SessionId (8 bytes)
+        response.putReserved(16); // Signature (16 bytes)
+        return response;
+    }
+
+    /**
+     * [MS-SMB2] 2.2.1.1 SMB2 Packet Header - ASYNC, for the interim and final responses of a request that is
+     * processed asynchronously. The credits are granted with the interim response.
+     */
+    private SMBBuffer asyncHeader(Request request, NtStatus status, long asyncId, int creditResponse) {
+        SMBBuffer response = new SMBBuffer();
+        response.putRawBytes(SMB2_PROTOCOL_ID); // ProtocolId (4 bytes)
+        response.putUInt16(HEADER_SIZE); // StructureSize (2 bytes)
+        response.putUInt16(request.creditCharge); // CreditCharge (2 bytes)
+        response.putUInt32(status.getValue()); // Status (4 bytes)
+        response.putUInt16(request.command); // Command (2 bytes)
+        response.putUInt16(creditResponse); // CreditResponse (2 bytes)
+        response.putUInt32(SMB2_FLAGS_SERVER_TO_REDIR | SMB2_FLAGS_ASYNC_COMMAND); // Flags (4 bytes)
+        response.putUInt32(0); // NextCommand (4 bytes)
+        response.putLong(request.messageId); // MessageId (8 bytes)
+        response.putLong(asyncId); // AsyncId (8 bytes)
+        response.putLong(request.sessionId); // SessionId (8 bytes)
+        response.putReserved(16); // Signature (16 bytes)
+        return response;
+    }
+
+    private void send(SMBBuffer response) {
+        long latencyNanos = server.getLatencyNanos();
+        if (latencyNanos > 0) {
+            server.getScheduler().schedule(() -> write(response), latencyNanos, TimeUnit.NANOSECONDS);
+        } else {
+            write(response);
+        }
+    }
+
+    private void write(SMBBuffer response) {
+        int length = response.available();
+        try {
+            synchronized (out) {
+                out.write(0); // Direct TCP transport header, zero byte followed by the 3 byte length
+                out.write(length >> 16);
+                out.write(length >> 8);
+                out.write(length);
+                out.write(response.array(), response.rpos(), length);
+                out.flush();
+            }
+        } catch (IOException e) {
+            logger.debug("Failed to write response to {}", socket.getRemoteSocketAddress(), e);
+            close();
+        }
+    }
+
+    private InMemoryFileTree tree(Request request) {
+        InMemoryFileTree tree = trees.get(request.treeId);
+        if (tree == null) {
+            throw new StatusException(NtStatus.STATUS_NETWORK_NAME_DELETED);
+        }
+        return tree;
+    }
+
+    private Open readOpen(Request request) throws Buffer.BufferException {
+        return open(readFileId(request));
+    }
+
+    private static long readFileId(Request request) throws Buffer.BufferException {
+        request.buffer.readLong(); // FileId.Persistent (8 bytes)
+        return request.buffer.readLong(); // FileId.Volatile (8 bytes)
+    }
+
+    private Open open(long volatileId) {
+        Open open = opens.get(volatileId);
+        if (open == null) {
+            throw new StatusException(NtStatus.STATUS_FILE_CLOSED);
+        }
+        open.fileId = volatileId;
+        return open;
+    }
+
+    private static List<Listed> list(Node directory, String searchPattern) {
+        Pattern pattern = wildcard(searchPattern);
+        List<Listed> listing = new ArrayList<>();
+        if (pattern.matcher(".").matches()) {
+            listing.add(new Listed(".", directory));
+        }
+        if (pattern.matcher("..").matches()) {
+            listing.add(new Listed("..", directory.parent != null ? directory.parent : directory));
+        }
+        for (Node child : directory.children.values()) {
+            if (pattern.matcher(child.name).matches()) {
+                listing.add(new Listed(child.name, child));
+            }
+        }
+        return listing;
+    }
+
+    private static Pattern wildcard(String searchPattern) {
+        StringBuilder regex = new StringBuilder();
+        for (char c : searchPattern.toCharArray()) {
+            if (c == '*') {
+                regex.append(".*");
+            } else if (c == '?') {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    }
+
+    private static boolean isDirectoryInformationClass(int informationClass) {
+        switch (informationClass) {
+            case FILE_DIRECTORY_INFORMATION:
+            case FILE_FULL_DIRECTORY_INFORMATION:
+            case FILE_BOTH_DIRECTORY_INFORMATION:
+            case FILE_NAMES_INFORMATION:
+            case FILE_ID_BOTH_DIRECTORY_INFORMATION:
+            case FILE_ID_FULL_DIRECTORY_INFORMATION:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static int entrySize(int informationClass, Listed entry) {
+        int nameLength = entry.name.length() * 2;
+        switch (informationClass) {
+            case FILE_NAMES_INFORMATION:
+                return 12 + nameLength;
+            case FILE_DIRECTORY_INFORMATION:
+                return 64 + nameLength;
+            case FILE_FULL_DIRECTORY_INFORMATION:
+                return 68 + nameLength;
+            case FILE_BOTH_DIRECTORY_INFORMATION:
+                return 94 + nameLength;
+            case FILE_ID_FULL_DIRECTORY_INFORMATION:
+                return 80 + nameLength;
+            default: // FILE_ID_BOTH_DIRECTORY_INFORMATION
+                return 104 + nameLength;
+        }
+    }
+
+    /**
+     * [MS-FSCC] 2.4 File Information Classes, the directory enumeration ones.
+     */
+    private static void putDirectoryEntry(SMBBuffer buffer, int informationClass, Listed entry) {
+        Node node = entry.node;
+        byte[] name = entry.name.getBytes(Charsets.UTF_16LE);
+        buffer.putUInt32(0); // NextEntryOffset (4 bytes), patched when the next entry is written
+        buffer.putUInt32(0); // FileIndex (4 bytes)
+        if (informationClass != FILE_NAMES_INFORMATION) {
+            putTimes(buffer, node); // CreationTime, LastAccessTime, LastWriteTime, ChangeTime (32 bytes)
+            buffer.putUInt64(node.size); // EndOfFile (8 bytes)
+            buffer.putUInt64(node.allocationSize()); // AllocationSize (8 bytes)
+            buffer.putUInt32(attributes(node)); // FileAttributes (4 bytes)
+        }
+        buffer.putUInt32(name.length); // FileNameLength (4 bytes)
+        if (informationClass != FILE_NAMES_INFORMATION && informationClass != FILE_DIRECTORY_INFORMATION) {
+            buffer.putUInt32(0); // EaSize (4 bytes)
+        }
+        if (informationClass == FILE_BOTH_DIRECTORY_INFORMATION || informationClass == FILE_ID_BOTH_DIRECTORY_INFORMATION) {
+            buffer.putByte((byte) 0); // ShortNameLength (1 byte)
+            buffer.putReserved1(); // Reserved1 (1 byte)
+            buffer.putReserved(24); // ShortName (24 bytes)
+        }
+        if (informationClass == FILE_ID_BOTH_DIRECTORY_INFORMATION) {
+            buffer.putReserved2(); // Reserved2 (2 bytes)
+            buffer.putLong(node.fileIndex); // FileId (8 bytes)
+        } else if (informationClass == FILE_ID_FULL_DIRECTORY_INFORMATION) {
+            buffer.putReserved4(); // Reserved (4 bytes)
+            buffer.putLong(node.fileIndex); // FileId (8 bytes)
+        }
+        buffer.putRawBytes(name); // FileName (variable)
+    }
+
+    /**
+     * CREATE and CLOSE responses carry AllocationSize before EndOfFile.
+     */
+    private static void putTimesAndSizes(SMBBuffer buffer, Node node) {
+        putTimes(buffer, node);
+        buffer.putUInt64(node.allocationSize()); // AllocationSize (8 bytes)
+        buffer.putUInt64(node.size); // EndOfFile (8 bytes)
+    }
+
+    private static void putTimes(SMBBuffer buffer, Node node) {
+        buffer.putUInt64(node.creationTime); // CreationTime (8 bytes)
+        buffer.putUInt64(node.lastAccessTime); // LastAccessTime (8 bytes)
+        buffer.putUInt64(node.lastWriteTime); // LastWriteTime (8 bytes)
+        buffer.putUInt64(node.changeTime); // ChangeTime (8 bytes)
+    }
+
+    private static void putBasicInformation(SMBBuffer buffer, Node node) {
+        putTimes(buffer, node); // CreationTime, LastAccessTime, LastWriteTime, ChangeTime (32 bytes)
+        buffer.putUInt32(attributes(node)); // FileAttributes (4 bytes)
+        buffer.putReserved4(); // Reserved (4 bytes)
+    }
+
+    private static void putStandardInformation(SMBBuffer buffer, Node node, Open open) {
+        buffer.putUInt64(node.allocationSize()); // AllocationSize (8 bytes)
+        buffer.putUInt64(node.size); // EndOfFile (8 bytes)
+        buffer.putUInt32(1); // NumberOfLinks (4 bytes)
+        buffer.putBoolean(open.deleteOnClose); // DeletePending (1 byte)
+        buffer.putBoolean(node.directory); // Directory (1 byte)
+        buffer.putReserved2(); // Reserved (2 bytes)
+    }
+
+    /**
+     * [MS-FSCC] 2.4.37.2 FileRenameInformation for SMB2, the new name is relative to the root of the share.
+     */
+    private static void rename(Open open, SMBBuffer buffer) throws Buffer.BufferException {
+        boolean replaceIfExists = buffer.readBoolean(); // ReplaceIfExists (1 byte)
+        buffer.skip(7 + 8); // Reserved (7 bytes), RootDirectory (8 bytes)
+        int nameLength = buffer.readUInt32AsInt(); // FileNameLength (4 bytes)
+        List<String> elements = InMemoryFileTree.split(buffer.readString(Charsets.UTF_16LE, nameLength / 2)); // FileName (variable)
+        if (elements.isEmpty() || open.node.parent == null) {
+            throw new StatusException(NtStatus.STATUS_ACCESS_DENIED);
+        }
+        Node parent = open.tree.lookup(String.join("\\", elements.subList(0, elements.size() - 1)));
+        if (parent == null || !parent.directory) {
+            throw new StatusException(NtStatus.STATUS_OBJECT_PATH_NOT_FOUND);
+        }
+        String name = elements.get(elements.size() - 1);
+        Node existing = parent.children.get(name);
+        if (existing != null && existing != open.node) {
+            if (!replaceIfExists || existing.directory) {
+                throw new StatusException(NtStatus.STATUS_OBJECT_NAME_COLLISION);
+            }
+            existing.remove();
+        }
+        open.node.moveTo(parent, name);
+    }
+
+    private static long attributes(Node node) {
+        long attributes = node.directory ? FILE_ATTRIBUTE_DIRECTORY : FILE_ATTRIBUTE_ARCHIVE;
+        return node.readOnly ? attributes | FILE_ATTRIBUTE_READONLY : attributes;
+    }
+
+    private static String path(Node node) {
+        if (node.parent == null) {
+            return "\\";
+        }
+        StringBuilder path = new StringBuilder();
+        for (Node n = node; n.parent != null; n = n.parent) {
+            path.insert(0, n.name).insert(0, '\\');
+        }
+        return path.toString();
+    }
+
+    private static int align8(int position) {
+        return (position + 7) & ~7;
+    }
+
+    private static void putUInt32At(SMBBuffer buffer, int position, long value) {
+        int wpos = buffer.wpos();
+        buffer.wpos(position);
+        buffer.putUInt32(value);
+        buffer.wpos(wpos);
+    }
+
+    private static boolean startsWith(byte[] packet, byte[] protocolId) {
+        if (packet.length < protocolId.length) {
+            return false;
+        }
+        for (int i = 0; i < protocolId.length; i++) {
+            if (packet[i] != protocolId[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The fixed SMB2 header fields of a request; the buffer is positioned at the start of the request body.
+     */
+    private static class Request {
+        final byte[] packet;
+        final SMBBuffer buffer;
+        final int creditCharge;
+        final int command;
+        final int creditRequest;
+        final long messageId;
+        final long asyncId;
+        final long treeId;
+        final long sessionId;
+
+        private Request(byte[] packet, int command, long messageId) {
+            this.packet = packet;
+            this.buffer = null;
+            this.creditCharge = 0;
+            this.command = command;
+            this.creditRequest = 1;
+            this.messageId = messageId;
+            this.asyncId = 0;
+            this.treeId = 0;
+            this.sessionId = 0;
+        }
+
+        Request(byte[] packet) throws Buffer.BufferException {
+            this.packet = packet;
+            this.buffer = new SMBBuffer(packet);
+            buffer.skip(4 + 2); // ProtocolId, StructureSize (6 bytes)
+            this.creditCharge = buffer.readUInt16(); // CreditCharge (2 bytes)
+            buffer.skip(4); // ChannelSequence/Reserved (4 bytes)
+            this.command = buffer.readUInt16(); // Command (2 bytes)
+            this.creditRequest = buffer.readUInt16(); // CreditRequest (2 bytes)
+            long flags = buffer.readUInt32(); // Flags (4 bytes)
+            buffer.skip(4); // NextCommand (4 bytes)
+            this.messageId = buffer.readLong(); // MessageId (8 bytes)
+            if ((flags & SMB2_FLAGS_ASYNC_COMMAND) != 0) {
+                this.asyncId = buffer.readLong(); // AsyncId (8 bytes)
+                this.treeId = 0;
+            } else {
+                this.asyncId = 0;
+                buffer.skip(4); // Reserved (4 bytes)
+                this.treeId = buffer.readUInt32(); // TreeId (4 bytes)
+            }
+            this.sessionId = buffer.readLong(); // SessionId (8 bytes)
+            buffer.skip(16); // Signature (16 bytes)
+        }
+
+        static Request multiProtocolNegotiate() {
+            return new Request(new byte[0], SMB2MessageCommandCode.SMB2_NEGOTIATE.getValue(), 0);
+        }
+    }
+
+    private static class Open {
+        final InMemoryFileTree tree;
+        final Node node;
+        long fileId;
+        volatile boolean deleteOnClose;
+        List<Listed> listing;
+        int cursor;
+        // The LockSequenceNumber of the last LOCK request per LockSequenceIndex, -1 if none is valid
+        final AtomicIntegerArray lockSequences = new AtomicIntegerArray(65);
+
+        Open(InMemoryFileTree tree, Node node, boolean deleteOnClose) {
+            this.tree = tree;
+            this.node = node;
+            this.deleteOnClose = deleteOnClose;
+            for (int i = 0; i < lockSequences.length(); i++) {
+                lockSequences.set(i, -1);
+            }
+        }
+    }
+
+    /**
+     * An open instance of a named pipe, with the replies that have not been read yet and the reads that wait for one.
+     */
+    private static class PipeOpen {
+        final LoopbackPipe pipe;
+        final PipeHandler handler;
+        final Deque<byte[]> output = new ArrayDeque<>();
+        final Deque<PendingRead> reads = new ArrayDeque<>();
+
+        PipeOpen(LoopbackPipe pipe, PipeHandler handler) {
+            this.pipe = pipe;
+            this.handler = handler;
+        }
+    }
+
+    private static class PendingRead {
+        final Request request;
+        final int maxLength;
+        final long fileId;
+        final boolean transceive;
+
+        PendingRead(Request request, int maxLength, long fileId, boolean transceive) {
+            this.request = request;
+            this.maxLength = maxLength;
+            this.fileId = fileId;
+            this.transceive = transceive;
+        }
+    }
+
+    private static class Listed {
+        final String name;
+        final Node node;
+
+        Listed(String name, Node node) {
+            this.name = name;
+            this.node = node;
+        }
+    }
+
+    private static class StatusException extends RuntimeException {
+        private final NtStatus status;
+
+        StatusException(NtStatus status) {
+            super(status.name(), null, false, false);
+            this.status = status;
+        }
+    }
+}
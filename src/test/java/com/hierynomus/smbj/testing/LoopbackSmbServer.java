@@ -0,0 +1,342 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.testing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hierynomus.mssmb2.SMB2Dialect;
+import com.hierynomus.mssmb2.SMB2MessageCommandCode;
+
+/**
+ * A lightweight SMB2/SMB3 responder that listens on a loopback TCP socket and serves {@link InMemoryFileTree}s as
+ * disk shares, so that the real {@code DirectTcpTransport} and {@code AsyncDirectTcpTransport} can be exercised and
+ * benchmarked without a Samba or Windows server.
+ * <p>
+ * It negotiates the highest dialect both sides support, grants every credit the client asks for and implements
+ * CREATE, CLOSE, READ, WRITE, FLUSH, QUERY_DIRECTORY, QUERY_INFO (basic, standard and all information), SET_INFO
+ * (basic, disposition, rename and end of file), LOCK, CANCEL and ECHO. A LOCK that has to wait is answered with
+ * STATUS_PENDING and completed asynchronously. Named pipes registered with {@link Builder#withPipe(String, int, Supplier)}
+ * are served on the IPC$ share, with WRITE, READ, FSCTL_PIPE_TRANSCEIVE and FSCTL_PIPE_WAIT; a READ on an empty pipe
+ * is answered once a reply is available. It does not authenticate: every SESSION_SETUP succeeds in a single leg, so
+ * clients should use a pass-through authenticator such as {@link StubAuthenticator} with named (not anonymous)
+ * credentials, as the session is never flagged as null or guest. It neither signs nor encrypts,
+ * and ignores the signature on signed requests.
+ * <p>
+ * An artificial latency can be configured, which delays every response without blocking the handling of other
+ * requests, so that the effect of pipelining and credits can be measured.
+ *
+ * <pre>
+ * try (LoopbackSmbServer server = LoopbackSmbServer.builder().withShare("share", tree).build().start()) {
+ *     Connection connection = client.connect("localhost", server.getPort());
+ *     ...
+ * }
+ * </pre>
+ */
+public class LoopbackSmbServer implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(LoopbackSmbServer.class);
+
+    private final Set<SMB2Dialect> dialects;
+    private final Map<String, InMemoryFileTree> shares;
+    private final Map<String, LoopbackPipe> pipes;
+    private volatile long latencyNanos;
+    private final int maxTransactSize;
+    private final UUID serverGuid = UUID.randomUUID();
+    private final Map<SMB2MessageCommandCode, AtomicInteger> received = new EnumMap<>(SMB2MessageCommandCode.class);
+    private final Map<SMB2MessageCommandCode, AtomicInteger> dropped = new EnumMap<>(SMB2MessageCommandCode.class);
+    private final List<LoopbackSmbConnection> connections = new CopyOnWriteArrayList<>();
+    private final ByteRangeLockTable locks = new ByteRangeLockTable();
+    private ServerSocket serverSocket;
+    private ScheduledExecutorService scheduler;
+    private Thread acceptor;
+
+    private LoopbackSmbServer(Builder builder) {
+        this.dialects = Collections.unmodifiableSet(EnumSet.copyOf(builder.dialects));
+        this.shares = Collections.unmodifiableMap(new LinkedHashMap<>(builder.shares));
+        Map<String, LoopbackPipe> pipes = new LinkedHashMap<>();
+        for (Map.Entry<String, Supplier<PipeHandler>> pipe : builder.pipes.entrySet()) {
+            pipes.put(pipe.getKey().toLowerCase(), new LoopbackPipe(builder.pipeInstances.get(pipe.getKey()), pipe.getValue()));
+        }
+        this.pipes = Collections.unmodifiableMap(pipes);
+        this.latencyNanos = builder.latencyNanos;
+        this.maxTransactSize = builder.maxTransactSize;
+        for (SMB2MessageCommandCode command : SMB2MessageCommandCode.values()) {
+            received.put(command, new AtomicInteger());
+            dropped.put(command, new AtomicInteger());
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Bind to an ephemeral port on the loopback interface and start accepting connections.
+     */
+    public LoopbackSmbServer start() throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "loopback-smb-latency");
+            t.setDaemon(true);
+            return t;
+        });
+        acceptor = new Thread(this::acceptConnections, "loopback-smb-acceptor-" + getPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+        logger.debug("Loopback SMB server listening on port {}", getPort());
+        return this;
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public String getHostname() {
+        return serverSocket.getInetAddress().getHostAddress();
+    }
+
+    public InMemoryFileTree getShare(String name) {
+        return shares.get(name);
+    }
+
+    /**
+     * Change the latency of the responses that are sent from now on.
+     */
+    public void setLatency(long latency, TimeUnit unit) {
+        this.latencyNanos = unit.toNanos(latency);
+    }
+
+    /**
+     * @return the number of requests with the command that the server received, over all connections
+     */
+    public int getReceivedCount(SMB2MessageCommandCode command) {
+        return received.get(command).get();
+    }
+
+    /**
+     * Process the next requests with the command as usual, but do not send their responses, as if the responses got
+     * lost on the network.
+     */
+    public void dropResponses(SMB2MessageCommandCode command, int count) {
+        dropped.get(command).addAndGet(count);
+    }
+
+    /**
+     * @return the number of LOCK requests that wait for a conflicting lock to be released
+     */
+    public int getWaitingLockRequests() {
+        return locks.getWaiting();
+    }
+
+    boolean dropResponse(SMB2MessageCommandCode command) {
+        if (command == null) {
+            return false;
+        }
+        AtomicInteger count = dropped.get(command);
+        for (int n = count.get(); n > 0; n = count.get()) {
+            if (count.compareAndSet(n, n - 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void received(SMB2MessageCommandCode command) {
+        received.get(command).incrementAndGet();
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                LoopbackSmbConnection connection = new LoopbackSmbConnection(this, socket);
+                connections.add(connection);
+                Thread reader = new Thread(connection, "loopback-smb-connection-" + socket.getPort());
+                reader.setDaemon(true);
+                reader.start();
+            } catch (SocketException e) {
+                logger.debug("Loopback SMB server socket closed");
+            } catch (IOException e) {
+                logger.warn("Failed to accept connection", e);
+            }
+        }
+    }
+
+    void closed(LoopbackSmbConnection connection) {
+        connections.remove(connection);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (serverSocket == null) {
+            return;
+        }
+        serverSocket.close();
+        for (LoopbackSmbConnection connection : connections) {
+            connection.close();
+        }
+        scheduler.shutdownNow();
+    }
+
+    Set<SMB2Dialect> getDialects() {
+        return dialects;
+    }
+
+    Map<String, InMemoryFileTree> getShares() {
+        return shares;
+    }
+
+    LoopbackPipe getPipe(String name) {
+        return pipes.get(name.toLowerCase());
+    }
+
+    long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    int getMaxTransactSize() {
+        return maxTransactSize;
+    }
+
+    UUID getServerGuid() {
+        return serverGuid;
+    }
+
+    ByteRangeLockTable getLocks() {
+        return locks;
+    }
+
+    ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    public static class Builder {
+        private Set<SMB2Dialect> dialects = EnumSet.of(SMB2Dialect.SMB_2_0_2, SMB2Dialect.SMB_2_1, SMB2Dialect.SMB_3_0, SMB2Dialect.SMB_3_0_2, SMB2Dialect.SMB_3_1_1);
+        private final Map<String, InMemoryFileTree> shares = new LinkedHashMap<>();
+        private final Map<String, Supplier<PipeHandler>> pipes = new LinkedHashMap<>();
+        private final Map<String, Integer> pipeInstances = new LinkedHashMap<>();
+        private long latencyNanos;
+        private int maxTransactSize = 1024 * 1024;
+
+        Builder() {
+        }
+
+        public Builder withDialects(SMB2Dialect... dialects) {
+            return withDialects(Arrays.asList(dialects));
+        }
+
+        public Builder withDialects(Iterable<SMB2Dialect> dialects) {
+            if (dialects == null) {
+                throw new IllegalArgumentException("Dialects may not be null");
+            }
+            List<SMB2Dialect> list = new ArrayList<>();
+            for (SMB2Dialect dialect : dialects) {
+                if (dialect == null || dialect == SMB2Dialect.UNKNOWN || dialect == SMB2Dialect.SMB_2XX) {
+                    throw new IllegalArgumentException("Unsupported dialect: " + dialect);
+                }
+                list.add(dialect);
+            }
+            if (list.isEmpty()) {
+                throw new IllegalArgumentException("At least one dialect must be supported");
+            }
+            this.dialects = EnumSet.copyOf(list);
+            return this;
+        }
+
+        public Builder withShare(String name, InMemoryFileTree tree) {
+            if (name == null || tree == null) {
+                throw new IllegalArgumentException("Share name and tree may not be null");
+            }
+            shares.put(name, tree);
+            return this;
+        }
+
+        /**
+         * Serve a named pipe in message mode on the IPC$ share. Every open of the pipe gets a new handler, and at most
+         * {@code maxInstances} can be open at the same time; further opens fail with STATUS_PIPE_NOT_AVAILABLE.
+         *
+         * @param name         the name of the pipe, without the "\pipe\" prefix
+         * @param maxInstances the number of instances that can be open at the same time
+         * @param handlers     creates the handler of a new instance
+         */
+        public Builder withPipe(String name, int maxInstances, Supplier<PipeHandler> handlers) {
+            if (name == null || handlers == null) {
+                throw new IllegalArgumentException("Pipe name and handlers may not be null");
+            }
+            if (maxInstances < 1) {
+                throw new IllegalArgumentException("A pipe needs at least one instance");
+            }
+            pipes.put(name, handlers);
+            pipeInstances.put(name, maxInstances);
+            return this;
+        }
+
+        /**
+         * Delay every response by the given latency.
+         */
+        public Builder withLatency(long latency, TimeUnit unit) {
+            if (latency < 0) {
+                throw new IllegalArgumentException("Latency may not be negative");
+            }
+            if (unit == null) {
+                throw new IllegalArgumentException("Unit may not be null");
+            }
+            this.latencyNanos = unit.toNanos(latency);
+            return this;
+        }
+
+        /**
+         * The MaxTransactSize, MaxReadSize and MaxWriteSize announced to the client.
+         */
+        public Builder withMaxTransactSize(int maxTransactSize) {
+            if (maxTransactSize < 65536) {
+                throw new IllegalArgumentException("Max transact size must be at least 64KiB");
+            }
+            this.maxTransactSize = maxTransactSize;
+            return this;
+        }
+
+        public LoopbackSmbServer build() {
+            return new LoopbackSmbServer(this);
+        }
+    }
+}
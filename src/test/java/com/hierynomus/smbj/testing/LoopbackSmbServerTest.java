@@ -0,0 +1,168 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.testing;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.hierynomus.msdtyp.AccessMask;
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.msfscc.fileinformation.FileAllInformation;
+import com.hierynomus.msfscc.fileinformation.FileIdBothDirectoryInformation;
+import com.hierynomus.mssmb2.SMB2CreateDisposition;
+import com.hierynomus.mssmb2.SMB2Dialect;
+import com.hierynomus.mssmb2.SMB2ShareAccess;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.smbj.SMBClient;
+import com.hierynomus.smbj.SmbConfig;
+import com.hierynomus.smbj.auth.AuthenticationContext;
+import com.hierynomus.smbj.connection.Connection;
+import com.hierynomus.smbj.share.DiskShare;
+import com.hierynomus.smbj.share.File;
+import com.hierynomus.smbj.transport.tcp.async.AsyncDirectTcpTransportFactory;
+
+public class LoopbackSmbServerTest {
+    private static final AuthenticationContext USER = new AuthenticationContext("user", "password".toCharArray(), null);
+
+    @Test
+    public void shouldWriteAndReadBackFileOverDirectTcp() throws Exception {
+        InMemoryFileTree tree = new InMemoryFileTree();
+        SmbConfig config = SmbConfig.builder()
+            .withAuthenticators(new StubAuthenticator.Factory())
+            .build();
+
+        tree.mkdirs("dir");
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withShare("share", tree).build().start();
+             SMBClient client = new SMBClient(config);
+             Connection connection = client.connect(server.getHostname(), server.getPort())) {
+            assertEquals(SMB2Dialect.SMB_3_1_1, connection.getConnectionContext().getNegotiatedProtocol().getDialect());
+            DiskShare share = (DiskShare) connection.authenticate(USER).connectShare("share");
+            SMBApiException missingParent = assertThrows(SMBApiException.class, () -> share.openFile("missing\\file.bin", EnumSet.of(AccessMask.GENERIC_ALL), null, SMB2ShareAccess.ALL, SMB2CreateDisposition.FILE_CREATE, null));
+            assertEquals(NtStatus.STATUS_OBJECT_PATH_NOT_FOUND, missingParent.getStatus());
+
+            byte[] data = new byte[300 * 1024];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = (byte) i;
+            }
+            try (File file = share.openFile("dir\\file.bin", EnumSet.of(AccessMask.GENERIC_ALL), null, SMB2ShareAccess.ALL, SMB2CreateDisposition.FILE_CREATE, null)) {
+                assertEquals(data.length, file.write(data, 0));
+            }
+            assertArrayEquals(data, tree.read("dir/file.bin"));
+
+            byte[] read = new byte[data.length];
+            try (File file = share.openFile("dir\\file.bin", EnumSet.of(AccessMask.GENERIC_READ), null, SMB2ShareAccess.ALL, SMB2CreateDisposition.FILE_OPEN, null)) {
+                int offset = 0;
+                int n;
+                while ((n = file.read(read, offset, offset, read.length - offset)) > 0) {
+                    offset += n;
+                }
+                assertEquals(data.length, offset);
+            }
+            assertArrayEquals(data, read);
+        }
+    }
+
+    @Test
+    public void shouldListQueryAndDeleteOverAsyncTransport() throws Exception {
+        InMemoryFileTree tree = new InMemoryFileTree();
+        tree.mkdirs("docs");
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String name = String.format("file-%03d.txt", i);
+            tree.write("docs/" + name, new byte[i]);
+            expected.add(name);
+        }
+        SmbConfig config = SmbConfig.builder()
+            .withAuthenticators(new StubAuthenticator.Factory())
+            .withTransportLayerFactory(new AsyncDirectTcpTransportFactory<>())
+            .build();
+
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withShare("share", tree).build().start();
+             SMBClient client = new SMBClient(config);
+             Connection connection = client.connect(server.getHostname(), server.getPort())) {
+            DiskShare share = (DiskShare) connection.authenticate(USER).connectShare("share");
+
+            List<String> names = new ArrayList<>();
+            for (FileIdBothDirectoryInformation info : share.list("docs")) {
+                names.add(info.getFileName());
+            }
+            assertEquals(".", names.remove(0));
+            assertEquals("..", names.remove(0));
+            assertEquals(expected, names);
+            assertEquals(Collections.singletonList("file-042.txt"), fileNames(share.list("docs", "*042*")));
+
+            FileAllInformation info = share.getFileInformation("docs\\file-042.txt");
+            assertEquals(42, info.getStandardInformation().getEndOfFile());
+            assertFalse(info.getStandardInformation().isDirectory());
+            assertTrue(share.folderExists("docs"));
+
+            share.rm("docs\\file-042.txt");
+            assertFalse(share.fileExists("docs\\file-042.txt"));
+            assertNull(tree.read("docs/file-042.txt"));
+            SMBApiException notEmpty = assertThrows(SMBApiException.class, () -> share.rmdir("docs", false));
+            assertEquals(NtStatus.STATUS_DIRECTORY_NOT_EMPTY, notEmpty.getStatus());
+        }
+    }
+
+    @Test
+    public void shouldNegotiateHighestCommonDialect() throws Exception {
+        SmbConfig config = SmbConfig.builder()
+            .withAuthenticators(new StubAuthenticator.Factory())
+            .withDialects(SMB2Dialect.SMB_2_0_2, SMB2Dialect.SMB_2_1, SMB2Dialect.SMB_3_0)
+            .build();
+
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withDialects(SMB2Dialect.SMB_2_0_2, SMB2Dialect.SMB_2_1).build().start();
+             SMBClient client = new SMBClient(config);
+             Connection connection = client.connect(server.getHostname(), server.getPort())) {
+            assertEquals(SMB2Dialect.SMB_2_1, connection.getConnectionContext().getNegotiatedProtocol().getDialect());
+        }
+    }
+
+    @Test
+    public void shouldDelayResponsesByConfiguredLatency() throws Exception {
+        SmbConfig config = SmbConfig.builder()
+            .withAuthenticators(new StubAuthenticator.Factory())
+            .build();
+
+        try (LoopbackSmbServer server = LoopbackSmbServer.builder().withLatency(50, TimeUnit.MILLISECONDS).build().start();
+             SMBClient client = new SMBClient(config)) {
+            long start = System.nanoTime();
+            Connection connection = client.connect(server.getHostname(), server.getPort());
+            connection.close();
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        }
+    }
+
+    private static List<String> fileNames(List<FileIdBothDirectoryInformation> list) {
+        List<String> names = new ArrayList<>();
+        for (FileIdBothDirectoryInformation info : list) {
+            names.add(info.getFileName());
+        }
+        return names;
+    }
+}
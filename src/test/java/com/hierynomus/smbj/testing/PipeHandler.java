@@ -0,0 +1,32 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.testing;
+
+import java.util.List;
+
+/**
+ * Serves one instance of a named pipe of a {@link LoopbackSmbServer}. Every message that is written to the instance,
+ * with WRITE or FSCTL_PIPE_TRANSCEIVE, is handed to {@link #handle(byte[])}, and the messages it returns are read back
+ * in order, by READ or as the output of the transceive.
+ */
+@FunctionalInterface
+public interface PipeHandler {
+    /**
+     * @param message the message written to the pipe instance
+     * @return the messages to queue for reading, may be empty
+     */
+    List<byte[]> handle(byte[] message);
+}
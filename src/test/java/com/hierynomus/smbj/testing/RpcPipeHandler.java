@@ -0,0 +1,179 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.testing;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.hierynomus.msrpce.NdrBuffer;
+import com.hierynomus.protocol.commons.ByteArrayUtils;
+
+/**
+ * The server side of a connection-oriented DCE/RPC interface on a loopback pipe. It acknowledges (or rejects) the
+ * bind, reassembles request fragments, and returns the result of the {@link Responder} in response fragments of at
+ * most {@code maxResponseStub} bytes of stub data, or a fault PDU if the responder returns {@code null}.
+ */
+public class RpcPipeHandler implements PipeHandler {
+    public static final long NCA_S_OP_RNG_ERROR = 0x1c010003L;
+
+    private static final int BIND = 0x0b;
+    private static final int BIND_ACK = 0x0c;
+    private static final int BIND_NAK = 0x0d;
+    private static final int REQUEST = 0x00;
+    private static final int RESPONSE = 0x02;
+    private static final int FAULT = 0x03;
+    private static final int PFC_FIRST_FRAG = 0x01;
+    private static final int PFC_LAST_FRAG = 0x02;
+    // The NDR 2.0 transfer syntax, accepted for the presentation context
+    private static final byte[] NDR_20 = ByteArrayUtils.parseHex("045d888aeb1cc9119fe808002b10486002000000");
+
+    /**
+     * Computes the response stub data of a call.
+     */
+    public interface Responder {
+        /**
+         * @return the response stub data, or {@code null} to fail the call with a fault PDU
+         */
+        byte[] respond(int opnum, byte[] stub);
+    }
+
+    private final int maxRecvFrag;
+    private final int maxResponseStub;
+    private final Responder responder;
+    private final List<byte[]> received = Collections.synchronizedList(new ArrayList<byte[]>());
+    private final ByteArrayOutputStream call = new ByteArrayOutputStream();
+    private int rejectReason = -1;
+
+    /**
+     * @param maxRecvFrag     the largest request fragment to accept, as announced in the bind_ack
+     * @param maxResponseStub the largest amount of stub data to put in one response fragment
+     */
+    public RpcPipeHandler(int maxRecvFrag, int maxResponseStub, Responder responder) {
+        this.maxRecvFrag = maxRecvFrag;
+        this.maxResponseStub = maxResponseStub;
+        this.responder = responder;
+    }
+
+    /**
+     * Rejects binds with a bind_nak carrying {@code reason}.
+     */
+    public RpcPipeHandler rejectBind(int reason) {
+        this.rejectReason = reason;
+        return this;
+    }
+
+    /**
+     * @return the PDUs received so far
+     */
+    public List<byte[]> getReceived() {
+        synchronized (received) {
+            return new ArrayList<>(received);
+        }
+    }
+
+    @Override
+    public synchronized List<byte[]> handle(byte[] pdu) {
+        received.add(pdu);
+        int type = pdu[2];
+        int flags = pdu[3];
+        long callId = (pdu[12] & 0xFFL) | (pdu[13] & 0xFFL) << 8 | (pdu[14] & 0xFFL) << 16 | (pdu[15] & 0xFFL) << 24;
+        if (type == BIND) {
+            return Collections.singletonList(rejectReason >= 0 ? bindNak(callId) : bindAck(callId));
+        } else if (type != REQUEST) {
+            throw new IllegalStateException("Unexpected PDU type " + type);
+        }
+        int opnum = (pdu[22] & 0xFF) | (pdu[23] & 0xFF) << 8;
+        call.write(pdu, 24, pdu.length - 24);
+        if ((flags & PFC_LAST_FRAG) == 0) {
+            return Collections.emptyList();
+        }
+        byte[] stub = call.toByteArray();
+        call.reset();
+        byte[] response = responder.respond(opnum, stub);
+        if (response == null) {
+            return Collections.singletonList(fault(callId));
+        }
+        List<byte[]> fragments = new ArrayList<>();
+        int offset = 0;
+        do {
+            int length = Math.min(maxResponseStub, response.length - offset);
+            int fragmentFlags = (offset == 0 ? PFC_FIRST_FRAG : 0) | (offset + length == response.length ? PFC_LAST_FRAG : 0);
+            NdrBuffer body = new NdrBuffer();
+            body.putUInt32(response.length); // AllocHint
+            body.putUInt16(0); // ContextId
+            body.putByte((byte) 0); // CancelCount
+            body.putByte((byte) 0); // Reserved
+            body.putRawBytes(response, offset, length);
+            fragments.add(pdu(RESPONSE, fragmentFlags, callId, body));
+            offset += length;
+        } while (offset < response.length);
+        return fragments;
+    }
+
+    private byte[] bindAck(long callId) {
+        NdrBuffer body = new NdrBuffer();
+        body.putUInt16(maxRecvFrag); // MaxXmitFrag
+        body.putUInt16(maxRecvFrag); // MaxRecvFrag
+        body.putUInt32(0x1234); // AssocGroupId
+        byte[] secondaryAddress = "\\PIPE\\srvsvc\0".getBytes();
+        body.putUInt16(secondaryAddress.length);
+        body.putRawBytes(secondaryAddress);
+        body.putRawBytes(new byte[(4 - (16 + body.wpos()) % 4) % 4]); // Align to 4 from the start of the PDU
+        body.putByte((byte) 1); // NumResults
+        body.putRawBytes(new byte[3]); // Reserved, Reserved2
+        body.putUInt16(0); // Result, acceptance
+        body.putUInt16(0); // Reason
+        body.putRawBytes(NDR_20);
+        return pdu(BIND_ACK, PFC_FIRST_FRAG | PFC_LAST_FRAG, callId, body);
+    }
+
+    private byte[] bindNak(long callId) {
+        NdrBuffer body = new NdrBuffer();
+        body.putUInt16(rejectReason); // ProviderRejectReason
+        body.putByte((byte) 1); // NumProtocols
+        body.putByte((byte) 5); // RpcVersion
+        body.putByte((byte) 0); // RpcVersionMinor
+        return pdu(BIND_NAK, PFC_FIRST_FRAG | PFC_LAST_FRAG, callId, body);
+    }
+
+    private static byte[] fault(long callId) {
+        NdrBuffer body = new NdrBuffer();
+        body.putUInt32(0); // AllocHint
+        body.putUInt16(0); // ContextId
+        body.putByte((byte) 0); // CancelCount
+        body.putByte((byte) 0); // Reserved
+        body.putUInt32(NCA_S_OP_RNG_ERROR); // Status
+        body.putUInt32(0); // Reserved
+        return pdu(FAULT, PFC_FIRST_FRAG | PFC_LAST_FRAG, callId, body);
+    }
+
+    private static byte[] pdu(int type, int flags, long callId, NdrBuffer body) {
+        byte[] bytes = body.getCompactData();
+        NdrBuffer pdu = new NdrBuffer();
+        pdu.putByte((byte) 5); // RpcVersion
+        pdu.putByte((byte) 0); // RpcVersionMinor
+        pdu.putByte((byte) type); // PacketType
+        pdu.putByte((byte) flags); // PacketFlags
+        pdu.putUInt32(0x10); // DataRepresentation, little-endian
+        pdu.putUInt16(16 + bytes.length); // FragLength
+        pdu.putUInt16(0); // AuthLength
+        pdu.putUInt32(callId); // CallId
+        pdu.putRawBytes(bytes);
+        return pdu.getCompactData();
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.tracing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.mssmb2.SMB2MessageCommandCode;
+import com.hierynomus.smbj.SMBClient;
+import com.hierynomus.smbj.SmbConfig;
+import com.hierynomus.smbj.connection.Connection;
+import com.hierynomus.smbj.testing.PacketProcessor.DefaultPacketProcessor;
+import com.hierynomus.smbj.testing.PacketProcessor.NoOpPacketProcessor;
+import com.hierynomus.smbj.testing.StubAuthenticator;
+import com.hierynomus.smbj.testing.StubTransportLayerFactory;
+
+public class SmbTracerTest {
+
+    @Test
+    public void shouldReportStagesOfEachRequest() throws Exception {
+        RecordingTracer tracer = new RecordingTracer();
+        SmbConfig config = SmbConfig.builder()
+            .withTransportLayerFactory(new StubTransportLayerFactory<>(new DefaultPacketProcessor().wrap(new NoOpPacketProcessor())))
+            .withAuthenticators(new StubAuthenticator.Factory())
+            .withTracer(tracer)
+            .build();
+
+        Connection connection = new SMBClient(config).connect("foo");
+        connection.close();
+
+        RecordedTrace negotiate = tracer.traces.get(0);
+        assertEquals(SMB2MessageCommandCode.SMB2_NEGOTIATE, negotiate.info.getCommand());
+        assertEquals("foo", negotiate.info.getServer());
+        assertEquals(0, negotiate.info.getMessageId());
+        assertEquals(EnumSet.of(TraceStage.CREDIT_WAIT, TraceStage.WRITE, TraceStage.SERVER, TraceStage.DESERIALIZE, TraceStage.DELIVER), negotiate.stages);
+        assertEquals(Long.valueOf(NtStatus.STATUS_SUCCESS.getValue()), negotiate.status);
+        assertTrue(negotiate.valid);
+    }
+
+    private static class RecordingTracer implements SmbTracer {
+        private final List<RecordedTrace> traces = Collections.synchronizedList(new ArrayList<RecordedTrace>());
+
+        @Override
+        public RequestTrace startRequest(RequestInfo request, long startNanos) {
+            RecordedTrace trace = new RecordedTrace(request, startNanos);
+            traces.add(trace);
+            return trace;
+        }
+    }
+
+    private static class RecordedTrace implements RequestTrace {
+        private final RequestInfo info;
+        private final long startNanos;
+        private final Set<TraceStage> stages = EnumSet.noneOf(TraceStage.class);
+        private boolean valid = true;
+        private Long status;
+
+        RecordedTrace(RequestInfo info, long startNanos) {
+            this.info = info;
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        public synchronized void stage(TraceStage stage, long startNanos, long endNanos) {
+            stages.add(stage);
+            valid &= startNanos >= this.startNanos && endNanos >= startNanos;
+        }
+
+        @Override
+        public synchronized void responded(long statusCode, long endNanos) {
+            status = statusCode;
+        }
+
+        @Override
+        public synchronized void failed(Throwable cause, long endNanos) {
+            valid = false;
+        }
+    }
+}